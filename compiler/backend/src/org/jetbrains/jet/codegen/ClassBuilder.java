@@ -29,6 +29,9 @@ public abstract class ClassBuilder {
 
     private final MemberMap members = new MemberMap();
 
+    // Called by done(), see ClassFileFactory#setStreamingConsumer
+    private Runnable doneCallback;
+
     public static class Concrete extends ClassBuilder {
         private final ClassVisitor v;
 
@@ -72,7 +75,7 @@ public abstract class ClassBuilder {
         if (visitor == null) {
             return EMPTY_METHOD_VISITOR;
         }
-        return visitor;
+        return new InlinedFromAnnotator(visitor, access, name, desc);
     }
 
     @NotNull
@@ -87,6 +90,13 @@ public abstract class ClassBuilder {
 
     public void done() {
         getVisitor().visitEnd();
+        if (doneCallback != null) {
+            doneCallback.run();
+        }
+    }
+
+    void setDoneCallback(@Nullable Runnable doneCallback) {
+        this.doneCallback = doneCallback;
     }
 
     @NotNull
@@ -23,6 +23,7 @@ import com.intellij.psi.PsiFile;
 import com.intellij.util.Function;
 import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.asm4.Type;
 import org.jetbrains.jet.codegen.state.GenerationState;
 import org.jetbrains.jet.codegen.state.GenerationStateAware;
@@ -44,6 +45,8 @@ public final class ClassFileFactory extends GenerationStateAware {
 
     private final Map<FqName, NamespaceCodegen> ns2codegen = new HashMap<FqName, NamespaceCodegen>();
     private final Map<String, ClassBuilderAndSourceFileList> generators = new LinkedHashMap<String, ClassBuilderAndSourceFileList>();
+    private final ThreadLocal<Integer> currentPackageOrdinal = new ThreadLocal<Integer>();
+    @Nullable private ClassFileConsumer streamingConsumer;
     private boolean isDone = false;
 
     public ClassFileFactory(@NotNull GenerationState state) {
@@ -56,45 +59,119 @@ public final class ClassFileFactory extends GenerationStateAware {
         this.builderFactory = builderFactory;
     }
 
+    /**
+     * Switches the factory to the streaming mode: the bytes of each class are passed to the consumer as soon as its builder is done,
+     * and the builder is released. Only {@link #files()} and {@link #getSourceFiles(String)} are available for such classes afterwards.
+     * Classes are consumed in the order they are completed, which is not deterministic with parallel codegen.
+     */
+    public synchronized void setStreamingConsumer(@Nullable ClassFileConsumer consumer) {
+        assert generators.isEmpty() : "Streaming mode should be set before code generation";
+        streamingConsumer = consumer;
+    }
+
     @NotNull
     ClassBuilder newVisitor(@NotNull Type asmType, @NotNull PsiFile sourceFile) {
         return newVisitor(asmType, Collections.singletonList(sourceFile));
     }
 
     @NotNull
-    private ClassBuilder newVisitor(@NotNull Type asmType, @NotNull Collection<? extends PsiFile> sourceFiles) {
-        String outputFilePath = asmType.getInternalName() + ".class";
+    private synchronized ClassBuilder newVisitor(@NotNull Type asmType, @NotNull Collection<? extends PsiFile> sourceFiles) {
+        final String outputFilePath = asmType.getInternalName() + ".class";
         state.getProgress().reportOutput(toIoFilesIgnoringNonPhysical(sourceFiles), new File(outputFilePath));
         ClassBuilder answer = builderFactory.newClassBuilder();
-        generators.put(outputFilePath, new ClassBuilderAndSourceFileList(answer, sourceFiles));
+        Integer packageOrdinal = currentPackageOrdinal.get();
+        generators.put(outputFilePath, new ClassBuilderAndSourceFileList(answer, sourceFiles,
+                                                                         packageOrdinal != null ? packageOrdinal : -1));
+        if (streamingConsumer != null) {
+            answer.setDoneCallback(new Runnable() {
+                @Override
+                public void run() {
+                    writeToStreamingConsumer(outputFilePath);
+                }
+            });
+        }
         return answer;
     }
 
+    private void writeToStreamingConsumer(@NotNull String file) {
+        ClassBuilder classBuilder;
+        synchronized (this) {
+            ClassBuilderAndSourceFileList pair = generators.get(file);
+            classBuilder = pair.classBuilder;
+            if (classBuilder == null) return;
+            pair.classBuilder = null;
+        }
+        // Not under the lock, so that other codegen threads aren't blocked by I/O
+        assert streamingConsumer != null;
+        streamingConsumer.consume(file, getSourceFiles(file), builderFactory.asBytes(classBuilder));
+    }
+
+    /**
+     * Classes created by the current thread until the next call are attributed to the package with the given ordinal.
+     * {@link #files()} lists classes of packages with smaller ordinals first, so that the output doesn't depend on the order
+     * in which packages are generated by several threads.
+     */
+    void setCurrentPackageOrdinal(@Nullable Integer ordinal) {
+        currentPackageOrdinal.set(ordinal);
+    }
+
     private void done() {
         if (!isDone) {
             isDone = true;
             for (NamespaceCodegen codegen : ns2codegen.values()) {
                 codegen.done();
             }
+            if (streamingConsumer != null) {
+                // Builders which were never done are written as is, as they would be without streaming
+                for (String file : new ArrayList<String>(generators.keySet())) {
+                    writeToStreamingConsumer(file);
+                }
+            }
         }
     }
 
-    public String asText(String file) {
+    public synchronized String asText(String file) {
         done();
-        return builderFactory.asText(generators.get(file).classBuilder);
+        return builderFactory.asText(getClassBuilder(file));
     }
 
-    public byte[] asBytes(String file) {
+    public synchronized byte[] asBytes(String file) {
         done();
-        return builderFactory.asBytes(generators.get(file).classBuilder);
+        return builderFactory.asBytes(getClassBuilder(file));
+    }
+
+    @NotNull
+    private ClassBuilder getClassBuilder(@NotNull String file) {
+        ClassBuilder classBuilder = generators.get(file).classBuilder;
+        if (classBuilder == null) {
+            throw new IllegalStateException("Binary file " + file + " has already been passed to the streaming consumer");
+        }
+        return classBuilder;
     }
 
-    public List<String> files() {
+    public synchronized List<String> files() {
         done();
-        return new ArrayList<String>(generators.keySet());
+
+        List<Map.Entry<String, ClassBuilderAndSourceFileList>> entries =
+                new ArrayList<Map.Entry<String, ClassBuilderAndSourceFileList>>(generators.entrySet());
+        // The sort is stable, so classes of the same package stay in the order of creation
+        Collections.sort(entries, new Comparator<Map.Entry<String, ClassBuilderAndSourceFileList>>() {
+            @Override
+            public int compare(Map.Entry<String, ClassBuilderAndSourceFileList> o1, Map.Entry<String, ClassBuilderAndSourceFileList> o2) {
+                int ordinal1 = o1.getValue().packageOrdinal;
+                int ordinal2 = o2.getValue().packageOrdinal;
+                return ordinal1 < ordinal2 ? -1 : ordinal1 == ordinal2 ? 0 : 1;
+            }
+        });
+
+        List<String> result = new ArrayList<String>(entries.size());
+        for (Map.Entry<String, ClassBuilderAndSourceFileList> entry : entries) {
+            result.add(entry.getKey());
+        }
+        return result;
     }
 
-    public List<File> getSourceFiles(String relativeClassFilePath) {
+    public synchronized List<File> getSourceFiles(String relativeClassFilePath) {
         ClassBuilderAndSourceFileList pair = generators.get(relativeClassFilePath);
         if (pair == null) {
             throw new IllegalStateException("No record for binary file " + relativeClassFilePath);
@@ -128,7 +205,7 @@ public final class ClassFileFactory extends GenerationStateAware {
         return answer.toString();
     }
 
-    public NamespaceCodegen forNamespace(final FqName fqName, final Collection<JetFile> files) {
+    public synchronized NamespaceCodegen forNamespace(final FqName fqName, final Collection<JetFile> files) {
         assert !isDone : "Already done!";
         NamespaceCodegen codegen = ns2codegen.get(fqName);
         if (codegen == null) {
@@ -179,12 +256,15 @@ public final class ClassFileFactory extends GenerationStateAware {
     }
 
     private static class ClassBuilderAndSourceFileList {
-        private final ClassBuilder classBuilder;
+        // Null after the class has been written in the streaming mode
+        private ClassBuilder classBuilder;
         private final Collection<? extends PsiFile> sourceFiles;
+        private final int packageOrdinal;
 
-        private ClassBuilderAndSourceFileList(ClassBuilder classBuilder, Collection<? extends PsiFile> sourceFiles) {
+        private ClassBuilderAndSourceFileList(ClassBuilder classBuilder, Collection<? extends PsiFile> sourceFiles, int packageOrdinal) {
             this.classBuilder = classBuilder;
             this.sourceFiles = sourceFiles;
+            this.packageOrdinal = packageOrdinal;
         }
     }
 
@@ -0,0 +1,429 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.asm4.*;
+import org.jetbrains.asm4.commons.InstructionAdapter;
+import org.jetbrains.asm4.commons.Method;
+import org.jetbrains.asm4.tree.*;
+import org.jetbrains.asm4.tree.analysis.Analyzer;
+import org.jetbrains.asm4.tree.analysis.AnalyzerException;
+import org.jetbrains.asm4.tree.analysis.Frame;
+import org.jetbrains.asm4.tree.analysis.SourceInterpreter;
+import org.jetbrains.asm4.tree.analysis.SourceValue;
+import org.jetbrains.jet.lang.descriptors.FunctionDescriptor;
+import org.jetbrains.jet.lang.descriptors.ValueParameterDescriptor;
+import org.jetbrains.jet.lang.resolve.DescriptorUtils;
+import org.jetbrains.jet.lang.resolve.java.PackageClassUtils;
+import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileFinder;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.jetbrains.asm4.Opcodes.*;
+
+/**
+ * The bytecode of an inline function from a compiled library, which is copied in place of its calls, see {@link InlineFunctions}.
+ *
+ * Calls of top level functions go through the package facade, which delegates to the package part declaring the function,
+ * so the code is read from the part. It's copied with its locals shifted past the locals of the caller, and with returns replaced
+ * by jumps to its end. The code is not copied if it has try-catch blocks (which clear the stack of the caller), returns with
+ * anything else on the stack, or refers to the part and its inner classes, which might not be accessible from the caller.
+ *
+ * A parameter is only invoked if it's never stored to, and each load of it is either checked for null right away, or invoked
+ * without any jumps in between. A function literal passed for such a parameter is generated in place of the invocations,
+ * and the loads of the parameter are skipped.
+ */
+public class CompiledInlineFunction {
+    private static final String INTRINSICS_CLASS = "jet/runtime/Intrinsics";
+    private static final String CHECK_PARAMETER_IS_NOT_NULL = "checkParameterIsNotNull";
+
+    /**
+     * Generates a function literal in place of the invocation of a parameter, the arguments of which are on the stack
+     */
+    public interface InvocationGenerator {
+        void generate(int argumentIndex, @NotNull Type[] argumentTypes, @NotNull Type returnType);
+    }
+
+    private final String owner;
+    private final MethodNode method;
+    private final Type[] argumentTypes;
+    private final int[] argumentLocals;
+    private final boolean hasReceiver;
+    // Instructions which load a parameter to be invoked or checked for null, by index of the argument
+    private final Map<Integer, List<AbstractInsnNode>> invokedArgumentLoads;
+    private final Map<AbstractInsnNode, Integer> invocations;
+
+    private CompiledInlineFunction(
+            @NotNull String owner,
+            @NotNull MethodNode method,
+            boolean hasReceiver,
+            @NotNull Map<Integer, List<AbstractInsnNode>> invokedArgumentLoads,
+            @NotNull Map<AbstractInsnNode, Integer> invocations
+    ) {
+        this.owner = owner;
+        this.method = method;
+        this.hasReceiver = hasReceiver;
+        this.invokedArgumentLoads = invokedArgumentLoads;
+        this.invocations = invocations;
+
+        argumentTypes = Type.getArgumentTypes(method.desc);
+        argumentLocals = getArgumentLocals(argumentTypes);
+    }
+
+    /**
+     * @return the internal name of the class the code of the function is read from
+     */
+    @NotNull
+    public String getOwner() {
+        return owner;
+    }
+
+    @NotNull
+    public Type[] getArgumentTypes() {
+        return argumentTypes;
+    }
+
+    @NotNull
+    public Type getReturnType() {
+        return Type.getReturnType(method.desc);
+    }
+
+    public int getMaxLocals() {
+        return method.maxLocals;
+    }
+
+    public int getArgumentIndex(@NotNull ValueParameterDescriptor parameter) {
+        return parameter.getIndex() + (hasReceiver ? 1 : 0);
+    }
+
+    public int getArgumentLocal(int argumentIndex) {
+        return argumentLocals[argumentIndex];
+    }
+
+    public boolean isOnlyInvoked(@NotNull ValueParameterDescriptor parameter) {
+        return invokedArgumentLoads.containsKey(getArgumentIndex(parameter));
+    }
+
+    /**
+     * Copies the code of the function, which expects its arguments to be stored to locals starting with firstLocal,
+     * and leaves its result on the stack
+     *
+     * @param inlinedArguments arguments which are not stored, but are generated in place of their invocations by invocationGenerator
+     */
+    public void generate(
+            @NotNull InstructionAdapter v,
+            int firstLocal,
+            @NotNull Set<Integer> inlinedArguments,
+            @NotNull InvocationGenerator invocationGenerator
+    ) {
+        Set<AbstractInsnNode> skipped = new HashSet<AbstractInsnNode>();
+        for (Integer argument : inlinedArguments) {
+            skipped.addAll(invokedArgumentLoads.get(argument));
+        }
+
+        Map<LabelNode, LabelNode> labels = new HashMap<LabelNode, LabelNode>();
+        for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn instanceof LabelNode) {
+                labels.put((LabelNode) insn, new LabelNode());
+            }
+        }
+
+        AbstractInsnNode last = getLastInstruction(method);
+        Label end = new Label();
+        for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (skipped.contains(insn)) continue;
+
+            Integer invokedArgument = invocations.get(insn);
+            if (invokedArgument != null && inlinedArguments.contains(invokedArgument)) {
+                String desc = ((MethodInsnNode) insn).desc;
+                invocationGenerator.generate(invokedArgument, Type.getArgumentTypes(desc), Type.getReturnType(desc));
+                continue;
+            }
+
+            int opcode = insn.getOpcode();
+            if (insn instanceof VarInsnNode) {
+                v.visitVarInsn(opcode, ((VarInsnNode) insn).var + firstLocal);
+            }
+            else if (insn instanceof IincInsnNode) {
+                v.visitIincInsn(((IincInsnNode) insn).var + firstLocal, ((IincInsnNode) insn).incr);
+            }
+            else if (opcode >= IRETURN && opcode <= RETURN) {
+                if (insn != last) {
+                    v.goTo(end);
+                }
+            }
+            else if (!(insn instanceof LineNumberNode) && !(insn instanceof FrameNode)) {
+                insn.clone(labels).accept(v);
+            }
+        }
+        v.mark(end);
+    }
+
+    /**
+     * @return null if the code of the function can't be copied
+     */
+    @Nullable
+    public static CompiledInlineFunction load(
+            @NotNull Project project,
+            @NotNull FunctionDescriptor descriptor,
+            @NotNull Method asmMethod
+    ) {
+        VirtualFileFinder finder = ServiceManager.getService(project, VirtualFileFinder.class);
+        if (finder == null) return null;
+
+        FqName packageFqName = DescriptorUtils.getFQName(descriptor.getContainingDeclaration()).toSafe();
+        FqName facadeFqName = PackageClassUtils.getPackageClassFqName(packageFqName);
+        VirtualFile facadeFile = finder.find(facadeFqName);
+        if (facadeFile == null) return null;
+
+        try {
+            MethodNode facadeMethod = readMethod(facadeFile, asmMethod);
+            if (facadeMethod == null) return null;
+
+            String partName = getDelegateOwner(facadeMethod);
+            if (partName == null) return null;
+
+            VirtualFile partFile = facadeFile.getParent().findChild(partName.substring(partName.lastIndexOf('/') + 1) + ".class");
+            if (partFile == null) return null;
+
+            MethodNode method = readMethod(partFile, asmMethod);
+            if (method == null || (method.access & ACC_STATIC) == 0 || !method.tryCatchBlocks.isEmpty()) return null;
+
+            String facadeName = facadeFqName.asString().replace('.', '/');
+            return analyze(partName, method, descriptor.getReceiverParameter() != null, facadeName);
+        }
+        catch (IOException e) {
+            return null;
+        }
+        catch (AnalyzerException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static MethodNode readMethod(@NotNull VirtualFile file, @NotNull final Method asmMethod) throws IOException {
+        final MethodNode[] result = new MethodNode[1];
+        new ClassReader(file.contentsToByteArray()).accept(new ClassVisitor(ASM4) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                if (!asmMethod.getName().equals(name) || !asmMethod.getDescriptor().equals(desc)) return null;
+                result[0] = new MethodNode(access, name, desc, signature, exceptions);
+                return result[0];
+            }
+        }, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return result[0];
+    }
+
+    // A static delegate of the facade loads its arguments and calls the same method of the part
+    @Nullable
+    private static String getDelegateOwner(@NotNull MethodNode facadeMethod) {
+        for (AbstractInsnNode insn = facadeMethod.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn.getOpcode() == INVOKESTATIC) {
+                MethodInsnNode call = (MethodInsnNode) insn;
+                return call.name.equals(facadeMethod.name) && call.desc.equals(facadeMethod.desc) ? call.owner : null;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static CompiledInlineFunction analyze(
+            @NotNull String partName,
+            @NotNull MethodNode method,
+            boolean hasReceiver,
+            @NotNull String facadeName
+    ) throws AnalyzerException {
+        Frame<SourceValue>[] frames = new Analyzer<SourceValue>(new SourceInterpreter()).analyze(partName, method);
+        InsnList instructions = method.instructions;
+
+        Type returnType = Type.getReturnType(method.desc);
+        int returnStackSize = returnType.getSort() == Type.VOID ? 0 : 1;
+
+        Set<LabelNode> jumpTargets = new HashSet<LabelNode>();
+        for (AbstractInsnNode insn = instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (refersTo(insn, partName) || refersTo(insn, facadeName + "$") || insn instanceof InvokeDynamicInsnNode) {
+                return null;
+            }
+
+            int opcode = insn.getOpcode();
+            Frame<SourceValue> frame = frames[instructions.indexOf(insn)];
+            if (opcode >= IRETURN && opcode <= RETURN && frame != null && frame.getStackSize() != returnStackSize) {
+                return null;
+            }
+
+            if (insn instanceof JumpInsnNode) {
+                jumpTargets.add(((JumpInsnNode) insn).label);
+            }
+            else if (insn instanceof TableSwitchInsnNode) {
+                jumpTargets.add(((TableSwitchInsnNode) insn).dflt);
+                jumpTargets.addAll(((TableSwitchInsnNode) insn).labels);
+            }
+            else if (insn instanceof LookupSwitchInsnNode) {
+                jumpTargets.add(((LookupSwitchInsnNode) insn).dflt);
+                jumpTargets.addAll(((LookupSwitchInsnNode) insn).labels);
+            }
+        }
+
+        Type[] argumentTypes = Type.getArgumentTypes(method.desc);
+        int[] argumentLocals = getArgumentLocals(argumentTypes);
+
+        Map<Integer, List<AbstractInsnNode>> invokedArgumentLoads = new HashMap<Integer, List<AbstractInsnNode>>();
+        Map<AbstractInsnNode, Integer> invocations = new HashMap<AbstractInsnNode, Integer>();
+        for (int i = 0; i < argumentTypes.length; i++) {
+            if (argumentTypes[i].getSort() != Type.OBJECT) continue;
+
+            List<AbstractInsnNode> loads = new ArrayList<AbstractInsnNode>();
+            Map<AbstractInsnNode, Integer> argumentInvocations = new HashMap<AbstractInsnNode, Integer>();
+            if (findInvocations(method, frames, jumpTargets, argumentLocals[i], i, loads, argumentInvocations)) {
+                invokedArgumentLoads.put(i, loads);
+                invocations.putAll(argumentInvocations);
+            }
+        }
+
+        return new CompiledInlineFunction(partName, method, hasReceiver, invokedArgumentLoads, invocations);
+    }
+
+    private static boolean findInvocations(
+            @NotNull MethodNode method,
+            @NotNull Frame<SourceValue>[] frames,
+            @NotNull Set<LabelNode> jumpTargets,
+            int local,
+            int argumentIndex,
+            @NotNull List<AbstractInsnNode> loads,
+            @NotNull Map<AbstractInsnNode, Integer> invocations
+    ) {
+        for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn instanceof IincInsnNode && ((IincInsnNode) insn).var == local) return false;
+            if (!(insn instanceof VarInsnNode) || ((VarInsnNode) insn).var != local) continue;
+            if (insn.getOpcode() != ALOAD) return false;
+
+            AbstractInsnNode nullCheck = getNullCheck(insn);
+            if (nullCheck != null) {
+                loads.add(insn);
+                loads.add(insn.getNext());
+                loads.add(nullCheck);
+                continue;
+            }
+
+            AbstractInsnNode invocation = findInvocation(method, frames, jumpTargets, insn);
+            if (invocation == null) return false;
+            loads.add(insn);
+            invocations.put(invocation, argumentIndex);
+        }
+        return true;
+    }
+
+    // aload; ldc "name"; invokestatic Intrinsics.checkParameterIsNotNull
+    @Nullable
+    private static AbstractInsnNode getNullCheck(@NotNull AbstractInsnNode load) {
+        AbstractInsnNode name = load.getNext();
+        if (!(name instanceof LdcInsnNode) || !(((LdcInsnNode) name).cst instanceof String)) return null;
+
+        AbstractInsnNode check = name.getNext();
+        if (!(check instanceof MethodInsnNode)) return null;
+        MethodInsnNode call = (MethodInsnNode) check;
+        return call.getOpcode() == INVOKESTATIC && INTRINSICS_CLASS.equals(call.owner) && CHECK_PARAMETER_IS_NOT_NULL.equals(call.name)
+               ? check : null;
+    }
+
+    // The load should be the receiver of an invocation which follows it without jumps, and nothing in between can reach under
+    // the arguments of the invocation
+    @Nullable
+    private static AbstractInsnNode findInvocation(
+            @NotNull MethodNode method,
+            @NotNull Frame<SourceValue>[] frames,
+            @NotNull Set<LabelNode> jumpTargets,
+            @NotNull AbstractInsnNode load
+    ) {
+        for (AbstractInsnNode insn = load.getNext(); insn != null; insn = insn.getNext()) {
+            if (insn instanceof LabelNode && jumpTargets.contains(insn)) return null;
+            if (insn instanceof JumpInsnNode || insn instanceof TableSwitchInsnNode || insn instanceof LookupSwitchInsnNode) return null;
+
+            int opcode = insn.getOpcode();
+            if ((opcode >= IRETURN && opcode <= RETURN) || opcode == ATHROW) return null;
+            if (opcode == SWAP || opcode == DUP_X1 || opcode == DUP_X2 || opcode == DUP2_X1 || opcode == DUP2_X2) return null;
+
+            if (insn instanceof MethodInsnNode && "invoke".equals(((MethodInsnNode) insn).name) &&
+                (opcode == INVOKEINTERFACE || opcode == INVOKEVIRTUAL)) {
+                Frame<SourceValue> frame = frames[method.instructions.indexOf(insn)];
+                if (frame == null) return null;
+
+                int receiverIndex = frame.getStackSize() - 1 - Type.getArgumentTypes(((MethodInsnNode) insn).desc).length;
+                Set<AbstractInsnNode> sources = frame.getStack(receiverIndex).insns;
+                if (sources.size() == 1 && sources.contains(load)) {
+                    return insn;
+                }
+            }
+
+            Frame<SourceValue> frame = frames[method.instructions.indexOf(insn)];
+            if (frame == null || !isOnStack(frame, load)) return null;
+        }
+        return null;
+    }
+
+    private static boolean isOnStack(@NotNull Frame<SourceValue> frame, @NotNull AbstractInsnNode load) {
+        for (int i = 0; i < frame.getStackSize(); i++) {
+            if (frame.getStack(i).insns.contains(load)) return true;
+        }
+        return false;
+    }
+
+    private static boolean refersTo(@NotNull AbstractInsnNode insn, @NotNull String name) {
+        if (insn instanceof MethodInsnNode) {
+            return ((MethodInsnNode) insn).owner.contains(name) || ((MethodInsnNode) insn).desc.contains(name);
+        }
+        if (insn instanceof FieldInsnNode) {
+            return ((FieldInsnNode) insn).owner.contains(name) || ((FieldInsnNode) insn).desc.contains(name);
+        }
+        if (insn instanceof TypeInsnNode) {
+            return ((TypeInsnNode) insn).desc.contains(name);
+        }
+        if (insn instanceof MultiANewArrayInsnNode) {
+            return ((MultiANewArrayInsnNode) insn).desc.contains(name);
+        }
+        if (insn instanceof LdcInsnNode && ((LdcInsnNode) insn).cst instanceof Type) {
+            return ((Type) ((LdcInsnNode) insn).cst).getDescriptor().contains(name);
+        }
+        return false;
+    }
+
+    @Nullable
+    private static AbstractInsnNode getLastInstruction(@NotNull MethodNode method) {
+        for (AbstractInsnNode insn = method.instructions.getLast(); insn != null; insn = insn.getPrevious()) {
+            if (insn.getOpcode() >= 0) return insn;
+        }
+        return null;
+    }
+
+    @NotNull
+    private static int[] getArgumentLocals(@NotNull Type[] argumentTypes) {
+        int[] result = new int[argumentTypes.length];
+        int local = 0;
+        for (int i = 0; i < argumentTypes.length; i++) {
+            result[i] = local;
+            local += argumentTypes[i].getSize();
+        }
+        return result;
+    }
+}
@@ -22,6 +22,7 @@ import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.Function;
 import com.intellij.util.containers.Stack;
@@ -110,6 +111,13 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
      */
     private final Map<JetElement, StackValue.Local> tempVariables = Maps.newHashMap();
 
+    /*
+     * Calls of inline functions which are being generated in place, see invokeInlineFunction(), and function literals passed to them
+     * by the parameters they are generated in place of invocations of
+     */
+    private final Stack<InlinedFunction> inlinedFunctions = new Stack<InlinedFunction>();
+    private final Map<ValueParameterDescriptor, JetFunctionLiteralExpression> inlinedLambdas = Maps.newHashMap();
+
     public CalculatedClosure generateObjectLiteral(GenerationState state, JetObjectLiteralExpression literal) {
         JetObjectDeclaration objectDeclaration = literal.getObjectDeclaration();
 
@@ -160,6 +168,20 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
         }
     }
 
+    static class InlinedFunction {
+        final JetNamedFunction declaration;
+        final Label end;
+        final int resultIndex;
+        final Type resultType;
+
+        InlinedFunction(JetNamedFunction declaration, Label end, int resultIndex, Type resultType) {
+            this.declaration = declaration;
+            this.end = end;
+            this.resultIndex = resultIndex;
+            this.resultType = resultType;
+        }
+    }
+
     public ExpressionCodegen(
             @NotNull MethodVisitor v,
             @NotNull FrameMap myMap,
@@ -1507,6 +1529,11 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
     }
 
     private void markLineNumber(@NotNull JetElement statement) {
+        for (InlinedFunction function : inlinedFunctions) {
+            // Code of an inlined function is attributed to the line of its call
+            if (PsiTreeUtil.isAncestor(function.declaration, statement, false)) return;
+        }
+
         Document document = statement.getContainingFile().getViewProvider().getDocument();
         if (document != null) {
             int lineNumber = document.getLineNumber(statement.getTextRange().getStartOffset());  // 0-based
@@ -1576,7 +1603,19 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
     @Override
     public StackValue visitReturnExpression(@NotNull JetReturnExpression expression, StackValue receiver) {
         JetExpression returnedExpression = expression.getReturnedExpression();
-        if (returnedExpression != null) {
+        if (!inlinedFunctions.isEmpty()) {
+            // Only inline functions which return where nothing but the values of the caller is on the stack are inlined
+            InlinedFunction function = inlinedFunctions.peek();
+            assert PsiTreeUtil.isAncestor(function.declaration, expression, true) : "Unexpected return: " + expression.getText();
+            if (returnedExpression != null) {
+                gen(returnedExpression, function.resultType);
+                if (function.resultIndex >= 0) {
+                    v.store(function.resultIndex, function.resultType);
+                }
+            }
+            v.goTo(function.end);
+        }
+        else if (returnedExpression != null) {
             gen(returnedExpression, returnType);
             doFinallyOnReturn();
             v.areturn(returnType);
@@ -1908,6 +1947,11 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
         if (resolvedCall instanceof VariableAsFunctionResolvedCall) {
             VariableAsFunctionResolvedCall variableAsFunctionResolvedCall = (VariableAsFunctionResolvedCall) resolvedCall;
             ResolvedCallWithTrace<FunctionDescriptor> functionCall = variableAsFunctionResolvedCall.getFunctionCall();
+            JetFunctionLiteralExpression lambda =
+                    inlinedLambdas.get(variableAsFunctionResolvedCall.getVariableCall().getResultingDescriptor().getOriginal());
+            if (lambda != null) {
+                return invokeInlinedLambda(lambda, functionCall);
+            }
             return invokeFunction(call, receiver, functionCall);
         }
 
@@ -1916,11 +1960,298 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
             if (original instanceof SamConstructorDescriptor) {
                 return invokeSamConstructor(expression, resolvedCall, ((SamConstructorDescriptor) original).getBaseForSynthesized());
             }
+
+            if (original.isInline()) {
+                StackValue inlined = invokeInlineFunction(resolvedCall, receiver);
+                if (inlined == null) {
+                    inlined = invokeCompiledInlineFunction(resolvedCall, receiver);
+                }
+                if (inlined != null) {
+                    return inlined;
+                }
+            }
         }
 
         return invokeFunction(call, receiver, resolvedCall);
     }
 
+    /**
+     * Generates the body of an inline function in place of its call, with function literals passed to it generated in place
+     * of their invocations, if the function can be inlined, see {@link InlineFunctions}
+     *
+     * @return null if the function should be called
+     */
+    @Nullable
+    private StackValue invokeInlineFunction(@NotNull ResolvedCall<? extends CallableDescriptor> resolvedCall, @NotNull StackValue receiver) {
+        FunctionDescriptor descriptor = (FunctionDescriptor) resolvedCall.getResultingDescriptor().getOriginal();
+        InlineFunctions inlineFunctions = state.getInlineFunctions();
+        JetNamedFunction declaration = inlineFunctions.getInlinableDeclaration(descriptor);
+        if (declaration == null) {
+            return null;
+        }
+
+        addInlinedFrom(NamespaceCodegen.getNamespacePartInternalName((JetFile) declaration.getContainingFile()));
+
+        JetType returnType = descriptor.getReturnType();
+        assert returnType != null : "Inline function has no return type: " + descriptor;
+        Type resultType = typeMapper.mapReturnType(returnType);
+        int resultIndex = resultType.getSort() != Type.VOID ? myFrameMap.enterTemp(resultType) : -1;
+
+        // Arguments are evaluated in the order of parameters, and then stored to locals of the inline function
+        List<DeclarationDescriptor> locals = Lists.newArrayList();
+        List<Type> localTypes = Lists.newArrayList();
+
+        ReceiverParameterDescriptor receiverParameter = descriptor.getReceiverParameter();
+        StackValue callReceiver = StackValue.receiver(resolvedCall, receiver, this, null);
+        if (receiverParameter != null) {
+            Type receiverType = asmType(receiverParameter.getType());
+            callReceiver.put(receiverType, v);
+            locals.add(receiverParameter);
+            localTypes.add(receiverType);
+        }
+        else {
+            callReceiver.put(callReceiver.type, v);
+        }
+
+        Map<ValueParameterDescriptor, JetFunctionLiteralExpression> lambdas = Maps.newHashMap();
+        List<ValueParameterDescriptor> parametersWithDefaultValues = Lists.newArrayList();
+        List<ResolvedValueArgument> arguments = resolvedCall.getValueArgumentsByIndex();
+        for (ValueParameterDescriptor parameter : descriptor.getValueParameters()) {
+            ResolvedValueArgument argument = arguments.get(parameter.getIndex());
+            JetFunctionLiteralExpression lambda = inlineFunctions.getInlinableLambda(resolvedCall, parameter);
+            if (lambda != null) {
+                lambdas.put(parameter, lambda);
+            }
+            else if (argument instanceof DefaultValueArgument) {
+                parametersWithDefaultValues.add(parameter);
+            }
+            else {
+                Type parameterType = asmType(parameter.getType());
+                if (argument instanceof ExpressionValueArgument) {
+                    ValueArgument valueArgument = ((ExpressionValueArgument) argument).getValueArgument();
+                    assert valueArgument != null;
+                    gen(valueArgument.getArgumentExpression(), parameterType);
+                }
+                else {
+                    assert argument instanceof VarargValueArgument : "Unsupported argument of an inline function: " + argument;
+                    genVarargs(parameter, (VarargValueArgument) argument);
+                }
+                locals.add(parameter);
+                localTypes.add(parameterType);
+            }
+        }
+
+        int[] indices = new int[locals.size()];
+        for (int i = 0; i < locals.size(); i++) {
+            indices[i] = myFrameMap.enter(locals.get(i), localTypes.get(i));
+        }
+        for (int i = locals.size() - 1; i >= 0; i--) {
+            v.store(indices[i], localTypes.get(i));
+        }
+
+        Map<ValueParameterDescriptor, JetFunctionLiteralExpression> previousLambdas = Maps.newHashMap();
+        for (Map.Entry<ValueParameterDescriptor, JetFunctionLiteralExpression> entry : lambdas.entrySet()) {
+            previousLambdas.put(entry.getKey(), inlinedLambdas.put(entry.getKey(), entry.getValue()));
+        }
+
+        Label end = new Label();
+        inlinedFunctions.push(new InlinedFunction(declaration, end, resultIndex, resultType));
+
+        for (ValueParameterDescriptor parameter : parametersWithDefaultValues) {
+            JetExpression defaultValue = declaration.getValueParameters().get(parameter.getIndex()).getDefaultValue();
+            assert defaultValue != null : "No default value for " + parameter + " of " + descriptor;
+            Type parameterType = asmType(parameter.getType());
+            gen(defaultValue, parameterType);
+            v.store(myFrameMap.enter(parameter, parameterType), parameterType);
+            locals.add(parameter);
+        }
+
+        JetExpression body = declaration.getBodyExpression();
+        if (declaration.hasBlockBody()) {
+            gen(body, Type.VOID_TYPE);
+        }
+        else {
+            gen(body, resultType);
+            if (resultIndex >= 0) {
+                v.store(resultIndex, resultType);
+            }
+        }
+        v.mark(end);
+
+        for (Map.Entry<ValueParameterDescriptor, JetFunctionLiteralExpression> entry : previousLambdas.entrySet()) {
+            if (entry.getValue() != null) {
+                inlinedLambdas.put(entry.getKey(), entry.getValue());
+            }
+            else {
+                inlinedLambdas.remove(entry.getKey());
+            }
+        }
+
+        inlinedFunctions.pop();
+
+        for (DeclarationDescriptor local : Lists.reverse(locals)) {
+            myFrameMap.leave(local);
+        }
+
+        if (resultIndex >= 0) {
+            v.load(resultIndex, resultType);
+            myFrameMap.leaveTemp(resultType);
+        }
+
+        JetType callReturnType = resolvedCall.getResultingDescriptor().getReturnType();
+        assert callReturnType != null;
+        Type callType = typeMapper.mapReturnType(callReturnType);
+        StackValue.coerce(resultType, callType, v);
+        return StackValue.onStack(callType);
+    }
+
+    /**
+     * Generates the body of a function literal passed to an inline function in place of its invocation in the inline function
+     */
+    @NotNull
+    private StackValue invokeInlinedLambda(
+            @NotNull JetFunctionLiteralExpression lambda,
+            @NotNull ResolvedCall<? extends CallableDescriptor> invokeCall
+    ) {
+        FunctionDescriptor lambdaDescriptor = bindingContext.get(BindingContext.FUNCTION, lambda.getFunctionLiteral());
+        assert lambdaDescriptor != null : "Function literal is not resolved to descriptor: " + lambda.getText();
+
+        List<ValueParameterDescriptor> parameters = lambdaDescriptor.getValueParameters();
+        List<ResolvedValueArgument> arguments = invokeCall.getValueArgumentsByIndex();
+        Type[] parameterTypes = new Type[parameters.size()];
+        for (ValueParameterDescriptor parameter : parameters) {
+            ResolvedValueArgument argument = arguments.get(parameter.getIndex());
+            assert argument instanceof ExpressionValueArgument : "Unsupported argument of a function literal: " + argument;
+            ValueArgument valueArgument = ((ExpressionValueArgument) argument).getValueArgument();
+            assert valueArgument != null;
+
+            parameterTypes[parameter.getIndex()] = asmType(parameter.getType());
+            gen(valueArgument.getArgumentExpression(), parameterTypes[parameter.getIndex()]);
+        }
+
+        JetType callReturnType = invokeCall.getResultingDescriptor().getReturnType();
+        assert callReturnType != null;
+        Type callType = typeMapper.mapReturnType(callReturnType);
+        genInlinedLambdaBody(lambda, parameterTypes, callType);
+        return StackValue.onStack(callType);
+    }
+
+    /**
+     * Generates the body of a function literal, the arguments of which are on the stack, and leaves its result of the given type
+     */
+    private void genInlinedLambdaBody(@NotNull JetFunctionLiteralExpression lambda, @NotNull Type[] argumentTypes, @NotNull Type resultType) {
+        FunctionDescriptor lambdaDescriptor = bindingContext.get(BindingContext.FUNCTION, lambda.getFunctionLiteral());
+        assert lambdaDescriptor != null : "Function literal is not resolved to descriptor: " + lambda.getText();
+
+        List<ValueParameterDescriptor> parameters = lambdaDescriptor.getValueParameters();
+        Type[] parameterTypes = new Type[parameters.size()];
+        int[] indices = new int[parameters.size()];
+        for (ValueParameterDescriptor parameter : parameters) {
+            parameterTypes[parameter.getIndex()] = asmType(parameter.getType());
+            indices[parameter.getIndex()] = myFrameMap.enter(parameter, parameterTypes[parameter.getIndex()]);
+        }
+        for (int i = parameters.size() - 1; i >= 0; i--) {
+            StackValue.coerce(argumentTypes[i], parameterTypes[i], v);
+            v.store(indices[i], parameterTypes[i]);
+        }
+
+        JetType returnType = lambdaDescriptor.getReturnType();
+        assert returnType != null;
+        Type lambdaReturnType = typeMapper.mapReturnType(returnType);
+        gen(lambda.getBodyExpression(), lambdaReturnType);
+
+        for (ValueParameterDescriptor parameter : Lists.reverse(parameters)) {
+            myFrameMap.leave(parameter);
+        }
+
+        StackValue.coerce(lambdaReturnType, resultType, v);
+    }
+
+    /**
+     * Copies the bytecode of an inline function from a compiled library in place of its call, with function literals passed to it
+     * generated in place of their invocations, if the function can be inlined, see {@link CompiledInlineFunction}
+     *
+     * @return null if the function should be called
+     */
+    @Nullable
+    private StackValue invokeCompiledInlineFunction(
+            @NotNull ResolvedCall<? extends CallableDescriptor> resolvedCall,
+            @NotNull StackValue receiver
+    ) {
+        FunctionDescriptor descriptor = (FunctionDescriptor) resolvedCall.getResultingDescriptor().getOriginal();
+        InlineFunctions inlineFunctions = state.getInlineFunctions();
+        CompiledInlineFunction function = inlineFunctions.getCompiledInlineFunction(resolvedCall);
+        if (function == null) {
+            return null;
+        }
+
+        addInlinedFrom(function.getOwner());
+
+        Type[] argumentTypes = function.getArgumentTypes();
+        StackValue callReceiver = StackValue.receiver(resolvedCall, receiver, this, null);
+        if (descriptor.getReceiverParameter() != null) {
+            callReceiver.put(argumentTypes[0], v);
+        }
+        else {
+            callReceiver.put(callReceiver.type, v);
+        }
+
+        final Map<Integer, JetFunctionLiteralExpression> lambdas = Maps.newHashMap();
+        List<ResolvedValueArgument> arguments = resolvedCall.getValueArgumentsByIndex();
+        for (ValueParameterDescriptor parameter : descriptor.getValueParameters()) {
+            int argumentIndex = function.getArgumentIndex(parameter);
+            ResolvedValueArgument argument = arguments.get(parameter.getIndex());
+            JetFunctionLiteralExpression lambda = inlineFunctions.getInlinableLambda(resolvedCall, parameter);
+            if (lambda != null) {
+                lambdas.put(argumentIndex, lambda);
+            }
+            else if (argument instanceof ExpressionValueArgument) {
+                ValueArgument valueArgument = ((ExpressionValueArgument) argument).getValueArgument();
+                assert valueArgument != null;
+                gen(valueArgument.getArgumentExpression(), argumentTypes[argumentIndex]);
+            }
+            else {
+                assert argument instanceof VarargValueArgument : "Unsupported argument of an inline function: " + argument;
+                genVarargs(parameter, (VarargValueArgument) argument);
+            }
+        }
+
+        // The locals of the function are shifted past the locals of the caller
+        int firstLocal = myFrameMap.enterTemp(Type.INT_TYPE);
+        for (int i = 1; i < function.getMaxLocals(); i++) {
+            myFrameMap.enterTemp(Type.INT_TYPE);
+        }
+        for (int i = argumentTypes.length - 1; i >= 0; i--) {
+            if (!lambdas.containsKey(i)) {
+                v.store(firstLocal + function.getArgumentLocal(i), argumentTypes[i]);
+            }
+        }
+
+        function.generate(v, firstLocal, lambdas.keySet(), new CompiledInlineFunction.InvocationGenerator() {
+            @Override
+            public void generate(int argumentIndex, @NotNull Type[] argumentTypes, @NotNull Type returnType) {
+                genInlinedLambdaBody(lambdas.get(argumentIndex), argumentTypes, returnType);
+            }
+        });
+
+        for (int i = 1; i < function.getMaxLocals(); i++) {
+            myFrameMap.leaveTemp(Type.INT_TYPE);
+        }
+        myFrameMap.leaveTemp(Type.INT_TYPE);
+
+        JetType callReturnType = resolvedCall.getResultingDescriptor().getReturnType();
+        assert callReturnType != null;
+        Type callType = typeMapper.mapReturnType(callReturnType);
+        StackValue.coerce(function.getReturnType(), callType, v);
+        return StackValue.onStack(callType);
+    }
+
+    private void addInlinedFrom(@NotNull String owner) {
+        if (methodVisitor instanceof InlinedFromAnnotator) {
+            ((InlinedFromAnnotator) methodVisitor).addInlinedFrom(owner);
+        }
+    }
+
     private StackValue invokeSamConstructor(
             JetCallExpression expression,
             ResolvedCall<? extends CallableDescriptor> resolvedCall,
@@ -2205,6 +2536,14 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
     }
 
     private StackValue generateReceiver(DeclarationDescriptor provided) {
+        if (provided instanceof CallableDescriptor && !inlinedFunctions.isEmpty()) {
+            ReceiverParameterDescriptor receiverParameter = ((CallableDescriptor) provided).getReceiverParameter();
+            int index = receiverParameter != null ? lookupLocalIndex(receiverParameter) : -1;
+            if (index >= 0) {
+                return StackValue.local(index, asmType(receiverParameter.getType()));
+            }
+        }
+
         if (context.getCallableDescriptorWithReceiver() == provided) {
             StackValue result = context.getReceiverExpression(typeMapper);
             return castToRequiredTypeOfInterfaceIfNeeded(result, provided, null);
@@ -3563,6 +3902,74 @@ The "returned" value of try expression with no finally is either the last expres
         return blockRegions;
     }
 
+    /**
+     * Generates the body of a function literal passed to synchronized() in place, guarded by monitorenter/monitorexit
+     * the same way javac compiles a synchronized block: the monitor is released on both normal and exceptional exit
+     */
+    @NotNull
+    public StackValue generateSynchronized(
+            @NotNull JetExpression lock,
+            @NotNull JetFunctionLiteralExpression block,
+            @NotNull Type expectedType
+    ) {
+        FunctionDescriptor blockDescriptor = bindingContext.get(BindingContext.FUNCTION, block.getFunctionLiteral());
+        assert blockDescriptor != null : "Function literal is not resolved to descriptor: " + block.getText();
+        JetType returnType = blockDescriptor.getReturnType();
+        assert returnType != null;
+        Type blockType = typeMapper.mapReturnType(returnType);
+
+        int resultIndex = blockType.getSort() != Type.VOID ? myFrameMap.enterTemp(blockType) : -1;
+        int lockIndex = myFrameMap.enterTemp(OBJECT_TYPE);
+
+        gen(lock, OBJECT_TYPE);
+        v.dup();
+        v.store(lockIndex, OBJECT_TYPE);
+        v.monitorenter();
+
+        Label tryStart = new Label();
+        v.mark(tryStart);
+
+        gen(block.getBodyExpression(), blockType);
+        if (resultIndex >= 0) {
+            v.store(resultIndex, blockType);
+        }
+
+        v.load(lockIndex, OBJECT_TYPE);
+        v.monitorexit();
+
+        Label tryEnd = new Label();
+        v.mark(tryEnd);
+        Label end = new Label();
+        v.goTo(end);
+
+        Label handlerStart = new Label();
+        v.mark(handlerStart);
+        int exceptionIndex = myFrameMap.enterTemp(JAVA_THROWABLE_TYPE);
+        v.store(exceptionIndex, JAVA_THROWABLE_TYPE);
+        v.load(lockIndex, OBJECT_TYPE);
+        v.monitorexit();
+        Label handlerEnd = new Label();
+        v.mark(handlerEnd);
+        v.load(exceptionIndex, JAVA_THROWABLE_TYPE);
+        myFrameMap.leaveTemp(JAVA_THROWABLE_TYPE);
+        v.athrow();
+
+        //javac also protects the handler itself, so that the monitor is released if monitorexit is interrupted by an exception
+        v.visitTryCatchBlock(tryStart, tryEnd, handlerStart, null);
+        v.visitTryCatchBlock(handlerStart, handlerEnd, handlerStart, null);
+
+        v.mark(end);
+        myFrameMap.leaveTemp(OBJECT_TYPE);
+
+        if (resultIndex >= 0) {
+            v.load(resultIndex, blockType);
+            myFrameMap.leaveTemp(blockType);
+        }
+
+        StackValue.coerce(blockType, expectedType, v);
+        return StackValue.onStack(expectedType);
+    }
+
     @Override
     public StackValue visitBinaryWithTypeRHSExpression(@NotNull JetBinaryExpressionWithTypeRHS expression, StackValue receiver) {
         JetSimpleNameExpression operationSign = expression.getOperationReference();
@@ -3688,9 +4095,11 @@ The "returned" value of try expression with no finally is either the last expres
         Type subjectType = asmTypeOrVoid(subjectJetType);
         Type resultType = isStatement ? Type.VOID_TYPE : expressionType(expression);
         int subjectLocal = expr != null ? myFrameMap.enterTemp(subjectType) : -1;
+        StackValue.Local previousSubjectValue = null;
         if (subjectLocal != -1) {
             gen(expr, subjectType);
-            tempVariables.put(expr, StackValue.local(subjectLocal, subjectType));
+            // The same when expression may be generated inside itself if it's in an inline function
+            previousSubjectValue = tempVariables.put(expr, StackValue.local(subjectLocal, subjectType));
             v.store(subjectLocal, subjectType);
         }
 
@@ -3734,7 +4143,12 @@ The "returned" value of try expression with no finally is either the last expres
         v.mark(end);
 
         myFrameMap.leaveTemp(subjectType);
-        tempVariables.remove(expr);
+        if (previousSubjectValue != null) {
+            tempVariables.put(expr, previousSubjectValue);
+        }
+        else {
+            tempVariables.remove(expr);
+        }
         return StackValue.onStack(resultType);
     }
 
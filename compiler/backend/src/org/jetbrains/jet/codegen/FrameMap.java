@@ -23,18 +23,26 @@ import gnu.trove.TObjectIntIterator;
 import org.jetbrains.asm4.Type;
 import org.jetbrains.jet.lang.descriptors.DeclarationDescriptor;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import java.util.*;
 
 public class FrameMap {
     private final TObjectIntHashMap<DeclarationDescriptor> myVarIndex = new TObjectIntHashMap<DeclarationDescriptor>();
     private final TObjectIntHashMap<DeclarationDescriptor> myVarSizes = new TObjectIntHashMap<DeclarationDescriptor>();
+    // Previous indices of descriptors entered again before being left, e.g. locals of an inline function which is generated in place
+    // inside a function literal passed to another call of the same function
+    private final Map<DeclarationDescriptor, Stack<Integer>> myShadowedIndices = new HashMap<DeclarationDescriptor, Stack<Integer>>();
     private int myMaxIndex = 0;
 
     public int enter(DeclarationDescriptor descriptor, Type type) {
         int index = myMaxIndex;
+        if (myVarIndex.contains(descriptor)) {
+            Stack<Integer> shadowed = myShadowedIndices.get(descriptor);
+            if (shadowed == null) {
+                shadowed = new Stack<Integer>();
+                myShadowedIndices.put(descriptor, shadowed);
+            }
+            shadowed.push(myVarIndex.get(descriptor));
+        }
         myVarIndex.put(descriptor, index);
         myMaxIndex += type.getSize();
         myVarSizes.put(descriptor, type.getSize());
@@ -49,9 +57,26 @@ public class FrameMap {
         if (oldIndex != myMaxIndex) {
             throw new IllegalStateException("descriptor can be left only if it is last");
         }
+        restoreShadowed(descriptor, size, myMaxIndex);
         return oldIndex;
     }
 
+    private void restoreShadowed(DeclarationDescriptor descriptor, int size, int maxIndex) {
+        Stack<Integer> shadowed = myShadowedIndices.get(descriptor);
+        if (shadowed == null) return;
+
+        while (!shadowed.isEmpty() && shadowed.peek() >= maxIndex) {
+            shadowed.pop();
+        }
+        if (!shadowed.isEmpty()) {
+            myVarIndex.put(descriptor, shadowed.pop());
+            myVarSizes.put(descriptor, size);
+        }
+        if (shadowed.isEmpty()) {
+            myShadowedIndices.remove(descriptor);
+        }
+    }
+
     public int enterTemp(Type type) {
         int result = myMaxIndex;
         myMaxIndex += type.getSize();
@@ -88,7 +113,8 @@ public class FrameMap {
             }
             for (DeclarationDescriptor declarationDescriptor : descriptorsToDrop) {
                 myVarIndex.remove(declarationDescriptor);
-                myVarSizes.remove(declarationDescriptor);
+                int size = myVarSizes.remove(declarationDescriptor);
+                restoreShadowed(declarationDescriptor, size, myIndex);
             }
             myMaxIndex = myIndex;
         }
@@ -123,6 +123,13 @@ public class FunctionCodegen extends ParentCodegenAwareImpl {
         AnnotationCodegen.forMethod(mv, typeMapper).genAnnotations(functionDescriptor);
         if (state.getClassBuilderMode() == ClassBuilderMode.LIGHT_CLASSES) return;
 
+        if (functionDescriptor instanceof SimpleFunctionDescriptor && ((SimpleFunctionDescriptor) functionDescriptor).isInline()) {
+            AnnotationVisitor annotation = mv.visitAnnotation(InlineFunctions.INLINE_FUNCTION_DESC, false);
+            if (annotation != null) {
+                annotation.visitEnd();
+            }
+        }
+
         generateParameterAnnotations(functionDescriptor, mv, jvmSignature);
 
         generateJetValueParameterAnnotations(mv, functionDescriptor, jvmSignature);
@@ -0,0 +1,434 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.codegen;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.codegen.state.GenerationState;
+import org.jetbrains.jet.lang.descriptors.*;
+import org.jetbrains.jet.lang.psi.*;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.BindingContextUtils;
+import org.jetbrains.jet.lang.resolve.DescriptorUtils;
+import org.jetbrains.jet.lang.resolve.calls.model.DefaultValueArgument;
+import org.jetbrains.jet.lang.resolve.calls.model.ExpressionValueArgument;
+import org.jetbrains.jet.lang.resolve.calls.model.ResolvedCall;
+import org.jetbrains.jet.lang.resolve.calls.model.ResolvedValueArgument;
+import org.jetbrains.jet.lang.resolve.calls.model.VariableAsFunctionResolvedCall;
+import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+import org.jetbrains.jet.lexer.JetTokens;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides which calls of inline functions are generated in place, and which function literals passed to them are generated
+ * in place of their invocations instead of being compiled to closures.
+ *
+ * Top level functions declared in the sources being compiled are inlined by generating their bodies from PSI.
+ * The bytecode of top level functions from compiled libraries is copied instead, see {@link CompiledInlineFunction}; calls of them
+ * which use default values of parameters are not inlined.
+ *
+ * A function from the sources is not inlined if its body can't be generated inside another method as is: if it has try expressions (which clear
+ * the stack of the caller), declares classes, objects or local functions, has function literals which are not inlined themselves,
+ * returns from a position where the stack might not be empty, uses private declarations which are not accessible from the call site,
+ * or is recursive. A function literal is inlined if the parameter it is passed for is only ever invoked, and the literal itself
+ * has no returns, receiver or nested closures.
+ *
+ * All decisions are cached, so that the code of an inline function generated in place is the same as the one analyzed.
+ */
+public class InlineFunctions {
+    /**
+     * Marks methods of inline functions, and methods they are inlined into, so that the incremental build can recompile
+     * the latter when the body of an inline function changes, see jet.runtime.InlineFunction and jet.runtime.InlinedFrom
+     */
+    public static final String INLINE_FUNCTION_DESC = "Ljet/runtime/InlineFunction;";
+    public static final String INLINED_FROM_DESC = "Ljet/runtime/InlinedFrom;";
+
+    private final GenerationState state;
+
+    // Values are null for functions which are not inlined
+    private final Map<FunctionDescriptor, InlineFunction> functions = Maps.newHashMap();
+    // Values are null for functions the bytecode of which can't be copied
+    private final Map<FunctionDescriptor, CompiledInlineFunction> compiledFunctions = Maps.newHashMap();
+    private final Map<JetFunctionLiteralExpression, Boolean> lambdas = Maps.newHashMap();
+    private final Set<FunctionDescriptor> inProgress = Sets.newHashSet();
+
+    public InlineFunctions(@NotNull GenerationState state) {
+        this.state = state;
+    }
+
+    private static class InlineFunction {
+        private final JetNamedFunction declaration;
+        // Parameters which are used other than by being invoked, function literals passed for them can't be inlined
+        private final Set<ValueParameterDescriptor> escapingParameters;
+
+        private InlineFunction(@NotNull JetNamedFunction declaration, @NotNull Set<ValueParameterDescriptor> escapingParameters) {
+            this.declaration = declaration;
+            this.escapingParameters = escapingParameters;
+        }
+    }
+
+    /**
+     * @return the declaration of the function if its calls should be generated in place
+     */
+    @Nullable
+    public synchronized JetNamedFunction getInlinableDeclaration(@NotNull FunctionDescriptor descriptor) {
+        InlineFunction function = getInlineFunction(descriptor.getOriginal());
+        return function != null ? function.declaration : null;
+    }
+
+    /**
+     * @param parameter a parameter of the original descriptor of an inline function called by resolvedCall
+     * @return the function literal passed for the parameter if it should be generated in place of the parameter's invocations
+     */
+    @Nullable
+    public synchronized JetFunctionLiteralExpression getInlinableLambda(
+            @NotNull ResolvedCall<? extends CallableDescriptor> resolvedCall,
+            @NotNull ValueParameterDescriptor parameter
+    ) {
+        ResolvedValueArgument argument = resolvedCall.getValueArgumentsByIndex().get(parameter.getIndex());
+        if (!(argument instanceof ExpressionValueArgument)) return null;
+
+        ValueArgument valueArgument = ((ExpressionValueArgument) argument).getValueArgument();
+        JetExpression expression = valueArgument != null ? valueArgument.getArgumentExpression() : null;
+        if (!(expression instanceof JetFunctionLiteralExpression)) return null;
+
+        JetFunctionLiteralExpression lambda = (JetFunctionLiteralExpression) expression;
+        return isInlinableLambda(lambda) ? lambda : null;
+    }
+
+    /**
+     * @return the bytecode of a function from a compiled library, if resolvedCall should be generated in place by copying it
+     */
+    @Nullable
+    public synchronized CompiledInlineFunction getCompiledInlineFunction(@NotNull ResolvedCall<? extends CallableDescriptor> resolvedCall) {
+        CallableDescriptor descriptor = resolvedCall.getResultingDescriptor().getOriginal();
+        if (!(descriptor instanceof SimpleFunctionDescriptor) || !((SimpleFunctionDescriptor) descriptor).isInline()) return null;
+
+        for (ResolvedValueArgument argument : resolvedCall.getValueArgumentsByIndex()) {
+            if (argument instanceof DefaultValueArgument) return null;
+        }
+
+        FunctionDescriptor function = (FunctionDescriptor) descriptor;
+        if (!compiledFunctions.containsKey(function)) {
+            compiledFunctions.put(function, loadCompiledInlineFunction(function));
+        }
+        return compiledFunctions.get(function);
+    }
+
+    @Nullable
+    private CompiledInlineFunction loadCompiledInlineFunction(@NotNull FunctionDescriptor descriptor) {
+        if (!(descriptor.getContainingDeclaration() instanceof NamespaceDescriptor)) return null;
+        if (BindingContextUtils.descriptorToDeclaration(state.getBindingContext(), descriptor) != null) return null;
+
+        return CompiledInlineFunction.load(state.getProject(), descriptor, state.getTypeMapper().mapSignature(descriptor).getAsmMethod());
+    }
+
+    @Nullable
+    private InlineFunction getInlineFunction(@NotNull FunctionDescriptor descriptor) {
+        if (functions.containsKey(descriptor)) {
+            return functions.get(descriptor);
+        }
+
+        inProgress.add(descriptor);
+        InlineFunction result = computeInlineFunction(descriptor);
+        inProgress.remove(descriptor);
+
+        functions.put(descriptor, result);
+        return result;
+    }
+
+    @Nullable
+    private InlineFunction computeInlineFunction(@NotNull FunctionDescriptor descriptor) {
+        if (!(descriptor instanceof SimpleFunctionDescriptor) || !((SimpleFunctionDescriptor) descriptor).isInline()) return null;
+        if (!(descriptor.getContainingDeclaration() instanceof NamespaceDescriptor)) return null;
+
+        BindingContext bindingContext = state.getBindingContext();
+        PsiElement element = BindingContextUtils.descriptorToDeclaration(bindingContext, descriptor);
+        if (!(element instanceof JetNamedFunction)) return null;
+
+        JetNamedFunction declaration = (JetNamedFunction) element;
+        JetExpression body = declaration.getBodyExpression();
+        if (body == null || !state.getFiles().contains(declaration.getContainingFile())) return null;
+
+        BodyChecker checker = new BodyChecker(descriptor, declaration);
+        for (JetParameter parameter : declaration.getValueParameters()) {
+            JetExpression defaultValue = parameter.getDefaultValue();
+            if (defaultValue != null) {
+                defaultValue.accept(checker);
+            }
+        }
+        body.accept(checker);
+
+        return checker.inlinable ? new InlineFunction(declaration, checker.escapingParameters) : null;
+    }
+
+    private boolean isInlinableLambda(@NotNull JetFunctionLiteralExpression lambda) {
+        Boolean result = lambdas.get(lambda);
+        if (result == null) {
+            result = computeIsInlinableLambda(lambda);
+            lambdas.put(lambda, result);
+        }
+        return result;
+    }
+
+    private boolean computeIsInlinableLambda(@NotNull JetFunctionLiteralExpression lambda) {
+        BindingContext bindingContext = state.getBindingContext();
+        if (Boolean.TRUE.equals(bindingContext.get(BindingContext.BLOCK, lambda))) return false;
+
+        FunctionDescriptor lambdaDescriptor = bindingContext.get(BindingContext.FUNCTION, lambda.getFunctionLiteral());
+        if (lambdaDescriptor == null || lambdaDescriptor.getReceiverParameter() != null) return false;
+
+        JetCallExpression callExpression = getCallExpression(lambda);
+        if (callExpression == null) return false;
+
+        ResolvedCall<? extends CallableDescriptor> resolvedCall =
+                bindingContext.get(BindingContext.RESOLVED_CALL, callExpression.getCalleeExpression());
+        if (resolvedCall == null || resolvedCall instanceof VariableAsFunctionResolvedCall) return false;
+
+        CallableDescriptor callee = resolvedCall.getResultingDescriptor().getOriginal();
+        if (!(callee instanceof FunctionDescriptor) || inProgress.contains(callee)) return false;
+
+        ValueParameterDescriptor parameter = null;
+        for (Map.Entry<ValueParameterDescriptor, ResolvedValueArgument> entry : resolvedCall.getValueArguments().entrySet()) {
+            ResolvedValueArgument argument = entry.getValue();
+            if (argument instanceof ExpressionValueArgument) {
+                ValueArgument valueArgument = ((ExpressionValueArgument) argument).getValueArgument();
+                if (valueArgument != null && valueArgument.getArgumentExpression() == lambda) {
+                    parameter = callee.getValueParameters().get(entry.getKey().getIndex());
+                }
+            }
+        }
+        if (parameter == null) return false;
+
+        InlineFunction function = getInlineFunction((FunctionDescriptor) callee);
+        if (function != null) {
+            if (function.escapingParameters.contains(parameter)) return false;
+        }
+        else {
+            CompiledInlineFunction compiledFunction = getCompiledInlineFunction(resolvedCall);
+            if (compiledFunction == null || !compiledFunction.isOnlyInvoked(parameter)) return false;
+        }
+
+        JetType parameterType = parameter.getType();
+        if (parameterType.isNullable() || !KotlinBuiltIns.getInstance().isFunctionType(parameterType)) return false;
+
+        JetBlockExpression body = lambda.getBodyExpression();
+        if (body == null) return false;
+
+        BodyChecker checker = new BodyChecker(null, null);
+        body.accept(checker);
+        return checker.inlinable;
+    }
+
+    @Nullable
+    private static JetCallExpression getCallExpression(@NotNull JetFunctionLiteralExpression lambda) {
+        PsiElement parent = lambda.getParent();
+        if (parent instanceof JetValueArgument) {
+            // foo({ ... })    or     foo(f = { ... })
+            PsiElement valueArgumentList = parent.getParent();
+            if (valueArgumentList instanceof JetValueArgumentList && valueArgumentList.getParent() instanceof JetCallExpression) {
+                return (JetCallExpression) valueArgumentList.getParent();
+            }
+        }
+        else if (parent instanceof JetCallExpression) {
+            // foo { ... }
+            return (JetCallExpression) parent;
+        }
+        return null;
+    }
+
+    /**
+     * Checks the body of an inline function, or of a function literal passed to one if function is null
+     */
+    private class BodyChecker extends JetTreeVisitorVoid {
+        private final FunctionDescriptor function;
+        private final JetNamedFunction declaration;
+
+        private boolean inlinable = true;
+        private final Set<ValueParameterDescriptor> escapingParameters = Sets.newHashSet();
+        private int lambdaDepth = 0;
+        private int typeReferenceDepth = 0;
+
+        private BodyChecker(@Nullable FunctionDescriptor function, @Nullable JetNamedFunction declaration) {
+            this.function = function;
+            this.declaration = declaration;
+        }
+
+        @Override
+        public void visitElement(PsiElement element) {
+            if (inlinable) {
+                super.visitElement(element);
+            }
+        }
+
+        @Override
+        public void visitTryExpression(JetTryExpression expression) {
+            inlinable = false;
+        }
+
+        @Override
+        public void visitClass(JetClass klass) {
+            inlinable = false;
+        }
+
+        @Override
+        public void visitObjectDeclaration(JetObjectDeclaration declaration) {
+            inlinable = false;
+        }
+
+        @Override
+        public void visitObjectLiteralExpression(JetObjectLiteralExpression expression) {
+            inlinable = false;
+        }
+
+        @Override
+        public void visitNamedFunction(JetNamedFunction function) {
+            inlinable = false;
+        }
+
+        @Override
+        public void visitFunctionLiteralExpression(JetFunctionLiteralExpression expression) {
+            if (!isInlinableLambda(expression)) {
+                inlinable = false;
+                return;
+            }
+
+            JetBlockExpression body = expression.getBodyExpression();
+            assert body != null : "Inlinable function literal has no body: " + expression.getText();
+            lambdaDepth++;
+            body.accept(this);
+            lambdaDepth--;
+        }
+
+        @Override
+        public void visitReturnExpression(JetReturnExpression expression) {
+            if (declaration == null || lambdaDepth > 0 || expression.getTargetLabel() != null ||
+                !isInStatementPosition(expression, declaration)) {
+                inlinable = false;
+                return;
+            }
+            super.visitReturnExpression(expression);
+        }
+
+        @Override
+        public void visitCallExpression(JetCallExpression expression) {
+            ResolvedCall<? extends CallableDescriptor> resolvedCall =
+                    state.getBindingContext().get(BindingContext.RESOLVED_CALL, expression.getCalleeExpression());
+            if (resolvedCall != null && !(resolvedCall instanceof VariableAsFunctionResolvedCall)) {
+                CallableDescriptor callee = resolvedCall.getResultingDescriptor().getOriginal();
+                if (callee instanceof SimpleFunctionDescriptor && ((SimpleFunctionDescriptor) callee).isInline()) {
+                    if (inProgress.contains(callee)) {
+                        // Recursive functions would be inlined infinitely
+                        inlinable = false;
+                        return;
+                    }
+                    getInlineFunction((FunctionDescriptor) callee);
+                }
+            }
+            super.visitCallExpression(expression);
+        }
+
+        @Override
+        public void visitTypeReference(JetTypeReference typeReference) {
+            typeReferenceDepth++;
+            super.visitTypeReference(typeReference);
+            typeReferenceDepth--;
+        }
+
+        @Override
+        public void visitSimpleNameExpression(JetSimpleNameExpression expression) {
+            if (expression.getReferencedNameElementType() == JetTokens.FIELD_IDENTIFIER) {
+                inlinable = false;
+                return;
+            }
+
+            DeclarationDescriptor target = state.getBindingContext().get(BindingContext.REFERENCE_TARGET, expression);
+            if (target == null || function == null) return;
+
+            if (target instanceof TypeParameterDescriptor && typeReferenceDepth == 0) {
+                inlinable = false;
+                return;
+            }
+
+            if (target instanceof DeclarationDescriptorWithVisibility && !DescriptorUtils.isAncestor(function, target, true)) {
+                Visibility visibility = ((DeclarationDescriptorWithVisibility) target).getVisibility();
+                if (visibility == Visibilities.PRIVATE || visibility == Visibilities.PROTECTED) {
+                    inlinable = false;
+                    return;
+                }
+            }
+
+            if (target instanceof ValueParameterDescriptor && target.getContainingDeclaration() == function) {
+                PsiElement parent = expression.getParent();
+                if (!(parent instanceof JetCallExpression) || ((JetCallExpression) parent).getCalleeExpression() != expression) {
+                    escapingParameters.add((ValueParameterDescriptor) target);
+                }
+            }
+        }
+    }
+
+    /**
+     * A return from an inlined function jumps to its end, so it's only allowed where nothing but the values of the caller
+     * might be on the stack: the stack at the end of the function should be the same on all paths
+     */
+    private static boolean isInStatementPosition(@NotNull JetExpression expression, @NotNull JetNamedFunction declaration) {
+        JetExpression current = expression;
+        while (true) {
+            PsiElement parent = current.getParent();
+            if (parent instanceof JetContainerNode) {
+                parent = parent.getParent();
+            }
+
+            if (parent == declaration) {
+                return current == declaration.getBodyExpression();
+            }
+
+            if (parent instanceof JetIfExpression) {
+                JetIfExpression ifExpression = (JetIfExpression) parent;
+                if (current != ifExpression.getThen() && current != ifExpression.getElse()) return false;
+            }
+            else if (parent instanceof JetLoopExpression) {
+                if (current != ((JetLoopExpression) parent).getBody()) return false;
+            }
+            else if (parent instanceof JetWhenEntry) {
+                if (current != ((JetWhenEntry) parent).getExpression()) return false;
+                parent = PsiTreeUtil.getParentOfType(parent, JetWhenExpression.class);
+            }
+            else if (parent instanceof JetBinaryExpression) {
+                JetBinaryExpression binaryExpression = (JetBinaryExpression) parent;
+                if (binaryExpression.getOperationToken() != JetTokens.ELVIS || current != binaryExpression.getRight()) return false;
+            }
+            else if (parent instanceof JetProperty) {
+                if (current != ((JetProperty) parent).getInitializer()) return false;
+            }
+            else if (!(parent instanceof JetBlockExpression)) {
+                return false;
+            }
+
+            if (!(parent instanceof JetExpression)) return false;
+            current = (JetExpression) parent;
+        }
+    }
+}
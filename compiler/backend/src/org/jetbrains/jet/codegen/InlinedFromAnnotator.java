@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.asm4.AnnotationVisitor;
+import org.jetbrains.asm4.MethodVisitor;
+import org.jetbrains.asm4.Opcodes;
+import org.jetbrains.asm4.Type;
+import org.jetbrains.asm4.tree.LocalVariableNode;
+import org.jetbrains.asm4.tree.MethodNode;
+import org.jetbrains.asm4.tree.TryCatchBlockNode;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Buffers the code of a method, so that the classes of inline functions generated in place of calls in the code can be listed in
+ * jet.runtime.InlinedFrom: annotations of a method are visited before its code
+ */
+public class InlinedFromAnnotator extends MethodVisitor {
+    private final MethodVisitor delegate;
+    private final int access;
+    private final String name;
+    private final String desc;
+    private final Set<String> owners = new TreeSet<String>();
+    private MethodNode code = null;
+
+    public InlinedFromAnnotator(@NotNull MethodVisitor delegate, int access, @NotNull String name, @NotNull String desc) {
+        super(Opcodes.ASM4, delegate);
+        this.delegate = delegate;
+        this.access = access;
+        this.name = name;
+        this.desc = desc;
+    }
+
+    public void addInlinedFrom(@NotNull String owner) {
+        owners.add(owner);
+    }
+
+    @Override
+    public void visitCode() {
+        code = new MethodNode(access, name, desc, null, null);
+        mv = code;
+    }
+
+    @Override
+    public void visitMaxs(int maxStack, int maxLocals) {
+        flush();
+        super.visitMaxs(maxStack, maxLocals);
+    }
+
+    @Override
+    public void visitEnd() {
+        flush();
+        super.visitEnd();
+    }
+
+    private void flush() {
+        if (code == null) return;
+        MethodNode node = code;
+        code = null;
+        mv = delegate;
+
+        if (!owners.isEmpty()) {
+            AnnotationVisitor annotation = delegate.visitAnnotation(InlineFunctions.INLINED_FROM_DESC, false);
+            if (annotation != null) {
+                AnnotationVisitor classes = annotation.visitArray("value");
+                for (String owner : owners) {
+                    classes.visit(null, Type.getObjectType(owner));
+                }
+                classes.visitEnd();
+                annotation.visitEnd();
+            }
+        }
+
+        delegate.visitCode();
+        for (TryCatchBlockNode tryCatchBlock : node.tryCatchBlocks) {
+            tryCatchBlock.accept(delegate);
+        }
+        node.instructions.accept(delegate);
+        for (LocalVariableNode localVariable : node.localVariables) {
+            localVariable.accept(delegate);
+        }
+    }
+}
@@ -27,10 +27,16 @@ import org.jetbrains.jet.lang.psi.JetPsiUtil;
 import org.jetbrains.jet.lang.psi.JetScript;
 import org.jetbrains.jet.lang.resolve.ScriptNameUtil;
 import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.utils.ExceptionUtils;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.jetbrains.jet.codegen.binding.CodegenBinding.registerClassNameForScript;
 
@@ -56,11 +62,70 @@ public class KotlinCodegenFacade {
             namespaceGrouping.putValue(JetPsiUtil.getFQName(file), file);
         }
 
+        int threads = Math.min(state.getCodegenThreads(), namespaceGrouping.size());
+        if (threads > 1) {
+            generateNamespacesInParallel(state, namespaceGrouping, errorHandler, threads);
+            return;
+        }
+
         for (Map.Entry<FqName, Collection<JetFile>> entry : namespaceGrouping.entrySet()) {
             generateNamespace(state, entry.getKey(), entry.getValue(), errorHandler);
         }
     }
 
+    /**
+     * Besides the binding trace, which is lock-protected in this mode, code generation reads descriptors which are created lazily:
+     * Java classes and their members are loaded under the lock of the storage manager of DeserializedDescriptorResolver
+     * (see JavaClassResolver, JavaNamespaceResolver and JavaBaseScope): every public entry point of these resolvers takes the lock,
+     * and lookups in scopes locked for reading don't modify them
+     */
+    private static void generateNamespacesInParallel(
+            @NotNull final GenerationState state,
+            @NotNull MultiMap<FqName, JetFile> namespaceGrouping,
+            @NotNull final CompilationErrorHandler errorHandler,
+            int threads
+    ) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>(namespaceGrouping.size());
+            int ordinal = 0;
+            for (Map.Entry<FqName, Collection<JetFile>> entry : namespaceGrouping.entrySet()) {
+                final int packageOrdinal = ordinal++;
+                final FqName fqName = entry.getKey();
+                final Collection<JetFile> files = entry.getValue();
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        ClassFileFactory factory = state.getFactory();
+                        factory.setCurrentPackageOrdinal(packageOrdinal);
+                        try {
+                            generateNamespace(state, fqName, files, errorHandler);
+                        }
+                        finally {
+                            factory.setCurrentPackageOrdinal(null);
+                        }
+                    }
+                }));
+            }
+
+            // Wait for packages in the serial order, so that the same error is reported as in the serial mode
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                }
+                catch (InterruptedException e) {
+                    throw ExceptionUtils.rethrow(e);
+                }
+                catch (ExecutionException e) {
+                    throw ExceptionUtils.rethrow(e.getCause());
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
     public static void generateNamespace(
             @NotNull GenerationState state,
             @NotNull FqName fqName,
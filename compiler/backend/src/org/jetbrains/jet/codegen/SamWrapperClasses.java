@@ -38,7 +38,7 @@ public class SamWrapperClasses {
     }
 
     @NotNull
-    public Type getSamWrapperClass(@NotNull final ClassDescriptorFromJvmBytecode samInterface, @NotNull final JetFile file) {
+    public synchronized Type getSamWrapperClass(@NotNull final ClassDescriptorFromJvmBytecode samInterface, @NotNull final JetFile file) {
         return ContainerUtil.getOrCreate(samInterfaceToWrapperClass, Pair.create(samInterface, file),
                                          new Factory<Type>() {
                                              @Override
@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.codegen.intrinsics;
 
+import com.intellij.openapi.util.Ref;
 import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -25,12 +26,20 @@ import org.jetbrains.jet.lang.resolve.java.AsmTypeConstants;
 import org.jetbrains.jet.codegen.ExpressionCodegen;
 import org.jetbrains.jet.codegen.StackValue;
 import org.jetbrains.jet.codegen.state.GenerationState;
-import org.jetbrains.jet.lang.psi.JetCallExpression;
-import org.jetbrains.jet.lang.psi.JetExpression;
+import org.jetbrains.jet.lang.descriptors.CallableDescriptor;
+import org.jetbrains.jet.lang.psi.*;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.calls.model.ExpressionValueArgument;
+import org.jetbrains.jet.lang.resolve.calls.model.ResolvedCall;
+import org.jetbrains.jet.lang.resolve.calls.model.ResolvedValueArgument;
 
 import java.util.Arrays;
 import java.util.List;
 
+/**
+ * synchronized(lock) { ... } is compiled to monitorenter/monitorexit around the body of the function literal, as javac does.
+ * Otherwise, e.g. when the block is not a literal or it returns to its label, Intrinsics.stupidSync() is called with a closure
+ */
 public class StupidSync implements IntrinsicMethod {
     @Override
     public StackValue generate(
@@ -42,9 +51,67 @@ public class StupidSync implements IntrinsicMethod {
             StackValue receiver,
             @NotNull GenerationState state
     ) {
+        JetCallExpression call = (JetCallExpression) element;
+        ResolvedCall<? extends CallableDescriptor> resolvedCall =
+                codegen.getBindingContext().get(BindingContext.RESOLVED_CALL, call.getCalleeExpression());
+        if (resolvedCall != null) {
+            List<ResolvedValueArgument> valueArguments = resolvedCall.getValueArgumentsByIndex();
+            JetExpression lock = getArgumentExpression(valueArguments.get(0));
+            JetExpression block = getArgumentExpression(valueArguments.get(1));
+            if (lock != null && block instanceof JetFunctionLiteralExpression && canGenerateInPlace((JetFunctionLiteralExpression) block)) {
+                return codegen.generateSynchronized(lock, (JetFunctionLiteralExpression) block, expectedType);
+            }
+        }
+
         codegen.pushMethodArguments((JetCallExpression) element, Arrays.asList(AsmTypeConstants.OBJECT_TYPE, AsmTypeConstants.JET_FUNCTION0_TYPE));
         v.invokestatic("jet/runtime/Intrinsics", "stupidSync", "(Ljava/lang/Object;Ljet/Function0;)Ljava/lang/Object;");
         StackValue.onStack(AsmTypeConstants.OBJECT_TYPE).put(expectedType, v);
         return StackValue.onStack(expectedType);
     }
+
+    @Nullable
+    private static JetExpression getArgumentExpression(@NotNull ResolvedValueArgument argument) {
+        if (!(argument instanceof ExpressionValueArgument)) return null;
+        ValueArgument valueArgument = ((ExpressionValueArgument) argument).getValueArgument();
+        return valueArgument != null ? valueArgument.getArgumentExpression() : null;
+    }
+
+    private static boolean canGenerateInPlace(@NotNull JetFunctionLiteralExpression block) {
+        if (block.getFunctionLiteral().getReceiverTypeRef() != null || !block.getValueParameters().isEmpty()) return false;
+
+        // Returns from the literal and declarations which would capture its context need the closure
+        final Ref<Boolean> result = Ref.create(true);
+        block.getBodyExpression().accept(new JetTreeVisitorVoid() {
+            @Override
+            public void visitReturnExpression(JetReturnExpression expression) {
+                result.set(false);
+            }
+
+            @Override
+            public void visitFunctionLiteralExpression(JetFunctionLiteralExpression expression) {
+                result.set(false);
+            }
+
+            @Override
+            public void visitNamedFunction(JetNamedFunction function) {
+                result.set(false);
+            }
+
+            @Override
+            public void visitClass(JetClass klass) {
+                result.set(false);
+            }
+
+            @Override
+            public void visitObjectDeclaration(JetObjectDeclaration declaration) {
+                result.set(false);
+            }
+
+            @Override
+            public void visitObjectLiteralExpression(JetObjectLiteralExpression expression) {
+                result.set(false);
+            }
+        });
+        return result.get();
+    }
 }
@@ -28,8 +28,10 @@ import org.jetbrains.jet.lang.psi.JetFile;
 import org.jetbrains.jet.lang.resolve.BindingContext;
 import org.jetbrains.jet.lang.resolve.BindingTrace;
 import org.jetbrains.jet.lang.resolve.DelegatingBindingTrace;
+import org.jetbrains.jet.lang.resolve.LockProtectedTrace;
 
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class GenerationState {
     private boolean used = false;
@@ -58,6 +60,9 @@ public class GenerationState {
     @NotNull
     private final SamWrapperClasses samWrapperClasses = new SamWrapperClasses(this);
 
+    @NotNull
+    private final InlineFunctions inlineFunctions = new InlineFunctions(this);
+
     @NotNull
     private final BindingTrace bindingTrace;
 
@@ -70,6 +75,8 @@ public class GenerationState {
 
     private final boolean generateDeclaredClasses;
 
+    private final int codegenThreads;
+
     @Nullable
     private List<ScriptDescriptor> earlierScriptsForReplInterpreter;
 
@@ -86,13 +93,33 @@ public class GenerationState {
             boolean generateNotNullAssertions,
             boolean generateNotNullParamAssertions,
             boolean generateDeclaredClasses
+    ) {
+        this(project, builderFactory, progress, bindingContext, files, generateNotNullAssertions, generateNotNullParamAssertions,
+             generateDeclaredClasses, 1);
+    }
+
+    /**
+     * @param codegenThreads number of threads to generate packages on; with more than one thread, the binding trace is lock-protected
+     */
+    public GenerationState(
+            @NotNull Project project,
+            @NotNull ClassBuilderFactory builderFactory,
+            @NotNull Progress progress,
+            @NotNull BindingContext bindingContext,
+            @NotNull List<JetFile> files,
+            boolean generateNotNullAssertions,
+            boolean generateNotNullParamAssertions,
+            boolean generateDeclaredClasses,
+            int codegenThreads
     ) {
         this.project = project;
         this.progress = progress;
         this.files = files;
         this.classBuilderMode = builderFactory.getClassBuilderMode();
 
-        bindingTrace = new DelegatingBindingTrace(bindingContext, "trace in GenerationState");
+        this.codegenThreads = codegenThreads;
+        DelegatingBindingTrace trace = new DelegatingBindingTrace(bindingContext, "trace in GenerationState");
+        bindingTrace = codegenThreads > 1 ? new LockProtectedTrace(new ReentrantLock(), trace) : trace;
         this.bindingContext = bindingTrace.getBindingContext();
 
         this.typeMapper = new JetTypeMapper(bindingTrace, classBuilderMode);
@@ -157,6 +184,11 @@ public class GenerationState {
         return samWrapperClasses;
     }
 
+    @NotNull
+    public InlineFunctions getInlineFunctions() {
+        return inlineFunctions;
+    }
+
     public boolean isGenerateNotNullAssertions() {
         return generateNotNullAssertions;
     }
@@ -169,6 +201,10 @@ public class GenerationState {
         return generateDeclaredClasses;
     }
 
+    public int getCodegenThreads() {
+        return codegenThreads;
+    }
+
     public void beforeCompile() {
         markUsed();
 
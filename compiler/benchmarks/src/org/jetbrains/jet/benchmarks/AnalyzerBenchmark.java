@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.benchmarks;
+
+import com.google.common.base.Predicates;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
+import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures TopDownAnalyzer on parsed files. With bodies not resolved, only the declaration phases of the analysis are run
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AnalyzerBenchmark {
+    @Param({"TEST_DATA", "STDLIB", "SYNTHETIC"})
+    public String corpus;
+
+    @Param({"true", "false"})
+    public boolean resolveBodies;
+
+    private BenchmarkEnvironment environment;
+    private List<List<JetFile>> modules;
+
+    @Setup
+    public void setUp() {
+        environment = new BenchmarkEnvironment(BenchmarkCorpus.valueOf(corpus));
+    }
+
+    // Analysis results are cached in PSI, so every invocation needs new files
+    @Setup(Level.Invocation)
+    public void createFiles() {
+        modules = environment.createParsedModules();
+    }
+
+    @TearDown
+    public void tearDown() {
+        environment.dispose();
+    }
+
+    @Benchmark
+    public void analyze(Blackhole blackhole) {
+        for (List<JetFile> module : modules) {
+            blackhole.consume(AnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
+                    environment.getProject(), module, Collections.<AnalyzerScriptParameter>emptyList(),
+                    resolveBodies ? Predicates.<PsiFile>alwaysTrue() : Predicates.<PsiFile>alwaysFalse()));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.benchmarks;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestCaseBuilder;
+import org.jetbrains.jet.utils.ExceptionUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Fixed sets of Kotlin sources the benchmarks are run on. The sources of a corpus are split into modules, each of which
+ * is analyzed and compiled on its own.
+ */
+public enum BenchmarkCorpus {
+    /**
+     * Box tests of a few codegen areas. Every test is a separate module, since all of them declare the same box() function
+     */
+    TEST_DATA(ConfigurationKind.ALL) {
+        @NotNull
+        @Override
+        protected List<List<Source>> loadModules() {
+            List<List<Source>> modules = new ArrayList<List<Source>>();
+            for (String directory : TEST_DATA_DIRECTORIES) {
+                for (Source source : loadSources(new File(JetTestCaseBuilder.getTestDataPathBase(), directory))) {
+                    modules.add(Collections.singletonList(source));
+                }
+            }
+            return modules;
+        }
+    },
+
+    /**
+     * Sources of the standard library, compiled together as one module
+     */
+    STDLIB(ConfigurationKind.JDK_ONLY) {
+        @NotNull
+        @Override
+        protected List<List<Source>> loadModules() {
+            return Collections.singletonList(loadSources(new File(JetTestCaseBuilder.getHomeDirectory(), "libraries/stdlib/src")));
+        }
+    },
+
+    /**
+     * A few large generated files, exercising resolution of many declarations and long bodies
+     */
+    SYNTHETIC(ConfigurationKind.JDK_ONLY) {
+        @NotNull
+        @Override
+        protected List<List<Source>> loadModules() {
+            List<Source> sources = new ArrayList<Source>();
+            for (int i = 0; i < SYNTHETIC_FILE_COUNT; i++) {
+                sources.add(new Source("synthetic" + i + ".kt", SyntheticSourceGenerator.generateFile(i)));
+            }
+            return Collections.singletonList(sources);
+        }
+    };
+
+    private static final String[] TEST_DATA_DIRECTORIES = {
+            "codegen/box/classes",
+            "codegen/box/closures",
+            "codegen/box/controlStructures",
+            "codegen/box/extensionFunctions",
+            "codegen/box/strings",
+            "codegen/box/when"
+    };
+
+    private static final int SYNTHETIC_FILE_COUNT = 4;
+
+    private static final Pattern KT_FILE_PATTERN = Pattern.compile(".*\\.kt");
+
+    public static class Source {
+        @NotNull
+        public final String name;
+        @NotNull
+        public final String text;
+
+        public Source(@NotNull String name, @NotNull String text) {
+            this.name = name;
+            this.text = text;
+        }
+    }
+
+    private final ConfigurationKind configurationKind;
+    private List<List<Source>> modules;
+
+    BenchmarkCorpus(@NotNull ConfigurationKind configurationKind) {
+        this.configurationKind = configurationKind;
+    }
+
+    /**
+     * Classpath the sources should be compiled against
+     */
+    @NotNull
+    public ConfigurationKind getConfigurationKind() {
+        return configurationKind;
+    }
+
+    @NotNull
+    public synchronized List<List<Source>> getModules() {
+        if (modules == null) {
+            modules = loadModules();
+        }
+        return modules;
+    }
+
+    @NotNull
+    public List<Source> getSources() {
+        List<Source> result = new ArrayList<Source>();
+        for (List<Source> module : getModules()) {
+            result.addAll(module);
+        }
+        return result;
+    }
+
+    @NotNull
+    protected abstract List<List<Source>> loadModules();
+
+    @NotNull
+    private static List<Source> loadSources(@NotNull File directory) {
+        List<File> files = FileUtil.findFilesByMask(KT_FILE_PATTERN, directory);
+        // The order of files in a directory is not specified, but the order of analysis affects its performance
+        Collections.sort(files);
+
+        List<Source> result = new ArrayList<Source>(files.size());
+        for (File file : files) {
+            try {
+                result.add(new Source(file.getName(), FileUtil.loadFile(file, true)));
+            }
+            catch (IOException e) {
+                throw ExceptionUtils.rethrow(e);
+            }
+        }
+        return result;
+    }
+}
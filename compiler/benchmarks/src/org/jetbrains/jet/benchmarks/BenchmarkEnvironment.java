@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.benchmarks;
+
+import com.google.common.base.Predicates;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.TestJdkKind;
+import org.jetbrains.jet.analyzer.AnalyzeExhaust;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.JetPsiFactory;
+import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
+import org.jetbrains.jet.lang.resolve.AnalyzingUtils;
+import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiler environment for one corpus, shared by all iterations of a benchmark
+ */
+public class BenchmarkEnvironment {
+    private final Disposable disposable = Disposer.newDisposable();
+    private final BenchmarkCorpus corpus;
+    private final JetCoreEnvironment environment;
+
+    public BenchmarkEnvironment(@NotNull BenchmarkCorpus corpus) {
+        this.corpus = corpus;
+        this.environment = JetTestUtils.createEnvironmentWithJdkAndNullabilityAnnotationsFromIdea(
+                disposable, corpus.getConfigurationKind(), TestJdkKind.FULL_JDK);
+    }
+
+    @NotNull
+    public BenchmarkCorpus getCorpus() {
+        return corpus;
+    }
+
+    @NotNull
+    public Project getProject() {
+        return environment.getProject();
+    }
+
+    @NotNull
+    public JetCoreEnvironment getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Creates new PSI files for the sources of the corpus, so that nothing computed by previous iterations is reused.
+     * The files are parsed lazily, on the first access to their tree
+     */
+    @NotNull
+    public List<List<JetFile>> createModules() {
+        List<List<JetFile>> result = new ArrayList<List<JetFile>>();
+        for (List<BenchmarkCorpus.Source> module : corpus.getModules()) {
+            List<JetFile> files = new ArrayList<JetFile>(module.size());
+            for (BenchmarkCorpus.Source source : module) {
+                files.add(JetPsiFactory.createFile(getProject(), source.name, source.text));
+            }
+            result.add(files);
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #createModules()}, but with the files parsed
+     */
+    @NotNull
+    public List<List<JetFile>> createParsedModules() {
+        List<List<JetFile>> modules = createModules();
+        for (List<JetFile> module : modules) {
+            for (JetFile file : module) {
+                AnalyzingUtils.checkForSyntacticErrors(file);
+            }
+        }
+        return modules;
+    }
+
+    @NotNull
+    public AnalyzeExhaust analyze(@NotNull List<JetFile> files) {
+        AnalyzeExhaust exhaust = AnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
+                getProject(), files, Collections.<AnalyzerScriptParameter>emptyList(), Predicates.<PsiFile>alwaysTrue());
+        exhaust.throwIfError();
+        AnalyzingUtils.throwExceptionOnErrors(exhaust.getBindingContext());
+        return exhaust;
+    }
+
+    public void dispose() {
+        Disposer.dispose(disposable);
+    }
+}
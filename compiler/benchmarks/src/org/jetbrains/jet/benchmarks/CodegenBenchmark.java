@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.benchmarks;
+
+import org.jetbrains.jet.codegen.ClassBuilderFactories;
+import org.jetbrains.jet.codegen.CompilationErrorHandler;
+import org.jetbrains.jet.codegen.KotlinCodegenFacade;
+import org.jetbrains.jet.codegen.state.GenerationState;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures generation of class files from analyzed files. Codegen doesn't modify the results of the analysis,
+ * so the files are analyzed once for all iterations
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CodegenBenchmark {
+    @Param({"TEST_DATA", "STDLIB", "SYNTHETIC"})
+    public String corpus;
+
+    private BenchmarkEnvironment environment;
+    private List<List<JetFile>> modules;
+    private List<BindingContext> bindingContexts;
+
+    @Setup
+    public void setUp() {
+        environment = new BenchmarkEnvironment(BenchmarkCorpus.valueOf(corpus));
+        modules = environment.createParsedModules();
+        bindingContexts = new ArrayList<BindingContext>(modules.size());
+        for (List<JetFile> module : modules) {
+            bindingContexts.add(environment.analyze(module).getBindingContext());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        environment.dispose();
+    }
+
+    @Benchmark
+    public void generate(Blackhole blackhole) {
+        for (int i = 0; i < modules.size(); i++) {
+            GenerationState state = new GenerationState(
+                    environment.getProject(), ClassBuilderFactories.BINARIES, bindingContexts.get(i), modules.get(i));
+            KotlinCodegenFacade.compileCorrectFiles(state, CompilationErrorHandler.THROW_EXCEPTION);
+            blackhole.consume(state.getFactory());
+        }
+    }
+}
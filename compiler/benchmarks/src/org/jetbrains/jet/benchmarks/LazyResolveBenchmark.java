@@ -0,0 +1,64 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.benchmarks;
+
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinCodeAnalyzer;
+import org.jetbrains.jet.lang.resolve.lazy.LazyResolveTestUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures creation of a lazy resolve session and resolution of all declarations with it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LazyResolveBenchmark {
+    @Param({"TEST_DATA", "STDLIB", "SYNTHETIC"})
+    public String corpus;
+
+    private BenchmarkEnvironment environment;
+    private List<List<JetFile>> modules;
+
+    @Setup
+    public void setUp() {
+        environment = new BenchmarkEnvironment(BenchmarkCorpus.valueOf(corpus));
+    }
+
+    @Setup(Level.Invocation)
+    public void createFiles() {
+        modules = environment.createParsedModules();
+    }
+
+    @TearDown
+    public void tearDown() {
+        environment.dispose();
+    }
+
+    @Benchmark
+    public void resolveAll(Blackhole blackhole) {
+        for (List<JetFile> module : modules) {
+            KotlinCodeAnalyzer analyzer = LazyResolveTestUtil.resolveLazilyWithSession(module, environment.getEnvironment(), true);
+            analyzer.forceResolveAll();
+            blackhole.consume(analyzer.getBindingContext());
+        }
+    }
+}
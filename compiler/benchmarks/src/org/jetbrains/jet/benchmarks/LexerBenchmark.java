@@ -0,0 +1,52 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.benchmarks;
+
+import org.jetbrains.jet.lexer.JetLexer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LexerBenchmark {
+    @Param({"TEST_DATA", "STDLIB", "SYNTHETIC"})
+    public String corpus;
+
+    private List<BenchmarkCorpus.Source> sources;
+
+    @Setup
+    public void setUp() {
+        sources = BenchmarkCorpus.valueOf(corpus).getSources();
+    }
+
+    @Benchmark
+    public int lex() {
+        JetLexer lexer = new JetLexer();
+        int tokenCount = 0;
+        for (BenchmarkCorpus.Source source : sources) {
+            lexer.start(source.text);
+            while (lexer.getTokenType() != null) {
+                tokenCount++;
+                lexer.advance();
+            }
+        }
+        return tokenCount;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the compiler benchmarks with JMH. Arguments are passed to JMH as is, e.g. a regular expression selecting benchmarks
+ * or "-p corpus=STDLIB" to run on one corpus only. See "-h" for the full list.
+ *
+ * Unless a profiler is specified, the GC profiler is used, which reports the amount of memory allocated and the time
+ * spent in garbage collection for every benchmark in addition to the time. The benchmarks need much more memory than
+ * JMH provides to forked VMs by default, so the heap size is set as well unless JVM arguments are specified.
+ *
+ * Benchmarks use sources from compiler/testData and libraries/stdlib, and should be run from the project root
+ * with dist/kotlinc built.
+ */
+public class RunBenchmarks {
+    private static final String[] DEFAULT_ARGUMENTS = {
+            "-f", "1",
+            "-wi", "5",
+            "-i", "10"
+    };
+
+    private RunBenchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<String>(Arrays.asList(DEFAULT_ARGUMENTS));
+        if (!Arrays.asList(args).contains("-prof")) {
+            arguments.add("-prof");
+            arguments.add("gc");
+        }
+        if (!Arrays.asList(args).contains("-jvmArgs")) {
+            arguments.add("-jvmArgs");
+            arguments.add("-Xmx1024m -XX:MaxPermSize=320m");
+        }
+        arguments.addAll(Arrays.asList(args));
+
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[arguments.size()]));
+    }
+}
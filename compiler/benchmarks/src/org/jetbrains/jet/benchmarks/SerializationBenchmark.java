@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.benchmarks;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.descriptors.serialization.*;
+import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
+import org.jetbrains.jet.lang.descriptors.NamespaceDescriptor;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.scopes.JetScope;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.jetbrains.jet.descriptors.serialization.NameSerializationUtil.createNameResolver;
+
+/**
+ * Measures DescriptorSerializer on resolved descriptors, and reading the serialized data back, the same way as it's stored
+ * in the annotations of class files
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SerializationBenchmark {
+    @Param({"TEST_DATA", "STDLIB", "SYNTHETIC"})
+    public String corpus;
+
+    private BenchmarkEnvironment environment;
+    private List<NamespaceDescriptor> packages;
+
+    @Setup
+    public void setUp() {
+        environment = new BenchmarkEnvironment(BenchmarkCorpus.valueOf(corpus));
+
+        Set<NamespaceDescriptor> result = new LinkedHashSet<NamespaceDescriptor>();
+        for (List<JetFile> module : environment.createParsedModules()) {
+            BindingContext context = environment.analyze(module).getBindingContext();
+            for (JetFile file : module) {
+                result.add(context.get(BindingContext.FILE_TO_NAMESPACE, file));
+            }
+        }
+        packages = new ArrayList<NamespaceDescriptor>(result);
+    }
+
+    @TearDown
+    public void tearDown() {
+        environment.dispose();
+    }
+
+    @Benchmark
+    public void roundTrip(@NotNull final Blackhole blackhole) {
+        for (NamespaceDescriptor descriptor : packages) {
+            DescriptorSerializer packageSerializer = new DescriptorSerializer();
+            ProtoBuf.Package packageProto = packageSerializer.packageProto(descriptor).build();
+            PackageData packageData = new PackageData(createNameResolver(packageSerializer.getNameTable()), packageProto);
+            PackageData readPackageData = JavaProtoBufUtil.readPackageDataFrom(BitEncoding.encodeBytes(packageData.toBytes()));
+            blackhole.consume(readPackageData.getMembers().getAllMembers());
+
+            final DescriptorSerializer classSerializer = new DescriptorSerializer();
+            ClassSerializationUtil.Sink sink = new ClassSerializationUtil.Sink() {
+                @Override
+                public void writeClass(@NotNull ClassDescriptor classDescriptor, @NotNull ProtoBuf.Class classProto) {
+                    ClassData classData = new ClassData(createNameResolver(classSerializer.getNameTable()), classProto);
+                    ClassData readClassData = JavaProtoBufUtil.readClassDataFrom(BitEncoding.encodeBytes(classData.toBytes()));
+                    blackhole.consume(readClassData.getMembers().getAllMembers());
+                }
+            };
+            JetScope scope = descriptor.getMemberScope();
+            ClassSerializationUtil.serializeClasses(scope.getAllDescriptors(), classSerializer, sink);
+            ClassSerializationUtil.serializeClasses(scope.getObjectDescriptors(), classSerializer, sink);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.benchmarks;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Generates large Kotlin files which only depend on built-ins and the JDK. The output is a function of the arguments only,
+ * so that measurements of different compiler versions are comparable.
+ */
+public class SyntheticSourceGenerator {
+    private static final int CLASS_COUNT = 100;
+    private static final int FUNCTION_COUNT = 10;
+
+    private SyntheticSourceGenerator() {
+    }
+
+    @NotNull
+    public static String generateFile(int index) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package synthetic").append(index).append("\n\n");
+        sb.append("import java.util.ArrayList\n\n");
+
+        sb.append("trait Node {\n");
+        sb.append("    val id: Int\n");
+        sb.append("    fun compute(x: Int): Int\n");
+        sb.append("}\n\n");
+
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            generateClass(sb, c);
+        }
+
+        sb.append("fun main(args: Array<String>) {\n");
+        sb.append("    val nodes = ArrayList<Node>()\n");
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            sb.append("    nodes.add(C").append(c).append("(").append(c).append(", \"c").append(c).append("\"))\n");
+        }
+        sb.append("    var sum = 0\n");
+        sb.append("    for (node in nodes) {\n");
+        sb.append("        sum += node.compute(node.id)\n");
+        sb.append("    }\n");
+        sb.append("    System.out.println(\"sum = $sum\")\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static void generateClass(@NotNull StringBuilder sb, int c) {
+        String name = "C" + c;
+        sb.append("open class ").append(name).append("(override val id: Int, val name: String) : Node {\n");
+        sb.append("    var counter: Int = 0\n");
+        sb.append("    val description: String\n");
+        sb.append("        get() = \"$name#$id: $counter\"\n\n");
+
+        for (int f = 0; f < FUNCTION_COUNT; f++) {
+            sb.append("    fun f").append(f).append("(x: Int, y: Long = ").append(f).append("L): Long {\n");
+            sb.append("        var result = y\n");
+            sb.append("        for (i in 0..x) {\n");
+            sb.append("            result += when (i % 3) {\n");
+            sb.append("                0 -> i * ").append(f + 1).append("L\n");
+            sb.append("                1 -> if (i > ").append(f).append(") i.toLong() else -i.toLong()\n");
+            sb.append("                else -> (i + counter).toLong()\n");
+            sb.append("            }\n");
+            sb.append("        }\n");
+            sb.append("        val transform = { (v: Long) -> v xor ").append(c * FUNCTION_COUNT + f).append("L }\n");
+            sb.append("        return transform(result)\n");
+            sb.append("    }\n\n");
+        }
+
+        sb.append("    override fun compute(x: Int): Int {\n");
+        sb.append("        counter++\n");
+        sb.append("        var total = 0L\n");
+        for (int f = 0; f < FUNCTION_COUNT; f++) {
+            sb.append("        total += f").append(f).append("(x)\n");
+        }
+        sb.append("        return (total % 1000000007L).toInt() + name.length\n");
+        sb.append("    }\n");
+        sb.append("}\n\n");
+
+        sb.append("fun ").append(name).append(".twice(): Int = compute(id) * 2\n\n");
+    }
+}
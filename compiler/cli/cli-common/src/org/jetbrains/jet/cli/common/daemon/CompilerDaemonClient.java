@@ -0,0 +1,177 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.common.daemon;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
+import org.jetbrains.jet.cli.common.messages.MessageCollector;
+import org.jetbrains.jet.cli.common.messages.MessageCollectorUtil;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import static org.jetbrains.jet.cli.common.daemon.CompilerDaemonProtocol.*;
+
+/**
+ * Sends compilation requests to a compiler daemon listening on a local port, see {@link CompilerDaemonProtocol}.
+ * Callers are expected to fall back to compiling in their own process when no daemon accepts the request.
+ */
+public class CompilerDaemonClient {
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+
+    // Same as ExitCode.INTERNAL_ERROR, which is not accessible from here
+    private static final int INTERNAL_ERROR_CODE = 2;
+
+    private final Socket socket;
+    private final DataInputStream input;
+
+    private CompilerDaemonClient(@NotNull Socket socket, @NotNull DataInputStream input) {
+        this.socket = socket;
+        this.input = input;
+    }
+
+    /**
+     * @return the port from the "kotlin.daemon.port" system property, or null if it is not set
+     */
+    @Nullable
+    public static Integer getDaemonPort() {
+        String port = System.getProperty(PORT_PROPERTY);
+        if (port == null) return null;
+        try {
+            return Integer.parseInt(port.trim());
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param workingDirectory the directory relative paths in arguments are resolved against, or null if there are no such paths
+     * @return a client ready to receive compiler messages, or null if there is no daemon on this port, its secret can't be read,
+     * or it rejected the request
+     */
+    @Nullable
+    public static CompilerDaemonClient connect(
+            int port,
+            @NotNull String compilerClassName,
+            @NotNull String[] arguments,
+            @Nullable String workingDirectory
+    ) {
+        String secret = readSecret(port);
+        return secret == null ? null : connect(port, secret, compilerClassName, arguments, workingDirectory);
+    }
+
+    /**
+     * Same as {@link #connect(int, String, String[], String)}, with the secret of the daemon given explicitly
+     */
+    @Nullable
+    public static CompilerDaemonClient connect(
+            int port,
+            @NotNull String secret,
+            @NotNull String compilerClassName,
+            @NotNull String[] arguments,
+            @Nullable String workingDirectory
+    ) {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getByName(null), port), CONNECT_TIMEOUT_MS);
+
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            output.writeInt(VERSION);
+            writeString(output, secret);
+            writeString(output, compilerClassName);
+            writeString(output, workingDirectory);
+            output.writeInt(arguments.length);
+            for (String argument : arguments) {
+                writeString(output, argument);
+            }
+            output.flush();
+
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            if (input.readByte() == ACCEPTED) {
+                return new CompilerDaemonClient(socket, input);
+            }
+        }
+        catch (IOException e) {
+            // No daemon is running, or it has gone away: the caller will compile by itself
+        }
+        close(socket);
+        return null;
+    }
+
+    /**
+     * Reports all messages of the compilation to the collector as they arrive
+     *
+     * @return the exit code of the compiler
+     */
+    public int receive(@NotNull MessageCollector messageCollector) {
+        try {
+            CompilerMessageSeverity[] severities = CompilerMessageSeverity.values();
+            while (true) {
+                byte frame = input.readByte();
+                if (frame == EXIT) {
+                    return input.readInt();
+                }
+                if (frame != MESSAGE) {
+                    throw new IOException("Unexpected frame from compiler daemon: " + frame);
+                }
+
+                CompilerMessageSeverity severity = severities[input.readByte()];
+                String message = readString(input);
+                String path = readString(input);
+                int line = input.readInt();
+                int column = input.readInt();
+                messageCollector.report(severity, message == null ? "" : message, CompilerMessageLocation.create(path, line, column));
+            }
+        }
+        catch (IOException e) {
+            MessageCollectorUtil.reportException(messageCollector, e);
+            return INTERNAL_ERROR_CODE;
+        }
+        finally {
+            close(socket);
+        }
+    }
+
+    /**
+     * @return the exit code of the compiler, or null if no daemon accepted the request
+     */
+    @Nullable
+    public static Integer compile(
+            int port,
+            @NotNull String compilerClassName,
+            @NotNull String[] arguments,
+            @Nullable String workingDirectory,
+            @NotNull MessageCollector messageCollector
+    ) {
+        CompilerDaemonClient client = connect(port, compilerClassName, arguments, workingDirectory);
+        return client == null ? null : client.receive(messageCollector);
+    }
+
+    private static void close(@NotNull Socket socket) {
+        try {
+            socket.close();
+        }
+        catch (IOException e) {
+            // Don't care
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.common.daemon;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * Wire format shared by {@link CompilerDaemonClient} and the daemon itself.
+ *
+ * Request: version, secret, compiler class name, client working directory (null if all paths in arguments are absolute), arguments.
+ * Response: ACCEPTED or REJECTED (followed by the reason), then a number of MESSAGE frames, then EXIT with the exit code.
+ *
+ * The secret is generated by the daemon and written to {@link #getSecretFile(int)}, which only the owner of the daemon can read,
+ * so that other local users can't make the daemon compile on their behalf.
+ */
+public final class CompilerDaemonProtocol {
+    public static final String PORT_PROPERTY = "kotlin.daemon.port";
+
+    public static final int VERSION = 2;
+
+    public static final byte ACCEPTED = 0;
+    public static final byte REJECTED = 1;
+    public static final byte MESSAGE = 2;
+    public static final byte EXIT = 3;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private CompilerDaemonProtocol() {
+    }
+
+    @NotNull
+    public static File getSecretFile(int port) {
+        return new File(new File(System.getProperty("user.home"), ".kotlin-daemon"), port + ".secret");
+    }
+
+    /**
+     * @return the secret of the daemon listening on the port, or null if there is no such daemon or the secret can't be read
+     */
+    @Nullable
+    public static String readSecret(int port) {
+        File file = getSecretFile(port);
+        if (!file.isFile()) return null;
+        try {
+            DataInputStream input = new DataInputStream(new FileInputStream(file));
+            try {
+                return readString(input);
+            }
+            finally {
+                input.close();
+            }
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    public static void writeString(@NotNull DataOutputStream output, @Nullable String string) throws IOException {
+        if (string == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    @Nullable
+    public static String readString(@NotNull DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) return null;
+
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    public static void writeMessage(
+            @NotNull DataOutputStream output,
+            @NotNull CompilerMessageSeverity severity,
+            @NotNull String message,
+            @NotNull CompilerMessageLocation location
+    ) throws IOException {
+        output.writeByte(MESSAGE);
+        output.writeByte(severity.ordinal());
+        writeString(output, message);
+        writeString(output, location.getPath());
+        output.writeInt(location.getLine());
+        output.writeInt(location.getColumn());
+    }
+}
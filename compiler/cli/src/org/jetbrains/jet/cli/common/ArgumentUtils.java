@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.common;
+
+import com.google.common.base.Joiner;
+import com.sampullara.cli.Argument;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ArgumentUtils {
+    private ArgumentUtils() {
+    }
+
+    /**
+     * Converts the arguments back to the command line form, which can be parsed with {@link CLICompiler#exec(java.io.PrintStream, String...)}.
+     * Compiler plugins can't be represented on the command line and are ignored.
+     */
+    @NotNull
+    public static List<String> convertArgumentsToStringList(@NotNull CompilerArguments arguments) {
+        List<String> result = new ArrayList<String>();
+        for (Class<?> clazz = arguments.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                Argument argument = field.getAnnotation(Argument.class);
+                if (argument == null || Modifier.isStatic(field.getModifiers())) continue;
+
+                Object value;
+                try {
+                    field.setAccessible(true);
+                    value = field.get(arguments);
+                }
+                catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+
+                String name = argument.prefix() + (argument.value().isEmpty() ? field.getName() : argument.value());
+                if (value instanceof Boolean) {
+                    if ((Boolean) value) {
+                        result.add(name);
+                    }
+                }
+                else if (value instanceof Object[]) {
+                    result.add(name);
+                    result.add(Joiner.on(argument.delimiter()).join((Object[]) value));
+                }
+                else if (value != null) {
+                    result.add(name);
+                    result.add(value.toString());
+                }
+            }
+        }
+        result.addAll(arguments.freeArgs);
+        return result;
+    }
+}
@@ -21,11 +21,15 @@ import com.intellij.openapi.Disposable;
 import com.intellij.openapi.util.Disposer;
 import com.sampullara.cli.Args;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.cli.common.daemon.CompilerDaemonClient;
 import org.jetbrains.jet.cli.common.messages.*;
 import org.jetbrains.jet.cli.jvm.compiler.CompileEnvironmentException;
 import org.jetbrains.jet.cli.jvm.compiler.CompileEnvironmentUtil;
 import org.jetbrains.jet.config.CompilerConfiguration;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.PrintStream;
 
 import static org.jetbrains.jet.cli.common.ExitCode.*;
@@ -41,6 +45,35 @@ public abstract class CLICompiler<A extends CompilerArguments> {
         return exec(errStream, arguments);
     }
 
+    /**
+     * Parses the arguments and executes the compiler, reporting everything including argument errors and usage to the collector
+     */
+    @NotNull
+    public ExitCode exec(@NotNull MessageCollector messageCollector, @NotNull String... args) {
+        A arguments = createArguments();
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        PrintStream textStream = new PrintStream(text);
+        if (!parseArguments(textStream, arguments, args)) {
+            textStream.flush();
+            messageCollector.report(CompilerMessageSeverity.ERROR, text.toString(), CompilerMessageLocation.NO_LOCATION);
+            return INTERNAL_ERROR;
+        }
+
+        if (arguments.isHelp()) {
+            usage(textStream);
+            textStream.flush();
+            messageCollector.report(CompilerMessageSeverity.INFO, text.toString(), CompilerMessageLocation.NO_LOCATION);
+            return OK;
+        }
+
+        if (arguments.isVersion()) {
+            messageCollector.report(CompilerMessageSeverity.INFO, "Kotlin Compiler version " + KotlinVersion.VERSION,
+                                    CompilerMessageLocation.NO_LOCATION);
+        }
+
+        return exec(messageCollector, arguments);
+    }
+
     /**
      * Returns true if the arguments can be parsed correctly
      */
@@ -145,6 +178,23 @@ public abstract class CLICompiler<A extends CompilerArguments> {
         }
     }
 
+    /**
+     * Returns false if executing the arguments runs user code, e.g. a script or the REPL. Such invocations are never executed
+     * by a compiler daemon, since it may be used by other processes, and its standard streams are not the client's ones
+     */
+    protected boolean isCompilationOnly(@NotNull A arguments) {
+        return true;
+    }
+
+    /**
+     * Returns true if a compiler daemon may execute the arguments, see {@link #isCompilationOnly}.
+     * Arguments which can't be parsed are only reported as errors, so they may be executed as well
+     */
+    public boolean canExecuteInDaemon(@NotNull String[] args) {
+        A arguments = createArguments();
+        return !parseArguments(new PrintStream(new ByteArrayOutputStream()), arguments, args) || isCompilationOnly(arguments);
+    }
+
     //TODO: can't declare parameters as not null due to KT-1863
     @NotNull
     protected abstract ExitCode doExecute(A arguments, MessageCollector messageCollector, Disposable rootDisposable);
@@ -182,7 +232,10 @@ public abstract class CLICompiler<A extends CompilerArguments> {
     @NotNull
     public static ExitCode doMainNoExit(@NotNull CLICompiler compiler, @NotNull String[] args) {
         try {
-            ExitCode rc = compiler.exec(System.out, args);
+            ExitCode rc = execInDaemon(compiler, args);
+            if (rc == null) {
+                rc = compiler.exec(System.out, args);
+            }
             if (rc != OK) {
                 System.err.println("exec() finished with " + rc + " return code");
             }
@@ -199,4 +252,41 @@ public abstract class CLICompiler<A extends CompilerArguments> {
             return INTERNAL_ERROR;
         }
     }
+
+    /**
+     * Forwards the compilation to the daemon on the port given by the "kotlin.daemon.port" system property, if any
+     *
+     * @return the exit code, or null if the compilation should be done in this process
+     */
+    @Nullable
+    private static <A extends CompilerArguments> ExitCode execInDaemon(@NotNull CLICompiler<A> compiler, @NotNull String[] args) {
+        Integer port = CompilerDaemonClient.getDaemonPort();
+        if (port == null) return null;
+
+        // Arguments are parsed here as well, only to know how to render messages; errors and usage are left to the in-process compiler
+        A arguments = compiler.createArguments();
+        if (!compiler.parseArguments(new PrintStream(new ByteArrayOutputStream()), arguments, args) || arguments.isHelp()) {
+            return null;
+        }
+        if (!compiler.isCompilationOnly(arguments)) {
+            return null;
+        }
+
+        CompilerDaemonClient client = CompilerDaemonClient.connect(port, compiler.getClass().getName(), args,
+                                                                   new File("").getAbsolutePath());
+        if (client == null) return null;
+
+        MessageRenderer messageRenderer = compiler.getMessageRenderer(arguments);
+        System.out.print(messageRenderer.renderPreamble());
+        try {
+            MessageCollector collector = new PrintingMessageCollector(System.out, messageRenderer, arguments.isVerbose());
+            if (arguments.suppressAllWarnings()) {
+                collector = new FilteringMessageCollector(collector, Predicates.equalTo(CompilerMessageSeverity.WARNING));
+            }
+            return ExitCode.fromCode(client.receive(collector));
+        }
+        finally {
+            System.out.print(messageRenderer.renderConclusion());
+        }
+    }
 }
@@ -16,6 +16,8 @@
 
 package org.jetbrains.jet.cli.common;
 
+import org.jetbrains.annotations.NotNull;
+
 public enum ExitCode {
     OK(0),
     COMPILATION_ERROR(1),
@@ -30,4 +32,12 @@ public enum ExitCode {
     public int getCode() {
         return code;
     }
+
+    @NotNull
+    public static ExitCode fromCode(int code) {
+        for (ExitCode exitCode : values()) {
+            if (exitCode.code == code) return exitCode;
+        }
+        return INTERNAL_ERROR;
+    }
 }
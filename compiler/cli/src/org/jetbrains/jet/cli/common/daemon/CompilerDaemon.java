@@ -0,0 +1,268 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.common.daemon;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.cli.common.CLICompiler;
+import org.jetbrains.jet.cli.common.ExitCode;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
+import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
+import org.jetbrains.jet.cli.common.messages.MessageCollector;
+import org.jetbrains.jet.cli.jvm.K2JVMCompiler;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreLibraryEnvironmentCache;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import static org.jetbrains.jet.cli.common.daemon.CompilerDaemonProtocol.*;
+
+/**
+ * A long-lived compiler process serving {@link CompilerDaemonClient} requests on a loopback port.
+ * Compiler classes, built-ins and JIT-compiled code stay warm in between compilations, which makes small builds much faster.
+ *
+ * Requests are served one at a time, because the compiler relies on global state (e.g. KotlinBuiltIns) which is not thread-safe.
+ * JVM compilations with the same jars on the classpath share the library environment, so that the jars are read only once.
+ * The daemon exits after being idle for the given number of minutes.
+ *
+ * Only clients which know the daemon's secret are served, see {@link CompilerDaemonProtocol}. Invocations which run user code,
+ * such as scripts or the REPL, are rejected: they are run by clients in their own processes.
+ */
+public class CompilerDaemon {
+    private static final int DEFAULT_IDLE_TIMEOUT_MINUTES = 120;
+    private static final int BACKLOG = 50;
+
+    private static final int SECRET_BYTES = 32;
+
+    @NotNull
+    private final String workingDirectory;
+    @NotNull
+    private final byte[] secret;
+    @NotNull
+    private final JetCoreLibraryEnvironmentCache libraryEnvironmentCache = new JetCoreLibraryEnvironmentCache();
+
+    public CompilerDaemon(@NotNull String workingDirectory, @NotNull String secret) {
+        this.workingDirectory = workingDirectory;
+        this.secret = secret.getBytes();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: " + CompilerDaemon.class.getName() + " <port> [<idle timeout in minutes>]");
+            System.exit(1);
+        }
+
+        // See CLICompiler.doMain()
+        System.setProperty("java.awt.headless", "true");
+
+        int port = Integer.parseInt(args[0]);
+        int idleTimeoutMinutes = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_IDLE_TIMEOUT_MINUTES;
+
+        ServerSocket serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getByName(null));
+        File secretFile = getSecretFile(serverSocket.getLocalPort());
+        try {
+            String secret = generateSecret();
+            writeSecretFile(secretFile, secret);
+            serverSocket.setSoTimeout(idleTimeoutMinutes * 60 * 1000);
+            new CompilerDaemon(new File(".").getCanonicalPath(), secret).serve(serverSocket);
+        }
+        finally {
+            secretFile.delete();
+            serverSocket.close();
+        }
+    }
+
+    @NotNull
+    private static String generateSecret() {
+        byte[] bytes = new byte[SECRET_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void writeSecretFile(@NotNull File file, @NotNull String secret) throws IOException {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Couldn't create directory " + directory);
+        }
+        // The file is created anew, so that no one could have opened it before its permissions are restricted
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Couldn't delete " + file);
+        }
+        if (!restrictToOwner(directory) || !file.createNewFile() || !restrictToOwner(file)) {
+            throw new IOException("Couldn't make " + file + " accessible only to its owner");
+        }
+
+        DataOutputStream output = new DataOutputStream(new FileOutputStream(file));
+        try {
+            writeString(output, secret);
+        }
+        finally {
+            output.close();
+        }
+    }
+
+    private static boolean restrictToOwner(@NotNull File file) {
+        if (File.separatorChar == '\\') {
+            // Permissions of others can't be changed this way on Windows, where the user's home directory is private by default
+            return true;
+        }
+        boolean restricted = file.setReadable(false, false) && file.setReadable(true, true) &&
+                             file.setWritable(false, false) && file.setWritable(true, true);
+        if (file.isDirectory()) {
+            restricted &= file.setExecutable(false, false) && file.setExecutable(true, true);
+        }
+        return restricted;
+    }
+
+    /**
+     * Serves requests until the socket's timeout expires with no incoming connection, or the socket is closed
+     */
+    public void serve(@NotNull ServerSocket serverSocket) throws IOException {
+        try {
+            while (true) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                }
+                catch (SocketTimeoutException e) {
+                    return;
+                }
+
+                try {
+                    handle(socket);
+                }
+                catch (IOException e) {
+                    System.err.println("Failed to serve compilation request: " + e);
+                }
+                finally {
+                    socket.close();
+                }
+            }
+        }
+        finally {
+            libraryEnvironmentCache.dispose();
+        }
+    }
+
+    private void handle(@NotNull Socket socket) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        int version = input.readInt();
+        if (version != VERSION) {
+            reject(output, "Unsupported protocol version: " + version);
+            return;
+        }
+
+        String clientSecret = readString(input);
+        if (clientSecret == null || !MessageDigest.isEqual(clientSecret.getBytes(), secret)) {
+            reject(output, "Wrong secret");
+            return;
+        }
+
+        String compilerClassName = readString(input);
+        String clientWorkingDirectory = readString(input);
+        String[] arguments = new String[input.readInt()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = readString(input);
+        }
+
+        // Relative paths in arguments would be resolved against the daemon's working directory, not the client's one
+        if (clientWorkingDirectory != null && !new File(clientWorkingDirectory).getCanonicalPath().equals(workingDirectory)) {
+            reject(output, "Working directory " + clientWorkingDirectory + " differs from the daemon's one: " + workingDirectory);
+            return;
+        }
+
+        CLICompiler<?> compiler = createCompiler(compilerClassName);
+        if (compiler == null) {
+            reject(output, "Unknown compiler: " + compilerClassName);
+            return;
+        }
+
+        if (!compiler.canExecuteInDaemon(arguments)) {
+            reject(output, "Scripts and the REPL are not run by the compiler daemon");
+            return;
+        }
+
+        if (compiler instanceof K2JVMCompiler) {
+            ((K2JVMCompiler) compiler).setLibraryEnvironmentCache(libraryEnvironmentCache);
+        }
+
+        output.writeByte(ACCEPTED);
+        output.flush();
+
+        SocketMessageCollector messageCollector = new SocketMessageCollector(output);
+        ExitCode exitCode = compiler.exec(messageCollector, arguments);
+        if (messageCollector.disconnected) return;
+
+        output.writeByte(EXIT);
+        output.writeInt(exitCode.getCode());
+        output.flush();
+    }
+
+    private static void reject(@NotNull DataOutputStream output, @NotNull String reason) throws IOException {
+        output.writeByte(REJECTED);
+        writeString(output, reason);
+        output.flush();
+    }
+
+    @Nullable
+    private static CLICompiler<?> createCompiler(@Nullable String className) {
+        if (className == null) return null;
+        try {
+            Class<?> compilerClass = Class.forName(className);
+            if (!CLICompiler.class.isAssignableFrom(compilerClass)) return null;
+            return (CLICompiler<?>) compilerClass.newInstance();
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static class SocketMessageCollector implements MessageCollector {
+        private final DataOutputStream output;
+        private boolean disconnected = false;
+
+        private SocketMessageCollector(@NotNull DataOutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void report(
+                @NotNull CompilerMessageSeverity severity, @NotNull String message, @NotNull CompilerMessageLocation location
+        ) {
+            if (disconnected) return;
+            try {
+                writeMessage(output, severity, message, location);
+                output.flush();
+            }
+            catch (IOException e) {
+                // The client has gone away, there's no one to report to
+                disconnected = true;
+            }
+        }
+    }
+}
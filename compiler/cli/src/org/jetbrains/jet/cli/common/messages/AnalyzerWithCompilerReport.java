@@ -38,6 +38,7 @@ import org.jetbrains.jet.lang.resolve.java.JavaBindingContext;
 import org.jetbrains.jet.lang.resolve.java.JvmAbi;
 import org.jetbrains.jet.lang.resolve.java.resolver.TraceBasedErrorReporter;
 import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileKotlinClass;
+import org.jetbrains.jet.utils.PerformanceReport;
 
 import java.util.Collection;
 import java.util.List;
@@ -221,7 +222,15 @@ public final class AnalyzerWithCompilerReport {
     }
 
     public void analyzeAndReport(@NotNull Function0<AnalyzeExhaust> analyzer, @NotNull Collection<JetFile> files) {
-        reportSyntaxErrors(files);
+        // Files are parsed lazily, the first traversal of their trees is here
+        PerformanceReport.Section section = PerformanceReport.begin(PerformanceReport.PARSING);
+        try {
+            reportSyntaxErrors(files);
+            section.count(PerformanceReport.FILES, files.size());
+        }
+        finally {
+            section.end();
+        }
         analyzeExhaust = analyzer.invoke();
         reportDiagnostics(analyzeExhaust.getBindingContext(), messageCollectorWrapper);
         reportIncompleteHierarchies();
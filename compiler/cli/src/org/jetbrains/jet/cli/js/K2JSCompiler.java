@@ -31,6 +31,7 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.analyzer.AnalyzeExhaust;
 import org.jetbrains.jet.cli.common.CLICompiler;
 import org.jetbrains.jet.cli.common.ExitCode;
+import org.jetbrains.jet.cli.common.KotlinVersion;
 import org.jetbrains.jet.cli.common.messages.AnalyzerWithCompilerReport;
 import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
 import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
@@ -39,14 +40,18 @@ import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
 import org.jetbrains.jet.config.CommonConfigurationKeys;
 import org.jetbrains.jet.config.CompilerConfiguration;
 import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.resolve.BindingContext;
 import org.jetbrains.k2js.analyze.AnalyzerFacadeForJS;
 import org.jetbrains.k2js.config.*;
 import org.jetbrains.k2js.facade.K2JSTranslator;
 import org.jetbrains.k2js.facade.MainCallParameters;
+import org.jetbrains.k2js.facade.ModuleUpToDateCheck;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static org.jetbrains.jet.cli.common.ExitCode.COMPILATION_ERROR;
 import static org.jetbrains.jet.cli.common.ExitCode.OK;
@@ -87,19 +92,54 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
             reportCompiledSourcesList(messageCollector, environmentForJS);
         }
 
-        Config config = getConfig(arguments, project);
-        if (analyzeAndReportErrors(messageCollector, environmentForJS.getSourceFiles(), config)) {
-            return COMPILATION_ERROR;
-        }
-
         String outputFile = arguments.outputFile;
         if (outputFile == null) {
             messageCollector.report(CompilerMessageSeverity.ERROR, "Specify output file via -output", CompilerMessageLocation.NO_LOCATION);
             return ExitCode.INTERNAL_ERROR;
         }
 
+        Config config = getConfig(arguments, project);
         MainCallParameters mainCallParameters = arguments.createMainCallParameters();
-        return translateAndGenerateOutputFile(mainCallParameters, environmentForJS, config, outputFile);
+
+        ModuleUpToDateCheck upToDateCheck = null;
+        Map<String, String> fingerprint = null;
+        if (arguments.fingerprintFile != null) {
+            upToDateCheck = ModuleUpToDateCheck.load(new File(arguments.fingerprintFile));
+            fingerprint = ModuleUpToDateCheck.computeFingerprint(environmentForJS.getSourceFiles(), config, mainCallParameters,
+                                                                 arguments.metaInfo, KotlinVersion.VERSION);
+            if (upToDateCheck.isUpToDate(fingerprint, outputFile)) {
+                messageCollector.report(CompilerMessageSeverity.INFO, "Output is up to date: " + outputFile, NO_LOCATION);
+                return OK;
+            }
+            if (arguments.isVerbose()) {
+                messageCollector.report(CompilerMessageSeverity.LOGGING,
+                                        "Compiling the module because of: " +
+                                        Joiner.on(", ").join(upToDateCheck.getChangedInputs(fingerprint)),
+                                        NO_LOCATION);
+            }
+            if (!upToDateCheck.invalidate()) {
+                messageCollector.report(CompilerMessageSeverity.WARNING,
+                                        "Couldn't delete fingerprint file " + arguments.fingerprintFile +
+                                        ", delete it manually if the compilation fails", NO_LOCATION);
+            }
+        }
+
+        AnalyzeExhaust exhaust = analyzeAndReportErrors(messageCollector, environmentForJS.getSourceFiles(), config);
+        if (exhaust == null) {
+            return COMPILATION_ERROR;
+        }
+
+        ExitCode exitCode = translateAndGenerateOutputFile(mainCallParameters, environmentForJS, exhaust.getBindingContext(), config,
+                                                           outputFile, arguments.metaInfo);
+        if (upToDateCheck != null && exitCode == OK) {
+            try {
+                upToDateCheck.save(fingerprint);
+            }
+            catch (IOException e) {
+                messageCollector.report(CompilerMessageSeverity.WARNING, "Couldn't save fingerprint file: " + e.getMessage(), NO_LOCATION);
+            }
+        }
+        return exitCode;
     }
 
     private static void reportCompiledSourcesList(@NotNull MessageCollector messageCollector,
@@ -124,11 +164,13 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
     private static ExitCode translateAndGenerateOutputFile(
             @NotNull MainCallParameters mainCall,
             @NotNull JetCoreEnvironment environmentForJS,
+            @NotNull BindingContext bindingContext,
             @NotNull Config config,
-            @NotNull String outputFile
+            @NotNull String outputFile,
+            boolean metaInfo
     ) {
         try {
-            K2JSTranslator.translateWithMainCallParametersAndSaveToFile(mainCall, environmentForJS.getSourceFiles(), outputFile, config);
+            K2JSTranslator.translateAndSaveToFile(bindingContext, mainCall, environmentForJS.getSourceFiles(), outputFile, config, metaInfo);
         }
         catch (Exception e) {
             throw new RuntimeException(e);
@@ -136,7 +178,11 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
         return OK;
     }
 
-    private static boolean analyzeAndReportErrors(@NotNull MessageCollector messageCollector,
+    /**
+     * @return null if there are errors
+     */
+    @Nullable
+    private static AnalyzeExhaust analyzeAndReportErrors(@NotNull MessageCollector messageCollector,
             @NotNull final List<JetFile> sources, @NotNull final Config config) {
         AnalyzerWithCompilerReport analyzerWithCompilerReport = new AnalyzerWithCompilerReport(messageCollector);
         analyzerWithCompilerReport.analyzeAndReport(new Function0<AnalyzeExhaust>() {
@@ -145,7 +191,7 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
                 return AnalyzerFacadeForJS.analyzeFiles(sources, Predicates.<PsiFile>alwaysTrue(), config);
             }
         }, sources);
-        return analyzerWithCompilerReport.hasErrors();
+        return analyzerWithCompilerReport.hasErrors() ? null : analyzerWithCompilerReport.getAnalyzeExhaust();
     }
 
     @NotNull
@@ -156,11 +202,12 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
         EcmaVersion ecmaVersion = EcmaVersion.defaultVersion();
         String moduleId = FileUtil.getNameWithoutExtension(new File(arguments.outputFile));
         if (arguments.libraryFiles != null) {
-            return new LibrarySourcesConfig(project, moduleId, Arrays.asList(arguments.libraryFiles), ecmaVersion, arguments.sourcemap);
+            return new LibrarySourcesConfig(project, moduleId, Arrays.asList(arguments.libraryFiles), ecmaVersion, arguments.sourcemap,
+                                            arguments.deadCodeElimination);
         }
         else {
             // lets discover the JS library definitions on the classpath
-            return new ClassPathLibraryDefintionsConfig(project, moduleId, ecmaVersion, arguments.sourcemap);
+            return new ClassPathLibraryDefintionsConfig(project, moduleId, ecmaVersion, arguments.sourcemap, arguments.deadCodeElimination);
         }
     }
 }
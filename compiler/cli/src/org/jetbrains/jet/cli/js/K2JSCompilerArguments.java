@@ -38,6 +38,15 @@ public class K2JSCompilerArguments extends CommonCompilerArguments {
     @Argument(value = "sourcemap", description = "Generate SourceMap")
     public boolean sourcemap;
 
+    @Argument(value = "metaInfo", description = "Generate metadata of the compiled module, so that it can be used as a library")
+    public boolean metaInfo;
+
+    @Argument(value = "fingerprintFile", description = "File to keep the fingerprint of the module's inputs in between builds, so that the module is not compiled again if none of them changed. A change of any input compiles the whole module again")
+    public String fingerprintFile;
+
+    @Argument(value = "deadCodeElimination", description = "Remove top level declarations which are not reachable from main or tests; the output can't be used as a library")
+    public boolean deadCodeElimination;
+
     @Argument(value = "target", description = "Generate js files for specific ECMA version (now support only ECMA 5)")
     public String target;
 
@@ -28,6 +28,8 @@ public class JVMConfigurationKeys {
 
     public static final CompilerConfigurationKey<List<File>> CLASSPATH_KEY = CompilerConfigurationKey.create("classpath");
     public static final CompilerConfigurationKey<List<File>> ANNOTATIONS_PATH_KEY = CompilerConfigurationKey.create("annotations path");
+    public static final CompilerConfigurationKey<File> CLASSPATH_INDEX_CACHE_DIR =
+            CompilerConfigurationKey.create("classpath index cache directory");
 
     public static final CompilerConfigurationKey<List<AnalyzerScriptParameter>> SCRIPT_PARAMETERS = CompilerConfigurationKey.create("script");
 
@@ -35,4 +37,8 @@ public class JVMConfigurationKeys {
             CompilerConfigurationKey.create("generate not-null assertions");
     public static final CompilerConfigurationKey<Boolean> GENERATE_NOT_NULL_PARAMETER_ASSERTIONS =
             CompilerConfigurationKey.create("generate not-null parameter assertions");
+
+    public static final CompilerConfigurationKey<Integer> CODEGEN_THREADS = CompilerConfigurationKey.create("codegen threads");
+    public static final CompilerConfigurationKey<Integer> BODY_RESOLVE_THREADS = CompilerConfigurationKey.create("body resolve threads");
+    public static final CompilerConfigurationKey<Boolean> STREAM_OUTPUT = CompilerConfigurationKey.create("stream output");
 }
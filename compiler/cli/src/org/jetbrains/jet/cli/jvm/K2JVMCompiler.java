@@ -19,8 +19,11 @@ package org.jetbrains.jet.cli.jvm;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.openapi.util.text.StringUtil;
+import jet.modules.Module;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.cli.common.CLICompiler;
 import org.jetbrains.jet.cli.common.CLIConfigurationKeys;
 import org.jetbrains.jet.cli.common.ExitCode;
@@ -34,8 +37,11 @@ import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
 import org.jetbrains.jet.utils.KotlinPaths;
 import org.jetbrains.jet.utils.KotlinPathsFromHomeDir;
 import org.jetbrains.jet.utils.PathUtil;
+import org.jetbrains.jet.utils.PerformanceReport;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.Arrays;
 import java.util.Collections;
@@ -48,10 +54,21 @@ import static org.jetbrains.jet.cli.common.ExitCode.OK;
 @SuppressWarnings("UseOfSystemOutOrSystemErr")
 public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
 
+    @Nullable
+    private JetCoreLibraryEnvironmentCache libraryEnvironmentCache = null;
+
     public static void main(String... args) {
         doMain(new K2JVMCompiler(), args);
     }
 
+    /**
+     * Makes compilations reuse the library environment of a previous one with the same jars on the classpath.
+     * The cache should be used by one compilation at a time
+     */
+    public void setLibraryEnvironmentCache(@Nullable JetCoreLibraryEnvironmentCache libraryEnvironmentCache) {
+        this.libraryEnvironmentCache = libraryEnvironmentCache;
+    }
+
     @Override
     @NotNull
     protected ExitCode doExecute(K2JVMCompilerArguments arguments, MessageCollector messageCollector, Disposable rootDisposable) {
@@ -73,13 +90,7 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
             return INTERNAL_ERROR;
         }
 
-        List<String> argumentsSourceDirs = arguments.getSourceDirs();
-        if (!arguments.script &&
-            arguments.module == null &&
-            arguments.src == null &&
-            arguments.freeArgs.isEmpty() &&
-            (argumentsSourceDirs == null || argumentsSourceDirs.size() == 0)) {
-
+        if (isReplRequested(arguments)) {
             ReplFromTerminal.run(rootDisposable, configuration);
             return ExitCode.OK;
         }
@@ -114,10 +125,22 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
         configuration.put(JVMConfigurationKeys.GENERATE_NOT_NULL_ASSERTIONS, arguments.notNullAssertions);
         configuration.put(JVMConfigurationKeys.GENERATE_NOT_NULL_PARAMETER_ASSERTIONS, arguments.notNullParamAssertions);
 
+        if (arguments.parallelCodegen) {
+            configuration.put(JVMConfigurationKeys.CODEGEN_THREADS, Runtime.getRuntime().availableProcessors());
+        }
+        if (arguments.parallelBodyResolve) {
+            configuration.put(JVMConfigurationKeys.BODY_RESOLVE_THREADS, Runtime.getRuntime().availableProcessors());
+        }
+        configuration.put(JVMConfigurationKeys.STREAM_OUTPUT, arguments.streamOutput);
+        if (arguments.classpathIndexCache != null) {
+            configuration.put(JVMConfigurationKeys.CLASSPATH_INDEX_CACHE_DIR, new File(arguments.classpathIndexCache));
+        }
+
         configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, messageCollector);
 
         messageCollector.report(CompilerMessageSeverity.LOGGING, "Configuring the compilation environment",
                                 CompilerMessageLocation.NO_LOCATION);
+        PerformanceReport performanceReport = arguments.perfReport != null ? PerformanceReport.start() : null;
         try {
             configureEnvironment(configuration, arguments);
 
@@ -133,10 +156,16 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
                                             CompilerMessageLocation.NO_LOCATION);
                 }
 
+                List<File> classpath = Lists.newArrayList(configuration.getList(JVMConfigurationKeys.CLASSPATH_KEY));
+                for (Module module : modules.getModules()) {
+                    for (String classpathRoot : module.getClasspathRoots()) {
+                        classpath.add(new File(classpathRoot));
+                    }
+                }
+
                 File directory = new File(arguments.module).getAbsoluteFile().getParentFile();
-                KotlinToJVMBytecodeCompiler.compileModules(configuration, modules,
-                                                                      directory, jar,
-                                                                      arguments.includeRuntime);
+                KotlinToJVMBytecodeCompiler.compileModules(configuration, getLibraryEnvironment(classpath, rootDisposable), modules,
+                                                           directory, jar, arguments.includeRuntime);
             }
             else if (arguments.script) {
                 List<String> scriptArgs = arguments.freeArgs.subList(1, arguments.freeArgs.size());
@@ -144,7 +173,9 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
                 KotlinToJVMBytecodeCompiler.compileAndExecuteScript(paths, environment, scriptArgs);
             }
             else {
-                JetCoreEnvironment environment = new JetCoreEnvironment(rootDisposable, configuration);
+                JetCoreLibraryEnvironment libraryEnvironment =
+                        getLibraryEnvironment(configuration.getList(JVMConfigurationKeys.CLASSPATH_KEY), rootDisposable);
+                JetCoreEnvironment environment = new JetCoreEnvironment(rootDisposable, libraryEnvironment, configuration);
                 KotlinToJVMBytecodeCompiler.compileBunchOfSources(environment, jar, outputDir, arguments.includeRuntime);
             }
             return OK;
@@ -154,6 +185,55 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
                                     MessageUtil.psiElementToMessageLocation(e.getElement()));
             return INTERNAL_ERROR;
         }
+        finally {
+            if (performanceReport != null) {
+                performanceReport.finish();
+                writePerformanceReport(performanceReport, new File(arguments.perfReport), messageCollector);
+            }
+        }
+    }
+
+    @NotNull
+    private JetCoreLibraryEnvironment getLibraryEnvironment(@NotNull List<File> classpath, @NotNull Disposable rootDisposable) {
+        return libraryEnvironmentCache != null ? libraryEnvironmentCache.get(classpath) : new JetCoreLibraryEnvironment(rootDisposable);
+    }
+
+    private static boolean isReplRequested(@NotNull K2JVMCompilerArguments arguments) {
+        List<String> argumentsSourceDirs = arguments.getSourceDirs();
+        return !arguments.script &&
+               arguments.module == null &&
+               arguments.src == null &&
+               arguments.freeArgs.isEmpty() &&
+               (argumentsSourceDirs == null || argumentsSourceDirs.size() == 0);
+    }
+
+    @Override
+    protected boolean isCompilationOnly(@NotNull K2JVMCompilerArguments arguments) {
+        if (arguments.script || isReplRequested(arguments)) {
+            return false;
+        }
+        // Module scripts are executed to get the descriptions of modules
+        return arguments.module == null || "xml".equalsIgnoreCase(FileUtilRt.getExtension(arguments.module));
+    }
+
+    private static void writePerformanceReport(
+            @NotNull PerformanceReport report,
+            @NotNull File file,
+            @NotNull MessageCollector messageCollector
+    ) {
+        try {
+            PrintStream out = new PrintStream(new FileOutputStream(file), false, "UTF-8");
+            try {
+                report.writeJson(out);
+            }
+            finally {
+                out.close();
+            }
+        }
+        catch (IOException e) {
+            messageCollector.report(CompilerMessageSeverity.WARNING, "Couldn't write performance report to " + file + ": " + e.getMessage(),
+                                    CompilerMessageLocation.NO_LOCATION);
+        }
     }
 
 
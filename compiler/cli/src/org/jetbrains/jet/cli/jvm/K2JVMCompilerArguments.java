@@ -82,6 +82,21 @@ public class K2JVMCompilerArguments extends CommonCompilerArguments {
     @Argument(value = "kotlinHome", description = "Path to Kotlin compiler home directory, used for annotations and runtime libraries discovery")
     public String kotlinHome;
 
+    @Argument(value = "classpathIndexCache", description = "directory to keep the index of classpath jars in between compiler runs")
+    public String classpathIndexCache;
+
+    @Argument(value = "parallelCodegen", description = "generate bytecode for different packages on all available processors")
+    public boolean parallelCodegen;
+
+    @Argument(value = "parallelBodyResolve", description = "resolve bodies of functions and properties on all available processors")
+    public boolean parallelBodyResolve;
+
+    @Argument(value = "streamOutput", description = "write each class to the output as soon as it is generated, to save memory")
+    public boolean streamOutput;
+
+    @Argument(value = "perfReport", description = "write time and memory spent in each compilation phase to the given file, in JSON")
+    public String perfReport;
+
     public String getKotlinHome() {
         return kotlinHome;
     }
@@ -18,16 +18,19 @@ package org.jetbrains.jet.cli.jvm.compiler;
 
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.io.File;
+import java.util.*;
 
 public final class ClassPath implements Iterable<VirtualFile> {
 
     @NotNull
     private final List<VirtualFile> roots = new ArrayList<VirtualFile>();
 
+    @NotNull
+    private final Map<VirtualFile, File> jarFiles = new HashMap<VirtualFile, File>();
+
     @Override
     public Iterator<VirtualFile> iterator() {
         return roots.iterator();
@@ -36,4 +39,14 @@ public final class ClassPath implements Iterable<VirtualFile> {
     public void add(@NotNull VirtualFile root) {
         roots.add(root);
     }
+
+    public void addJar(@NotNull VirtualFile jarRoot, @NotNull File jarFile) {
+        roots.add(jarRoot);
+        jarFiles.put(jarRoot, jarFile);
+    }
+
+    @Nullable
+    public File getJarFile(@NotNull VirtualFile root) {
+        return jarFiles.get(root);
+    }
 }
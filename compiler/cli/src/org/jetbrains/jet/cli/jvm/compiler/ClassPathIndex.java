@@ -0,0 +1,219 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps relative paths of class files (without the ".class" extension, e.g. "a/b/C$D") to the first classpath root containing them.
+ * The index is built once on first lookup; entries of jar roots may be persisted in a cache directory, keyed by jar path, size and
+ * modification time. Lists of class files in jars may also be shared by indices of several classpaths, see
+ * {@link JetCoreLibraryEnvironment}.
+ */
+public class ClassPathIndex {
+    private static final Logger LOG = Logger.getInstance(ClassPathIndex.class);
+
+    private static final String CLASS_FILE_EXTENSION = ".class";
+    private static final int CACHE_FORMAT_VERSION = 1;
+
+    @NotNull
+    private final ClassPath classPath;
+    @Nullable
+    private final File cacheDir;
+    @NotNull
+    private final ConcurrentMap<VirtualFile, List<String>> jarClassFiles;
+
+    private List<VirtualFile> roots;
+    // Values are indices in roots
+    private Map<String, Integer> classFileToRoot;
+
+    /**
+     * @param jarClassFiles lists of class files of jar roots which have already been indexed, keyed by the jar root
+     */
+    public ClassPathIndex(
+            @NotNull ClassPath classPath,
+            @Nullable File cacheDir,
+            @NotNull ConcurrentMap<VirtualFile, List<String>> jarClassFiles
+    ) {
+        this.classPath = classPath;
+        this.cacheDir = cacheDir;
+        this.jarClassFiles = jarClassFiles;
+    }
+
+    /**
+     * @param qualifiedName dot-separated name, in which nested classes are not distinguished from packages, e.g. "a.b.C.D"
+     */
+    @Nullable
+    public VirtualFile findClassFile(@NotNull String qualifiedName) {
+        Map<String, Integer> index = getIndex();
+
+        // "a.b.C.D" may be "a/b/C/D", "a/b/C$D", "a/b$C$D", etc. in different roots: as if the roots were searched one by one,
+        // the earliest root wins, and the deepest package wins within a root
+        String path = qualifiedName.replace('.', '/');
+        String foundPath = null;
+        int foundRoot = Integer.MAX_VALUE;
+        while (true) {
+            Integer root = index.get(path);
+            if (root != null && root < foundRoot) {
+                foundPath = path;
+                foundRoot = root;
+            }
+
+            int slash = path.lastIndexOf('/');
+            if (slash < 0) break;
+            path = path.substring(0, slash) + '$' + path.substring(slash + 1);
+        }
+
+        return foundPath == null ? null : roots.get(foundRoot).findFileByRelativePath(foundPath + CLASS_FILE_EXTENSION);
+    }
+
+    @NotNull
+    private synchronized Map<String, Integer> getIndex() {
+        if (classFileToRoot == null) {
+            List<VirtualFile> rootList = new ArrayList<VirtualFile>();
+            Map<String, Integer> index = new HashMap<String, Integer>();
+            for (VirtualFile root : classPath) {
+                for (String classFile : getClassFiles(root)) {
+                    if (!index.containsKey(classFile)) {
+                        index.put(classFile, rootList.size());
+                    }
+                }
+                rootList.add(root);
+            }
+            roots = rootList;
+            classFileToRoot = index;
+        }
+        return classFileToRoot;
+    }
+
+    @NotNull
+    private List<String> getClassFiles(@NotNull VirtualFile root) {
+        File jarFile = classPath.getJarFile(root);
+        if (jarFile == null) {
+            return collectClassFiles(root);
+        }
+
+        List<String> classFiles = jarClassFiles.get(root);
+        if (classFiles == null) {
+            classFiles = getJarClassFiles(root, jarFile);
+            List<String> existing = jarClassFiles.putIfAbsent(root, classFiles);
+            if (existing != null) {
+                classFiles = existing;
+            }
+        }
+        return classFiles;
+    }
+
+    @NotNull
+    private List<String> getJarClassFiles(@NotNull VirtualFile root, @NotNull File jarFile) {
+        if (cacheDir == null) {
+            return collectClassFiles(root);
+        }
+
+        File cacheFile = new File(cacheDir, jarFile.getName() + "-" + Integer.toHexString(jarFile.getAbsolutePath().hashCode()) + ".index");
+        List<String> cached = readCache(cacheFile, jarFile);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<String> classFiles = collectClassFiles(root);
+        writeCache(cacheFile, jarFile, classFiles);
+        return classFiles;
+    }
+
+    @NotNull
+    private static List<String> collectClassFiles(@NotNull VirtualFile root) {
+        List<String> result = new ArrayList<String>();
+        collectClassFiles(root, "", result);
+        return result;
+    }
+
+    private static void collectClassFiles(@NotNull VirtualFile dir, @NotNull String prefix, @NotNull List<String> result) {
+        for (VirtualFile child : dir.getChildren()) {
+            String name = child.getName();
+            if (child.isDirectory()) {
+                collectClassFiles(child, prefix + name + "/", result);
+            }
+            else if (name.endsWith(CLASS_FILE_EXTENSION)) {
+                result.add(prefix + name.substring(0, name.length() - CLASS_FILE_EXTENSION.length()));
+            }
+        }
+    }
+
+    @Nullable
+    private static List<String> readCache(@NotNull File cacheFile, @NotNull File jarFile) {
+        if (!cacheFile.isFile()) return null;
+
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            try {
+                if (input.readInt() != CACHE_FORMAT_VERSION) return null;
+                if (!input.readUTF().equals(jarFile.getAbsolutePath())) return null;
+                if (input.readLong() != jarFile.length()) return null;
+                if (input.readLong() != jarFile.lastModified()) return null;
+
+                int size = input.readInt();
+                List<String> result = new ArrayList<String>(size);
+                for (int i = 0; i < size; i++) {
+                    result.add(input.readUTF());
+                }
+                return result;
+            }
+            finally {
+                input.close();
+            }
+        }
+        catch (IOException e) {
+            LOG.warn("Couldn't read classpath index cache " + cacheFile, e);
+            return null;
+        }
+    }
+
+    private static void writeCache(@NotNull File cacheFile, @NotNull File jarFile, @NotNull List<String> classFiles) {
+        try {
+            FileUtil.createParentDirs(cacheFile);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)));
+            try {
+                output.writeInt(CACHE_FORMAT_VERSION);
+                output.writeUTF(jarFile.getAbsolutePath());
+                output.writeLong(jarFile.length());
+                output.writeLong(jarFile.lastModified());
+                output.writeInt(classFiles.size());
+                for (String classFile : classFiles) {
+                    output.writeUTF(classFile);
+                }
+            }
+            finally {
+                output.close();
+            }
+        }
+        catch (IOException e) {
+            LOG.warn("Couldn't write classpath index cache " + cacheFile, e);
+        }
+    }
+}
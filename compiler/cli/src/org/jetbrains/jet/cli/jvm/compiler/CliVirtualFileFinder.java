@@ -19,61 +19,37 @@ package org.jetbrains.jet.cli.jvm.compiler;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.kotlin.KotlinBinaryClassCache;
 import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileFinder;
 import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileKotlinClass;
-import org.jetbrains.jet.lang.resolve.kotlin.header.KotlinClassHeader;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 
 public class CliVirtualFileFinder implements VirtualFileFinder {
 
     @NotNull
-    private final ClassPath classPath;
+    private final ClassPathIndex index;
+    @NotNull
+    private final KotlinBinaryClassCache cache;
 
-    public CliVirtualFileFinder(@NotNull ClassPath path) {
-        classPath = path;
+    public CliVirtualFileFinder(@NotNull ClassPathIndex index, @NotNull KotlinBinaryClassCache cache) {
+        this.index = index;
+        this.cache = cache;
     }
 
     @Nullable
     @Override
     public VirtualFile find(@NotNull FqName className) {
-        for (VirtualFile root : classPath) {
-            VirtualFile fileInRoot = findFileInRoot(className.asString(), root);
-            if (fileInRoot != null) {
-                return fileInRoot;
-            }
+        VirtualFile vFile = index.findClassFile(className.asString());
+        if (vFile == null) {
+            return null;
         }
-        return null;
-    }
-
-    //NOTE: copied with some changes from CoreJavaFileManager
-    @Nullable
-    private static VirtualFile findFileInRoot(@NotNull String qName, @NotNull VirtualFile root) {
-        String pathRest = qName;
-        VirtualFile cur = root;
-
-        while (true) {
-            int dot = pathRest.indexOf('.');
-            if (dot < 0) break;
-
-            String pathComponent = pathRest.substring(0, dot);
-            VirtualFile child = cur.findChild(pathComponent);
-
-            if (child == null) break;
-            pathRest = pathRest.substring(dot + 1);
-            cur = child;
+        if (!vFile.isValid()) {
+            //TODO: log
+            return null;
         }
-
-        String className = pathRest.replace('.', '$');
-        VirtualFile vFile = cur.findChild(className + ".class");
-        if (vFile != null) {
-            if (!vFile.isValid()) {
-                //TODO: log
-                return null;
-            }
-            //NOTE: currently we use VirtualFileFinder to find Kotlin binaries only
-            if (KotlinClassHeader.read(new VirtualFileKotlinClass(vFile)) != null) {
-                return vFile;
-            }
+        //NOTE: currently we use VirtualFileFinder to find Kotlin binaries only
+        if (new VirtualFileKotlinClass(vFile, cache).getClassHeader() != null) {
+            return vFile;
         }
         return null;
     }
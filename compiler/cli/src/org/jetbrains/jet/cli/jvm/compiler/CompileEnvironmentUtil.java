@@ -47,10 +47,9 @@ import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.jar.*;
+import java.util.*;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
 
 import static org.jetbrains.jet.cli.common.messages.CompilerMessageLocation.NO_LOCATION;
 import static org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity.ERROR;
@@ -179,30 +178,38 @@ public class CompileEnvironmentUtil {
     }
 
     // TODO: includeRuntime should be not a flag but a path to runtime
-    private static void doWriteToJar(ClassFileFactory factory, OutputStream fos, @Nullable FqName mainClass, boolean includeRuntime) {
+    private static void doWriteToJar(final ClassFileFactory factory, OutputStream fos, @Nullable FqName mainClass, boolean includeRuntime) {
         try {
-            Manifest manifest = new Manifest();
-            Attributes mainAttributes = manifest.getMainAttributes();
-            mainAttributes.putValue("Manifest-Version", "1.0");
-            mainAttributes.putValue("Created-By", "JetBrains Kotlin");
-            if (mainClass != null) {
-                mainAttributes.putValue("Main-Class", mainClass.asString());
-            }
-            JarOutputStream stream = new JarOutputStream(fos, manifest);
-            for (String file : factory.files()) {
-                stream.putNextEntry(new JarEntry(file));
-                stream.write(factory.asBytes(file));
-            }
+            JarWriter writer = new JarWriter(fos, createManifest(mainClass));
+            writer.writeInParallel(factory.files(), new JarWriter.ContentProvider() {
+                @NotNull
+                @Override
+                public byte[] getContent(@NotNull String name) {
+                    return factory.asBytes(name);
+                }
+            });
             if (includeRuntime) {
-                writeRuntimeToJar(stream);
+                writeRuntimeToJar(writer);
             }
-            stream.finish();
+            writer.finish();
         }
         catch (IOException e) {
             throw new CompileEnvironmentException("Failed to generate jar file", e);
         }
     }
 
+    @NotNull
+    static Manifest createManifest(@Nullable FqName mainClass) {
+        Manifest manifest = new Manifest();
+        Attributes mainAttributes = manifest.getMainAttributes();
+        mainAttributes.putValue("Manifest-Version", "1.0");
+        mainAttributes.putValue("Created-By", "JetBrains Kotlin");
+        if (mainClass != null) {
+            mainAttributes.putValue("Main-Class", mainClass.asString());
+        }
+        return manifest;
+    }
+
     public static void writeToJar(File jarPath, boolean jarRuntime, FqName mainClass, ClassFileFactory moduleFactory) {
         FileOutputStream outputStream = null;
         try {
@@ -221,25 +228,10 @@ public class CompileEnvironmentUtil {
         }
     }
 
-    private static void writeRuntimeToJar(final JarOutputStream stream) throws IOException {
+    static void writeRuntimeToJar(@NotNull JarWriter writer) throws IOException {
         File runtimeJarPath = getRuntimeJarPath();
         if (runtimeJarPath != null) {
-            JarInputStream jis = new JarInputStream(new FileInputStream(runtimeJarPath));
-            try {
-                while (true) {
-                    JarEntry e = jis.getNextJarEntry();
-                    if (e == null) {
-                        break;
-                    }
-                    if (FileUtilRt.extensionEquals(e.getName(), "class")) {
-                        stream.putNextEntry(e);
-                        FileUtil.copy(jis, stream);
-                    }
-                }
-            }
-            finally {
-                jis.close();
-            }
+            writer.copyClassesFrom(runtimeJarPath);
         }
         else {
             throw new CompileEnvironmentException("Couldn't find runtime library");
@@ -311,7 +303,7 @@ public class CompileEnvironmentUtil {
         }
     }
 
-    private static void reportOutputs(ClassFileFactory factory, MessageCollector messageCollector) {
+    static void reportOutputs(ClassFileFactory factory, MessageCollector messageCollector) {
         for (String outputFile : factory.files()) {
             List<File> sourceFiles = factory.getSourceFiles(outputFile);
             messageCollector.report(
@@ -0,0 +1,450 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.FileUtilRt;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.utils.ExceptionUtils;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Writes jar files. Unlike {@link java.util.jar.JarOutputStream}, it copies entries of other jars without inflating and deflating them
+ * again, and writes entries compressed in advance, so that compression may happen on several threads.
+ *
+ * Zip64 is only used when there are too many entries; entries located further than 4 Gb from the beginning of the jar are not supported.
+ */
+class JarWriter {
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+
+    private static final int VERSION = 20;
+    private static final int ZIP64_VERSION = 45;
+    private static final int FLAG_ENCRYPTED = 1;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private static final int MAX_UINT16 = 0xFFFF;
+    private static final long MAX_UINT32 = 0xFFFFFFFFL;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * An entry which is ready to be written as is
+     */
+    static class Entry {
+        private final String name;
+        private final int method;
+        // Null for the time of creation of the writer
+        private final Integer dosTime;
+        private final long crc;
+        private final long size;
+        private final byte[] data;
+
+        private Entry(@NotNull String name, int method, @Nullable Integer dosTime, long crc, long size, @NotNull byte[] data) {
+            this.name = name;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+        }
+    }
+
+    private static class CentralDirectoryRecord {
+        private final byte[] name;
+        private final Entry entry;
+        private final int dosTime;
+        private final long offset;
+
+        private CentralDirectoryRecord(@NotNull byte[] name, @NotNull Entry entry, int dosTime, long offset) {
+            this.name = name;
+            this.entry = entry;
+            this.dosTime = dosTime;
+            this.offset = offset;
+        }
+    }
+
+    private final OutputStream out;
+    private final int dosTime = toDosTime(System.currentTimeMillis());
+    private final Set<String> names = new HashSet<String>();
+    private final List<CentralDirectoryRecord> centralDirectory = new ArrayList<CentralDirectoryRecord>();
+    private long written = 0;
+
+    JarWriter(@NotNull OutputStream out, @NotNull Manifest manifest) throws IOException {
+        this.out = new BufferedOutputStream(out);
+
+        ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+        manifest.write(manifestBytes);
+        write(compress(JarFile.MANIFEST_NAME, manifestBytes.toByteArray()));
+    }
+
+    /**
+     * May be called on any thread
+     */
+    @NotNull
+    static Entry compress(@NotNull String name, @NotNull byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream result = new ByteArrayOutputStream(bytes.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                result.write(buffer, 0, length);
+            }
+            return new Entry(name, METHOD_DEFLATED, null, crc.getValue(), bytes.length, result.toByteArray());
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    synchronized void write(@NotNull Entry entry) throws IOException {
+        if (!names.add(entry.name)) {
+            throw new ZipException("duplicate entry: " + entry.name);
+        }
+        if (written >= MAX_UINT32) {
+            throw new ZipException("Jar file is too large: " + entry.name);
+        }
+
+        byte[] name = entry.name.getBytes(UTF8);
+        int time = entry.dosTime != null ? entry.dosTime : dosTime;
+        centralDirectory.add(new CentralDirectoryRecord(name, entry, time, written));
+
+        writeInt(LOCAL_FILE_HEADER_SIGNATURE);
+        writeShort(VERSION);
+        writeShort(FLAG_UTF8);
+        writeShort(entry.method);
+        writeInt(time);
+        writeInt(entry.crc);
+        writeInt(entry.data.length);
+        writeInt(entry.size);
+        writeShort(name.length);
+        writeShort(0);
+        writeBytes(name);
+        writeBytes(entry.data);
+    }
+
+    /**
+     * Contents of entries, requested one at a time on the thread which writes the jar
+     */
+    interface ContentProvider {
+        @NotNull
+        byte[] getContent(@NotNull String name);
+    }
+
+    /**
+     * Compresses the given contents on all available processors, and writes them in the order of the map
+     */
+    void writeInParallel(@NotNull final Map<String, byte[]> contents) throws IOException {
+        writeInParallel(contents.keySet(), new ContentProvider() {
+            @NotNull
+            @Override
+            public byte[] getContent(@NotNull String name) {
+                return contents.get(name);
+            }
+        });
+    }
+
+    /**
+     * Compresses the contents of the given entries on all available processors, and writes them in the given order.
+     * Only a few entries are requested ahead of the one being written, so that the contents are not kept in memory all at once
+     */
+    void writeInParallel(@NotNull Collection<String> names, @NotNull ContentProvider provider) throws IOException {
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), names.size());
+        if (threads <= 1) {
+            for (String name : names) {
+                write(compress(name, provider.getContent(name)));
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            int maxPending = 2 * threads;
+            Queue<Future<Entry>> pending = new ArrayDeque<Future<Entry>>(maxPending);
+            for (final String name : names) {
+                final byte[] content = provider.getContent(name);
+                pending.add(executor.submit(new Callable<Entry>() {
+                    @Override
+                    public Entry call() {
+                        return compress(name, content);
+                    }
+                }));
+                if (pending.size() >= maxPending) {
+                    write(getCompressed(pending.remove()));
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                write(getCompressed(pending.remove()));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @NotNull
+    private static Entry getCompressed(@NotNull Future<Entry> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            throw ExceptionUtils.rethrow(e);
+        }
+        catch (ExecutionException e) {
+            throw ExceptionUtils.rethrow(e.getCause());
+        }
+    }
+
+    /**
+     * Copies class files of the given jar, keeping them compressed as they are
+     */
+    void copyClassesFrom(@NotNull File jar) throws IOException {
+        List<Entry> entries;
+        RandomAccessFile file = new RandomAccessFile(jar, "r");
+        try {
+            entries = readClassEntries(file);
+        }
+        finally {
+            file.close();
+        }
+
+        if (entries == null) {
+            copyClassesRecompressing(jar);
+            return;
+        }
+        for (Entry entry : entries) {
+            write(entry);
+        }
+    }
+
+    // For jars which can't be copied as is, e.g. those with Zip64 entries
+    private void copyClassesRecompressing(@NotNull File jar) throws IOException {
+        ZipInputStream input = new ZipInputStream(new BufferedInputStream(new FileInputStream(jar)));
+        try {
+            while (true) {
+                ZipEntry entry = input.getNextEntry();
+                if (entry == null) break;
+                if (FileUtilRt.extensionEquals(entry.getName(), "class")) {
+                    write(compress(entry.getName(), FileUtil.loadBytes(input)));
+                }
+            }
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    /**
+     * @return null if the jar uses features of the format this writer doesn't support
+     */
+    @Nullable
+    private static List<Entry> readClassEntries(@NotNull RandomAccessFile file) throws IOException {
+        long length = file.length();
+        int tailLength = (int) Math.min(length, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_UINT16);
+        byte[] tail = new byte[tailLength];
+        file.seek(length - tailLength);
+        file.readFully(tail);
+
+        int end = -1;
+        for (int i = tailLength - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+            if (getInt(tail, i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) return null;
+
+        int count = getShort(tail, end + 10);
+        long centralDirectorySize = getUnsignedInt(tail, end + 12);
+        long centralDirectoryOffset = getUnsignedInt(tail, end + 16);
+        if (getShort(tail, end + 4) != 0 || count == MAX_UINT16 || centralDirectoryOffset == MAX_UINT32) return null;
+
+        byte[] centralDirectory = new byte[(int) centralDirectorySize];
+        file.seek(centralDirectoryOffset);
+        file.readFully(centralDirectory);
+
+        List<Entry> result = new ArrayList<Entry>(count);
+        byte[] localHeader = new byte[LOCAL_FILE_HEADER_SIZE];
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if (getInt(centralDirectory, position) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) return null;
+
+            int flags = getShort(centralDirectory, position + 8);
+            int method = getShort(centralDirectory, position + 10);
+            int time = getInt(centralDirectory, position + 12);
+            long crc = getUnsignedInt(centralDirectory, position + 16);
+            long compressedSize = getUnsignedInt(centralDirectory, position + 20);
+            long size = getUnsignedInt(centralDirectory, position + 24);
+            int nameLength = getShort(centralDirectory, position + 28);
+            int extraLength = getShort(centralDirectory, position + 30);
+            int commentLength = getShort(centralDirectory, position + 32);
+            long offset = getUnsignedInt(centralDirectory, position + 42);
+            String name = new String(centralDirectory, position + CENTRAL_DIRECTORY_HEADER_SIZE, nameLength, UTF8);
+            position += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+
+            if (!FileUtilRt.extensionEquals(name, "class")) continue;
+
+            if ((flags & FLAG_ENCRYPTED) != 0 || (method != METHOD_STORED && method != METHOD_DEFLATED)) return null;
+            if (compressedSize == MAX_UINT32 || size == MAX_UINT32 || offset == MAX_UINT32) return null;
+
+            file.seek(offset);
+            file.readFully(localHeader);
+            if (getInt(localHeader, 0) != LOCAL_FILE_HEADER_SIGNATURE) return null;
+
+            byte[] data = new byte[(int) compressedSize];
+            file.seek(offset + LOCAL_FILE_HEADER_SIZE + getShort(localHeader, 26) + getShort(localHeader, 28));
+            file.readFully(data);
+            result.add(new Entry(name, method, time, crc, size, data));
+        }
+        return result;
+    }
+
+    /**
+     * Writes the central directory. The underlying stream is not closed
+     */
+    synchronized void finish() throws IOException {
+        long centralDirectoryOffset = written;
+        for (CentralDirectoryRecord record : centralDirectory) {
+            Entry entry = record.entry;
+            writeInt(CENTRAL_DIRECTORY_HEADER_SIGNATURE);
+            writeShort(VERSION);
+            writeShort(VERSION);
+            writeShort(FLAG_UTF8);
+            writeShort(entry.method);
+            writeInt(record.dosTime);
+            writeInt(entry.crc);
+            writeInt(entry.data.length);
+            writeInt(entry.size);
+            writeShort(record.name.length);
+            writeShort(0);
+            writeShort(0);
+            writeShort(0);
+            writeShort(0);
+            writeInt(0);
+            writeInt(record.offset);
+            writeBytes(record.name);
+        }
+        long centralDirectorySize = written - centralDirectoryOffset;
+
+        int count = centralDirectory.size();
+        if (count >= MAX_UINT16 || centralDirectoryOffset >= MAX_UINT32) {
+            long zip64EndOffset = written;
+            writeInt(ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+            writeLong(ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE - 12);
+            writeShort(ZIP64_VERSION);
+            writeShort(ZIP64_VERSION);
+            writeInt(0);
+            writeInt(0);
+            writeLong(count);
+            writeLong(count);
+            writeLong(centralDirectorySize);
+            writeLong(centralDirectoryOffset);
+
+            writeInt(ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE);
+            writeInt(0);
+            writeLong(zip64EndOffset);
+            writeInt(1);
+        }
+
+        writeInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        writeShort(0);
+        writeShort(0);
+        writeShort(Math.min(count, MAX_UINT16));
+        writeShort(Math.min(count, MAX_UINT16));
+        writeInt(Math.min(centralDirectorySize, MAX_UINT32));
+        writeInt(Math.min(centralDirectoryOffset, MAX_UINT32));
+        writeShort(0);
+        out.flush();
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+        written += 2;
+    }
+
+    private void writeInt(long value) throws IOException {
+        writeShort((int) (value & 0xFFFF));
+        writeShort((int) ((value >>> 16) & 0xFFFF));
+    }
+
+    private void writeLong(long value) throws IOException {
+        writeInt(value & MAX_UINT32);
+        writeInt(value >>> 32);
+    }
+
+    private void writeBytes(@NotNull byte[] bytes) throws IOException {
+        out.write(bytes);
+        written += bytes.length;
+    }
+
+    private static int getShort(@NotNull byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int getInt(@NotNull byte[] bytes, int offset) {
+        return getShort(bytes, offset) | getShort(bytes, offset + 2) << 16;
+    }
+
+    private static long getUnsignedInt(@NotNull byte[] bytes, int offset) {
+        return getInt(bytes, offset) & MAX_UINT32;
+    }
+
+    private static int toDosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25 |
+               (calendar.get(Calendar.MONTH) + 1) << 21 |
+               calendar.get(Calendar.DAY_OF_MONTH) << 16 |
+               calendar.get(Calendar.HOUR_OF_DAY) << 11 |
+               calendar.get(Calendar.MINUTE) << 5 |
+               calendar.get(Calendar.SECOND) >> 1;
+    }
+}
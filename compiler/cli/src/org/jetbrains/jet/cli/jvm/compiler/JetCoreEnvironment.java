@@ -17,27 +17,21 @@
 package org.jetbrains.jet.cli.jvm.compiler;
 
 import com.intellij.codeInsight.ExternalAnnotationsManager;
-import com.intellij.core.CoreApplicationEnvironment;
 import com.intellij.core.CoreJavaFileManager;
 import com.intellij.core.JavaCoreApplicationEnvironment;
 import com.intellij.core.JavaCoreProjectEnvironment;
-import com.intellij.lang.java.JavaParserDefinition;
 import com.intellij.mock.MockApplication;
 import com.intellij.mock.MockProject;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.extensions.Extensions;
-import com.intellij.openapi.fileTypes.PlainTextFileType;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElementFinder;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
-import com.intellij.psi.impl.compiled.ClsCustomNavigationPolicy;
 import com.intellij.psi.impl.file.impl.JavaFileManager;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.jet.CompilerModeProvider;
-import org.jetbrains.jet.OperationModeProvider;
 import org.jetbrains.jet.asJava.JavaElementFinder;
 import org.jetbrains.jet.asJava.LightClassGenerationSupport;
 import org.jetbrains.jet.cli.common.CLIConfigurationKeys;
@@ -47,10 +41,10 @@ import org.jetbrains.jet.cli.common.messages.MessageCollector;
 import org.jetbrains.jet.cli.jvm.JVMConfigurationKeys;
 import org.jetbrains.jet.config.CommonConfigurationKeys;
 import org.jetbrains.jet.config.CompilerConfiguration;
-import org.jetbrains.jet.lang.parsing.JetParserDefinition;
 import org.jetbrains.jet.lang.parsing.JetScriptDefinitionProvider;
 import org.jetbrains.jet.lang.psi.JetFile;
 import org.jetbrains.jet.lang.resolve.java.JetFilesProvider;
+import org.jetbrains.jet.lang.resolve.kotlin.KotlinBinaryClassCache;
 import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileFinder;
 import org.jetbrains.jet.plugin.JetFileType;
 import org.jetbrains.jet.utils.PathUtil;
@@ -74,22 +68,21 @@ public class JetCoreEnvironment {
     private final CompilerConfiguration configuration;
 
     public JetCoreEnvironment(Disposable parentDisposable, @NotNull CompilerConfiguration configuration) {
+        this(parentDisposable, new JetCoreLibraryEnvironment(parentDisposable), configuration);
+    }
+
+    /**
+     * @param libraryEnvironment may be shared with other environments, and should outlive this one
+     */
+    public JetCoreEnvironment(
+            Disposable parentDisposable,
+            @NotNull JetCoreLibraryEnvironment libraryEnvironment,
+            @NotNull CompilerConfiguration configuration
+    ) {
         this.configuration = configuration.copy();
         this.configuration.setReadOnly(true);
 
-        this.applicationEnvironment = new JavaCoreApplicationEnvironment(parentDisposable);
-
-        // ability to get text from annotations xml files
-        applicationEnvironment.registerFileType(PlainTextFileType.INSTANCE, "xml");
-
-        applicationEnvironment.registerFileType(JetFileType.INSTANCE, "kt");
-        applicationEnvironment.registerFileType(JetFileType.INSTANCE, "kts");
-        applicationEnvironment.registerFileType(JetFileType.INSTANCE, "ktm");
-        applicationEnvironment.registerFileType(JetFileType.INSTANCE, JetParserDefinition.KTSCRIPT_FILE_SUFFIX); // should be renamed to kts
-        applicationEnvironment.registerParserDefinition(new JavaParserDefinition());
-        applicationEnvironment.registerParserDefinition(new JetParserDefinition());
-
-        applicationEnvironment.getApplication().registerService(OperationModeProvider.class, new CompilerModeProvider());
+        this.applicationEnvironment = libraryEnvironment.getApplicationEnvironment();
 
         projectEnvironment = new JavaCoreProjectEnvironment(parentDisposable, applicationEnvironment);
 
@@ -106,10 +99,6 @@ public class JetCoreEnvironment {
                 .getExtensionPoint(PsiElementFinder.EP_NAME)
                 .registerExtension(new JavaElementFinder(project, cliLightClassGenerationSupport));
 
-        // This extension point should be registered in JavaCoreApplicationEnvironment
-        CoreApplicationEnvironment.registerExtensionPoint(Extensions.getRootArea(), ClsCustomNavigationPolicy.EP_NAME,
-                                                          ClsCustomNavigationPolicy.class);
-
         annotationsManager = new CoreExternalAnnotationsManager(project.getComponent(PsiManager.class));
         project.registerService(ExternalAnnotationsManager.class, annotationsManager);
 
@@ -126,7 +115,12 @@ public class JetCoreEnvironment {
         JetScriptDefinitionProvider.getInstance(project).addScriptDefinitions(
                 configuration.getList(CommonConfigurationKeys.SCRIPT_DEFINITIONS_KEY));
 
-        project.registerService(VirtualFileFinder.class, new CliVirtualFileFinder(classPath));
+        KotlinBinaryClassCache binaryClassCache = new KotlinBinaryClassCache();
+        project.registerService(KotlinBinaryClassCache.class, binaryClassCache);
+
+        File indexCacheDir = configuration.get(JVMConfigurationKeys.CLASSPATH_INDEX_CACHE_DIR);
+        project.registerService(VirtualFileFinder.class, new CliVirtualFileFinder(
+                new ClassPathIndex(classPath, indexCacheDir, libraryEnvironment.getJarClassFiles()), binaryClassCache));
     }
 
     public CompilerConfiguration getConfiguration() {
@@ -197,7 +191,7 @@ public class JetCoreEnvironment {
                 return;
             }
             projectEnvironment.addJarToClassPath(path);
-            classPath.add(jarFile);
+            classPath.addJar(jarFile, path);
         }
         else {
             VirtualFile root = applicationEnvironment.getLocalFileSystem().findFileByPath(path.getAbsolutePath());
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.core.CoreApplicationEnvironment;
+import com.intellij.core.JavaCoreApplicationEnvironment;
+import com.intellij.lang.java.JavaParserDefinition;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.extensions.Extensions;
+import com.intellij.openapi.fileTypes.PlainTextFileType;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.impl.compiled.ClsCustomNavigationPolicy;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.CompilerModeProvider;
+import org.jetbrains.jet.OperationModeProvider;
+import org.jetbrains.jet.lang.parsing.JetParserDefinition;
+import org.jetbrains.jet.plugin.JetFileType;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The part of a compiler environment which doesn't depend on the sources being compiled, shared by environments of all modules
+ * compiled together: the application with its jar file system, which reads the entries of each jar once, and the lists of
+ * class files in jars, from which classpath indices of the modules are built.
+ *
+ * Directories on the classpath are not listed here, since they may be outputs of modules compiled earlier.
+ */
+public class JetCoreLibraryEnvironment {
+    private final JavaCoreApplicationEnvironment applicationEnvironment;
+
+    private final ConcurrentMap<VirtualFile, List<String>> jarClassFiles = new ConcurrentHashMap<VirtualFile, List<String>>();
+
+    public JetCoreLibraryEnvironment(@NotNull Disposable parentDisposable) {
+        applicationEnvironment = new JavaCoreApplicationEnvironment(parentDisposable);
+
+        // ability to get text from annotations xml files
+        applicationEnvironment.registerFileType(PlainTextFileType.INSTANCE, "xml");
+
+        applicationEnvironment.registerFileType(JetFileType.INSTANCE, "kt");
+        applicationEnvironment.registerFileType(JetFileType.INSTANCE, "kts");
+        applicationEnvironment.registerFileType(JetFileType.INSTANCE, "ktm");
+        applicationEnvironment.registerFileType(JetFileType.INSTANCE, JetParserDefinition.KTSCRIPT_FILE_SUFFIX); // should be renamed to kts
+        applicationEnvironment.registerParserDefinition(new JavaParserDefinition());
+        applicationEnvironment.registerParserDefinition(new JetParserDefinition());
+
+        applicationEnvironment.getApplication().registerService(OperationModeProvider.class, new CompilerModeProvider());
+
+        // This extension point should be registered in JavaCoreApplicationEnvironment
+        CoreApplicationEnvironment.registerExtensionPoint(Extensions.getRootArea(), ClsCustomNavigationPolicy.EP_NAME,
+                                                          ClsCustomNavigationPolicy.class);
+    }
+
+    @NotNull
+    public JavaCoreApplicationEnvironment getApplicationEnvironment() {
+        return applicationEnvironment;
+    }
+
+    /**
+     * Relative paths of class files in jars which have already been listed, see {@link ClassPathIndex}
+     */
+    @NotNull
+    ConcurrentMap<VirtualFile, List<String>> getJarClassFiles() {
+        return jarClassFiles;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Keeps the library environment of the last compilation, so that the next one with the same jars on the classpath reuses it
+ * instead of reading the jars again. Used by the compiler daemon, which serves one compilation at a time.
+ *
+ * The environment is recreated whenever any jar is added, removed or modified, since its jar file system never rereads a jar.
+ */
+public class JetCoreLibraryEnvironmentCache {
+    @Nullable
+    private List<String> jarStamps = null;
+    @Nullable
+    private Disposable disposable = null;
+    @Nullable
+    private JetCoreLibraryEnvironment environment = null;
+
+    @NotNull
+    public synchronized JetCoreLibraryEnvironment get(@NotNull Collection<File> classpath) {
+        List<String> stamps = getJarStamps(classpath);
+        if (environment == null || !stamps.equals(jarStamps)) {
+            dispose();
+            disposable = CompileEnvironmentUtil.createMockDisposable();
+            environment = new JetCoreLibraryEnvironment(disposable);
+            jarStamps = stamps;
+        }
+        return environment;
+    }
+
+    public synchronized void dispose() {
+        if (disposable != null) {
+            Disposer.dispose(disposable);
+        }
+        disposable = null;
+        environment = null;
+        jarStamps = null;
+    }
+
+    @NotNull
+    private static List<String> getJarStamps(@NotNull Collection<File> classpath) {
+        // Directories are not read by the library environment, see JetCoreLibraryEnvironment
+        List<String> stamps = new ArrayList<String>(classpath.size());
+        for (File file : classpath) {
+            if (file.isFile()) {
+                stamps.add(file.getAbsolutePath() + File.pathSeparator + file.length() + File.pathSeparator + file.lastModified());
+            }
+        }
+        return stamps;
+    }
+}
@@ -51,6 +51,7 @@ import org.jetbrains.jet.plugin.JetMainDetector;
 import org.jetbrains.jet.utils.ExceptionUtils;
 import org.jetbrains.jet.utils.KotlinPaths;
 import org.jetbrains.jet.utils.PathUtil;
+import org.jetbrains.jet.utils.PerformanceReport;
 
 import java.io.File;
 import java.net.URISyntaxException;
@@ -68,6 +69,23 @@ public class KotlinToJVMBytecodeCompiler {
 
     @Nullable
     public static ClassFileFactory compileModule(CompilerConfiguration configuration, Module module, File directory) {
+        Disposable libraryDisposable = CompileEnvironmentUtil.createMockDisposable();
+        try {
+            return compileModule(configuration, new JetCoreLibraryEnvironment(libraryDisposable), module, directory, null);
+        }
+        finally {
+            Disposer.dispose(libraryDisposable);
+        }
+    }
+
+    @Nullable
+    private static ClassFileFactory compileModule(
+            CompilerConfiguration configuration,
+            JetCoreLibraryEnvironment libraryEnvironment,
+            Module module,
+            File directory,
+            @Nullable ClassFileConsumer streamingConsumer
+    ) {
         if (module.getSourceFiles().isEmpty()) {
             throw new CompileEnvironmentException("No source files where defined in module " + module.getModuleName());
         }
@@ -97,10 +115,10 @@ public class KotlinToJVMBytecodeCompiler {
         Disposable parentDisposable = CompileEnvironmentUtil.createMockDisposable();
         JetCoreEnvironment moduleEnvironment = null;
         try {
-            moduleEnvironment = new JetCoreEnvironment(parentDisposable, compilerConfiguration);
+            moduleEnvironment = new JetCoreEnvironment(parentDisposable, libraryEnvironment, compilerConfiguration);
 
 
-            GenerationState generationState = analyzeAndGenerate(moduleEnvironment);
+            GenerationState generationState = analyzeAndGenerate(moduleEnvironment, streamingConsumer);
             if (generationState == null) {
                 return null;
             }
@@ -118,24 +136,54 @@ public class KotlinToJVMBytecodeCompiler {
             CompileEnvironmentUtil.OutputDirector outputDir,
             File jarPath,
             boolean jarRuntime,
-            FqName mainClass
+            FqName mainClass,
+            @Nullable StreamingClassFileWriter streamingWriter
     ) {
         MessageCollector messageCollector = configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE);
-        CompileEnvironmentUtil.writeOutputToDirOrJar(jarPath, outputDir, jarRuntime, mainClass, moduleFactory, messageCollector);
+        PerformanceReport.Section section = PerformanceReport.begin(PerformanceReport.OUTPUT);
+        try {
+            if (streamingWriter != null) {
+                streamingWriter.finish(moduleFactory, messageCollector);
+            }
+            else {
+                CompileEnvironmentUtil.writeOutputToDirOrJar(jarPath, outputDir, jarRuntime, mainClass, moduleFactory, messageCollector);
+            }
+            section.count(PerformanceReport.FILES, moduleFactory.files().size());
+        }
+        finally {
+            section.end();
+        }
+    }
+
+    public static boolean compileModules(
+            CompilerConfiguration configuration,
+            @NotNull final ModuleChunk modules,
+            @NotNull File directory,
+            @Nullable File jarPath,
+            boolean jarRuntime
+    ) {
+        // Jars on the classpath are read once for all modules, since modules only differ in their sources
+        Disposable libraryDisposable = CompileEnvironmentUtil.createMockDisposable();
+        try {
+            return compileModules(configuration, new JetCoreLibraryEnvironment(libraryDisposable), modules, directory, jarPath, jarRuntime);
+        }
+        finally {
+            Disposer.dispose(libraryDisposable);
+        }
     }
 
+    /**
+     * @param libraryEnvironment may be shared with other compilations, and should outlive this one
+     */
     public static boolean compileModules(
             CompilerConfiguration configuration,
+            @NotNull JetCoreLibraryEnvironment libraryEnvironment,
             @NotNull final ModuleChunk modules,
             @NotNull File directory,
             @Nullable File jarPath,
             boolean jarRuntime
     ) {
         for (Module module : modules.getModules()) {
-            ClassFileFactory moduleFactory = compileModule(configuration, module, directory);
-            if (moduleFactory == null) {
-                return false;
-            }
             CompileEnvironmentUtil.OutputDirector outputDir = new CompileEnvironmentUtil.OutputDirector() {
                 @NotNull
                 @Override
@@ -150,7 +198,19 @@ public class KotlinToJVMBytecodeCompiler {
                 }
             };
 
-            writeOutput(configuration, moduleFactory, outputDir, jarPath, jarRuntime, null);
+            StreamingClassFileWriter streamingWriter = createStreamingWriter(configuration, jarPath, outputDir, jarRuntime, null);
+            try {
+                ClassFileFactory moduleFactory = compileModule(configuration, libraryEnvironment, module, directory, streamingWriter);
+                if (moduleFactory == null) {
+                    return false;
+                }
+                writeOutput(configuration, moduleFactory, outputDir, jarPath, jarRuntime, null, streamingWriter);
+            }
+            finally {
+                if (streamingWriter != null) {
+                    streamingWriter.close();
+                }
+            }
         }
         return true;
     }
@@ -179,22 +239,43 @@ public class KotlinToJVMBytecodeCompiler {
     ) {
 
         FqName mainClass = findMainClass(environment.getSourceFiles());
+        CompilerConfiguration configuration = environment.getConfiguration();
+        CompileEnvironmentUtil.OutputDirector outputDirector = CompileEnvironmentUtil.singleDirectory(outputDir);
 
-        GenerationState generationState = analyzeAndGenerate(environment);
-        if (generationState == null) {
-            return false;
-        }
-
+        StreamingClassFileWriter streamingWriter = createStreamingWriter(configuration, jar, outputDirector, includeRuntime, mainClass);
         try {
-            CompileEnvironmentUtil.OutputDirector outputDirector = CompileEnvironmentUtil.singleDirectory(outputDir);
-            writeOutput(environment.getConfiguration(), generationState.getFactory(), outputDirector, jar, includeRuntime, mainClass);
-            return true;
+            GenerationState generationState = analyzeAndGenerate(environment, streamingWriter);
+            if (generationState == null) {
+                return false;
+            }
+
+            try {
+                writeOutput(configuration, generationState.getFactory(), outputDirector, jar, includeRuntime, mainClass, streamingWriter);
+                return true;
+            }
+            finally {
+                generationState.destroy();
+            }
         }
         finally {
-            generationState.destroy();
+            if (streamingWriter != null) {
+                streamingWriter.close();
+            }
         }
     }
 
+    @Nullable
+    private static StreamingClassFileWriter createStreamingWriter(
+            @NotNull CompilerConfiguration configuration,
+            @Nullable File jar,
+            @Nullable CompileEnvironmentUtil.OutputDirector outputDirector,
+            boolean includeRuntime,
+            @Nullable FqName mainClass
+    ) {
+        if (!configuration.get(JVMConfigurationKeys.STREAM_OUTPUT, false)) return null;
+        return new StreamingClassFileWriter(jar, outputDirector, includeRuntime, mainClass);
+    }
+
     public static boolean compileAndExecuteScript(
             @NotNull KotlinPaths paths,
             @NotNull JetCoreEnvironment environment,
@@ -250,6 +331,14 @@ public class KotlinToJVMBytecodeCompiler {
     @Nullable
     public static GenerationState analyzeAndGenerate(
             JetCoreEnvironment environment
+    ) {
+        return analyzeAndGenerate(environment, null);
+    }
+
+    @Nullable
+    private static GenerationState analyzeAndGenerate(
+            JetCoreEnvironment environment,
+            @Nullable ClassFileConsumer streamingConsumer
     ) {
         AnalyzeExhaust exhaust = analyze(environment);
 
@@ -259,7 +348,7 @@ public class KotlinToJVMBytecodeCompiler {
 
         exhaust.throwIfError();
 
-        return generate(environment, exhaust);
+        return generate(environment, exhaust, streamingConsumer);
     }
 
     @Nullable
@@ -278,7 +367,8 @@ public class KotlinToJVMBytecodeCompiler {
                                 sharedTrace,
                                 environment.getConfiguration().getList(JVMConfigurationKeys.SCRIPT_PARAMETERS),
                                 Predicates.<PsiFile>alwaysTrue(),
-                                false
+                                false,
+                                environment.getConfiguration().get(JVMConfigurationKeys.BODY_RESOLVE_THREADS, 1)
                         );
                     }
                 }, environment.getSourceFiles()
@@ -290,7 +380,8 @@ public class KotlinToJVMBytecodeCompiler {
     @NotNull
     private static GenerationState generate(
             JetCoreEnvironment environment,
-            AnalyzeExhaust exhaust
+            AnalyzeExhaust exhaust,
+            @Nullable ClassFileConsumer streamingConsumer
     ) {
         Project project = environment.getProject();
         CompilerConfiguration configuration = environment.getConfiguration();
@@ -298,9 +389,19 @@ public class KotlinToJVMBytecodeCompiler {
                 project, ClassBuilderFactories.BINARIES, Progress.DEAF, exhaust.getBindingContext(), environment.getSourceFiles(),
                 configuration.get(JVMConfigurationKeys.GENERATE_NOT_NULL_ASSERTIONS, false),
                 configuration.get(JVMConfigurationKeys.GENERATE_NOT_NULL_PARAMETER_ASSERTIONS, false),
-                /*generateDeclaredClasses = */true
+                /*generateDeclaredClasses = */true,
+                configuration.get(JVMConfigurationKeys.CODEGEN_THREADS, 1)
         );
-        KotlinCodegenFacade.compileCorrectFiles(generationState, CompilationErrorHandler.THROW_EXCEPTION);
+        generationState.getFactory().setStreamingConsumer(streamingConsumer);
+        PerformanceReport.Section section = PerformanceReport.begin(PerformanceReport.CODEGEN);
+        try {
+            KotlinCodegenFacade.compileCorrectFiles(generationState, CompilationErrorHandler.THROW_EXCEPTION);
+            section.count(PerformanceReport.FILES, environment.getSourceFiles().size());
+            section.count(PerformanceReport.CLASSES, generationState.getFactory().files().size());
+        }
+        finally {
+            section.end();
+        }
 
         CompilerPluginContext context = new CompilerPluginContext(project, exhaust.getBindingContext(), environment.getSourceFiles());
         for (CompilerPlugin plugin : configuration.getList(CLIConfigurationKeys.COMPILER_PLUGINS)) {
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.cli.common.messages.MessageCollector;
+import org.jetbrains.jet.codegen.ClassFileConsumer;
+import org.jetbrains.jet.codegen.ClassFileFactory;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.utils.ExceptionUtils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes classes to the output directory or jar while they are being generated, see {@link ClassFileFactory#setStreamingConsumer}.
+ * The result is the same as of {@link CompileEnvironmentUtil#writeOutputToDirOrJar}, except for the order of jar entries.
+ */
+class StreamingClassFileWriter implements ClassFileConsumer {
+    @Nullable private final File jarPath;
+    @Nullable private final CompileEnvironmentUtil.OutputDirector outputDirector;
+    private final boolean includeRuntime;
+    @Nullable private final FqName mainClass;
+
+    // Created on the first class, so that no jar is written if the analysis fails
+    private FileOutputStream jarFileStream;
+    private JarWriter jarWriter;
+
+    StreamingClassFileWriter(
+            @Nullable File jarPath,
+            @Nullable CompileEnvironmentUtil.OutputDirector outputDirector,
+            boolean includeRuntime,
+            @Nullable FqName mainClass
+    ) {
+        if (jarPath == null && outputDirector == null) {
+            throw new CompileEnvironmentException("Output directory or jar file is not specified - no files will be saved to the disk");
+        }
+        this.jarPath = jarPath;
+        this.outputDirector = outputDirector;
+        this.includeRuntime = includeRuntime;
+        this.mainClass = mainClass;
+    }
+
+    @Override
+    public void consume(@NotNull String relativeClassFilePath, @NotNull List<File> sourceFiles, @NotNull byte[] bytes) {
+        if (jarPath != null) {
+            // Compressed on the codegen thread, so that several classes may be compressed at once
+            writeToJar(JarWriter.compress(relativeClassFilePath, bytes));
+        }
+        else {
+            assert outputDirector != null;
+            File target = new File(outputDirector.getOutputDirectory(sourceFiles), relativeClassFilePath);
+            try {
+                FileUtil.writeToFile(target, bytes);
+            }
+            catch (IOException e) {
+                throw new CompileEnvironmentException(e);
+            }
+        }
+    }
+
+    private synchronized void writeToJar(@NotNull JarWriter.Entry entry) {
+        try {
+            getJarWriter().write(entry);
+        }
+        catch (IOException e) {
+            throw new CompileEnvironmentException("Failed to generate jar file", e);
+        }
+    }
+
+    @NotNull
+    private JarWriter getJarWriter() throws IOException {
+        if (jarWriter == null) {
+            assert jarPath != null;
+            try {
+                jarFileStream = new FileOutputStream(jarPath);
+            }
+            catch (FileNotFoundException e) {
+                throw new CompileEnvironmentException("Invalid jar path " + jarPath, e);
+            }
+            jarWriter = new JarWriter(jarFileStream, CompileEnvironmentUtil.createManifest(mainClass));
+        }
+        return jarWriter;
+    }
+
+    /**
+     * Writes the classes which are completed only when code generation is over, and the runtime if needed
+     */
+    synchronized void finish(@NotNull ClassFileFactory factory, @NotNull MessageCollector messageCollector) {
+        // Package classes are completed here
+        factory.files();
+
+        if (jarPath != null) {
+            try {
+                JarWriter writer = getJarWriter();
+                if (includeRuntime) {
+                    CompileEnvironmentUtil.writeRuntimeToJar(writer);
+                }
+                writer.finish();
+                jarFileStream.close();
+            }
+            catch (IOException e) {
+                throw new CompileEnvironmentException("Failed to generate jar file", e);
+            }
+        }
+        else {
+            CompileEnvironmentUtil.reportOutputs(factory, messageCollector);
+        }
+    }
+
+    /**
+     * Should be called whether or not the compilation has succeeded
+     */
+    synchronized void close() {
+        ExceptionUtils.closeQuietly(jarFileStream);
+    }
+}
@@ -35,7 +35,9 @@ import org.jetbrains.jet.lang.resolve.*;
 import org.jetbrains.jet.lang.resolve.java.mapping.JavaToKotlinClassMap;
 import org.jetbrains.jet.lang.resolve.lazy.ResolveSession;
 import org.jetbrains.jet.lang.resolve.lazy.declarations.FileBasedDeclarationProviderFactory;
+import org.jetbrains.jet.lang.resolve.lazy.storage.LazyResolveStorageManager;
 import org.jetbrains.jet.lang.resolve.lazy.storage.LockBasedLazyResolveStorageManager;
+import org.jetbrains.jet.lang.resolve.lazy.storage.PerValueLockLazyResolveStorageManager;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
@@ -45,11 +47,18 @@ import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 public enum AnalyzerFacadeForJVM implements AnalyzerFacade {
 
     INSTANCE;
 
+    /**
+     * With this property set to "true", lazy resolve sessions don't share one lock between all lazy values,
+     * so that several threads may resolve unrelated declarations at the same time
+     */
+    public static final String PER_VALUE_LOCKS_PROPERTY = "kotlin.lazy.resolve.per.value.locks";
+
     private AnalyzerFacadeForJVM() {
     }
 
@@ -95,7 +104,9 @@ public enum AnalyzerFacadeForJVM implements AnalyzerFacade {
         final JavaClassFinderImpl classFinder = injector.getJavaClassFinder();
 
         // TODO: Replace with stub declaration provider
-        LockBasedLazyResolveStorageManager storageManager = new LockBasedLazyResolveStorageManager();
+        LazyResolveStorageManager storageManager = Boolean.getBoolean(PER_VALUE_LOCKS_PROPERTY)
+                                                   ? new PerValueLockLazyResolveStorageManager()
+                                                   : new LockBasedLazyResolveStorageManager();
         FileBasedDeclarationProviderFactory declarationProviderFactory = new FileBasedDeclarationProviderFactory(storageManager, files, new Predicate<FqName>() {
             @Override
             public boolean apply(FqName fqName) {
@@ -190,15 +201,34 @@ public enum AnalyzerFacadeForJVM implements AnalyzerFacade {
             List<AnalyzerScriptParameter> scriptParameters,
             Predicate<PsiFile> filesToAnalyzeCompletely,
             boolean storeContextForBodiesResolve
+    ) {
+        return analyzeFilesWithJavaIntegration(project, files, trace, scriptParameters, filesToAnalyzeCompletely,
+                                               storeContextForBodiesResolve, 1);
+    }
+
+    /**
+     * @param bodyResolveThreads if more than one, bodies of functions and properties are resolved concurrently
+     */
+    public static AnalyzeExhaust analyzeFilesWithJavaIntegration(
+            Project project,
+            Collection<JetFile> files,
+            BindingTrace trace,
+            List<AnalyzerScriptParameter> scriptParameters,
+            Predicate<PsiFile> filesToAnalyzeCompletely,
+            boolean storeContextForBodiesResolve,
+            int bodyResolveThreads
     ) {
         ModuleDescriptorImpl owner = createJavaModule("<module>");
 
         TopDownAnalysisParameters topDownAnalysisParameters = new TopDownAnalysisParameters(
-                filesToAnalyzeCompletely, false, false, scriptParameters);
+                filesToAnalyzeCompletely, false, false, scriptParameters, bodyResolveThreads);
+
+        // Threads resolving bodies read the trace, and record descriptors of Java classes they load to it
+        BindingTrace sharedTrace = bodyResolveThreads > 1 ? new LockProtectedTrace(new ReentrantLock(), trace) : trace;
 
         InjectorForTopDownAnalyzerForJvm injector = new InjectorForTopDownAnalyzerForJvm(
                 project, topDownAnalysisParameters,
-                new ObservableBindingTrace(trace), owner);
+                new ObservableBindingTrace(sharedTrace), owner);
         owner.setModuleConfiguration(injector.getJavaBridgeConfiguration());
         try {
             injector.getTopDownAnalyzer().analyzeFiles(files, scriptParameters);
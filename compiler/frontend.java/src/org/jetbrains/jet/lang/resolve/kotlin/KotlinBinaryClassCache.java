@@ -0,0 +1,57 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.kotlin;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Data of class files read by {@link VirtualFileKotlinClass}, shared between its instances for the same file until the file
+ * is modified. It's a project service, so that the data doesn't outlive the project or the compiler environment.
+ */
+public class KotlinBinaryClassCache {
+    private static final int CACHE_SIZE = 4096;
+
+    @NotNull
+    public static KotlinBinaryClassCache getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, KotlinBinaryClassCache.class);
+    }
+
+    private final Map<VirtualFile, VirtualFileKotlinClass.ClassData> cache =
+            new LinkedHashMap<VirtualFile, VirtualFileKotlinClass.ClassData>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<VirtualFile, VirtualFileKotlinClass.ClassData> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    @Nullable
+    synchronized VirtualFileKotlinClass.ClassData get(@NotNull VirtualFile file, long modificationStamp) {
+        VirtualFileKotlinClass.ClassData data = cache.get(file);
+        return data != null && data.modificationStamp == modificationStamp ? data : null;
+    }
+
+    synchronized void put(@NotNull VirtualFile file, @NotNull VirtualFileKotlinClass.ClassData data) {
+        cache.put(file, data);
+    }
+}
@@ -24,20 +24,34 @@ import org.jetbrains.asm4.ClassVisitor;
 import org.jetbrains.asm4.FieldVisitor;
 import org.jetbrains.asm4.MethodVisitor;
 import org.jetbrains.jet.lang.resolve.java.JvmClassName;
+import org.jetbrains.jet.lang.resolve.kotlin.header.KotlinClassHeader;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.utils.ExceptionUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.jetbrains.asm4.ClassReader.*;
 import static org.jetbrains.asm4.Opcodes.ASM4;
 
+/**
+ * Reads the class file once, recording its name, its members and all annotations of the class and its members, which are
+ * then replayed to visitors. The recorded data is shared between instances for the same file via the cache of the project, if one is given.
+ */
 public class VirtualFileKotlinClass implements KotlinJvmBinaryClass {
     private final VirtualFile file;
-    private JvmClassName className;
+    @Nullable
+    private final KotlinBinaryClassCache cache;
+    private ClassData data;
 
     public VirtualFileKotlinClass(@NotNull VirtualFile file) {
+        this(file, null);
+    }
+
+    public VirtualFileKotlinClass(@NotNull VirtualFile file, @Nullable KotlinBinaryClassCache cache) {
         this.file = file;
+        this.cache = cache;
     }
 
     @NotNull
@@ -48,111 +62,105 @@ public class VirtualFileKotlinClass implements KotlinJvmBinaryClass {
     @NotNull
     @Override
     public JvmClassName getClassName() {
-        if (className == null) {
-            try {
-                new ClassReader(file.contentsToByteArray()).accept(new ClassVisitor(ASM4) {
-                    @Override
-                    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-                        className = JvmClassName.byInternalName(name);
-                    }
-                }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
-            }
-            catch (IOException e) {
-                throw ExceptionUtils.rethrow(e);
-            }
-        }
-
-        return className;
+        return getData().className;
     }
 
+    @Nullable
     @Override
-    public void loadClassAnnotations(@NotNull final AnnotationVisitor annotationVisitor) {
-        try {
-            new ClassReader(file.contentsToByteArray()).accept(new ClassVisitor(ASM4) {
-                @Override
-                public org.jetbrains.asm4.AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-                    return convertAnnotationVisitor(annotationVisitor, desc);
-                }
-
-                @Override
-                public void visitEnd() {
-                    annotationVisitor.visitEnd();
-                }
-            }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
-        }
-        catch (IOException e) {
-            throw ExceptionUtils.rethrow(e);
+    public KotlinClassHeader getClassHeader() {
+        ClassData data = getData();
+        if (!data.headerRead) {
+            data.header = KotlinClassHeader.read(this);
+            data.headerRead = true;
         }
+        return data.header;
     }
 
-    @Nullable
-    private static org.jetbrains.asm4.AnnotationVisitor convertAnnotationVisitor(@NotNull AnnotationVisitor visitor, @NotNull String desc) {
-        AnnotationArgumentVisitor v = visitor.visitAnnotation(classNameFromAsmDesc(desc));
-        return v == null ? null : convertAnnotationVisitor(v);
+    @Override
+    public void loadClassAnnotations(@NotNull AnnotationVisitor annotationVisitor) {
+        for (RecordedAnnotation annotation : getData().classAnnotations) {
+            annotation.replay(annotationVisitor);
+        }
+        annotationVisitor.visitEnd();
     }
 
-    @NotNull
-    private static org.jetbrains.asm4.AnnotationVisitor convertAnnotationVisitor(@NotNull final AnnotationArgumentVisitor v) {
-        return new org.jetbrains.asm4.AnnotationVisitor(ASM4) {
-            @Override
-            public void visit(String name, Object value) {
-                v.visit(name == null ? null : Name.identifier(name), value);
-            }
+    @Override
+    public void loadMemberAnnotations(@NotNull MemberVisitor memberVisitor) {
+        for (RecordedMember member : getData().members) {
+            AnnotationVisitor v = member.isMethod
+                                  ? memberVisitor.visitMethod(member.name, member.desc)
+                                  : memberVisitor.visitField(member.name, member.desc);
+            if (v == null) continue;
 
-            @Override
-            public org.jetbrains.asm4.AnnotationVisitor visitArray(String name) {
-                AnnotationArgumentVisitor av = v.visitArray(Name.guess(name));
-                return av == null ? null : convertAnnotationVisitor(av);
+            for (RecordedAnnotation annotation : member.annotations) {
+                annotation.replay(v);
             }
+            v.visitEnd();
+        }
+    }
 
-            @Override
-            public void visitEnum(String name, String desc, String value) {
-                v.visitEnum(Name.identifier(name), classNameFromAsmDesc(desc), Name.identifier(value));
+    @NotNull
+    private ClassData getData() {
+        if (data == null) {
+            long modificationStamp = file.getModificationStamp();
+            ClassData cached = cache != null ? cache.get(file, modificationStamp) : null;
+            if (cached != null) {
+                data = cached;
+                return data;
             }
 
-            @Override
-            public void visitEnd() {
-                v.visitEnd();
+            ClassData read = readClassData(modificationStamp);
+            if (cache != null) {
+                cache.put(file, read);
             }
-        };
+            data = read;
+        }
+        return data;
     }
 
-    @Override
-    public void loadMemberAnnotations(@NotNull final MemberVisitor memberVisitor) {
+    @NotNull
+    private ClassData readClassData(long modificationStamp) {
+        final ClassData result = new ClassData(modificationStamp);
         try {
             new ClassReader(file.contentsToByteArray()).accept(new ClassVisitor(ASM4) {
                 @Override
-                public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
-                    final AnnotationVisitor v = memberVisitor.visitField(Name.guess(name), desc);
-                    if (v == null) return null;
+                public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                    result.className = JvmClassName.byInternalName(name);
+                }
 
+                @Override
+                public org.jetbrains.asm4.AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                    return record(result.classAnnotations, desc);
+                }
+
+                @Override
+                public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+                    final RecordedMember member = new RecordedMember(false, Name.guess(name), desc);
                     return new FieldVisitor(ASM4) {
                         @Override
                         public org.jetbrains.asm4.AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-                            return convertAnnotationVisitor(v, desc);
+                            return record(member.annotations, desc);
                         }
 
                         @Override
                         public void visitEnd() {
-                            v.visitEnd();
+                            member.addTo(result.members);
                         }
                     };
                 }
 
                 @Override
                 public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
-                    final AnnotationVisitor v = memberVisitor.visitMethod(Name.guess(name), desc);
-                    if (v == null) return null;
-
+                    final RecordedMember member = new RecordedMember(true, Name.guess(name), desc);
                     return new MethodVisitor(ASM4) {
                         @Override
                         public org.jetbrains.asm4.AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-                            return convertAnnotationVisitor(v, desc);
+                            return record(member.annotations, desc);
                         }
 
                         @Override
                         public void visitEnd() {
-                            v.visitEnd();
+                            member.addTo(result.members);
                         }
                     };
                 }
@@ -161,6 +169,14 @@ public class VirtualFileKotlinClass implements KotlinJvmBinaryClass {
         catch (IOException e) {
             throw ExceptionUtils.rethrow(e);
         }
+        return result;
+    }
+
+    @NotNull
+    private static org.jetbrains.asm4.AnnotationVisitor record(@NotNull List<RecordedAnnotation> annotations, @NotNull String desc) {
+        RecordedAnnotation annotation = new RecordedAnnotation(classNameFromAsmDesc(desc));
+        annotations.add(annotation);
+        return annotation.arguments;
     }
 
     @NotNull
@@ -169,6 +185,98 @@ public class VirtualFileKotlinClass implements KotlinJvmBinaryClass {
         return JvmClassName.byInternalName(desc.substring(1, desc.length() - 1));
     }
 
+    static class ClassData {
+        final long modificationStamp;
+        private JvmClassName className;
+        private final List<RecordedAnnotation> classAnnotations = new ArrayList<RecordedAnnotation>(1);
+        private final List<RecordedMember> members = new ArrayList<RecordedMember>();
+
+        private volatile KotlinClassHeader header;
+        private volatile boolean headerRead;
+
+        private ClassData(long modificationStamp) {
+            this.modificationStamp = modificationStamp;
+        }
+    }
+
+    private static class RecordedMember {
+        private final boolean isMethod;
+        private final Name name;
+        private final String desc;
+        private final List<RecordedAnnotation> annotations = new ArrayList<RecordedAnnotation>(1);
+
+        private RecordedMember(boolean isMethod, @NotNull Name name, @NotNull String desc) {
+            this.isMethod = isMethod;
+            this.name = name;
+            this.desc = desc;
+        }
+
+        private void addTo(@NotNull List<RecordedMember> members) {
+            members.add(this);
+        }
+    }
+
+    private static class RecordedAnnotation {
+        private final JvmClassName className;
+        private final RecordedArguments arguments = new RecordedArguments();
+
+        private RecordedAnnotation(@NotNull JvmClassName className) {
+            this.className = className;
+        }
+
+        private void replay(@NotNull AnnotationVisitor visitor) {
+            AnnotationArgumentVisitor v = visitor.visitAnnotation(className);
+            if (v != null) {
+                arguments.replay(v);
+            }
+        }
+    }
+
+    private static class RecordedArguments extends org.jetbrains.asm4.AnnotationVisitor {
+        // Each argument is either {name, value}, {name, enum descriptor, enum entry}, or {name, RecordedArguments} for arrays
+        private final List<Object[]> arguments = new ArrayList<Object[]>(1);
+
+        private RecordedArguments() {
+            super(ASM4);
+        }
+
+        @Override
+        public void visit(String name, Object value) {
+            arguments.add(new Object[] {name, value});
+        }
+
+        @Override
+        public void visitEnum(String name, String desc, String value) {
+            arguments.add(new Object[] {name, desc, value});
+        }
+
+        @Override
+        public org.jetbrains.asm4.AnnotationVisitor visitArray(String name) {
+            RecordedArguments array = new RecordedArguments();
+            arguments.add(new Object[] {name, array});
+            return array;
+        }
+
+        private void replay(@NotNull AnnotationArgumentVisitor v) {
+            for (Object[] argument : arguments) {
+                String name = (String) argument[0];
+                if (argument.length == 3) {
+                    v.visitEnum(Name.identifier(name), classNameFromAsmDesc((String) argument[1]), Name.identifier((String) argument[2]));
+                }
+                else if (argument[1] instanceof RecordedArguments) {
+                    AnnotationArgumentVisitor av = v.visitArray(Name.guess(name));
+                    if (av != null) {
+                        ((RecordedArguments) argument[1]).replay(av);
+                    }
+                }
+                else {
+                    v.visit(name == null ? null : Name.identifier(name), argument[1]);
+                }
+            }
+            v.visitEnd();
+        }
+    }
+
     @Override
     public int hashCode() {
         return file.hashCode();
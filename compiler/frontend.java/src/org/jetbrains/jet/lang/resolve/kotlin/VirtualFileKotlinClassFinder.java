@@ -25,6 +25,12 @@ import javax.inject.Inject;
 
 public class VirtualFileKotlinClassFinder implements KotlinClassFinder {
     private VirtualFileFinder virtualFileFinder;
+    private KotlinBinaryClassCache cache;
+
+    @Inject
+    public void setCache(@NotNull KotlinBinaryClassCache cache) {
+        this.cache = cache;
+    }
 
     @Inject
     public void setVirtualFileFinder(@NotNull VirtualFileFinder virtualFileFinder) {
@@ -35,6 +41,6 @@ public class VirtualFileKotlinClassFinder implements KotlinClassFinder {
     @Override
     public KotlinJvmBinaryClass find(@NotNull FqName fqName) {
         VirtualFile file = virtualFileFinder.find(fqName);
-        return file == null ? null : new VirtualFileKotlinClass(file);
+        return file == null ? null : new VirtualFileKotlinClass(file, cache);
     }
 }
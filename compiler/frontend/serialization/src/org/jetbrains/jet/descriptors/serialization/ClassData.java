@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.descriptors.serialization;
 
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.ExtensionRegistryLite;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.utils.ExceptionUtils;
@@ -23,15 +24,26 @@ import org.jetbrains.jet.utils.ExceptionUtils;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 public final class ClassData {
     @NotNull
     public static ClassData read(@NotNull byte[] bytes, @NotNull ExtensionRegistryLite registry) {
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+        NameResolver nameResolver = NameSerializationUtil.deserializeNameResolver(in);
+        return read(nameResolver, in, registry);
+    }
+
+    /**
+     * Members are not parsed until they are requested from {@link #getMembers()}
+     */
+    @NotNull
+    public static ClassData read(@NotNull NameResolver nameResolver, @NotNull InputStream in, @NotNull ExtensionRegistryLite registry) {
         try {
-            ByteArrayInputStream in = new ByteArrayInputStream(bytes);
-            NameResolver nameResolver = NameSerializationUtil.deserializeNameResolver(in);
-            ProtoBuf.Class classProto = ProtoBuf.Class.parseFrom(in, registry);
-            return new ClassData(nameResolver, classProto);
+            MemberTable.SplitMessage message =
+                    MemberTable.readMessageSplittingMembers(in, ProtoBuf.Class.MEMBER_FIELD_NUMBER, nameResolver, registry);
+            ProtoBuf.Class classProto = ProtoBuf.Class.parseFrom(message.messageWithoutMembers, registry);
+            return new ClassData(nameResolver, classProto, message.members);
         }
         catch (IOException e) {
             throw ExceptionUtils.rethrow(e);
@@ -42,9 +54,19 @@ public final class ClassData {
 
     private final ProtoBuf.Class classProto;
 
+    private final MemberTable members;
+
     public ClassData(@NotNull NameResolver nameResolver, @NotNull ProtoBuf.Class classProto) {
+        this(nameResolver, classProto.toBuilder().clearMember().build(), MemberTable.create(classProto.getMemberList(), nameResolver));
+    }
+
+    private ClassData(@NotNull NameResolver nameResolver, @NotNull ProtoBuf.Class classProtoWithoutMembers, @NotNull MemberTable members) {
+        // Members left in the proto would never be seen by the deserialized scope, which only looks them up in the table
+        assert classProtoWithoutMembers.getMemberCount() == 0 :
+                classProtoWithoutMembers.getMemberCount() + " class members are missing from the member table";
         this.nameResolver = nameResolver;
-        this.classProto = classProto;
+        this.classProto = classProtoWithoutMembers;
+        this.members = members;
     }
 
     @NotNull
@@ -52,17 +74,28 @@ public final class ClassData {
         return nameResolver;
     }
 
+    /**
+     * @return the proto with no members, see {@link #getMembers()}
+     */
     @NotNull
     public ProtoBuf.Class getClassProto() {
         return classProto;
     }
 
+    @NotNull
+    public MemberTable getMembers() {
+        return members;
+    }
+
     @NotNull
     public byte[] toBytes() {
         try {
             ByteArrayOutputStream result = new ByteArrayOutputStream();
             NameSerializationUtil.serializeNameResolver(result, nameResolver);
-            classProto.writeTo(result);
+            CodedOutputStream output = CodedOutputStream.newInstance(result);
+            classProto.writeTo(output);
+            members.writeTo(output, ProtoBuf.Class.MEMBER_FIELD_NUMBER);
+            output.flush();
             return result.toByteArray();
         }
         catch (IOException e) {
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.descriptors.serialization;
+
+import com.google.protobuf.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.name.Name;
+import org.jetbrains.jet.utils.ExceptionUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Members (callables) of a serialized class or package, indexed by name.
+ *
+ * When read from bytes with {@link #readMessageSplittingMembers}, members are kept serialized and only the name of each member is read,
+ * so that a member is parsed only when its name is looked up.
+ */
+public final class MemberTable {
+    private static final int TAG_TYPE_BITS = 3;
+    private static final int TAG_TYPE_MASK = (1 << TAG_TYPE_BITS) - 1;
+
+    // Values are either ProtoBuf.Callable or ByteString instances
+    private final Map<Name, List<Object>> membersByName;
+    private final List<Object> allMembers;
+    // Null if there are no serialized members
+    private final ExtensionRegistryLite registry;
+
+    private MemberTable(
+            @NotNull Map<Name, List<Object>> membersByName,
+            @NotNull List<Object> allMembers,
+            @Nullable ExtensionRegistryLite registry
+    ) {
+        this.membersByName = membersByName;
+        this.allMembers = allMembers;
+        this.registry = registry;
+    }
+
+    @NotNull
+    public static MemberTable create(@NotNull List<ProtoBuf.Callable> members, @NotNull NameResolver nameResolver) {
+        Map<Name, List<Object>> membersByName = new LinkedHashMap<Name, List<Object>>();
+        for (ProtoBuf.Callable member : members) {
+            add(membersByName, nameResolver.getName(member.getName()), member);
+        }
+        return new MemberTable(membersByName, new ArrayList<Object>(members), null);
+    }
+
+    @NotNull
+    private static MemberTable createSerialized(
+            @NotNull List<ByteString> members,
+            @NotNull NameResolver nameResolver,
+            @NotNull ExtensionRegistryLite registry
+    ) throws IOException {
+        Map<Name, List<Object>> membersByName = new LinkedHashMap<Name, List<Object>>();
+        for (ByteString member : members) {
+            add(membersByName, nameResolver.getName(readName(member)), member);
+        }
+        return new MemberTable(membersByName, new ArrayList<Object>(members), registry);
+    }
+
+    private static void add(@NotNull Map<Name, List<Object>> membersByName, @NotNull Name name, @NotNull Object member) {
+        List<Object> members = membersByName.get(name);
+        if (members == null) {
+            members = new ArrayList<Object>(1);
+            membersByName.put(name, members);
+        }
+        members.add(member);
+    }
+
+    private static int readName(@NotNull ByteString member) throws IOException {
+        CodedInputStream input = member.newCodedInput();
+        while (true) {
+            int tag = input.readTag();
+            if (tag == 0) {
+                throw new InvalidProtocolBufferException("No name in a serialized callable");
+            }
+            if (tag >>> TAG_TYPE_BITS == ProtoBuf.Callable.NAME_FIELD_NUMBER) {
+                return input.readInt32();
+            }
+            input.skipField(tag);
+        }
+    }
+
+    @NotNull
+    public Set<Name> getNames() {
+        return membersByName.keySet();
+    }
+
+    /**
+     * Parses the members with the given name on every call
+     */
+    @NotNull
+    public List<ProtoBuf.Callable> getMembers(@NotNull Name name) {
+        List<Object> members = membersByName.get(name);
+        return members == null ? Collections.<ProtoBuf.Callable>emptyList() : parse(members);
+    }
+
+    /**
+     * @return all members in the order they were serialized in
+     */
+    @NotNull
+    public List<ProtoBuf.Callable> getAllMembers() {
+        return parse(allMembers);
+    }
+
+    @NotNull
+    private List<ProtoBuf.Callable> parse(@NotNull List<Object> members) {
+        List<ProtoBuf.Callable> result = new ArrayList<ProtoBuf.Callable>(members.size());
+        for (Object member : members) {
+            if (member instanceof ProtoBuf.Callable) {
+                result.add((ProtoBuf.Callable) member);
+            }
+            else {
+                try {
+                    result.add(ProtoBuf.Callable.parseFrom((ByteString) member, registry));
+                }
+                catch (InvalidProtocolBufferException e) {
+                    throw ExceptionUtils.rethrow(e);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes all members as the values of the given repeated field of the enclosing message
+     */
+    public void writeTo(@NotNull CodedOutputStream output, int memberFieldNumber) throws IOException {
+        for (Object member : allMembers) {
+            if (member instanceof ProtoBuf.Callable) {
+                output.writeMessage(memberFieldNumber, (ProtoBuf.Callable) member);
+            }
+            else {
+                output.writeBytes(memberFieldNumber, (ByteString) member);
+            }
+        }
+    }
+
+    public static final class SplitMessage {
+        @NotNull
+        public final ByteString messageWithoutMembers;
+        @NotNull
+        public final MemberTable members;
+
+        private SplitMessage(@NotNull ByteString messageWithoutMembers, @NotNull MemberTable members) {
+            this.messageWithoutMembers = messageWithoutMembers;
+            this.members = members;
+        }
+    }
+
+    /**
+     * Reads a serialized message (a class or a package), separating the values of its repeated member field from all other fields.
+     * The rest of the message can be parsed as usual, it will have no members.
+     */
+    @NotNull
+    public static SplitMessage readMessageSplittingMembers(
+            @NotNull InputStream in,
+            int memberFieldNumber,
+            @NotNull NameResolver nameResolver,
+            @NotNull ExtensionRegistryLite registry
+    ) {
+        try {
+            CodedInputStream input = CodedInputStream.newInstance(in);
+            ByteString.Output rest = ByteString.newOutput();
+            CodedOutputStream output = CodedOutputStream.newInstance(rest);
+            List<ByteString> members = new ArrayList<ByteString>();
+
+            while (true) {
+                int tag = input.readTag();
+                if (tag == 0) break;
+
+                int wireType = tag & TAG_TYPE_MASK;
+                if (tag >>> TAG_TYPE_BITS == memberFieldNumber) {
+                    // Otherwise the member would be skipped as an unknown field when the rest of the message is parsed
+                    assert wireType == WireFormat.WIRETYPE_LENGTH_DELIMITED : "Member is not a message, wire type: " + wireType;
+                    members.add(input.readBytes());
+                    continue;
+                }
+
+                output.writeRawVarint32(tag);
+                switch (wireType) {
+                    case WireFormat.WIRETYPE_VARINT:
+                        output.writeRawVarint64(input.readRawVarint64());
+                        break;
+                    case WireFormat.WIRETYPE_FIXED64:
+                        output.writeRawLittleEndian64(input.readRawLittleEndian64());
+                        break;
+                    case WireFormat.WIRETYPE_LENGTH_DELIMITED:
+                        output.writeBytesNoTag(input.readBytes());
+                        break;
+                    case WireFormat.WIRETYPE_FIXED32:
+                        output.writeRawLittleEndian32(input.readRawLittleEndian32());
+                        break;
+                    default:
+                        // Groups are not used in descriptors.proto
+                        throw new InvalidProtocolBufferException("Unsupported wire type: " + wireType);
+                }
+            }
+
+            output.flush();
+            return new SplitMessage(rest.toByteString(), createSerialized(members, nameResolver, registry));
+        }
+        catch (IOException e) {
+            throw ExceptionUtils.rethrow(e);
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.descriptors.serialization;
 
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.ExtensionRegistryLite;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.utils.ExceptionUtils;
@@ -23,15 +24,26 @@ import org.jetbrains.jet.utils.ExceptionUtils;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 public final class PackageData {
     @NotNull
     public static PackageData read(@NotNull byte[] bytes, @NotNull ExtensionRegistryLite registry) {
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+        NameResolver nameResolver = NameSerializationUtil.deserializeNameResolver(in);
+        return read(nameResolver, in, registry);
+    }
+
+    /**
+     * Members are not parsed until they are requested from {@link #getMembers()}
+     */
+    @NotNull
+    public static PackageData read(@NotNull NameResolver nameResolver, @NotNull InputStream in, @NotNull ExtensionRegistryLite registry) {
         try {
-            ByteArrayInputStream in = new ByteArrayInputStream(bytes);
-            NameResolver nameResolver = NameSerializationUtil.deserializeNameResolver(in);
-            ProtoBuf.Package packageProto = ProtoBuf.Package.parseFrom(in, registry);
-            return new PackageData(nameResolver, packageProto);
+            MemberTable.SplitMessage message =
+                    MemberTable.readMessageSplittingMembers(in, ProtoBuf.Package.MEMBER_FIELD_NUMBER, nameResolver, registry);
+            ProtoBuf.Package packageProto = ProtoBuf.Package.parseFrom(message.messageWithoutMembers, registry);
+            return new PackageData(nameResolver, packageProto, message.members);
         }
         catch (IOException e) {
             throw ExceptionUtils.rethrow(e);
@@ -42,9 +54,19 @@ public final class PackageData {
 
     private final ProtoBuf.Package packageProto;
 
+    private final MemberTable members;
+
     public PackageData(@NotNull NameResolver nameResolver, @NotNull ProtoBuf.Package packageProto) {
+        this(nameResolver, packageProto.toBuilder().clearMember().build(), MemberTable.create(packageProto.getMemberList(), nameResolver));
+    }
+
+    private PackageData(@NotNull NameResolver nameResolver, @NotNull ProtoBuf.Package packageProtoWithoutMembers, @NotNull MemberTable members) {
+        // Members left in the proto would never be seen by the deserialized scope, which only looks them up in the table
+        assert packageProtoWithoutMembers.getMemberCount() == 0 :
+                packageProtoWithoutMembers.getMemberCount() + " package members are missing from the member table";
         this.nameResolver = nameResolver;
-        this.packageProto = packageProto;
+        this.packageProto = packageProtoWithoutMembers;
+        this.members = members;
     }
 
     @NotNull
@@ -52,17 +74,28 @@ public final class PackageData {
         return nameResolver;
     }
 
+    /**
+     * @return the proto with no members, see {@link #getMembers()}
+     */
     @NotNull
     public ProtoBuf.Package getPackageProto() {
         return packageProto;
     }
 
+    @NotNull
+    public MemberTable getMembers() {
+        return members;
+    }
+
     @NotNull
     public byte[] toBytes() {
         try {
             ByteArrayOutputStream result = new ByteArrayOutputStream();
             NameSerializationUtil.serializeNameResolver(result, nameResolver);
-            packageProto.writeTo(result);
+            CodedOutputStream output = CodedOutputStream.newInstance(result);
+            packageProto.writeTo(output);
+            members.writeTo(output, ProtoBuf.Package.MEMBER_FIELD_NUMBER);
+            output.flush();
             return result.toByteArray();
         }
         catch (IOException e) {
@@ -34,6 +34,7 @@ import org.jetbrains.jet.lang.resolve.scopes.receivers.ReceiverValue;
 import org.jetbrains.jet.lang.types.ErrorUtils;
 import org.jetbrains.jet.lang.types.JetType;
 import org.jetbrains.jet.lang.types.TypeConstructor;
+import org.jetbrains.jet.lang.types.checker.SupertypeClosure;
 import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
 import org.jetbrains.jet.storage.MemoizedFunctionToNullable;
 import org.jetbrains.jet.storage.NotNullLazyValue;
@@ -50,6 +51,7 @@ public class DeserializedClassDescriptor extends AbstractClassDescriptor impleme
 
     private final ClassId classId;
     private final ProtoBuf.Class classProto;
+    private final MemberTable members;
     private final TypeDeserializer typeDeserializer;
     private final DescriptorDeserializer deserializer;
     private final DeserializedMemberScope memberScope;
@@ -83,6 +85,7 @@ public class DeserializedClassDescriptor extends AbstractClassDescriptor impleme
         super(classData.getNameResolver().getClassId(classData.getClassProto().getFqName()).getRelativeClassName().shortName());
         NameResolver nameResolver = classData.getNameResolver();
         this.classProto = classData.getClassProto();
+        this.members = classData.getMembers();
 
         this.classId = nameResolver.getClassId(classProto.getFqName());
         this.descriptorFinder = descriptorFinder;
@@ -327,9 +330,10 @@ public class DeserializedClassDescriptor extends AbstractClassDescriptor impleme
         return "deserialized class " + getName().toString();
     }
 
-    private class DeserializedClassTypeConstructor implements TypeConstructor {
+    private class DeserializedClassTypeConstructor implements TypeConstructor, SupertypeClosure.Holder {
         private final Collection<JetType> supertypes = computeSuperTypes();
         private final List<TypeParameterDescriptor> parameters;
+        private SupertypeClosure supertypeClosure;
 
         public DeserializedClassTypeConstructor(@NotNull List<TypeParameterDescriptor> typeParameters) {
             parameters = typeParameters;
@@ -347,6 +351,22 @@ public class DeserializedClassDescriptor extends AbstractClassDescriptor impleme
             return supertypes;
         }
 
+        @Nullable
+        @Override
+        public SupertypeClosure getSupertypeClosure() {
+            return supertypeClosure;
+        }
+
+        @Override
+        public void setSupertypeClosure(@NotNull SupertypeClosure closure) {
+            supertypeClosure = closure;
+        }
+
+        @Override
+        public boolean areSupertypesComplete() {
+            return true;
+        }
+
         @Override
         public boolean isSealed() {
             return !getModality().isOverridable();
@@ -378,7 +398,7 @@ public class DeserializedClassDescriptor extends AbstractClassDescriptor impleme
         private final DeserializedClassDescriptor classDescriptor;
 
         public DeserializedClassMemberScope(@NotNull StorageManager storageManager, @NotNull DeserializedClassDescriptor classDescriptor) {
-            super(storageManager, classDescriptor, classDescriptor.deserializer, classDescriptor.classProto.getMemberList());
+            super(storageManager, classDescriptor, classDescriptor.deserializer, classDescriptor.members);
             this.classDescriptor = classDescriptor;
         }
 
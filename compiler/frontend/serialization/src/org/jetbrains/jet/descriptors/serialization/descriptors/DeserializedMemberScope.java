@@ -22,6 +22,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.descriptors.serialization.DescriptorDeserializer;
 import org.jetbrains.jet.descriptors.serialization.Flags;
+import org.jetbrains.jet.descriptors.serialization.MemberTable;
 import org.jetbrains.jet.descriptors.serialization.ProtoBuf;
 import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.resolve.name.LabelName;
@@ -53,8 +54,8 @@ public abstract class DeserializedMemberScope implements JetScope {
     private final DeclarationDescriptor containingDeclaration;
     private final DescriptorDeserializer deserializer;
 
-    // Never modified after creation
-    private final Map<Name, List<ProtoBuf.Callable>> membersProtos;
+    private final MemberTable members;
+    private final MemoizedFunctionToNotNull<Name, List<ProtoBuf.Callable>> membersProtos;
 
     private final MemoizedFunctionToNotNull<Name, Collection<FunctionDescriptor>> functions;
     private final MemoizedFunctionToNotNull<Name, Collection<VariableDescriptor>> properties;
@@ -65,12 +66,18 @@ public abstract class DeserializedMemberScope implements JetScope {
             @NotNull StorageManager storageManager,
             @NotNull DeclarationDescriptor containingDeclaration,
             @NotNull DescriptorDeserializer deserializer,
-            @NotNull List<ProtoBuf.Callable> membersList
+            @NotNull MemberTable members
     ) {
         this.containingDeclaration = containingDeclaration;
         this.deserializer = deserializer;
 
-        this.membersProtos = groupByName(membersList);
+        this.members = members;
+        this.membersProtos = storageManager.createMemoizedFunction(new Function1<Name, List<ProtoBuf.Callable>>() {
+            @Override
+            public List<ProtoBuf.Callable> invoke(Name name) {
+                return DeserializedMemberScope.this.members.getMembers(name);
+            }
+        });
         this.functions = storageManager.createMemoizedFunction(new Function1<Name, Collection<FunctionDescriptor>>() {
             @Override
             public Collection<FunctionDescriptor> invoke(Name name) {
@@ -97,32 +104,15 @@ public abstract class DeserializedMemberScope implements JetScope {
         });
     }
 
-    @NotNull
-    private Map<Name, List<ProtoBuf.Callable>> groupByName(@NotNull Collection<ProtoBuf.Callable> membersList) {
-        Map<Name, List<ProtoBuf.Callable>> map = new HashMap<Name, List<ProtoBuf.Callable>>();
-        for (ProtoBuf.Callable memberProto : membersList) {
-            Name name = deserializer.getNameResolver().getName(memberProto.getName());
-            List<ProtoBuf.Callable> protos = map.get(name);
-            if (protos == null) {
-                protos = new ArrayList<ProtoBuf.Callable>(1);
-                map.put(name, protos);
-            }
-            protos.add(memberProto);
-        }
-        return map;
-    }
-
     @NotNull
     private <D extends CallableMemberDescriptor> Collection<D> computeMembersByName(Name name, Filter<ProtoBuf.Callable.CallableKind> callableKind) {
-        List<ProtoBuf.Callable> memberProtos = membersProtos.get(name);
-
-        Collection<D> descriptors = new LinkedHashSet<D>(memberProtos != null ? memberProtos.size() : 0);
-        if (memberProtos != null) {
-            for (ProtoBuf.Callable memberProto : memberProtos) {
-                if (callableKind.accept(Flags.CALLABLE_KIND.get(memberProto.getFlags()))) {
-                    //noinspection unchecked
-                    descriptors.add((D) deserializer.loadCallable(memberProto));
-                }
+        List<ProtoBuf.Callable> memberProtos = membersProtos.invoke(name);
+
+        Collection<D> descriptors = new LinkedHashSet<D>(memberProtos.size());
+        for (ProtoBuf.Callable memberProto : memberProtos) {
+            if (callableKind.accept(Flags.CALLABLE_KIND.get(memberProto.getFlags()))) {
+                //noinspection unchecked
+                descriptors.add((D) deserializer.loadCallable(memberProto));
             }
         }
         return descriptors;
@@ -212,7 +202,7 @@ public abstract class DeserializedMemberScope implements JetScope {
     private Collection<DeclarationDescriptor> computeAllDescriptors() {
         Collection<DeclarationDescriptor> result = new LinkedHashSet<DeclarationDescriptor>(0);
 
-        for (Name name : membersProtos.keySet()) {
+        for (Name name : members.getNames()) {
             result.addAll(getFunctions(name));
             result.addAll(getProperties(name));
         }
@@ -23,27 +23,16 @@ public class DeserializedPackageMemberScope extends DeserializedMemberScope {
             @NotNull NamespaceDescriptor packageDescriptor,
             @NotNull AnnotationDeserializer annotationDeserializer,
             @NotNull DescriptorFinder descriptorFinder,
-            @NotNull ProtoBuf.Package proto,
-            @NotNull NameResolver nameResolver
+            @NotNull PackageData packageData
     ) {
         super(storageManager, packageDescriptor,
-              DescriptorDeserializer.create(storageManager, packageDescriptor, nameResolver, descriptorFinder, annotationDeserializer),
-              proto.getMemberList());
+              DescriptorDeserializer.create(storageManager, packageDescriptor, packageData.getNameResolver(), descriptorFinder,
+                                            annotationDeserializer),
+              packageData.getMembers());
         this.descriptorFinder = descriptorFinder;
         this.packageFqName = DescriptorUtils.getFQName(packageDescriptor).toSafe();
     }
 
-    public DeserializedPackageMemberScope(
-            @NotNull StorageManager storageManager,
-            @NotNull NamespaceDescriptor packageDescriptor,
-            @NotNull AnnotationDeserializer annotationDeserializer,
-            @NotNull DescriptorFinder descriptorFinder,
-            @NotNull PackageData packageData
-    ) {
-        this(storageManager, packageDescriptor, annotationDeserializer, descriptorFinder, packageData.getPackageProto(),
-             packageData.getNameResolver());
-    }
-
     @Nullable
     @Override
     protected ClassifierDescriptor getClassDescriptor(@NotNull Name name) {
@@ -23,10 +23,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.cfg.pseudocode.*;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.TraversalOrder.FORWARD;
 
@@ -71,6 +68,11 @@ public class PseudocodeTraverser {
         return lookInside == LookInsideStrategy.ANALYSE_LOCAL_DECLARATIONS && instruction instanceof LocalDeclarationInstruction;
     }
 
+    /**
+     * Computes the fixed point of the data flow analysis defined by the merge strategy with a worklist:
+     * an instruction is merged again only when data on some of its incoming edges has changed.
+     * Instructions are processed in reverse postorder of the traversal, so that an instruction is usually visited after all its predecessors.
+     */
     public static <D> Map<Instruction, Edges<D>> collectData(
             @NotNull Pseudocode pseudocode, TraversalOrder traversalOrder, LookInsideStrategy lookInside,
             @NotNull D initialDataValue, @NotNull D initialDataValueForEnterInstruction,
@@ -80,12 +82,37 @@ public class PseudocodeTraverser {
         initializeEdgesMap(pseudocode, lookInside, edgesMap, initialDataValue);
         edgesMap.put(getStartInstruction(pseudocode, traversalOrder), Edges.create(initialDataValueForEnterInstruction, initialDataValueForEnterInstruction));
 
-        boolean[] changed = new boolean[1];
-        changed[0] = true;
-        while (changed[0]) {
-            changed[0] = false;
-            collectDataFromSubgraph(pseudocode, traversalOrder, lookInside, edgesMap, instructionDataMergeStrategy,
-                                    Collections.<Instruction>emptyList(), changed, false);
+        DataFlowGraph graph = new DataFlowGraph(pseudocode, traversalOrder, lookInside);
+        int size = graph.instructions.length;
+
+        BitSet pending = new BitSet(size);
+        pending.set(0, size);
+        for (int i = pending.nextSetBit(0); i >= 0; i = pending.nextSetBit(0)) {
+            pending.clear(i);
+            Instruction instruction = graph.instructions[i];
+            Instruction[] inputs = graph.inputs[i];
+
+            Edges<D> newValue;
+            if (graph.isLocalDeclarationResult[i]) {
+                newValue = edgesMap.get(inputs[0]);
+            }
+            else {
+                List<D> incomingEdgesData = Lists.newArrayListWithCapacity(inputs.length);
+                for (Instruction previousInstruction : inputs) {
+                    Edges<D> previousData = edgesMap.get(previousInstruction);
+                    if (previousData != null) {
+                        incomingEdgesData.add(previousData.out);
+                    }
+                }
+                newValue = instructionDataMergeStrategy.execute(instruction, incomingEdgesData);
+            }
+
+            if (!newValue.equals(edgesMap.get(instruction))) {
+                edgesMap.put(instruction, newValue);
+                for (int dependent : graph.dependents[i]) {
+                    pending.set(dependent);
+                }
+            }
         }
         return edgesMap;
     }
@@ -104,61 +131,144 @@ public class PseudocodeTraverser {
         }
     }
 
-    private static <D> void collectDataFromSubgraph(
-            @NotNull Pseudocode pseudocode, TraversalOrder traversalOrder,
-            LookInsideStrategy lookInside,
-            @NotNull Map<Instruction, Edges<D>> edgesMap,
-            @NotNull InstructionDataMergeStrategy<D> instructionDataMergeStrategy,
-            @NotNull Collection<Instruction> previousSubGraphInstructions,
-            boolean[] changed, boolean isLocal) {
-
-        List<Instruction> instructions = getInstructions(pseudocode, traversalOrder);
-        Instruction startInstruction = getStartInstruction(pseudocode, traversalOrder);
-
-        for (Instruction instruction : instructions) {
-            boolean isStart = isStartInstruction(instruction, traversalOrder);
-            if (!isLocal && isStart) continue;
+    /**
+     * Instructions whose data is computed by the analysis, numbered in reverse postorder, along with the instructions
+     * each of them takes data from (its inputs) and the numbers of instructions which take data from it (its dependents).
+     *
+     * The data of a local declaration instruction is the data of the last instruction of its body when looking inside local declarations.
+     * The start instruction of a local declaration's body takes data from the predecessors of the local declaration instruction too.
+     */
+    private static class DataFlowGraph {
+        private final Instruction[] instructions;
+        private final Instruction[][] inputs;
+        private final boolean[] isLocalDeclarationResult;
+        private final int[][] dependents;
+
+        private DataFlowGraph(@NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder, @NotNull LookInsideStrategy lookInside) {
+            Map<Instruction, Collection<Instruction>> inputsMap = Maps.newLinkedHashMap();
+            Set<Instruction> localDeclarationResults = Sets.newHashSet();
+            collectInputs(pseudocode, traversalOrder, lookInside, Collections.<Instruction>emptyList(), false,
+                          inputsMap, localDeclarationResults);
+
+            Map<Instruction, List<Instruction>> dependentsMap = Maps.newHashMap();
+            for (Map.Entry<Instruction, Collection<Instruction>> entry : inputsMap.entrySet()) {
+                for (Instruction input : entry.getValue()) {
+                    List<Instruction> list = dependentsMap.get(input);
+                    if (list == null) {
+                        list = Lists.newArrayList();
+                        dependentsMap.put(input, list);
+                    }
+                    list.add(entry.getKey());
+                }
+            }
 
-            Collection<Instruction> allPreviousInstructions;
-            Collection<Instruction> previousInstructions = getPreviousInstruction(instruction, traversalOrder);
+            List<Instruction> order = reversePostorder(getStartInstruction(pseudocode, traversalOrder), inputsMap.keySet(), dependentsMap);
 
-            if (instruction == startInstruction && !previousSubGraphInstructions.isEmpty()) {
-                allPreviousInstructions = Lists.newArrayList(previousInstructions);
-                allPreviousInstructions.addAll(previousSubGraphInstructions);
-            }
-            else {
-                allPreviousInstructions = previousInstructions;
+            int size = order.size();
+            Map<Instruction, Integer> numbers = Maps.newHashMap();
+            for (int i = 0; i < size; i++) {
+                numbers.put(order.get(i), i);
             }
 
-            if (shouldLookInside(instruction, lookInside)) {
-                Pseudocode subroutinePseudocode = ((LocalDeclarationInstruction) instruction).getBody();
-                collectDataFromSubgraph(subroutinePseudocode, traversalOrder, lookInside, edgesMap, instructionDataMergeStrategy,
-                                        previousInstructions,
-                                        changed, true);
-                Instruction lastInstruction = getLastInstruction(subroutinePseudocode, traversalOrder);
-                Edges<D> previousValue = edgesMap.get(instruction);
-                Edges<D> newValue = edgesMap.get(lastInstruction);
-                if (!previousValue.equals(newValue)) {
-                    changed[0] = true;
-                    edgesMap.put(instruction, newValue);
+            instructions = order.toArray(new Instruction[size]);
+            inputs = new Instruction[size][];
+            isLocalDeclarationResult = new boolean[size];
+            dependents = new int[size][];
+            for (int i = 0; i < size; i++) {
+                Instruction instruction = instructions[i];
+                Collection<Instruction> instructionInputs = inputsMap.get(instruction);
+                inputs[i] = instructionInputs.toArray(new Instruction[instructionInputs.size()]);
+                isLocalDeclarationResult[i] = localDeclarationResults.contains(instruction);
+
+                List<Instruction> instructionDependents = dependentsMap.get(instruction);
+                dependents[i] = new int[instructionDependents == null ? 0 : instructionDependents.size()];
+                for (int j = 0; j < dependents[i].length; j++) {
+                    dependents[i][j] = numbers.get(instructionDependents.get(j));
                 }
-                continue;
             }
-            Edges<D> previousDataValue = edgesMap.get(instruction);
+        }
 
-            Collection<D> incomingEdgesData = Sets.newHashSet();
+        private static void collectInputs(
+                @NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder, @NotNull LookInsideStrategy lookInside,
+                @NotNull Collection<Instruction> previousSubGraphInstructions, boolean isLocal,
+                @NotNull Map<Instruction, Collection<Instruction>> inputsMap, @NotNull Set<Instruction> localDeclarationResults
+        ) {
+            Instruction startInstruction = getStartInstruction(pseudocode, traversalOrder);
+
+            for (Instruction instruction : getInstructions(pseudocode, traversalOrder)) {
+                boolean isStart = isStartInstruction(instruction, traversalOrder);
+                if (!isLocal && isStart) continue;
+
+                Collection<Instruction> previousInstructions = getPreviousInstruction(instruction, traversalOrder);
+
+                if (shouldLookInside(instruction, lookInside)) {
+                    Pseudocode subroutinePseudocode = ((LocalDeclarationInstruction) instruction).getBody();
+                    collectInputs(subroutinePseudocode, traversalOrder, lookInside, previousInstructions, true,
+                                  inputsMap, localDeclarationResults);
+                    inputsMap.put(instruction, Collections.singletonList(getLastInstruction(subroutinePseudocode, traversalOrder)));
+                    localDeclarationResults.add(instruction);
+                    continue;
+                }
 
-            for (Instruction previousInstruction : allPreviousInstructions) {
-                Edges<D> previousData = edgesMap.get(previousInstruction);
-                if (previousData != null) {
-                    incomingEdgesData.add(previousData.out);
+                if (instruction == startInstruction && !previousSubGraphInstructions.isEmpty()) {
+                    Collection<Instruction> allPreviousInstructions = Lists.newArrayList(previousInstructions);
+                    allPreviousInstructions.addAll(previousSubGraphInstructions);
+                    inputsMap.put(instruction, allPreviousInstructions);
+                }
+                else {
+                    inputsMap.put(instruction, previousInstructions);
                 }
             }
-            Edges<D> mergedData = instructionDataMergeStrategy.execute(instruction, incomingEdgesData);
-            if (!mergedData.equals(previousDataValue)) {
-                changed[0] = true;
-                edgesMap.put(instruction, mergedData);
+        }
+
+        @NotNull
+        private static List<Instruction> reversePostorder(
+                @NotNull Instruction startInstruction,
+                @NotNull Collection<Instruction> instructions,
+                @NotNull Map<Instruction, List<Instruction>> dependentsMap
+        ) {
+            List<Instruction> postorder = Lists.newArrayListWithCapacity(instructions.size());
+            Set<Instruction> visited = Sets.newHashSet(startInstruction);
+
+            // Instructions unreachable from the start are appended in the order of traversal
+            List<Instruction> roots = Lists.newArrayList(startInstruction);
+            roots.addAll(instructions);
+
+            // Iterative depth-first search, since pseudocode of a long function may be too deep for recursion
+            Deque<Instruction> stack = new ArrayDeque<Instruction>();
+            Deque<Iterator<Instruction>> iterators = new ArrayDeque<Iterator<Instruction>>();
+            for (Instruction root : roots) {
+                if (root != startInstruction && !visited.add(root)) continue;
+
+                stack.push(root);
+                iterators.push(getDependents(root, dependentsMap).iterator());
+                while (!stack.isEmpty()) {
+                    Iterator<Instruction> iterator = iterators.peek();
+                    if (iterator.hasNext()) {
+                        Instruction next = iterator.next();
+                        if (visited.add(next)) {
+                            stack.push(next);
+                            iterators.push(getDependents(next, dependentsMap).iterator());
+                        }
+                    }
+                    else {
+                        iterators.pop();
+                        Instruction instruction = stack.pop();
+                        if (instruction != startInstruction) {
+                            postorder.add(instruction);
+                        }
+                    }
+                }
             }
+
+            Collections.reverse(postorder);
+            return postorder;
+        }
+
+        @NotNull
+        private static List<Instruction> getDependents(@NotNull Instruction instruction, @NotNull Map<Instruction, List<Instruction>> dependentsMap) {
+            List<Instruction> dependents = dependentsMap.get(instruction);
+            return dependents != null ? dependents : Collections.<Instruction>emptyList();
         }
     }
 
@@ -47,6 +47,12 @@ public class PseudocodeVariablesData {
 
     private Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> variableInitializers;
 
+    // All the data flow values are VariableStatesMaps of these domains, see mergeIncomingEdgesDataForInitializers() and getVariableUseStatusData()
+    private final VariableStatesMap.Domain<VariableInitState> initStatesDomain = new VariableStatesMap.Domain<VariableInitState>(
+            VariableInitState.VS_FF, VariableInitState.VS_FT, VariableInitState.VS_TF, VariableInitState.VS_TT);
+    private final VariableStatesMap.Domain<VariableUseState> useStatesDomain = new VariableStatesMap.Domain<VariableUseState>(
+            VariableUseState.UNUSED, VariableUseState.ONLY_WRITTEN_NEVER_READ, VariableUseState.LAST_WRITTEN, VariableUseState.LAST_READ);
+
     public PseudocodeVariablesData(@NotNull Pseudocode pseudocode, @NotNull BindingContext bindingContext) {
         this.pseudocode = pseudocode;
         this.bindingContext = bindingContext;
@@ -135,7 +141,7 @@ public class PseudocodeVariablesData {
 
         Set<VariableDescriptor> usedVariables = getUsedVariables(pseudocode);
         Set<VariableDescriptor> declaredVariables = getDeclaredVariables(pseudocode, false);
-        Map<VariableDescriptor, VariableInitState> initialMap = Collections.emptyMap();
+        Map<VariableDescriptor, VariableInitState> initialMap = initStatesDomain.empty();
         Map<VariableDescriptor, VariableInitState> initialMapForStartInstruction = prepareInitializersMapForStartInstruction(
                 usedVariables, declaredVariables);
 
@@ -146,10 +152,10 @@ public class PseudocodeVariablesData {
             public Edges<Map<VariableDescriptor, VariableInitState>> execute(
                     @NotNull Instruction instruction, @NotNull Collection<Map<VariableDescriptor, VariableInitState>> incomingEdgesData) {
 
-                Map<VariableDescriptor, VariableInitState> enterInstructionData = mergeIncomingEdgesDataForInitializers(incomingEdgesData);
+                VariableStatesMap<VariableInitState> enterInstructionData = mergeIncomingEdgesDataForInitializers(incomingEdgesData);
                 Map<VariableDescriptor, VariableInitState> exitInstructionData =
                         addVariableInitStateFromCurrentInstructionIfAny(instruction, enterInstructionData);
-                return Edges.create(enterInstructionData, exitInstructionData);
+                return Edges.<Map<VariableDescriptor, VariableInitState>>create(enterInstructionData, exitInstructionData);
             }
         });
 
@@ -170,57 +176,49 @@ public class PseudocodeVariablesData {
     }
 
     @NotNull
-    private static Map<VariableDescriptor, VariableInitState> prepareInitializersMapForStartInstruction(
+    private Map<VariableDescriptor, VariableInitState> prepareInitializersMapForStartInstruction(
             @NotNull Collection<VariableDescriptor> usedVariables,
             @NotNull Collection<VariableDescriptor> declaredVariables) {
 
-        Map<VariableDescriptor, VariableInitState> initialMapForStartInstruction = Maps.newHashMap();
+        VariableStatesMap<VariableInitState> initialMapForStartInstruction = initStatesDomain.empty();
         VariableInitState initializedForExternalVariable = VariableInitState.create(true);
         VariableInitState notInitializedForDeclaredVariable = VariableInitState.create(false);
 
         for (VariableDescriptor variable : usedVariables) {
             if (declaredVariables.contains(variable)) {
-                initialMapForStartInstruction.put(variable, notInitializedForDeclaredVariable);
+                initialMapForStartInstruction = initialMapForStartInstruction.with(variable, notInitializedForDeclaredVariable);
             }
             else {
-                initialMapForStartInstruction.put(variable, initializedForExternalVariable);
+                initialMapForStartInstruction = initialMapForStartInstruction.with(variable, initializedForExternalVariable);
             }
         }
         return initialMapForStartInstruction;
     }
 
+    // The codes of init states are (isInitialized ? 2 : 0) + (isDeclared ? 1 : 0) + 1, so that merging is a bitwise 'and'
     @NotNull
-    private static Map<VariableDescriptor, VariableInitState> mergeIncomingEdgesDataForInitializers(
+    private VariableStatesMap<VariableInitState> mergeIncomingEdgesDataForInitializers(
             @NotNull Collection<Map<VariableDescriptor, VariableInitState>> incomingEdgesData) {
 
-        Set<VariableDescriptor> variablesInScope = Sets.newHashSet();
-        for (Map<VariableDescriptor, VariableInitState> edgeData : incomingEdgesData) {
-            variablesInScope.addAll(edgeData.keySet());
-        }
-
-        Map<VariableDescriptor, VariableInitState> enterInstructionData = Maps.newHashMap();
-        for (VariableDescriptor variable : variablesInScope) {
-            boolean isInitialized = true;
-            boolean isDeclared = true;
+        VariableStatesMap.Builder<VariableInitState> builder = new VariableStatesMap.Builder<VariableInitState>(initStatesDomain);
+        for (int index = 0; index < initStatesDomain.getVariableCount(); index++) {
+            int merged = -1;
             for (Map<VariableDescriptor, VariableInitState> edgeData : incomingEdgesData) {
-                VariableInitState initState = edgeData.get(variable);
-                if (initState != null) {
-                    if (!initState.isInitialized) {
-                        isInitialized = false;
-                    }
-                    if (!initState.isDeclared) {
-                        isDeclared = false;
-                    }
+                int code = ((VariableStatesMap<VariableInitState>) edgeData).getCode(index);
+                if (code != 0) {
+                    merged &= code - 1;
                 }
             }
-            enterInstructionData.put(variable, VariableInitState.create(isInitialized, isDeclared));
+            if (merged != -1) {
+                builder.setCode(index, merged + 1);
+            }
         }
-        return enterInstructionData;
+        return builder.build();
     }
 
     @NotNull
     private Map<VariableDescriptor, VariableInitState> addVariableInitStateFromCurrentInstructionIfAny(
-            @NotNull Instruction instruction, @NotNull Map<VariableDescriptor, VariableInitState> enterInstructionData) {
+            @NotNull Instruction instruction, @NotNull VariableStatesMap<VariableInitState> enterInstructionData) {
 
         if (!(instruction instanceof WriteValueInstruction) && !(instruction instanceof VariableDeclarationInstruction)) {
             return enterInstructionData;
@@ -229,19 +227,19 @@ public class PseudocodeVariablesData {
         if (variable == null) {
             return enterInstructionData;
         }
-        Map<VariableDescriptor, VariableInitState> exitInstructionData = Maps.newHashMap(enterInstructionData);
+        VariableStatesMap<VariableInitState> exitInstructionData = enterInstructionData;
         if (instruction instanceof WriteValueInstruction) {
             VariableInitState enterInitState = enterInstructionData.get(variable);
             VariableInitState initializationAtThisElement =
                     VariableInitState.create(((WriteValueInstruction) instruction).getElement() instanceof JetProperty, enterInitState);
-            exitInstructionData.put(variable, initializationAtThisElement);
+            exitInstructionData = exitInstructionData.with(variable, initializationAtThisElement);
         }
         else { // instruction instanceof VariableDeclarationInstruction
             VariableInitState enterInitState = enterInstructionData.get(variable);
             if (enterInitState == null || !enterInitState.isInitialized || !enterInitState.isDeclared) {
                 boolean isInitialized = enterInitState != null && enterInitState.isInitialized;
                 VariableInitState variableDeclarationInfo = VariableInitState.create(isInitialized, true);
-                exitInstructionData.put(variable, variableDeclarationInfo);
+                exitInstructionData = exitInstructionData.with(variable, variableDeclarationInfo);
             }
         }
         return exitInstructionData;
@@ -251,9 +249,9 @@ public class PseudocodeVariablesData {
 
     @NotNull
     public Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> getVariableUseStatusData() {
-        Map<VariableDescriptor, VariableUseState> sinkInstructionData = Maps.newHashMap();
+        VariableStatesMap<VariableUseState> sinkInstructionData = useStatesDomain.empty();
         for (VariableDescriptor usedVariable : getUsedVariables(pseudocode)) {
-            sinkInstructionData.put(usedVariable, VariableUseState.UNUSED);
+            sinkInstructionData = sinkInstructionData.with(usedVariable, VariableUseState.UNUSED);
         }
         InstructionDataMergeStrategy<Map<VariableDescriptor, VariableUseState>> collectVariableUseStatusStrategy =
                 new InstructionDataMergeStrategy<Map<VariableDescriptor, VariableUseState>>() {
@@ -263,23 +261,26 @@ public class PseudocodeVariablesData {
                             @NotNull Collection<Map<VariableDescriptor, VariableUseState>> incomingEdgesData
                     ) {
 
-                        Map<VariableDescriptor, VariableUseState> enterResult = Maps.newHashMap();
-                        for (Map<VariableDescriptor, VariableUseState> edgeData : incomingEdgesData) {
-                            for (Map.Entry<VariableDescriptor, VariableUseState> entry : edgeData.entrySet()) {
-                                VariableDescriptor variableDescriptor = entry.getKey();
-                                VariableUseState variableUseState = entry.getValue();
-                                enterResult.put(variableDescriptor, variableUseState.merge(enterResult.get(variableDescriptor)));
+                        // The codes of use states grow with their importance, so that merging takes the maximum
+                        VariableStatesMap.Builder<VariableUseState> builder = new VariableStatesMap.Builder<VariableUseState>(useStatesDomain);
+                        for (int index = 0; index < useStatesDomain.getVariableCount(); index++) {
+                            int merged = 0;
+                            for (Map<VariableDescriptor, VariableUseState> edgeData : incomingEdgesData) {
+                                merged = Math.max(merged, ((VariableStatesMap<VariableUseState>) edgeData).getCode(index));
                             }
+                            builder.setCode(index, merged);
                         }
+                        VariableStatesMap<VariableUseState> enterResult = builder.build();
+
                         VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, true,
                                                                                                               bindingContext);
                         if (variableDescriptor == null ||
                             (!(instruction instanceof ReadValueInstruction) && !(instruction instanceof WriteValueInstruction))) {
-                            return Edges.create(enterResult, enterResult);
+                            return Edges.<Map<VariableDescriptor, VariableUseState>>create(enterResult, enterResult);
                         }
-                        Map<VariableDescriptor, VariableUseState> exitResult = Maps.newHashMap(enterResult);
+                        VariableStatesMap<VariableUseState> exitResult;
                         if (instruction instanceof ReadValueInstruction) {
-                            exitResult.put(variableDescriptor, VariableUseState.LAST_READ);
+                            exitResult = enterResult.with(variableDescriptor, VariableUseState.LAST_READ);
                         }
                         else { //instruction instanceof WriteValueInstruction
                             VariableUseState variableUseState = enterResult.get(variableDescriptor);
@@ -289,21 +290,19 @@ public class PseudocodeVariablesData {
                             switch (variableUseState) {
                                 case UNUSED:
                                 case ONLY_WRITTEN_NEVER_READ:
-                                    exitResult.put(variableDescriptor, VariableUseState.ONLY_WRITTEN_NEVER_READ);
+                                    exitResult = enterResult.with(variableDescriptor, VariableUseState.ONLY_WRITTEN_NEVER_READ);
                                     break;
-                                case LAST_WRITTEN:
-                                case LAST_READ:
-                                    exitResult.put(variableDescriptor, VariableUseState.LAST_WRITTEN);
+                                default: // LAST_WRITTEN, LAST_READ
+                                    exitResult = enterResult.with(variableDescriptor, VariableUseState.LAST_WRITTEN);
                             }
                         }
-                        return Edges.create(enterResult, exitResult);
+                        return Edges.<Map<VariableDescriptor, VariableUseState>>create(enterResult, exitResult);
                     }
                 };
-        return PseudocodeTraverser.collectData(pseudocode, BACKWARD, ANALYSE_LOCAL_DECLARATIONS,
-                                               Collections.<VariableDescriptor, VariableUseState>emptyMap(),
-                                               sinkInstructionData, collectVariableUseStatusStrategy);
+        return PseudocodeTraverser.<Map<VariableDescriptor, VariableUseState>>collectData(
+                pseudocode, BACKWARD, ANALYSE_LOCAL_DECLARATIONS,
+                useStatesDomain.empty(), sinkInstructionData, collectVariableUseStatusStrategy);
     }
-
     public static class VariableInitState {
         public final boolean isInitialized;
         public final boolean isDeclared;
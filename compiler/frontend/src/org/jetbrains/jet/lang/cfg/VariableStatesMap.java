@@ -0,0 +1,224 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.cfg;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.descriptors.VariableDescriptor;
+
+import java.util.*;
+
+/**
+ * An immutable map from variables to one of a few states, stored as a bit set.
+ *
+ * Variables are numbered by a {@link Domain} shared by all the maps of one analysis. The state of a variable is stored in
+ * {@link #BITS_PER_VARIABLE} bits as its code: zero if the variable is absent from the map, i + 1 for the i-th state of the domain.
+ */
+final class VariableStatesMap<S> extends AbstractMap<VariableDescriptor, S> {
+    private static final int BITS_PER_VARIABLE = 3;
+    private static final int VARIABLES_PER_WORD = Long.SIZE / BITS_PER_VARIABLE;
+    private static final long CODE_MASK = (1L << BITS_PER_VARIABLE) - 1;
+
+    public static final class Domain<S> {
+        private final S[] states;
+        private final List<VariableDescriptor> variables = new ArrayList<VariableDescriptor>();
+        private final Map<VariableDescriptor, Integer> indices = new HashMap<VariableDescriptor, Integer>();
+        private final VariableStatesMap<S> empty = new VariableStatesMap<S>(this, new long[0]);
+
+        public Domain(@NotNull S... states) {
+            assert states.length <= CODE_MASK : "Too many states: " + states.length;
+            this.states = states;
+        }
+
+        public int getIndex(@NotNull VariableDescriptor variable) {
+            Integer index = indices.get(variable);
+            if (index == null) {
+                index = variables.size();
+                variables.add(variable);
+                indices.put(variable, index);
+            }
+            return index;
+        }
+
+        private int findIndex(@NotNull VariableDescriptor variable) {
+            Integer index = indices.get(variable);
+            return index == null ? -1 : index;
+        }
+
+        public int getVariableCount() {
+            return variables.size();
+        }
+
+        public int encode(@NotNull S state) {
+            for (int i = 0; i < states.length; i++) {
+                if (states[i] == state) return i + 1;
+            }
+            throw new IllegalArgumentException("Unknown state: " + state);
+        }
+
+        @Nullable
+        public S decode(int code) {
+            return code == 0 ? null : states[code - 1];
+        }
+
+        @NotNull
+        public VariableStatesMap<S> empty() {
+            return empty;
+        }
+    }
+
+    public static final class Builder<S> {
+        private final Domain<S> domain;
+        private long[] words;
+
+        public Builder(@NotNull Domain<S> domain) {
+            this.domain = domain;
+            this.words = new long[wordCount(domain.getVariableCount())];
+        }
+
+        @NotNull
+        public Builder<S> setCode(int index, int code) {
+            int wordIndex = index / VARIABLES_PER_WORD;
+            if (wordIndex >= words.length) {
+                words = Arrays.copyOf(words, wordIndex + 1);
+            }
+            int shift = (index % VARIABLES_PER_WORD) * BITS_PER_VARIABLE;
+            words[wordIndex] = (words[wordIndex] & ~(CODE_MASK << shift)) | ((long) code << shift);
+            return this;
+        }
+
+        @NotNull
+        public VariableStatesMap<S> build() {
+            return new VariableStatesMap<S>(domain, words);
+        }
+    }
+
+    private final Domain<S> domain;
+    private final long[] words;
+
+    private VariableStatesMap(@NotNull Domain<S> domain, @NotNull long[] words) {
+        this.domain = domain;
+        this.words = words;
+    }
+
+    private static int wordCount(int variableCount) {
+        return (variableCount + VARIABLES_PER_WORD - 1) / VARIABLES_PER_WORD;
+    }
+
+    public int getCode(int index) {
+        int wordIndex = index / VARIABLES_PER_WORD;
+        if (wordIndex >= words.length) return 0;
+        return (int) ((words[wordIndex] >>> ((index % VARIABLES_PER_WORD) * BITS_PER_VARIABLE)) & CODE_MASK);
+    }
+
+    /**
+     * @return a map which differs from this one in the state of the given variable only
+     */
+    @NotNull
+    public VariableStatesMap<S> with(@NotNull VariableDescriptor variable, @NotNull S state) {
+        int index = domain.getIndex(variable);
+        int code = domain.encode(state);
+        if (getCode(index) == code) return this;
+
+        Builder<S> builder = new Builder<S>(domain);
+        System.arraycopy(words, 0, builder.words, 0, words.length);
+        return builder.setCode(index, code).build();
+    }
+
+    @Override
+    public S get(Object key) {
+        if (!(key instanceof VariableDescriptor)) return null;
+        int index = domain.findIndex((VariableDescriptor) key);
+        return index < 0 ? null : domain.decode(getCode(index));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @NotNull
+    @Override
+    public Set<Entry<VariableDescriptor, S>> entrySet() {
+        return new AbstractSet<Entry<VariableDescriptor, S>>() {
+            @NotNull
+            @Override
+            public Iterator<Entry<VariableDescriptor, S>> iterator() {
+                return new Iterator<Entry<VariableDescriptor, S>>() {
+                    private int next = findNext(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next >= 0;
+                    }
+
+                    @Override
+                    public Entry<VariableDescriptor, S> next() {
+                        if (next < 0) throw new NoSuchElementException();
+                        Entry<VariableDescriptor, S> entry =
+                                new SimpleImmutableEntry<VariableDescriptor, S>(domain.variables.get(next), domain.decode(getCode(next)));
+                        next = findNext(next + 1);
+                        return entry;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int result = 0;
+                for (int i = findNext(0); i >= 0; i = findNext(i + 1)) {
+                    result++;
+                }
+                return result;
+            }
+        };
+    }
+
+    private int findNext(int from) {
+        int limit = Math.min(domain.getVariableCount(), words.length * VARIABLES_PER_WORD);
+        for (int i = from; i < limit; i++) {
+            if (getCode(i) != 0) return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o instanceof VariableStatesMap && ((VariableStatesMap) o).domain == domain) {
+            long[] otherWords = ((VariableStatesMap) o).words;
+            int length = Math.max(words.length, otherWords.length);
+            for (int i = 0; i < length; i++) {
+                long word = i < words.length ? words[i] : 0;
+                long otherWord = i < otherWords.length ? otherWords[i] : 0;
+                if (word != otherWord) return false;
+            }
+            return true;
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
@@ -22,6 +22,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.TestOnly;
 import org.jetbrains.jet.lang.diagnostics.Diagnostic;
 import org.jetbrains.jet.util.slicedmap.*;
+import org.jetbrains.jet.utils.PerformanceReport;
 
 import java.util.Collection;
 import java.util.List;
@@ -96,6 +97,8 @@ public class BindingTraceContext implements BindingTrace {
     @Override
     public <K, V> void record(WritableSlice<K, V> slice, K key, V value) {
         map.put(slice, key, value);
+        // Counted here rather than in temporary traces, so that records which are committed are counted once
+        PerformanceReport.count(PerformanceReport.BINDING_TRACE_RECORDS, 1);
     }
 
     @Override
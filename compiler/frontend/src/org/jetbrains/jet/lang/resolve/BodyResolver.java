@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.lang.resolve;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.intellij.psi.PsiElement;
@@ -49,9 +50,16 @@ import org.jetbrains.jet.lexer.JetTokens;
 import org.jetbrains.jet.util.Box;
 import org.jetbrains.jet.util.slicedmap.WritableSlice;
 import org.jetbrains.jet.util.ReenteringLazyValueComputationException;
+import org.jetbrains.jet.utils.ExceptionUtils;
+import org.jetbrains.jet.utils.PerformanceReport;
 
 import javax.inject.Inject;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.jetbrains.jet.lang.descriptors.ReceiverParameterDescriptor.NO_RECEIVER_PARAMETER;
 import static org.jetbrains.jet.lang.diagnostics.Errors.*;
@@ -153,9 +161,22 @@ public class BodyResolver {
     }
 
     public void resolveBodies() {
-        resolveBehaviorDeclarationBodies(context);
-        controlFlowAnalyzer.process(context);
-        declarationsChecker.process(context);
+        PerformanceReport.Section section = PerformanceReport.begin(PerformanceReport.BODY_RESOLVER);
+        try {
+            resolveBehaviorDeclarationBodies(context);
+        }
+        finally {
+            section.end();
+        }
+
+        section = PerformanceReport.begin(PerformanceReport.CONTROL_FLOW_ANALYSIS);
+        try {
+            controlFlowAnalyzer.process(context);
+            declarationsChecker.process(context);
+        }
+        finally {
+            section.end();
+        }
     }
 
     private void resolveDelegationSpecifierLists() {
@@ -398,97 +419,105 @@ public class BodyResolver {
     }
 
     private void resolvePropertyDeclarationBodies() {
+        List<DeclarationBodyTask> tasks = Lists.newArrayList();
 
         // Member properties
         Set<JetProperty> processed = Sets.newHashSet();
         for (Map.Entry<JetClass, MutableClassDescriptor> entry : context.getClasses().entrySet()) {
             JetClass jetClass = entry.getKey();
             if (!context.completeAnalysisNeeded(jetClass)) continue;
-            MutableClassDescriptor classDescriptor = entry.getValue();
+            final MutableClassDescriptor classDescriptor = entry.getValue();
 
-            for (JetProperty property : jetClass.getProperties()) {
-                PropertyDescriptor propertyDescriptor = this.context.getProperties().get(property);
+            for (final JetProperty property : jetClass.getProperties()) {
+                final PropertyDescriptor propertyDescriptor = this.context.getProperties().get(property);
                 assert propertyDescriptor != null;
 
-                computeDeferredType(propertyDescriptor.getReturnType());
-
-                JetExpression initializer = property.getInitializer();
-                JetScope propertyScope = getScopeForProperty(property);
-                if (initializer != null) {
-                    ConstructorDescriptor primaryConstructor = classDescriptor.getUnsubstitutedPrimaryConstructor();
-                    if (primaryConstructor != null) {
-                        resolvePropertyInitializer(property, propertyDescriptor, initializer, propertyScope);
+                tasks.add(new DeclarationBodyTask(propertyDescriptor.getReturnType()) {
+                    @Override
+                    protected void resolve(@NotNull BindingTrace trace) {
+                        resolvePropertyBody(trace, property, propertyDescriptor, classDescriptor);
                     }
-                }
-
-                JetExpression delegateExpression = property.getDelegateExpression();
-                if (delegateExpression != null) {
-                    assert initializer == null : "Initializer should be null for delegated property : " + property.getText();
-                    resolvePropertyDelegate(property, propertyDescriptor, delegateExpression, classDescriptor.getScopeForMemberResolution(), propertyScope);
-                }
-
-                resolveAnnotationArguments(propertyScope, property);
-
-                resolvePropertyAccessors(property, propertyDescriptor);
+                });
                 processed.add(property);
             }
         }
 
         // Top-level properties & properties of objects
         for (Map.Entry<JetProperty, PropertyDescriptor> entry : this.context.getProperties().entrySet()) {
-            JetProperty property = entry.getKey();
+            final JetProperty property = entry.getKey();
             if (!context.completeAnalysisNeeded(property)) continue;
             if (processed.contains(property)) continue;
 
-            PropertyDescriptor propertyDescriptor = entry.getValue();
+            final PropertyDescriptor propertyDescriptor = entry.getValue();
+
+            tasks.add(new DeclarationBodyTask(propertyDescriptor.getReturnType()) {
+                @Override
+                protected void resolve(@NotNull BindingTrace trace) {
+                    resolvePropertyBody(trace, property, propertyDescriptor, null);
+                }
+            });
+        }
 
-            computeDeferredType(propertyDescriptor.getReturnType());
+        resolveDeclarationBodies(tasks);
+    }
 
-            JetExpression initializer = property.getInitializer();
-            JetScope propertyScope = getScopeForProperty(property);
-            if (initializer != null) {
-                resolvePropertyInitializer(property, propertyDescriptor, initializer, propertyScope);
+    private void resolvePropertyBody(
+            @NotNull BindingTrace trace,
+            @NotNull JetProperty property,
+            @NotNull PropertyDescriptor propertyDescriptor,
+            @Nullable MutableClassDescriptor classDescriptor
+    ) {
+        JetExpression initializer = property.getInitializer();
+        JetScope propertyScope = getScopeForProperty(property);
+        if (initializer != null) {
+            if (classDescriptor == null || classDescriptor.getUnsubstitutedPrimaryConstructor() != null) {
+                resolvePropertyInitializer(trace, property, propertyDescriptor, initializer, propertyScope);
             }
+        }
 
-            JetExpression delegateExpression = property.getDelegateExpression();
-            if (delegateExpression != null) {
-                assert initializer == null : "Initializer should be null for delegated property : " + property.getText();
-                resolvePropertyDelegate(property, propertyDescriptor, delegateExpression, propertyScope, propertyScope);
-            }
+        JetExpression delegateExpression = property.getDelegateExpression();
+        if (delegateExpression != null) {
+            assert initializer == null : "Initializer should be null for delegated property : " + property.getText();
+            JetScope parentScopeForAccessor = classDescriptor != null ? classDescriptor.getScopeForMemberResolution() : propertyScope;
+            resolvePropertyDelegate(trace, property, propertyDescriptor, delegateExpression, parentScopeForAccessor, propertyScope);
+        }
 
-            resolveAnnotationArguments(propertyScope, property);
+        resolveAnnotationArguments(trace, propertyScope, property);
 
-            resolvePropertyAccessors(property, propertyDescriptor);
-        }
+        resolvePropertyAccessors(trace, property, propertyDescriptor);
     }
 
-    private JetScope makeScopeForPropertyAccessor(@NotNull JetPropertyAccessor accessor, @NotNull PropertyDescriptor descriptor) {
+    private JetScope makeScopeForPropertyAccessor(
+            @NotNull BindingTrace trace,
+            @NotNull JetPropertyAccessor accessor,
+            @NotNull PropertyDescriptor descriptor
+    ) {
         JetScope accessorDeclaringScope = context.getDeclaringScopes().apply(accessor);
         assert accessorDeclaringScope != null : "Scope for accessor " + accessor.getText() + " should exists";
         return JetScopeUtils.makeScopeForPropertyAccessor(descriptor, accessorDeclaringScope, descriptorResolver, trace);
     }
 
-    public void resolvePropertyAccessors(JetProperty property, PropertyDescriptor propertyDescriptor) {
-        ObservableBindingTrace fieldAccessTrackingTrace = createFieldTrackingTrace(propertyDescriptor);
+    public void resolvePropertyAccessors(@NotNull BindingTrace trace, JetProperty property, PropertyDescriptor propertyDescriptor) {
+        ObservableBindingTrace fieldAccessTrackingTrace = createFieldTrackingTrace(trace, propertyDescriptor);
 
         JetPropertyAccessor getter = property.getGetter();
         PropertyGetterDescriptor getterDescriptor = propertyDescriptor.getGetter();
         if (getter != null && getterDescriptor != null) {
-            JetScope accessorScope = makeScopeForPropertyAccessor(getter, propertyDescriptor);
-            resolveAnnotationArguments(accessorScope, getter);
+            JetScope accessorScope = makeScopeForPropertyAccessor(trace, getter, propertyDescriptor);
+            resolveAnnotationArguments(trace, accessorScope, getter);
             resolveFunctionBody(fieldAccessTrackingTrace, getter, getterDescriptor, accessorScope);
         }
 
         JetPropertyAccessor setter = property.getSetter();
         PropertySetterDescriptor setterDescriptor = propertyDescriptor.getSetter();
         if (setter != null && setterDescriptor != null) {
-            JetScope accessorScope = makeScopeForPropertyAccessor(setter, propertyDescriptor);
-            resolveAnnotationArguments(accessorScope, setter);
+            JetScope accessorScope = makeScopeForPropertyAccessor(trace, setter, propertyDescriptor);
+            resolveAnnotationArguments(trace, accessorScope, setter);
             resolveFunctionBody(fieldAccessTrackingTrace, setter, setterDescriptor, accessorScope);
         }
     }
 
-    private ObservableBindingTrace createFieldTrackingTrace(final PropertyDescriptor propertyDescriptor) {
+    private static ObservableBindingTrace createFieldTrackingTrace(final BindingTrace trace, final PropertyDescriptor propertyDescriptor) {
         return new ObservableBindingTrace(trace).addHandler(BindingContext.REFERENCE_TARGET, new ObservableBindingTrace.RecordHandler<JetReferenceExpression, DeclarationDescriptor>() {
             @Override
             public void handleRecord(WritableSlice<JetReferenceExpression, DeclarationDescriptor> slice, JetReferenceExpression expression, DeclarationDescriptor descriptor) {
@@ -506,6 +535,7 @@ public class BodyResolver {
     }
 
     public void resolvePropertyDelegate(
+            @NotNull BindingTrace trace,
             @NotNull JetProperty jetProperty,
             @NotNull PropertyDescriptor propertyDescriptor,
             @NotNull JetExpression delegateExpression,
@@ -530,7 +560,7 @@ public class BodyResolver {
 
         JetExpression calleeExpression = JetPsiUtil.getCalleeExpressionIfAny(delegateExpression);
         ConstraintSystemCompleter completer =
-                createConstraintSystemCompleter(jetProperty, propertyDescriptor, delegateExpression, accessorScope);
+                createConstraintSystemCompleter(trace, jetProperty, propertyDescriptor, delegateExpression, accessorScope);
         if (calleeExpression != null) {
             traceToResolveDelegatedProperty.record(CONSTRAINT_SYSTEM_COMPLETER, calleeExpression, completer);
         }
@@ -553,6 +583,7 @@ public class BodyResolver {
     }
 
     private ConstraintSystemCompleter createConstraintSystemCompleter(
+            final BindingTrace trace,
             JetProperty property,
             final PropertyDescriptor propertyDescriptor,
             final JetExpression delegateExpression,
@@ -624,6 +655,7 @@ public class BodyResolver {
     }
 
     public void resolvePropertyInitializer(
+            @NotNull BindingTrace trace,
             @NotNull JetProperty property,
             @NotNull PropertyDescriptor propertyDescriptor,
             @NotNull JetExpression initializer,
@@ -649,20 +681,95 @@ public class BodyResolver {
     }
 
     private void resolveFunctionBodies() {
+        List<DeclarationBodyTask> tasks = Lists.newArrayList();
         for (Map.Entry<JetNamedFunction, SimpleFunctionDescriptor> entry : this.context.getFunctions().entrySet()) {
-            JetNamedFunction declaration = entry.getKey();
-            SimpleFunctionDescriptor descriptor = entry.getValue();
+            final JetNamedFunction declaration = entry.getKey();
+            final SimpleFunctionDescriptor descriptor = entry.getValue();
+
+            tasks.add(new DeclarationBodyTask(descriptor.getReturnType()) {
+                @Override
+                protected void resolve(@NotNull BindingTrace trace) {
+                    JetScope declaringScope = context.getDeclaringScopes().apply(declaration);
+                    assert declaringScope != null;
+
+                    resolveAnnotationArguments(trace, declaringScope, declaration);
+                    resolveFunctionBody(trace, declaration, descriptor, declaringScope);
+
+                    assert descriptor.getReturnType() != null;
+                }
+            });
+        }
+
+        resolveDeclarationBodies(tasks);
+    }
+
+    /**
+     * Resolves the bodies on the current thread, or concurrently if more than one thread is given in {@link TopDownAnalysisParameters}.
+     * In the latter case each body is resolved to a trace of its own, and the traces are committed in the order of the tasks
+     * when all of them are done, so that the results don't depend on the scheduling
+     */
+    private void resolveDeclarationBodies(@NotNull List<DeclarationBodyTask> tasks) {
+        int threads = topDownAnalysisParameters.getBodyResolveThreads();
+        if (threads == 1 || tasks.size() < 2) {
+            for (DeclarationBodyTask task : tasks) {
+                computeDeferredType(task.declaredType);
+                task.resolve(trace);
+            }
+            return;
+        }
+
+        // Types may be inferred from bodies of other declarations, so they are computed before the bodies are resolved concurrently
+        for (DeclarationBodyTask task : tasks) {
+            computeDeferredType(task.declaredType);
+        }
 
-            computeDeferredType(descriptor.getReturnType());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+        try {
+            List<Future<TemporaryBindingTrace>> futures = new ArrayList<Future<TemporaryBindingTrace>>(tasks.size());
+            for (final DeclarationBodyTask task : tasks) {
+                futures.add(executor.submit(new Callable<TemporaryBindingTrace>() {
+                    @Override
+                    public TemporaryBindingTrace call() {
+                        TemporaryBindingTrace bodyTrace = TemporaryBindingTrace.create(trace, "Trace to resolve a declaration body");
+                        task.resolve(bodyTrace);
+                        return bodyTrace;
+                    }
+                }));
+            }
 
-            JetScope declaringScope = this.context.getDeclaringScopes().apply(declaration);
-            assert declaringScope != null;
+            List<TemporaryBindingTrace> traces = new ArrayList<TemporaryBindingTrace>(tasks.size());
+            for (Future<TemporaryBindingTrace> future : futures) {
+                try {
+                    traces.add(future.get());
+                }
+                catch (InterruptedException e) {
+                    throw ExceptionUtils.rethrow(e);
+                }
+                catch (ExecutionException e) {
+                    throw ExceptionUtils.rethrow(e.getCause());
+                }
+            }
 
-            resolveAnnotationArguments(declaringScope, declaration);
-            resolveFunctionBody(trace, declaration, descriptor, declaringScope);
+            for (TemporaryBindingTrace bodyTrace : traces) {
+                bodyTrace.commit();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private abstract static class DeclarationBodyTask {
+        // Must be computed before the body is resolved, see computeDeferredType()
+        @Nullable
+        private final JetType declaredType;
 
-            assert descriptor.getReturnType() != null;
+        protected DeclarationBodyTask(@Nullable JetType declaredType) {
+            this.declaredType = declaredType;
         }
+
+        // Records everything to the given trace only
+        protected abstract void resolve(@NotNull BindingTrace trace);
     }
 
     public void resolveFunctionBody(
@@ -687,6 +794,10 @@ public class BodyResolver {
     }
 
     private void resolveAnnotationArguments(@NotNull JetScope scope, @NotNull JetModifierListOwner owner) {
+        resolveAnnotationArguments(trace, scope, owner);
+    }
+
+    private void resolveAnnotationArguments(@NotNull BindingTrace trace, @NotNull JetScope scope, @NotNull JetModifierListOwner owner) {
         annotationResolver.resolveAnnotationsArguments(scope, owner.getModifierList(), trace);
     }
 
@@ -27,7 +27,6 @@ import org.jetbrains.jet.util.slicedmap.*;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 public class DelegatingBindingTrace implements BindingTrace {
     @SuppressWarnings("ConstantConditions")
@@ -129,19 +128,16 @@ public class DelegatingBindingTrace implements BindingTrace {
         clear();
     }
 
-    public void addAllMyDataTo(@NotNull BindingTrace trace, @Nullable TraceEntryFilter filter, boolean commitDiagnostics) {
-        for (Map.Entry<SlicedMapKey<?, ?>, ?> entry : map) {
-            SlicedMapKey slicedMapKey = entry.getKey();
-
-            WritableSlice slice = slicedMapKey.getSlice();
-            Object key = slicedMapKey.getKey();
-            Object value = entry.getValue();
-
-            if (filter == null || filter.accept(slice, key)) {
-                //noinspection unchecked
-                trace.record(slice, key, value);
+    public void addAllMyDataTo(@NotNull final BindingTrace trace, @Nullable final TraceEntryFilter filter, boolean commitDiagnostics) {
+        map.forEach(new MutableSlicedMap.EntryVisitor() {
+            @Override
+            public void visit(@NotNull WritableSlice<?, ?> slice, Object key, Object value) {
+                if (filter == null || filter.accept(slice, key)) {
+                    //noinspection unchecked
+                    trace.record((WritableSlice) slice, key, value);
+                }
             }
-        }
+        });
 
         if (!commitDiagnostics) return;
 
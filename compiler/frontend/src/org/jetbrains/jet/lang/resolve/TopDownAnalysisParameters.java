@@ -32,16 +32,28 @@ public class TopDownAnalysisParameters {
     private final boolean declaredLocally;
     @NotNull
     private final List<AnalyzerScriptParameter> scriptParameters;
+    private final int bodyResolveThreads;
 
     public TopDownAnalysisParameters(
             @NotNull Predicate<PsiFile> analyzeCompletely,
             boolean analyzingBootstrapLibrary,
             boolean declaredLocally,
             @NotNull List<AnalyzerScriptParameter> scriptParameters) {
+        this(analyzeCompletely, analyzingBootstrapLibrary, declaredLocally, scriptParameters, 1);
+    }
+
+    public TopDownAnalysisParameters(
+            @NotNull Predicate<PsiFile> analyzeCompletely,
+            boolean analyzingBootstrapLibrary,
+            boolean declaredLocally,
+            @NotNull List<AnalyzerScriptParameter> scriptParameters,
+            int bodyResolveThreads) {
+        assert bodyResolveThreads > 0 : "Body resolution needs at least one thread: " + bodyResolveThreads;
         this.analyzeCompletely = analyzeCompletely;
         this.analyzingBootstrapLibrary = analyzingBootstrapLibrary;
         this.declaredLocally = declaredLocally;
         this.scriptParameters = scriptParameters;
+        this.bodyResolveThreads = bodyResolveThreads;
     }
 
     @NotNull
@@ -61,4 +73,12 @@ public class TopDownAnalysisParameters {
     public List<AnalyzerScriptParameter> getScriptParameters() {
         return scriptParameters;
     }
+
+    /**
+     * Number of threads resolving bodies of functions and properties, see {@link BodyResolver}. Local declarations are
+     * always resolved on the thread which resolves the enclosing body
+     */
+    public int getBodyResolveThreads() {
+        return bodyResolveThreads;
+    }
 }
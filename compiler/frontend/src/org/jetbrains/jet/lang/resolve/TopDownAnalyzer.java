@@ -36,6 +36,7 @@ import org.jetbrains.jet.lang.resolve.scopes.WritableScope;
 import org.jetbrains.jet.lang.resolve.scopes.WritableScopeImpl;
 import org.jetbrains.jet.lang.types.expressions.ExpressionTypingContext;
 import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+import org.jetbrains.jet.utils.PerformanceReport;
 
 import javax.inject.Inject;
 import java.util.*;
@@ -122,13 +123,42 @@ public class TopDownAnalyzer {
 //        context.enableDebugOutput();
         context.debug("Enter");
 
-        typeHierarchyResolver.process(outerScope, owner, declarations);
-        declarationResolver.process(outerScope);
-        overrideResolver.process();
+        PerformanceReport.Section section = PerformanceReport.begin(PerformanceReport.TYPE_HIERARCHY_RESOLVER);
+        try {
+            typeHierarchyResolver.process(outerScope, owner, declarations);
+            section.count(PerformanceReport.DESCRIPTORS, context.getClasses().size() + context.getObjects().size());
+        }
+        finally {
+            section.end();
+        }
+
+        section = PerformanceReport.begin(PerformanceReport.DECLARATION_RESOLVER);
+        try {
+            declarationResolver.process(outerScope);
+            section.count(PerformanceReport.DESCRIPTORS, context.getFunctions().size() + context.getProperties().size() +
+                                                         context.getPrimaryConstructorParameterProperties().size());
+        }
+        finally {
+            section.end();
+        }
+
+        section = PerformanceReport.begin(PerformanceReport.OVERRIDE_RESOLVER);
+        try {
+            overrideResolver.process();
+        }
+        finally {
+            section.end();
+        }
 
         lockScopes();
 
-        overloadResolver.process();
+        section = PerformanceReport.begin(PerformanceReport.OVERLOAD_RESOLVER);
+        try {
+            overloadResolver.process();
+        }
+        finally {
+            section.end();
+        }
 
         if (!topDownAnalysisParameters.isAnalyzingBootstrapLibrary()) {
             bodyResolver.resolveBodies();
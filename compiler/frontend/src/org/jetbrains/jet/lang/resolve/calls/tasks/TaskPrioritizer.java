@@ -17,6 +17,7 @@
 package org.jetbrains.jet.lang.resolve.calls.tasks;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.intellij.openapi.progress.ProgressIndicatorProvider;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -28,18 +29,24 @@ import org.jetbrains.jet.lang.resolve.DescriptorUtils;
 import org.jetbrains.jet.lang.resolve.LibrarySourceHacks;
 import org.jetbrains.jet.lang.resolve.calls.autocasts.AutoCastServiceImpl;
 import org.jetbrains.jet.lang.resolve.calls.context.BasicCallResolutionContext;
+import org.jetbrains.jet.lang.resolve.calls.util.ExpressionAsFunctionDescriptor;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
 import org.jetbrains.jet.lang.resolve.scopes.JetScopeUtils;
 import org.jetbrains.jet.lang.resolve.scopes.receivers.ExpressionReceiver;
 import org.jetbrains.jet.lang.resolve.scopes.receivers.ReceiverValue;
 import org.jetbrains.jet.lang.types.ErrorUtils;
+import org.jetbrains.jet.lang.types.JetType;
 import org.jetbrains.jet.lang.types.NamespaceType;
+import org.jetbrains.jet.lang.types.TypeConstructor;
 import org.jetbrains.jet.lang.types.checker.JetTypeChecker;
+import org.jetbrains.jet.lang.types.checker.SupertypeClosure;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
 
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.jetbrains.jet.lang.resolve.DescriptorUtils.isClassObject;
 import static org.jetbrains.jet.lang.resolve.calls.CallResolverUtil.isOrOverridesSynthesized;
@@ -139,30 +146,147 @@ public class TaskPrioritizer {
             c.result.addCandidates(members);
         }
 
+        // Closures of the receiver types are looked up once for all collectors and candidates
+        List<ReceiverArgument> receiverArguments = Lists.newArrayList();
+        for (ReceiverValue variant : variantsForExplicitReceiver) {
+            receiverArguments.add(new ReceiverArgument(variant));
+        }
+
         for (CallableDescriptorCollector<? extends D> callableDescriptorCollector : c.callableDescriptorCollectors) {
             //member extensions
             for (ReceiverValue implicitReceiver : implicitReceivers) {
-                addMemberExtensionCandidates(implicitReceiver, variantsForExplicitReceiver,
+                addMemberExtensionCandidates(implicitReceiver, receiverArguments,
                                              callableDescriptorCollector, c, resolveInvoke);
             }
             //extensions
-            Collection<ResolutionCandidate<D>> extensions = convertWithImpliedThis(
-                    c.scope, variantsForExplicitReceiver, callableDescriptorCollector.getNonMembersByName(c.scope, c.name, c.context.trace));
-            c.result.addCandidates(extensions);
+            Collection<? extends D> extensions = c.getNonMembersByName(callableDescriptorCollector, c.scope);
+            List<List<D>> suitableByVariant = Lists.newArrayList();
+            List<List<D>> unsuitableByVariant = Lists.newArrayList();
+            splitByReceiverType(extensions, receiverArguments, suitableByVariant, unsuitableByVariant);
+
+            Collection<ResolutionCandidate<D>> candidates = Lists.newArrayList();
+            Collection<ResolutionCandidate<D>> candidatesWithWrongReceiver = Lists.newArrayList();
+            for (int i = 0; i < receiverArguments.size(); i++) {
+                List<ReceiverValue> receiverParameters = Collections.singletonList(receiverArguments.get(i).value);
+                candidates.addAll(convertWithImpliedThis(c.scope, receiverParameters, suitableByVariant.get(i)));
+                candidatesWithWrongReceiver.addAll(convertWithImpliedThis(c.scope, receiverParameters, unsuitableByVariant.get(i)));
+            }
+            c.result.addCandidates(candidates);
+            c.result.addCandidates(candidatesWithWrongReceiver);
         }
     }
 
     private static <D extends CallableDescriptor, F extends D> void addMemberExtensionCandidates(
             @NotNull ReceiverValue implicitReceiver,
-            @NotNull List<ReceiverValue> variantsForExplicitReceiver,
+            @NotNull List<ReceiverArgument> receiverArguments,
             @NotNull CallableDescriptorCollector<? extends D> callableDescriptorCollector, TaskPrioritizerContext<D, F> c,
             boolean resolveInvoke
     ) {
-        Collection<? extends D> memberExtensions = callableDescriptorCollector.getNonMembersByName(
-                implicitReceiver.getType().getMemberScope(), c.name, c.context.trace);
+        Collection<? extends D> memberExtensions =
+                c.getNonMembersByName(callableDescriptorCollector, implicitReceiver.getType().getMemberScope());
+        if (memberExtensions.isEmpty()) return;
+
+        List<List<D>> suitableByVariant = Lists.newArrayList();
+        List<List<D>> unsuitableByVariant = Lists.newArrayList();
+        splitByReceiverType(memberExtensions, receiverArguments, suitableByVariant, unsuitableByVariant);
+
         List<ReceiverValue> variantsForImplicitReceiver = c.autoCastService.getVariantsForReceiver(implicitReceiver);
-        c.result.addCandidates(convertWithReceivers(memberExtensions, variantsForImplicitReceiver,
-                                                  variantsForExplicitReceiver, resolveInvoke));
+        Collection<ResolutionCandidate<D>> candidates = Lists.newArrayList();
+        Collection<ResolutionCandidate<D>> candidatesWithWrongReceiver = Lists.newArrayList();
+        for (ReceiverValue thisObject : variantsForImplicitReceiver) {
+            List<ReceiverValue> thisObjects = Collections.singletonList(thisObject);
+            for (int i = 0; i < receiverArguments.size(); i++) {
+                List<ReceiverValue> receiverParameters = Collections.singletonList(receiverArguments.get(i).value);
+                convertWithReceivers(suitableByVariant.get(i), thisObjects, receiverParameters, candidates, resolveInvoke);
+                convertWithReceivers(unsuitableByVariant.get(i), thisObjects, receiverParameters, candidatesWithWrongReceiver, resolveInvoke);
+            }
+        }
+        c.result.addCandidates(candidates);
+        c.result.addCandidates(candidatesWithWrongReceiver);
+    }
+
+    /**
+     * Separates, for each receiver argument, the descriptors whose receiver parameter can't accept it, judging by type constructors only.
+     * Those are still resolved, but after the other ones, so that a call is only checked against them to report a wrong receiver.
+     * The receiver parameter of each descriptor is inspected once for all receiver arguments.
+     */
+    private static <D extends CallableDescriptor> void splitByReceiverType(
+            @NotNull Collection<? extends D> descriptors,
+            @NotNull List<ReceiverArgument> receiverArguments,
+            @NotNull List<List<D>> suitableByArgument,
+            @NotNull List<List<D>> unsuitableByArgument
+    ) {
+        for (int i = 0; i < receiverArguments.size(); i++) {
+            suitableByArgument.add(Lists.<D>newArrayList());
+            unsuitableByArgument.add(Lists.<D>newArrayList());
+        }
+
+        for (D descriptor : descriptors) {
+            TypeConstructor parameterConstructor = getReceiverParameterConstructorToCheck(descriptor);
+            for (int i = 0; i < receiverArguments.size(); i++) {
+                if (parameterConstructor == null || receiverArguments.get(i).isSuitable(parameterConstructor)) {
+                    suitableByArgument.get(i).add(descriptor);
+                }
+                else {
+                    unsuitableByArgument.get(i).add(descriptor);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the constructor of the receiver parameter type, or null if a receiver argument of any class is suitable
+     * whatever the arguments and nullability of the types
+     */
+    @Nullable
+    private static TypeConstructor getReceiverParameterConstructorToCheck(@NotNull CallableDescriptor descriptor) {
+        ReceiverParameterDescriptor receiverParameter = descriptor.getReceiverParameter();
+        if (receiverParameter == null || descriptor instanceof ExpressionAsFunctionDescriptor) return null;
+
+        JetType receiverParameterType = receiverParameter.getType();
+        if (receiverParameterType.isError()) return null;
+
+        TypeConstructor parameterConstructor = receiverParameterType.getConstructor();
+        // Type parameters are erased to their bounds, and intersection types have no descriptor
+        if (!(parameterConstructor.getDeclarationDescriptor() instanceof ClassDescriptor)) return null;
+        if (parameterConstructor.equals(KotlinBuiltIns.getInstance().getAny().getTypeConstructor())) return null;
+
+        return parameterConstructor;
+    }
+
+    private static class ReceiverArgument {
+        @NotNull private final ReceiverValue value;
+        // Null if the argument is suitable for any receiver parameter
+        @Nullable private final TypeConstructor constructor;
+        @Nullable private SupertypeClosure supertypes = null;
+
+        private ReceiverArgument(@NotNull ReceiverValue value) {
+            this.value = value;
+            this.constructor = getConstructorToCheck(value);
+        }
+
+        @Nullable
+        private static TypeConstructor getConstructorToCheck(@NotNull ReceiverValue value) {
+            if (!value.exists() || value.getType() instanceof NamespaceType) return null;
+
+            JetType type = value.getType();
+            TypeConstructor constructor = type.getConstructor();
+            if (type.isError() || !(constructor.getDeclarationDescriptor() instanceof ClassDescriptor)) return null;
+            if (KotlinBuiltIns.getInstance().isNothingOrNullableNothing(type)) return null;
+
+            return constructor;
+        }
+
+        // False only if the argument type can't be a subtype of the parameter type whatever their arguments and nullability
+        private boolean isSuitable(@NotNull TypeConstructor parameterConstructor) {
+            if (constructor == null || parameterConstructor.equals(constructor)) return true;
+
+            // Looked up only if some candidate needs it
+            if (supertypes == null) {
+                supertypes = SupertypeClosure.get(constructor);
+            }
+            return supertypes.getSupertype(parameterConstructor) != null;
+        }
     }
 
     private static <D extends CallableDescriptor, F extends D> void addCandidatesForNoReceiver(
@@ -247,17 +371,6 @@ public class TaskPrioritizer {
         }
     }
 
-    private static <D extends CallableDescriptor> Collection<ResolutionCandidate<D>> convertWithReceivers(
-            @NotNull Collection<? extends D> descriptors,
-            @NotNull Iterable<ReceiverValue> thisObjects,
-            @NotNull Iterable<ReceiverValue> receiverParameters,
-            boolean hasExplicitThisObject
-    ) {
-        Collection<ResolutionCandidate<D>> result = Lists.newArrayList();
-        convertWithReceivers(descriptors, thisObjects, receiverParameters, result, hasExplicitThisObject);
-        return result;
-    }
-
     private static <D extends CallableDescriptor> void convertWithReceivers(
             @NotNull Collection<? extends D> descriptors,
             @NotNull Iterable<ReceiverValue> thisObjects,
@@ -387,6 +500,9 @@ public class TaskPrioritizer {
         @NotNull public final JetScope scope;
         @NotNull public final List<CallableDescriptorCollector<? extends D>> callableDescriptorCollectors;
         @NotNull AutoCastServiceImpl autoCastService;
+        // Extensions by collector and scope: the same scopes are searched for every implicit receiver tried as an explicit one
+        @NotNull private final Map<CallableDescriptorCollector<? extends D>, Map<JetScope, Collection<? extends D>>> nonMembersByName =
+                Maps.newHashMap();
 
         private TaskPrioritizerContext(
                 @NotNull Name name,
@@ -402,5 +518,23 @@ public class TaskPrioritizer {
             this.callableDescriptorCollectors = callableDescriptorCollectors;
             autoCastService = new AutoCastServiceImpl(context.dataFlowInfo, context.trace.getBindingContext());
         }
+
+        @NotNull
+        public Collection<? extends D> getNonMembersByName(
+                @NotNull CallableDescriptorCollector<? extends D> callableDescriptorCollector,
+                @NotNull JetScope scope
+        ) {
+            Map<JetScope, Collection<? extends D>> byScope = nonMembersByName.get(callableDescriptorCollector);
+            if (byScope == null) {
+                byScope = Maps.newHashMap();
+                nonMembersByName.put(callableDescriptorCollector, byScope);
+            }
+            Collection<? extends D> result = byScope.get(scope);
+            if (result == null) {
+                result = callableDescriptorCollector.getNonMembersByName(scope, name, context.trace);
+                byScope.put(scope, result);
+            }
+            return result;
+        }
     }
 }
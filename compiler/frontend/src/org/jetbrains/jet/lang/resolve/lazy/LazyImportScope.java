@@ -32,6 +32,7 @@ import org.jetbrains.jet.lang.resolve.name.LabelName;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.*;
 import org.jetbrains.jet.storage.MemoizedFunctionToNotNull;
+import org.jetbrains.jet.storage.NotNullLazyValue;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -48,73 +49,71 @@ public class LazyImportScope implements JetScope {
     private final BindingTrace traceForImportResolve;
     private final String debugName;
 
-    private static class ImportResolveStatus {
-        private final LookupMode lookupMode;
-        private final JetScope scope;
-
-        ImportResolveStatus(LookupMode lookupMode, JetScope scope) {
-            this.lookupMode = lookupMode;
-            this.scope = scope;
-        }
-    }
-
     private class ImportDirectiveResolveCache {
         private final JetImportDirective directive;
 
-        @Nullable
-        private volatile ImportResolveStatus importResolveStatus;
+        // Each scope is resolved once even if several threads need it, since the storage manager's compute() doesn't
+        // necessarily exclude other threads. The scope of everything is also used when only classes are needed
+        private final NotNullLazyValue<JetScope> scopeForEverything;
+        private final NotNullLazyValue<JetScope> scopeForClasses;
 
         private ImportDirectiveResolveCache(JetImportDirective directive) {
             this.directive = directive;
+            this.scopeForEverything = createScope(LookupMode.EVERYTHING);
+            this.scopeForClasses = createScope(LookupMode.ONLY_CLASSES);
         }
 
-        private JetScope scopeForMode(final LookupMode mode) {
-            ImportResolveStatus status = importResolveStatus;
-            if (status != null && (status.lookupMode == mode || status.lookupMode == LookupMode.EVERYTHING)) {
-                return status.scope;
-            }
-
-            return resolveSession.getStorageManager().compute(new Function0<JetScope>() {
+        @NotNull
+        private NotNullLazyValue<JetScope> createScope(@NotNull final LookupMode mode) {
+            return resolveSession.getStorageManager().createRecursionTolerantLazyValue(new Function0<JetScope>() {
                 @Override
                 public JetScope invoke() {
-                    ImportResolveStatus cachedStatus = importResolveStatus;
-                    if (cachedStatus != null && (cachedStatus.lookupMode == mode || cachedStatus.lookupMode == LookupMode.EVERYTHING)) {
-                        return cachedStatus.scope;
-                    }
+                    return resolveScope(mode);
+                }
+            }, JetScope.EMPTY);
+        }
 
-                    WritableScope directiveImportScope = new WritableScopeImpl(
-                            JetScope.EMPTY, packageDescriptor, RedeclarationHandler.DO_NOTHING,
-                            "Scope for import '" + directive.getText() + "' resolve in " + toString());
-                    directiveImportScope.changeLockLevel(WritableScope.LockLevel.BOTH);
-
-                    Importer.StandardImporter importer = new Importer.StandardImporter(directiveImportScope);
-                    directiveUnderResolve = directive;
-
-                    try {
-                        resolveSession.getInjector().getQualifiedExpressionResolver().processImportReference(
-                                directive,
-                                rootScope,
-                                packageDescriptor.getMemberScope(),
-                                importer,
-                                traceForImportResolve,
-                                resolveSession.getRootModuleDescriptor(),
-                                mode);
-                    }
-                    finally {
-                        directiveUnderResolve = null;
-                        directiveImportScope.changeLockLevel(WritableScope.LockLevel.READING);
-                    }
+        private JetScope scopeForMode(LookupMode mode) {
+            if (mode == LookupMode.EVERYTHING || scopeForEverything.isComputed()) {
+                return scopeForEverything.invoke();
+            }
+            return scopeForClasses.invoke();
+        }
 
-                    importResolveStatus = new ImportResolveStatus(mode, directiveImportScope);
-                    return directiveImportScope;
-                }
-            });
+        @NotNull
+        private JetScope resolveScope(@NotNull LookupMode mode) {
+            WritableScope directiveImportScope = new WritableScopeImpl(
+                    JetScope.EMPTY, packageDescriptor, RedeclarationHandler.DO_NOTHING,
+                    "Scope for import '" + directive.getText() + "' resolve in " + toString());
+            directiveImportScope.changeLockLevel(WritableScope.LockLevel.BOTH);
+
+            Importer.StandardImporter importer = new Importer.StandardImporter(directiveImportScope);
+            JetImportDirective outerDirective = directiveUnderResolve.get();
+            directiveUnderResolve.set(directive);
+
+            try {
+                resolveSession.getInjector().getQualifiedExpressionResolver().processImportReference(
+                        directive,
+                        rootScope,
+                        packageDescriptor.getMemberScope(),
+                        importer,
+                        traceForImportResolve,
+                        resolveSession.getRootModuleDescriptor(),
+                        mode);
+            }
+            finally {
+                directiveUnderResolve.set(outerDirective);
+                directiveImportScope.changeLockLevel(WritableScope.LockLevel.READING);
+            }
+
+            return directiveImportScope;
         }
     }
 
     private final MemoizedFunctionToNotNull<JetImportDirective, ImportDirectiveResolveCache> importedScopesProvider;
 
-    private JetImportDirective directiveUnderResolve = null;
+    // Thread-confined, because the storage manager's compute() doesn't necessarily exclude other threads
+    private final ThreadLocal<JetImportDirective> directiveUnderResolve = new ThreadLocal<JetImportDirective>();
 
     public LazyImportScope(
             @NotNull ResolveSession resolveSession,
@@ -168,7 +167,7 @@ public class LazyImportScope implements JetScope {
             @Override
             public D invoke() {
                 for (JetImportDirective directive : importsProvider.getImports(name)) {
-                    if (directive == directiveUnderResolve) {
+                    if (directive == directiveUnderResolve.get()) {
                         // This is the recursion in imports analysis
                         return null;
                     }
@@ -195,7 +194,7 @@ public class LazyImportScope implements JetScope {
             public Collection<D> invoke() {
                 Set<D> descriptors = Sets.newHashSet();
                 for (JetImportDirective directive : importsProvider.getImports(name)) {
-                    if (directive == directiveUnderResolve) {
+                    if (directive == directiveUnderResolve.get()) {
                         // This is the recursion in imports analysis
                         throw new IllegalStateException("Recursion while resolving many imports: " + directive.getText());
                     }
@@ -218,7 +217,7 @@ public class LazyImportScope implements JetScope {
             public Collection<D> invoke() {
                 Set<D> descriptors = Sets.newHashSet();
                 for (JetImportDirective directive : importsProvider.getAllImports()) {
-                    if (directive == directiveUnderResolve) {
+                    if (directive == directiveUnderResolve.get()) {
                         // This is the recursion in imports analysis
                         throw new IllegalStateException("Recursion while resolving many imports: " + directive.getText());
                     }
@@ -22,7 +22,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.Function;
-import jet.Function0;
+import jet.Function1;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.di.InjectorForLazyResolve;
@@ -43,6 +43,7 @@ import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.FqNameUnsafe;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
+import org.jetbrains.jet.storage.MemoizedFunctionToNullable;
 
 import java.util.List;
 
@@ -72,6 +73,10 @@ public class ResolveSession implements KotlinCodeAnalyzer {
 
     private final Function<FqName, Name> classifierAliases;
 
+    // Class objects which are not the class object of their class, e.g. the second one. Created once per declaration,
+    // since the storage manager's compute() doesn't necessarily exclude other threads
+    private final MemoizedFunctionToNullable<JetClassObject, LazyClassDescriptor> extraClassObjectDescriptors;
+
     public ResolveSession(
             @NotNull Project project,
             @NotNull LazyResolveStorageManager storageManager,
@@ -121,6 +126,19 @@ public class ResolveSession implements KotlinCodeAnalyzer {
         rootDescriptor.setRootNamespace(rootPackage);
 
         this.declarationProviderFactory = declarationProviderFactory;
+
+        this.extraClassObjectDescriptors = storageManager.createMemoizedFunctionWithNullableValues(
+                new Function1<JetClassObject, LazyClassDescriptor>() {
+                    @Override
+                    public LazyClassDescriptor invoke(JetClassObject classObject) {
+                        LazyClassDescriptor parentClassDescriptor = getParentClassDescriptor(classObject);
+                        JetClassLikeInfo classObjectInfo = parentClassDescriptor.getClassObjectInfo(classObject);
+                        if (classObjectInfo == null) return null;
+
+                        Name name = DescriptorUtils.getClassObjectName(parentClassDescriptor.getName());
+                        return new LazyClassDescriptor(ResolveSession.this, parentClassDescriptor, name, classObjectInfo);
+                    }
+                });
     }
 
     @NotNull
@@ -192,19 +210,7 @@ public class ResolveSession implements KotlinCodeAnalyzer {
     }
 
     /*package*/ LazyClassDescriptor getClassObjectDescriptor(JetClassObject classObject) {
-        JetClass aClass = PsiTreeUtil.getParentOfType(classObject, JetClass.class);
-
-        final LazyClassDescriptor parentClassDescriptor;
-
-        if (aClass != null) {
-            parentClassDescriptor = (LazyClassDescriptor) getClassDescriptor(aClass);
-        }
-        else {
-            // Class object in object is an error but we want to find descriptors even for this case
-            JetObjectDeclaration objectDeclaration = PsiTreeUtil.getParentOfType(classObject, JetObjectDeclaration.class);
-            assert objectDeclaration != null : String.format("Class object %s can be in class or object in file %s", classObject, classObject.getContainingFile().getText());
-            parentClassDescriptor = (LazyClassDescriptor) getClassDescriptor(objectDeclaration);
-        }
+        LazyClassDescriptor parentClassDescriptor = getParentClassDescriptor(classObject);
 
         // Activate resolution and writing to trace
         parentClassDescriptor.getClassObjectDescriptor();
@@ -213,22 +219,25 @@ public class ResolveSession implements KotlinCodeAnalyzer {
         if (declaration == null) {
             // It's possible that there are several class objects and another class object is taking part in lazy resolve. We still want to
             // build descriptors for such class objects.
-            final JetClassLikeInfo classObjectInfo = parentClassDescriptor.getClassObjectInfo(classObject);
-            if (classObjectInfo != null) {
-                final Name name = DescriptorUtils.getClassObjectName(parentClassDescriptor.getName());
-                return storageManager.compute(new Function0<LazyClassDescriptor>() {
-                    @Override
-                    public LazyClassDescriptor invoke() {
-                        // Create under lock to avoid premature access to published 'this'
-                        return new LazyClassDescriptor(ResolveSession.this, parentClassDescriptor, name, classObjectInfo);
-                    }
-                });
-            }
+            return extraClassObjectDescriptors.invoke(classObject);
         }
 
         return (LazyClassDescriptor) declaration;
     }
 
+    @NotNull
+    private LazyClassDescriptor getParentClassDescriptor(@NotNull JetClassObject classObject) {
+        JetClass aClass = PsiTreeUtil.getParentOfType(classObject, JetClass.class);
+        if (aClass != null) {
+            return (LazyClassDescriptor) getClassDescriptor(aClass);
+        }
+
+        // Class object in object is an error but we want to find descriptors even for this case
+        JetObjectDeclaration objectDeclaration = PsiTreeUtil.getParentOfType(classObject, JetObjectDeclaration.class);
+        assert objectDeclaration != null : String.format("Class object %s can be in class or object in file %s", classObject, classObject.getContainingFile().getText());
+        return (LazyClassDescriptor) getClassDescriptor(objectDeclaration);
+    }
+
     @Override
     @NotNull
     public BindingContext getBindingContext() {
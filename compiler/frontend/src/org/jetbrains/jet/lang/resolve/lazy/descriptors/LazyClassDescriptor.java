@@ -47,6 +47,7 @@ import org.jetbrains.jet.lang.resolve.scopes.*;
 import org.jetbrains.jet.lang.types.JetType;
 import org.jetbrains.jet.lang.types.TypeConstructor;
 import org.jetbrains.jet.lang.types.TypeUtils;
+import org.jetbrains.jet.lang.types.checker.SupertypeClosure;
 import org.jetbrains.jet.storage.NotNullLazyValue;
 import org.jetbrains.jet.storage.NullableLazyValue;
 import org.jetbrains.jet.storage.StorageManager;
@@ -372,7 +373,7 @@ public class LazyClassDescriptor extends ClassDescriptorBase implements LazyDesc
         getVisibility();
     }
 
-    private class LazyClassTypeConstructor implements LazyDescriptor, TypeConstructor {
+    private class LazyClassTypeConstructor implements LazyDescriptor, TypeConstructor, SupertypeClosure.Holder {
         private final NotNullLazyValue<Collection<JetType>> supertypes = resolveSession.getStorageManager().createLazyValueWithPostCompute(
                 new Function0<Collection<JetType>>() {
                     @Override
@@ -406,6 +407,7 @@ public class LazyClassDescriptor extends ClassDescriptorBase implements LazyDesc
                     @Override
                     public Unit invoke(@NotNull Collection<JetType> supertypes) {
                         findAndDisconnectLoopsInTypeHierarchy(supertypes);
+                        supertypesComplete = true;
                         return Unit.VALUE;
                     }
                 });
@@ -425,6 +427,9 @@ public class LazyClassDescriptor extends ClassDescriptorBase implements LazyDesc
             }
         });
 
+        private SupertypeClosure supertypeClosure;
+        private volatile boolean supertypesComplete;
+
         @NotNull
         @Override
         public List<TypeParameterDescriptor> getParameters() {
@@ -460,6 +465,23 @@ public class LazyClassDescriptor extends ClassDescriptorBase implements LazyDesc
             return false;
         }
 
+        @Nullable
+        @Override
+        public SupertypeClosure getSupertypeClosure() {
+            return supertypeClosure;
+        }
+
+        @Override
+        public void setSupertypeClosure(@NotNull SupertypeClosure closure) {
+            supertypeClosure = closure;
+        }
+
+        @Override
+        public boolean areSupertypesComplete() {
+            // Loops are disconnected after the supertypes are computed
+            return supertypesComplete;
+        }
+
         @Override
         public boolean isSealed() {
             return !getModality().isOverridable();
@@ -59,26 +59,23 @@ public class WriteThroughScope extends WritableScopeWithImports {
     public Collection<FunctionDescriptor> getFunctions(@NotNull Name name) {
         checkMayRead();
 
-        Set<FunctionDescriptor> result = Sets.newLinkedHashSet();
+        Collection<FunctionDescriptor> result = writableWorker.getFunctions(name);
 
-        result.addAll(writableWorker.getFunctions(name));
+        result = ScopeLookups.union(result, getWorkerScope().getFunctions(name));
 
-        result.addAll(getWorkerScope().getFunctions(name));
-
-        result.addAll(super.getFunctions(name)); // Imports
+        result = ScopeLookups.union(result, super.getFunctions(name)); // Imports
 
         return result;
     }
 
     @Override
     @NotNull
-    public Set<VariableDescriptor> getProperties(@NotNull Name name) {
+    public Collection<VariableDescriptor> getProperties(@NotNull Name name) {
         checkMayRead();
 
-        Set<VariableDescriptor> properties = Sets.newLinkedHashSet();
-        properties.addAll(writableWorker.getProperties(name));
-        properties.addAll(getWorkerScope().getProperties(name));
-        properties.addAll(super.getProperties(name)); //imports
+        Collection<VariableDescriptor> properties = writableWorker.getProperties(name);
+        properties = ScopeLookups.union(properties, getWorkerScope().getProperties(name));
+        properties = ScopeLookups.union(properties, super.getProperties(name)); //imports
         return properties;
     }
 
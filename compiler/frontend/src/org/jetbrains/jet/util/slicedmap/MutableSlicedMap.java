@@ -22,12 +22,19 @@ import org.jetbrains.annotations.TestOnly;
 
 public interface MutableSlicedMap extends SlicedMap {
 
+    interface EntryVisitor {
+        void visit(@NotNull WritableSlice<?, ?> slice, Object key, Object value);
+    }
+
     <K, V> void put(WritableSlice<K, V> slice, K key, V value);
 
     <K, V> V remove(RemovableSlice<K, V> slice, K key);
 
     void clear();
 
+    // Unlike iterator(), doesn't create an entry and a key object for each value
+    void forEach(@NotNull EntryVisitor visitor);
+
     @NotNull
     @TestOnly
     <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice);
@@ -19,6 +19,16 @@ package org.jetbrains.jet.util.slicedmap;
 public interface ReadOnlySlice<K, V> {
     SlicedMapKey<K, V> makeKey(K key);
 
+    /**
+     * @return the slice values of this slice are stored under, i.e. the slice of all keys made by {@link #makeKey}
+     */
+    WritableSlice<K, V> getStorageSlice();
+
+    /**
+     * @return the key values of this slice are stored under, i.e. the key of the result of {@link #makeKey}
+     */
+    K normalizeKey(K key);
+
     V computeValue(SlicedMap map, K key, V value, boolean valueNotFound);
 
     /**
@@ -17,36 +17,29 @@
 package org.jetbrains.jet.util.slicedmap;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.utils.CommonSuppliers;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.*;
 
 public class SlicedMapImpl implements MutableSlicedMap {
 
     public static SlicedMapImpl create() {
-        return new SlicedMapImpl(Maps.<SlicedMapKey<?, ?>, Object>newLinkedHashMap());
-    }
-
-    public static SlicedMapImpl create(Map<SlicedMapKey<?, ?>, Object> map) {
-        return new SlicedMapImpl(map);
+        return new SlicedMapImpl(MapSupplier.LINKED_HASH_MAP_SUPPLIER);
     }
 
     public static SlicedMapImpl create(MapSupplier mapSupplier) {
-        return new SlicedMapImpl(mapSupplier.<SlicedMapKey<?, ?>, Object>get());
+        return new SlicedMapImpl(mapSupplier);
     }
-    
+
+    // Values of all slices are kept in one map, so that they are iterated in the order they were put
     private final Map<SlicedMapKey<?, ?>, Object> map;
     private final Multimap<WritableSlice<?, ?>, Object> collectiveSliceKeys = Multimaps.newListMultimap(new HashMap<WritableSlice<?, ?>, Collection<Object>>(), CommonSuppliers.getArrayListSupplier());
 
-    protected SlicedMapImpl(Map<SlicedMapKey<?, ?>, Object> map) {
-        this.map = map;
+    protected SlicedMapImpl(MapSupplier mapSupplier) {
+        this.map = mapSupplier.get();
     }
 
     @Override
@@ -58,9 +51,10 @@ public class SlicedMapImpl implements MutableSlicedMap {
         SlicedMapKey<K, V> slicedMapKey = slice.makeKey(key);
         RewritePolicy rewritePolicy = slice.getRewritePolicy();
         if (rewritePolicy.rewriteProcessingNeeded(key)) {
-            if (map.containsKey(slicedMapKey)) {
+            Object oldValue = map.get(slicedMapKey);
+            if (oldValue != null || map.containsKey(slicedMapKey)) {
                 //noinspection unchecked
-                if (!rewritePolicy.processRewrite(slice, key, (V) map.get(slicedMapKey), value)) {
+                if (!rewritePolicy.processRewrite(slice, key, (V) oldValue, value)) {
                     return;
                 }
             }
@@ -107,15 +101,55 @@ public class SlicedMapImpl implements MutableSlicedMap {
         return (Iterator) map.entrySet().iterator();
     }
 
+    @Override
+    public void forEach(@NotNull EntryVisitor visitor) {
+        for (Map.Entry<SlicedMapKey<?, ?>, Object> entry : map.entrySet()) {
+            SlicedMapKey<?, ?> slicedMapKey = entry.getKey();
+            visitor.visit(slicedMapKey.getSlice(), slicedMapKey.getKey(), entry.getValue());
+        }
+    }
+
     @NotNull
     @Override
+    @SuppressWarnings("unchecked")
     public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
+        WritableSlice<K, V> storageSlice = slice.getStorageSlice();
         ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
         for (Map.Entry<SlicedMapKey<?, ?>, ?> entry : map.entrySet()) {
-            if (entry.getKey().getSlice() == slice) {
+            if (entry.getKey().getSlice() == storageSlice) {
                 builder.put((K) entry.getKey().getKey(), (V) entry.getValue());
             }
         }
         return builder.build();
     }
+
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * @return the number of values stored in each non-empty slice, largest slices first
+     */
+    @NotNull
+    public Map<WritableSlice<?, ?>, Integer> getSliceSizes() {
+        final Map<WritableSlice<?, ?>, Integer> sizes = new LinkedHashMap<WritableSlice<?, ?>, Integer>();
+        for (SlicedMapKey<?, ?> slicedMapKey : map.keySet()) {
+            Integer size = sizes.get(slicedMapKey.getSlice());
+            sizes.put(slicedMapKey.getSlice(), size == null ? 1 : size + 1);
+        }
+
+        List<WritableSlice<?, ?>> slices = new ArrayList<WritableSlice<?, ?>>(sizes.keySet());
+        Collections.sort(slices, new Comparator<WritableSlice<?, ?>>() {
+            @Override
+            public int compare(WritableSlice<?, ?> o1, WritableSlice<?, ?> o2) {
+                return sizes.get(o2) - sizes.get(o1);
+            }
+        });
+
+        Map<WritableSlice<?, ?>, Integer> result = new LinkedHashMap<WritableSlice<?, ?>, Integer>();
+        for (WritableSlice<?, ?> slice : slices) {
+            result.put(slice, sizes.get(slice));
+        }
+        return result;
+    }
 }
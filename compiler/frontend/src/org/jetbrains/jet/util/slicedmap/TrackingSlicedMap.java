@@ -31,7 +31,7 @@ public class TrackingSlicedMap extends SlicedMapImpl {
     private final boolean trackWithStackTraces;
 
     public TrackingSlicedMap(boolean trackWithStackTraces) {
-        super(Maps.<SlicedMapKey<?, ?>, Object>newLinkedHashMap());
+        super(MapSupplier.LINKED_HASH_MAP_SUPPLIER);
         this.trackWithStackTraces = trackWithStackTraces;
     }
 
@@ -72,6 +72,16 @@ public class TrackingSlicedMap extends SlicedMapImpl {
         return (Iterator) map.entrySet().iterator();
     }
 
+    @Override
+    public void forEach(@NotNull final EntryVisitor visitor) {
+        super.forEach(new EntryVisitor() {
+            @Override
+            public void visit(@NotNull WritableSlice<?, ?> slice, Object key, Object value) {
+                visitor.visit(slice, key, ((TrackableValue<?>) value).value);
+            }
+        });
+    }
+
     @Override
     public <K, V> void put(WritableSlice<K, V> slice, K key, V value) {
         super.put(wrapSlice(slice), key, new TrackableValue<V>(value, trackWithStackTraces));
@@ -159,6 +169,17 @@ public class TrackingSlicedMap extends SlicedMapImpl {
             return (SlicedMapKey) delegate.makeKey(key);
         }
 
+        @Override
+        public WritableSlice<K, TrackableValue<V>> getStorageSlice() {
+            //noinspection unchecked
+            return (WritableSlice) delegate.getStorageSlice();
+        }
+
+        @Override
+        public K normalizeKey(K key) {
+            return delegate.normalizeKey(key);
+        }
+
         @Override
         public TrackableValue<V> computeValue(SlicedMap map, K key, TrackableValue<V> value, boolean valueNotFound) {
             return new TrackableValue<V>(delegate.computeValue(map, key, value == null ? null : value.value, valueNotFound), trackWithStackTraces);
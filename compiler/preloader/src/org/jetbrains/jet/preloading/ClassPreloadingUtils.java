@@ -58,7 +58,7 @@ public class ClassPreloadingUtils {
     ) throws IOException {
         Map<String, ResourceData> entries = loadAllClassesFromJars(jarFiles, classCountEstimation, handler);
 
-        return createMemoryBasedClassLoader(parent, entries, handler);
+        return createMemoryBasedClassLoader(parent, new PreloadedResources(entries), handler);
     }
 
     public static ClassLoader preloadClasses(
@@ -67,9 +67,35 @@ public class ClassPreloadingUtils {
         return preloadClasses(jarFiles, classCountEstimation, parent, null);
     }
 
+    /**
+     * Creates a class loader that maps {@code jarFiles} to memory and reads a class from them only when it's loaded.
+     * Only the names and locations of the entries are read in advance.
+     *
+     * NOTE: the jars stay mapped while the class loader is alive, and can't be modified or deleted on some platforms
+     *
+     * @param jarFiles jars to load classes from
+     * @param classCountEstimation an estimated number of classes in a the jars
+     * @param parent (nullable) parent class loader
+     * @param handler handler to be notified on class definitions done by this class loader, or null
+     * @param indexCacheFile (nullable) file to keep the locations of the entries in between runs
+     * @return a class loader that reads classes from the mapped jars
+     * @throws IOException on from reading the jar
+     */
+    public static ClassLoader preloadClassesLazily(
+            Collection<File> jarFiles, int classCountEstimation, ClassLoader parent, ClassHandler handler, File indexCacheFile
+    ) throws IOException {
+        JarEntryIndex index = JarEntryIndex.create(new ArrayList<File>(jarFiles), classCountEstimation, handler, indexCacheFile);
+        if (index == null) {
+            // Some of the jars can't be mapped
+            return preloadClasses(jarFiles, classCountEstimation, parent, handler);
+        }
+
+        return createMemoryBasedClassLoader(parent, new MappedResources(index, handler), handler);
+    }
+
     private static ClassLoader createMemoryBasedClassLoader(
             final ClassLoader parent,
-            final Map<String, ResourceData> preloadedResources,
+            final Resources preloadedResources,
             final ClassHandler handler
     ) {
         return new ClassLoader(null) {
@@ -89,12 +115,20 @@ public class ClassPreloadingUtils {
                 ResourceData resourceData = preloadedResources.get(internalName);
                 if (resourceData == null) return null;
 
-                int sizeInBytes = resourceData.bytes.length;
+                byte[] bytes;
+                try {
+                    bytes = resourceData.getBytes();
+                }
+                catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+
+                int sizeInBytes = bytes.length;
                 if (handler != null) {
                     handler.beforeDefineClass(name, sizeInBytes);
                 }
 
-                Class<?> definedClass = defineClass(name, resourceData.bytes, 0, sizeInBytes);
+                Class<?> definedClass = defineClass(name, bytes, 0, sizeInBytes);
 
                 if (handler != null) {
                     handler.afterDefineClass(name);
@@ -178,9 +212,51 @@ public class ClassPreloadingUtils {
         return resources;
     }
 
+    private interface Resources {
+        ResourceData get(String name);
+    }
+
+    private static class PreloadedResources implements Resources {
+        private final Map<String, ResourceData> resources;
+
+        private PreloadedResources(Map<String, ResourceData> resources) {
+            this.resources = resources;
+        }
+
+        @Override
+        public ResourceData get(String name) {
+            return resources.get(name);
+        }
+    }
+
+    private static class MappedResources implements Resources {
+        private final JarEntryIndex index;
+        private final ClassHandler handler;
+
+        private MappedResources(JarEntryIndex index, ClassHandler handler) {
+            this.index = index;
+            this.handler = handler;
+        }
+
+        @Override
+        public ResourceData get(String name) {
+            final JarEntryIndex.Location location = index.get(name);
+            if (location == null) return null;
+
+            return new ResourceData(index.getJar(location), name, null) {
+                @Override
+                public byte[] getBytes() throws IOException {
+                    // Not cached: the bytes of a class aren't needed after it's defined
+                    byte[] data = index.read(location);
+                    return handler != null ? handler.instrument(resourceName, data) : data;
+                }
+            };
+        }
+    }
+
     private static class ResourceData {
         private final File jarFile;
-        private final String resourceName;
+        protected final String resourceName;
         private final byte[] bytes;
 
         public ResourceData(File jarFile, String resourceName, byte[] bytes) {
@@ -189,6 +265,10 @@ public class ClassPreloadingUtils {
             this.bytes = bytes;
         }
 
+        public byte[] getBytes() throws IOException {
+            return bytes;
+        }
+
         public URL getURL() {
             try {
                 String path = "file:" + jarFile + "!/" + resourceName;
@@ -201,7 +281,7 @@ public class ClassPreloadingUtils {
 
                             @Override
                             public InputStream getInputStream() throws IOException {
-                                return new ByteArrayInputStream(bytes);
+                                return new ByteArrayInputStream(getBytes());
                             }
                         };
                     }
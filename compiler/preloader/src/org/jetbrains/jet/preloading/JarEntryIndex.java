@@ -0,0 +1,308 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.preloading;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Locations of entries in jar files which are mapped to memory, so that an entry is read and inflated only when it's requested.
+ *
+ * The index may be saved to a file and reused by later runs, as long as the jars have the same paths, sizes and modification times.
+ */
+class JarEntryIndex {
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+    private static final int FLAG_ENCRYPTED = 1;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final long MAX_UINT32 = 0xFFFFFFFFL;
+
+    private static final int CACHE_FORMAT_VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static class Location {
+        private final int jar;
+        private final int localHeaderOffset;
+        private final int compressedSize;
+        private final int size;
+        private final boolean deflated;
+
+        private Location(int jar, int localHeaderOffset, int compressedSize, int size, boolean deflated) {
+            this.jar = jar;
+            this.localHeaderOffset = localHeaderOffset;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.deflated = deflated;
+        }
+    }
+
+    private final List<File> jars;
+    private final MappedByteBuffer[] buffers;
+    private final Map<String, Location> locations;
+
+    private JarEntryIndex(List<File> jars, MappedByteBuffer[] buffers, Map<String, Location> locations) {
+        this.jars = jars;
+        this.buffers = buffers;
+        this.locations = locations;
+    }
+
+    /**
+     * @param cacheFile (nullable) file to read the index from, and to save it to if it's missing or outdated
+     * @return null if some of the jars can't be indexed, e.g. they are larger than 2 Gb or use Zip64
+     */
+    static JarEntryIndex create(List<File> jars, int entryCountEstimate, ClassPreloadingUtils.ClassHandler handler, File cacheFile)
+            throws IOException {
+        for (File jar : jars) {
+            if (jar.length() > Integer.MAX_VALUE) return null;
+        }
+
+        // If the jars can't be indexed, the buffers are dropped and the mappings are released when they're collected
+        MappedByteBuffer[] buffers = new MappedByteBuffer[jars.size()];
+        for (int i = 0; i < jars.size(); i++) {
+            buffers[i] = map(jars.get(i));
+        }
+
+        Map<String, Location> locations = index(jars, buffers, entryCountEstimate, handler, cacheFile);
+        if (locations == null) return null;
+
+        return new JarEntryIndex(jars, buffers, locations);
+    }
+
+    private static Map<String, Location> index(
+            List<File> jars, MappedByteBuffer[] buffers, int entryCountEstimate, ClassPreloadingUtils.ClassHandler handler, File cacheFile
+    ) {
+        Map<String, Location> cached = cacheFile != null ? readCache(cacheFile, jars) : null;
+        Map<String, Location> locations = cached != null ? cached : new HashMap<String, Location>(entryCountEstimate);
+
+        // The handler is notified about every jar, whether its entries are read from the cache or from the jar itself
+        for (int i = 0; i < jars.size(); i++) {
+            if (handler != null) {
+                handler.beforeLoadJar(jars.get(i));
+            }
+
+            if (cached == null && !readCentralDirectory(i, buffers[i], locations)) return null;
+
+            if (handler != null) {
+                handler.afterLoadJar(jars.get(i));
+            }
+        }
+
+        if (cached == null && cacheFile != null) {
+            writeCache(cacheFile, jars, locations);
+        }
+        return locations;
+    }
+
+    private static MappedByteBuffer map(File jar) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(jar, "r");
+        try {
+            // The mapping stays valid after the file is closed
+            return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    Location get(String name) {
+        return locations.get(name);
+    }
+
+    File getJar(Location location) {
+        return jars.get(location.jar);
+    }
+
+    /**
+     * May be called on any thread
+     */
+    byte[] read(Location location) throws IOException {
+        ByteBuffer buffer = buffers[location.jar].duplicate();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        int offset = location.localHeaderOffset;
+        int nameLength = buffer.getShort(offset + 26) & 0xFFFF;
+        int extraLength = buffer.getShort(offset + 28) & 0xFFFF;
+        buffer.position(offset + LOCAL_FILE_HEADER_SIZE + nameLength + extraLength);
+
+        if (!location.deflated) {
+            byte[] result = new byte[location.size];
+            buffer.get(result);
+            return result;
+        }
+
+        // An extra zero byte is needed by the inflater without zlib header, see Inflater(boolean)
+        byte[] compressed = new byte[location.compressedSize + 1];
+        buffer.get(compressed, 0, location.compressedSize);
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            byte[] result = new byte[location.size];
+            int length = 0;
+            while (length < result.length) {
+                int count = inflater.inflate(result, length, result.length - length);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break;
+                length += count;
+            }
+            if (length != result.length) {
+                throw new IOException("Corrupted entry in " + getJar(location));
+            }
+            return result;
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Corrupted entry in " + getJar(location) + ": " + e.getMessage());
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    private static boolean readCentralDirectory(int jar, MappedByteBuffer mapped, Map<String, Location> locations) {
+        ByteBuffer buffer = mapped.duplicate();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        int end = -1;
+        int limit = Math.max(0, buffer.limit() - END_OF_CENTRAL_DIRECTORY_SIZE - MAX_COMMENT_LENGTH);
+        for (int i = buffer.limit() - END_OF_CENTRAL_DIRECTORY_SIZE; i >= limit; i--) {
+            if (buffer.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) return false;
+
+        int count = buffer.getShort(end + 10) & 0xFFFF;
+        long centralDirectoryOffset = buffer.getInt(end + 16) & MAX_UINT32;
+        // Zip64 or split archives
+        if (count == 0xFFFF || centralDirectoryOffset == MAX_UINT32 || buffer.getShort(end + 4) != 0) return false;
+
+        int position = (int) centralDirectoryOffset;
+        for (int i = 0; i < count; i++) {
+            if (buffer.getInt(position) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) return false;
+
+            int flags = buffer.getShort(position + 8) & 0xFFFF;
+            int method = buffer.getShort(position + 10) & 0xFFFF;
+            long compressedSize = buffer.getInt(position + 20) & MAX_UINT32;
+            long size = buffer.getInt(position + 24) & MAX_UINT32;
+            int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(position + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(position + 32) & 0xFFFF;
+            long offset = buffer.getInt(position + 42) & MAX_UINT32;
+
+            byte[] nameBytes = new byte[nameLength];
+            buffer.position(position + CENTRAL_DIRECTORY_HEADER_SIZE);
+            buffer.get(nameBytes);
+            String name = new String(nameBytes, UTF8);
+            position += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+
+            if (name.endsWith("/")) continue;
+            if (locations.containsKey(name)) continue; // Only the first resource is stored
+
+            if ((flags & FLAG_ENCRYPTED) != 0 || (method != METHOD_STORED && method != METHOD_DEFLATED)) return false;
+            if (compressedSize > Integer.MAX_VALUE || size > Integer.MAX_VALUE || offset > Integer.MAX_VALUE) return false;
+
+            locations.put(name, new Location(jar, (int) offset, (int) compressedSize, (int) size, method == METHOD_DEFLATED));
+        }
+        return true;
+    }
+
+    private static Map<String, Location> readCache(File cacheFile, List<File> jars) {
+        if (!cacheFile.exists()) return null;
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            try {
+                if (input.readInt() != CACHE_FORMAT_VERSION) return null;
+                if (input.readInt() != jars.size()) return null;
+                for (File jar : jars) {
+                    if (!input.readUTF().equals(jar.getAbsolutePath()) ||
+                        input.readLong() != jar.length() ||
+                        input.readLong() != jar.lastModified()) {
+                        return null;
+                    }
+                }
+
+                int count = input.readInt();
+                Map<String, Location> locations = new HashMap<String, Location>(count * 4 / 3 + 1);
+                for (int i = 0; i < count; i++) {
+                    String name = input.readUTF();
+                    locations.put(name, new Location(input.readInt(), input.readInt(), input.readInt(), input.readInt(), input.readBoolean()));
+                }
+                return locations;
+            }
+            finally {
+                input.close();
+            }
+        }
+        catch (IOException e) {
+            // The cache is corrupted, it will be rewritten
+            return null;
+        }
+    }
+
+    private static void writeCache(File cacheFile, List<File> jars, Map<String, Location> locations) {
+        File tempFile = new File(cacheFile.getPath() + ".tmp");
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                output.writeInt(CACHE_FORMAT_VERSION);
+                output.writeInt(jars.size());
+                for (File jar : jars) {
+                    output.writeUTF(jar.getAbsolutePath());
+                    output.writeLong(jar.length());
+                    output.writeLong(jar.lastModified());
+                }
+
+                output.writeInt(locations.size());
+                for (Map.Entry<String, Location> entry : locations.entrySet()) {
+                    Location location = entry.getValue();
+                    output.writeUTF(entry.getKey());
+                    output.writeInt(location.jar);
+                    output.writeInt(location.localHeaderOffset);
+                    output.writeInt(location.compressedSize);
+                    output.writeInt(location.size);
+                    output.writeBoolean(location.deflated);
+                }
+            }
+            finally {
+                output.close();
+            }
+
+            // Another process may be reading the old cache, so it's replaced rather than overwritten
+            if (!tempFile.renameTo(cacheFile)) {
+                cacheFile.delete();
+                tempFile.renameTo(cacheFile);
+            }
+        }
+        catch (IOException e) {
+            // The cache is only an optimization
+            tempFile.delete();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.jetbrains.jet.preloading;
 import org.jetbrains.jet.preloading.instrumentation.Instrumenter;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -14,6 +15,11 @@ public class Preloader {
     public static final int PRELOADER_ARG_COUNT = 4;
     private static final String INSTRUMENT_PREFIX = "instrument=";
 
+    // Classes are read from jars mapped to memory when they are loaded, rather than all at once
+    private static final String LAZY_PROPERTY = "kotlin.preloader.lazy";
+    // File to keep the index of the jars for the lazy mode in between runs, implies the lazy mode
+    private static final String INDEX_CACHE_PROPERTY = "kotlin.preloader.index.cache";
+
     public static void main(String[] args) throws Exception {
         if (args.length < PRELOADER_ARG_COUNT) {
             printUsageAndExit();
@@ -44,7 +50,7 @@ public class Preloader {
         ClassLoader withInstrumenter = instrumentersClasspath.length > 0 ? new URLClassLoader(instrumentersClasspath, parent) : parent;
 
         Handler handler = getHandler(mode, withInstrumenter);
-        ClassLoader preloaded = ClassPreloadingUtils.preloadClasses(files, classNumber, withInstrumenter, handler);
+        ClassLoader preloaded = createClassLoader(files, classNumber, withInstrumenter, handler);
 
         Class<?> mainClass = preloaded.loadClass(mainClassCanonicalName);
         Method mainMethod = mainClass.getMethod("main", String[].class);
@@ -63,6 +69,16 @@ public class Preloader {
         }
     }
 
+    private static ClassLoader createClassLoader(List<File> files, int classNumber, ClassLoader parent, Handler handler)
+            throws IOException {
+        String indexCache = System.getProperty(INDEX_CACHE_PROPERTY);
+        if (indexCache != null || Boolean.getBoolean(LAZY_PROPERTY)) {
+            File indexCacheFile = indexCache != null ? new File(indexCache) : null;
+            return ClassPreloadingUtils.preloadClassesLazily(files, classNumber, parent, handler, indexCacheFile);
+        }
+        return ClassPreloadingUtils.preloadClasses(files, classNumber, parent, handler);
+    }
+
     private static URL[] parseInstrumentersClasspath(Mode mode, String modeStr)
             throws MalformedURLException {
         URL[] instrumentersClasspath;
@@ -163,6 +179,7 @@ public class Preloader {
 
     private static void printUsageAndExit() {
         System.out.println("Usage: Preloader <paths to jars> <main class> <class number estimate> <notime|time|instrument=<instrumenters class path>> <parameters to pass to the main class>");
+        System.out.println("To load classes only when they are needed, run with -D" + LAZY_PROPERTY + "=true or -D" + INDEX_CACHE_PROPERTY + "=<index file>");
         System.exit(1);
     }
 
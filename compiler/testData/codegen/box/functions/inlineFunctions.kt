@@ -0,0 +1,31 @@
+inline fun <T> Array<T>.forAll(f: (T) -> Unit) {
+    for (element in this) {
+        f(element)
+    }
+}
+
+inline fun firstPositive(a: Int, b: Int, default: Int = -1): Int {
+    if (a > 0) return a
+    if (b > 0) return b
+    return default
+}
+
+inline fun <T> choose(condition: Boolean, ifTrue: () -> T, ifFalse: () -> T): T = if (condition) ifTrue() else ifFalse()
+
+fun box(): String {
+    var sum = 0
+    array(1, 2).forAll { i ->
+        array(10, 20).forAll { j -> sum += i * j }
+    }
+    if (sum != 90) return "Fail nested: $sum"
+
+    if (firstPositive(-1, 2) != 2) return "Fail return"
+    if (firstPositive(-1, -2) != -1) return "Fail default"
+    if (firstPositive(-1, -2, 3) != 3) return "Fail argument"
+
+    var evaluated = ""
+    val result = choose(sum > 0, { evaluated += "T"; "O" }, { evaluated += "F"; "Fail" })
+    if (evaluated != "T") return "Fail evaluated: $evaluated"
+
+    return result + "K"
+}
@@ -0,0 +1,23 @@
+fun fail(lock: Any): Int = synchronized(lock) {
+    if (lock is String) lock.length else throw IllegalStateException()
+}
+
+fun box(): String {
+    val lock = Any()
+
+    val result = synchronized(lock) { if (Thread.holdsLock(lock)) "O" else "Fail" }
+    if (Thread.holdsLock(lock)) return "Fail: the lock is held after the block"
+
+    val nested = synchronized(lock) { synchronized(lock) { 21 } * 2 }
+    if (nested != 42) return "Fail nested: $nested"
+
+    try {
+        fail(lock)
+        return "Fail: no exception"
+    }
+    catch (e: IllegalStateException) {
+    }
+    if (Thread.holdsLock(lock)) return "Fail: the lock is held after an exception"
+
+    return result + "K"
+}
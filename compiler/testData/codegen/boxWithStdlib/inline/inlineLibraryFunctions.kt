@@ -0,0 +1,21 @@
+fun sum(list: List<Int>): Int {
+    var result = 0
+    list.forEach { result += it }
+    return result
+}
+
+fun box(): String {
+    val list = arrayListOf(1, 2, 3)
+    if (sum(list) != 6) return "Fail forEach: ${sum(list)}"
+
+    val doubled = list.map { it * 2 }
+    if (doubled != arrayListOf(2, 4, 6)) return "Fail map: $doubled"
+
+    val odd = list.filter { it % 2 == 1 }
+    if (odd != arrayListOf(1, 3)) return "Fail filter: $odd"
+
+    val f = { (x: Int) -> x + 1 }
+    if (list.map(f) != arrayListOf(2, 3, 4)) return "Fail map with a function: ${list.map(f)}"
+
+    return "OK"
+}
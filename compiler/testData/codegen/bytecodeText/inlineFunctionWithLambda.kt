@@ -0,0 +1,12 @@
+inline fun <T> runTwice(f: () -> T): T {
+    f()
+    return f()
+}
+
+fun test(s: String): Int {
+    var count = 0
+    return runTwice { count += s.length; count }
+}
+
+// 0 INVOKESTATIC .*runTwice
+// 0 NEW .*\$test\$
@@ -0,0 +1,5 @@
+fun test(lock: Any, x: Int): Int = synchronized(lock) { x + 1 }
+
+// 1 MONITORENTER
+// 2 MONITOREXIT
+// 0 stupidSync
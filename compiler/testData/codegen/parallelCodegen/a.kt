@@ -0,0 +1,11 @@
+package a
+
+class A(val x: Int) {
+    fun twice(): Int = apply { it * 2 }
+
+    class object {
+        fun create(): A = A(42)
+    }
+}
+
+fun apply(f: (Int) -> Int): Int = f(21)
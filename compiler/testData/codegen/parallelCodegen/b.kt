@@ -0,0 +1,15 @@
+package b
+
+import a.A
+
+trait Shape {
+    fun area(): Int
+}
+
+class Square(val side: Int) : Shape {
+    override fun area(): Int = side * side
+}
+
+fun squares(): List<Shape> = (1..3).map { Square(it) }
+
+fun fromA(): Int = A.create().twice()
@@ -0,0 +1,17 @@
+package c
+
+import b.squares
+
+object Counter {
+    var count = 0
+}
+
+fun total(): Int {
+    val sum = { (x: Int, y: Int) -> x + y }
+    var result = 0
+    for (shape in squares()) {
+        result = sum(result, shape.area())
+        Counter.count++
+    }
+    return result
+}
@@ -0,0 +1,16 @@
+package d
+
+import java.util.ArrayList
+import java.util.Collections
+import java.util.HashMap
+
+fun sortedKeys(): List<String> {
+    val map = HashMap<String, Int>()
+    map.put("b", 2)
+    map.put("a", 1)
+    val keys = ArrayList<String>(map.keySet())
+    Collections.sort(keys)
+    return keys
+}
+
+fun runnable(): Runnable = Runnable { System.out.println(sortedKeys()) }
@@ -0,0 +1,16 @@
+package e
+
+import java.util.TreeMap
+import java.util.concurrent.Callable
+
+fun callable(): Callable<String> = Callable { StringBuilder().append(Integer.MAX_VALUE).toString() }
+
+fun lengths(strings: List<String>): Map<String, Int> {
+    val result = TreeMap<String, Int>()
+    for (s in strings) {
+        result.put(s, s.length())
+    }
+    return result
+}
+
+fun thread(): Thread = Thread(Runnable { System.out.println(lengths(listOf(Character.toString('x')))) })
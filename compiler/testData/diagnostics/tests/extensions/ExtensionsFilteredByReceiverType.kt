@@ -0,0 +1,16 @@
+package a
+
+trait Base
+class Derived : Base
+class Other
+
+fun Base.foo(<!UNUSED_PARAMETER!>i<!>: Int) {}
+fun Other.foo(<!UNUSED_PARAMETER!>s<!>: String) {}
+fun Other.bar() {}
+
+fun test(d: Derived, o: Other?) {
+    d.foo(1)
+    d.foo(<!TYPE_MISMATCH!>""<!>)
+    o?.foo("")
+    d.<!UNRESOLVED_REFERENCE_WRONG_RECEIVER!>bar<!>()
+}
@@ -0,0 +1,40 @@
+package a
+
+import java.util.ArrayList
+
+class Counter(val start: Int) {
+    var count = start
+        set(value) {
+            $count = value
+        }
+
+    val twice = start * 2
+
+    fun increment(): Int {
+        count++
+        return count
+    }
+
+    fun names() = b.names(count)
+
+    fun wrong(): String = count
+}
+
+val counter = Counter(b.defaultStart)
+
+fun total(counters: List<Counter>): Int {
+    var sum = 0
+    for (c in counters) {
+        sum += c.increment()
+    }
+    return sum
+}
+
+fun all(): ArrayList<Counter> {
+    val result = ArrayList<Counter>()
+    result.add(counter)
+    result.add(Counter(total(result)))
+    return result
+}
+
+fun unresolved() = missing(counter)
@@ -0,0 +1,27 @@
+package b
+
+import java.util.HashMap
+
+val defaultStart = a.total(a.all()) + 1
+
+fun names(n: Int): List<String> {
+    val result = java.util.ArrayList<String>()
+    for (i in 0..n) {
+        result.add("name$i")
+    }
+    return result
+}
+
+val cache = HashMap<String, Int>()
+
+fun cached(name: String): Int {
+    val value = cache.get(name)
+    if (value != null) return value
+    val computed = name.length
+    cache.put(name, computed)
+    return computed
+}
+
+fun mismatch(): Int = "not an int"
+
+fun recursive() = recursive()
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cfg;
+
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.cfg.PseudocodeTraverser.Edges;
+import org.jetbrains.jet.lang.cfg.PseudocodeVariablesData;
+import org.jetbrains.jet.lang.cfg.PseudocodeVariablesData.VariableInitState;
+import org.jetbrains.jet.lang.cfg.PseudocodeVariablesData.VariableUseState;
+import org.jetbrains.jet.lang.cfg.pseudocode.*;
+import org.jetbrains.jet.lang.descriptors.VariableDescriptor;
+import org.jetbrains.jet.lang.descriptors.impl.LocalVariableDescriptor;
+import org.jetbrains.jet.lang.psi.JetDeclaration;
+import org.jetbrains.jet.lang.psi.JetElement;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Checks the initialization and use states computed by {@link PseudocodeVariablesData} at the reads and writes of local variables.
+ * A read is reported as initialized or not, a write by whether its value can be read later.
+ */
+public class PseudocodeVariablesDataTest extends KotlinTestWithEnvironment {
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testWhileLoop() {
+        doTest(
+                "4: read i: initialized\n" +
+                "5: read i: initialized\n" +
+                "5: write s: read later\n" +
+                "6: read i: initialized\n" +
+                "6: write i: read later\n" +
+                "8: read s: uninitialized\n",
+
+                "fun f(n: Int) {",
+                "    var i = 0",
+                "    var s: Int",
+                "    while (i < n) {",
+                "        s = i",
+                "        i++",
+                "    }",
+                "    s",
+                "}"
+        );
+    }
+
+    public void testForLoop() {
+        doTest(
+                "4: read i: initialized\n" +
+                "4: write last: read later\n" +
+                "6: read last: initialized\n",
+
+                "fun f(n: Int) {",
+                "    var last = -1",
+                "    for (i in 0..n) {",
+                "        last = i",
+                "    }",
+                "    last",
+                "}"
+        );
+    }
+
+    public void testBreakAndContinue() {
+        doTest(
+                "5: write x: read later\n" +
+                "8: write x: not read later\n" +
+                "11: read x: initialized\n",
+
+                "fun f(b: Boolean) {",
+                "    var x: Int",
+                "    while (true) {",
+                "        if (b) {",
+                "            x = 1",
+                "            break",
+                "        }",
+                "        x = 2",
+                "        continue",
+                "    }",
+                "    x",
+                "}"
+        );
+    }
+
+    public void testReturn() {
+        doTest(
+                "5: write z: not read later\n" +
+                "8: write z: read later\n" +
+                "9: read z: initialized\n" +
+                "9: write y: read later\n" +
+                "10: read y: initialized\n",
+
+                "fun f(b: Boolean): Int {",
+                "    val y: Int",
+                "    var z = 0",
+                "    if (b) {",
+                "        z = 1",
+                "        return 0",
+                "    }",
+                "    z = 2",
+                "    y = z",
+                "    return y",
+                "}"
+        );
+    }
+
+    public void testFinally() {
+        // The finally block is copied for the exception thrown at the start of try, for the return and for the normal exit
+        doTest(
+                "5: write x: read later\n" +
+                "7: write y: read later\n" +
+                "10: read x: initialized, uninitialized\n" +
+                "11: read y: initialized\n" +
+                "13: read x: initialized\n",
+
+                "fun f(b: Boolean) {",
+                "    val x: Int",
+                "    var y = 0",
+                "    try {",
+                "        x = 1",
+                "        if (b) return",
+                "        y = 1",
+                "    }",
+                "    finally {",
+                "        x",
+                "        y",
+                "    }",
+                "    x",
+                "}"
+        );
+    }
+
+    private void doTest(@NotNull String expected, @NotNull String... lines) {
+        String text = StringUtil.join(lines, "\n");
+        JetFile file = JetTestUtils.createFile("test.kt", text, getProject());
+        BindingContext bindingContext = JetTestUtils.analyzeFile(file).getBindingContext();
+
+        List<JetDeclaration> declarations = file.getDeclarations();
+        assertEquals(1, declarations.size());
+        Pseudocode pseudocode = PseudocodeUtil.generatePseudocode(declarations.get(0), bindingContext);
+        PseudocodeVariablesData variablesData = new PseudocodeVariablesData(pseudocode, bindingContext);
+        Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> initializers = variablesData.getVariableInitializers();
+        Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> useStatusData = variablesData.getVariableUseStatusData();
+
+        // Copies of a finally block have the same elements, so the states of all copies are reported together
+        Map<Integer, Map<String, Set<String>>> statesByLine = new TreeMap<Integer, Map<String, Set<String>>>();
+        for (Instruction instruction : pseudocode.getInstructions()) {
+            VariableDescriptor variable = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, true, bindingContext);
+            if (!(variable instanceof LocalVariableDescriptor)) continue;
+
+            JetElement element;
+            String state;
+            if (instruction instanceof ReadValueInstruction) {
+                element = ((ReadValueInstruction) instruction).getElement();
+                state = initializers.get(instruction).out.get(variable).isInitialized ? "initialized" : "uninitialized";
+            }
+            else if (instruction instanceof WriteValueInstruction) {
+                element = ((WriteValueInstruction) instruction).getlValue();
+                state = useStatusData.get(instruction).in.get(variable) == VariableUseState.LAST_READ ? "read later" : "not read later";
+            }
+            else {
+                continue;
+            }
+
+            String kind = instruction instanceof ReadValueInstruction ? "read" : "write";
+            int line = StringUtil.offsetToLineNumber(text, element.getTextOffset()) + 1;
+            Map<String, Set<String>> states = statesByLine.get(line);
+            if (states == null) {
+                states = new TreeMap<String, Set<String>>();
+                statesByLine.put(line, states);
+            }
+            String key = kind + " " + variable.getName().asString();
+            Set<String> variableStates = states.get(key);
+            if (variableStates == null) {
+                variableStates = new TreeSet<String>();
+                states.put(key, variableStates);
+            }
+            variableStates.add(state);
+        }
+
+        StringBuilder actual = new StringBuilder();
+        for (Map.Entry<Integer, Map<String, Set<String>>> lineEntry : statesByLine.entrySet()) {
+            for (Map.Entry<String, Set<String>> entry : lineEntry.getValue().entrySet()) {
+                actual.append(lineEntry.getKey()).append(": ").append(entry.getKey()).append(": ")
+                        .append(StringUtil.join(entry.getValue(), ", ")).append("\n");
+            }
+        }
+        assertEquals(expected, actual.toString());
+    }
+}
@@ -2631,6 +2631,11 @@ public class JetDiagnosticsTestGenerated extends AbstractDiagnosticsTestWithEage
                 doTest("compiler/testData/diagnostics/tests/extensions/ExtensionsCalledOnSuper.kt");
             }
             
+            @TestMetadata("ExtensionsFilteredByReceiverType.kt")
+            public void testExtensionsFilteredByReceiverType() throws Exception {
+                doTest("compiler/testData/diagnostics/tests/extensions/ExtensionsFilteredByReceiverType.kt");
+            }
+            
             @TestMetadata("GenericIterator.kt")
             public void testGenericIterator() throws Exception {
                 doTest("compiler/testData/diagnostics/tests/extensions/GenericIterator.kt");
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.checkers;
+
+import com.google.common.base.Predicates;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestCaseBuilder;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.diagnostics.Diagnostic;
+import org.jetbrains.jet.lang.diagnostics.rendering.DefaultErrorMessages;
+import org.jetbrains.jet.lang.psi.JetExpression;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.JetPsiFactory;
+import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.BindingTraceContext;
+import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+import org.jetbrains.jet.lang.types.JetType;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+public class ParallelBodyResolveTest extends KotlinTestWithEnvironment {
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testSameResultsAsSerial() throws IOException {
+        List<JetFile> files = loadFiles("a.kt", "b.kt");
+
+        BindingContext serial = analyze(files, 1);
+        BindingContext parallel = analyze(files, 4);
+
+        // Types of declarations are computed before bodies in the parallel mode, so diagnostics may come in a different order
+        assertEquals(sorted(renderDiagnostics(serial)), sorted(renderDiagnostics(parallel)));
+        assertEquals(renderExpressionTypes(serial), renderExpressionTypes(parallel));
+    }
+
+    public void testDeterministicDiagnostics() throws IOException {
+        List<JetFile> files = loadFiles("a.kt", "b.kt");
+
+        List<String> expected = renderDiagnostics(analyze(files, 4));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(expected, renderDiagnostics(analyze(files, 4)));
+        }
+    }
+
+    private List<JetFile> loadFiles(String... names) throws IOException {
+        List<JetFile> files = new ArrayList<JetFile>(names.length);
+        for (String name : names) {
+            File file = new File(JetTestCaseBuilder.getTestDataPathBase(), "parallelBodyResolve/" + name);
+            files.add(JetPsiFactory.createFile(getProject(), name, FileUtil.loadFile(file, true)));
+        }
+        return files;
+    }
+
+    private BindingContext analyze(List<JetFile> files, int threads) {
+        return AnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
+                getProject(), files, new BindingTraceContext(), Collections.<AnalyzerScriptParameter>emptyList(),
+                Predicates.<PsiFile>alwaysTrue(), false, threads).getBindingContext();
+    }
+
+    private static List<String> renderDiagnostics(BindingContext context) {
+        List<String> result = new ArrayList<String>();
+        for (Diagnostic diagnostic : context.getDiagnostics()) {
+            StringBuilder sb = new StringBuilder(diagnostic.getPsiFile().getName());
+            for (TextRange range : diagnostic.getTextRanges()) {
+                sb.append(" ").append(range);
+            }
+            result.add(sb.append(" ").append(DefaultErrorMessages.RENDERER.render(diagnostic)).toString());
+        }
+        return result;
+    }
+
+    private static Map<String, String> renderExpressionTypes(BindingContext context) {
+        Map<String, String> result = new TreeMap<String, String>();
+        Collection<JetExpression> expressions = context.getKeys(BindingContext.EXPRESSION_TYPE);
+        if (expressions == null) return result;
+
+        for (JetExpression expression : expressions) {
+            JetType type = context.get(BindingContext.EXPRESSION_TYPE, expression);
+            result.put(expression.getContainingFile().getName() + " " + expression.getTextRange(), String.valueOf(type));
+        }
+        return result;
+    }
+
+    private static List<String> sorted(List<String> list) {
+        List<String> result = new ArrayList<String>(list);
+        Collections.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.common.daemon;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+import org.jetbrains.jet.JetTestCaseBuilder;
+import org.jetbrains.jet.cli.common.ExitCode;
+import org.jetbrains.jet.cli.common.messages.MessageCollectorToString;
+import org.jetbrains.jet.cli.jvm.K2JVMCompiler;
+import org.jetbrains.jet.codegen.forTestCompile.ForTestCompileRuntime;
+import org.jetbrains.jet.codegen.forTestCompile.ForTestPackJdkAnnotations;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+public class CompilerDaemonTest extends TestCase {
+    private static final String SECRET = "secret";
+
+    private ServerSocket serverSocket;
+    private Thread daemonThread;
+    private File tempDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tempDir = FileUtil.createTempDirectory("compilerDaemonTest", "compilerDaemonTest");
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName(null));
+        final CompilerDaemon daemon = new CompilerDaemon(new File(".").getCanonicalPath(), SECRET);
+        daemonThread = new Thread("Compiler daemon") {
+            @Override
+            public void run() {
+                try {
+                    daemon.serve(serverSocket);
+                }
+                catch (IOException e) {
+                    // The socket has been closed
+                }
+            }
+        };
+        daemonThread.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        serverSocket.close();
+        daemonThread.join();
+        FileUtil.delete(tempDir);
+        super.tearDown();
+    }
+
+    public void testCompileTwice() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            File out = new File(tempDir, "out" + i);
+            MessageCollectorToString messageCollector = new MessageCollectorToString();
+            Integer exitCode = compile(K2JVMCompiler.class.getName(), compileSmokeArguments(out), null, messageCollector);
+            assertEquals(messageCollector.getString(), Integer.valueOf(ExitCode.OK.getCode()), exitCode);
+            assertEquals(1, out.listFiles().length);
+            assertEquals(2, out.listFiles()[0].listFiles().length);
+        }
+    }
+
+    public void testCompilationError() throws Exception {
+        File source = new File(tempDir, "error.kt");
+        FileUtil.writeToFile(source, "fun foo(): Int = \"not an int\"");
+
+        MessageCollectorToString messageCollector = new MessageCollectorToString();
+        Integer exitCode = compile(K2JVMCompiler.class.getName(),
+                                   compileArguments(source, new File(tempDir, "out")), null, messageCollector);
+        assertEquals(Integer.valueOf(ExitCode.COMPILATION_ERROR.getCode()), exitCode);
+        assertTrue(messageCollector.getString(), messageCollector.getString().contains("Type mismatch"));
+    }
+
+    public void testArgumentError() throws Exception {
+        MessageCollectorToString messageCollector = new MessageCollectorToString();
+        Integer exitCode = compile(K2JVMCompiler.class.getName(), new String[] {"-noSuchArgument"}, null, messageCollector);
+        assertEquals(Integer.valueOf(ExitCode.INTERNAL_ERROR.getCode()), exitCode);
+        assertTrue(messageCollector.getString(), messageCollector.getString().contains("noSuchArgument"));
+    }
+
+    public void testRejectsWrongSecret() throws Exception {
+        CompilerDaemonClient client = CompilerDaemonClient.connect(serverSocket.getLocalPort(), "wrong " + SECRET,
+                                                                   K2JVMCompiler.class.getName(),
+                                                                   compileSmokeArguments(new File(tempDir, "out")), null);
+        assertNull(client);
+    }
+
+    public void testRejectsScript() throws Exception {
+        File script = new File(tempDir, "script.ktscript");
+        FileUtil.writeToFile(script, "System.out.println(\"script\")");
+        Integer exitCode = compile(K2JVMCompiler.class.getName(), new String[] {"-script", script.getAbsolutePath()}, null,
+                                   new MessageCollectorToString());
+        assertNull(exitCode);
+    }
+
+    public void testRejectsRepl() throws Exception {
+        Integer exitCode = compile(K2JVMCompiler.class.getName(), new String[] {"-noStdlib"}, null, new MessageCollectorToString());
+        assertNull(exitCode);
+    }
+
+    public void testRejectsOtherWorkingDirectory() throws Exception {
+        Integer exitCode = compile(K2JVMCompiler.class.getName(), compileSmokeArguments(new File(tempDir, "out")),
+                                   tempDir.getAbsolutePath(), new MessageCollectorToString());
+        assertNull(exitCode);
+    }
+
+    public void testRejectsUnknownCompiler() throws Exception {
+        Integer exitCode = compile(String.class.getName(), new String[0], null, new MessageCollectorToString());
+        assertNull(exitCode);
+    }
+
+    private Integer compile(
+            String compilerClassName,
+            String[] arguments,
+            String workingDirectory,
+            MessageCollectorToString messageCollector
+    ) {
+        CompilerDaemonClient client = CompilerDaemonClient.connect(serverSocket.getLocalPort(), SECRET, compilerClassName, arguments,
+                                                                   workingDirectory);
+        return client == null ? null : client.receive(messageCollector);
+    }
+
+    private static String[] compileSmokeArguments(File out) {
+        return compileArguments(new File(JetTestCaseBuilder.getTestDataPathBase() + "/compiler/smoke/Smoke.kt"), out);
+    }
+
+    private static String[] compileArguments(File source, File out) {
+        return new String[] {
+                "-src", source.getAbsolutePath(),
+                "-output", out.getAbsolutePath(),
+                "-noStdlib",
+                "-classpath", ForTestCompileRuntime.runtimeJarForTests().getAbsolutePath(),
+                "-noJdkAnnotations",
+                "-annotations", ForTestPackJdkAnnotations.jdkAnnotationsForTests().getAbsolutePath()
+        };
+    }
+}
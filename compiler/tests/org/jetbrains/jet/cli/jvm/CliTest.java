@@ -16,6 +16,12 @@
 
 package org.jetbrains.jet.cli.jvm;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.intellij.openapi.util.io.FileUtil;
 import junit.framework.Assert;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.JetTestUtils;
@@ -38,6 +44,7 @@ import org.junit.rules.TestName;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.PrintStream;
+import java.io.StringReader;
 import java.util.Arrays;
 import java.util.LinkedList;
 
@@ -250,4 +257,54 @@ public class CliTest {
                 "-output", new File(tmpdir.getTmpDir(), "out.js").getPath()};
         executeCompilerCompareOutputJS(args);
     }
+
+    @Test
+    public void upToDateModuleJS() throws Exception {
+        File source = new File(tmpdir.getTmpDir(), "simple.kt");
+        FileUtil.copy(new File("compiler/testData/cli/simple.kt"), source);
+        File output = new File(tmpdir.getTmpDir(), "out.js");
+        String[] args = {
+                "-sourceFiles", source.getPath(),
+                "-fingerprintFile", new File(tmpdir.getTmpDir(), "fingerprint").getPath(),
+                "-output", output.getPath()};
+
+        Assert.assertEquals(ExitCode.OK, CLICompiler.doMainNoExit(new K2JSCompiler(), args));
+        Assert.assertTrue(output.isFile());
+
+        // Nothing has changed, so the output is not written again
+        FileUtil.writeToFile(output, "not translated again");
+        Assert.assertEquals(ExitCode.OK, CLICompiler.doMainNoExit(new K2JSCompiler(), args));
+        Assert.assertEquals("not translated again", FileUtil.loadFile(output));
+
+        FileUtil.writeToFile(source, "\nfun bar() = 42", true);
+        Assert.assertEquals(ExitCode.OK, CLICompiler.doMainNoExit(new K2JSCompiler(), args));
+        Assert.assertTrue(FileUtil.loadFile(output).contains("bar"));
+    }
+
+    @Test
+    public void perfReport() throws Exception {
+        File report = new File(tmpdir.getTmpDir(), "report.json");
+        String[] args = {
+                "-src", "compiler/testData/cli/simple.kt",
+                "-perfReport", report.getPath(),
+                "-output", tmpdir.getTmpDir().getPath()};
+        Assert.assertEquals(ExitCode.OK, CLICompiler.doMainNoExit(new K2JVMCompiler(), args));
+        Assert.assertTrue(report.isFile());
+
+        JsonReader reader = new JsonReader(new StringReader(FileUtil.loadFile(report)));
+        reader.setLenient(false);
+        JsonElement root = new Gson().getAdapter(JsonElement.class).read(reader);
+        Assert.assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+
+        boolean bindingTraceRecordsCounted = false;
+        for (JsonElement section : root.getAsJsonObject().getAsJsonArray("sections")) {
+            JsonObject sectionObject = section.getAsJsonObject();
+            Assert.assertNotNull(sectionObject.get("name").getAsString());
+            Assert.assertTrue(sectionObject.get("wallTimeMs").getAsLong() >= 0);
+            if (sectionObject.getAsJsonObject("counters").has("bindingTraceRecords")) {
+                bindingTraceRecordsCounted = true;
+            }
+        }
+        Assert.assertTrue(bindingTraceRecordsCounted);
+    }
 }
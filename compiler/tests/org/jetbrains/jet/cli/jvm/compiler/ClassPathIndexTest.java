@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.local.CoreLocalFileSystem;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ClassPathIndexTest extends TestCase {
+    private File tempDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tempDir = FileUtil.createTempDirectory("classPathIndex", null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtil.delete(tempDir);
+        super.tearDown();
+    }
+
+    public void testSameClassFileInTwoRoots() throws IOException {
+        VirtualFile first = createRoot("first", "a/b/C.class");
+        VirtualFile second = createRoot("second", "a/b/C.class");
+
+        assertClassFile(first, "a/b/C.class", createIndex(first, second).findClassFile("a.b.C"));
+        assertClassFile(second, "a/b/C.class", createIndex(second, first).findClassFile("a.b.C"));
+    }
+
+    public void testSameNameAsNestedClassAndTopLevelClassInTwoRoots() throws IOException {
+        VirtualFile nested = createRoot("nested", "a/b$C.class");
+        VirtualFile topLevel = createRoot("topLevel", "a/b/C.class");
+
+        assertClassFile(nested, "a/b$C.class", createIndex(nested, topLevel).findClassFile("a.b.C"));
+        assertClassFile(topLevel, "a/b/C.class", createIndex(topLevel, nested).findClassFile("a.b.C"));
+    }
+
+    public void testDeepestPackageWinsWithinRoot() throws IOException {
+        VirtualFile root = createRoot("root", "a/b$C.class", "a/b/C.class");
+
+        assertClassFile(root, "a/b/C.class", createIndex(root).findClassFile("a.b.C"));
+        assertNull(createIndex(root).findClassFile("a.b.D"));
+    }
+
+    private static void assertClassFile(@NotNull VirtualFile root, @NotNull String relativePath, VirtualFile actual) {
+        assertNotNull(actual);
+        assertEquals(root.getPath() + "/" + relativePath, actual.getPath());
+    }
+
+    @NotNull
+    private VirtualFile createRoot(@NotNull String name, @NotNull String... classFiles) throws IOException {
+        File root = new File(tempDir, name);
+        for (String classFile : classFiles) {
+            File file = new File(root, classFile);
+            assertTrue(FileUtil.createIfDoesntExist(file));
+        }
+        VirtualFile virtualFile = new CoreLocalFileSystem().findFileByPath(root.getAbsolutePath());
+        assertNotNull(virtualFile);
+        return virtualFile;
+    }
+
+    @NotNull
+    private static ClassPathIndex createIndex(@NotNull VirtualFile... roots) {
+        ClassPath classPath = new ClassPath();
+        for (VirtualFile root : roots) {
+            classPath.add(root);
+        }
+        return new ClassPathIndex(classPath, null, new ConcurrentHashMap<VirtualFile, List<String>>());
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.test.Tmpdir;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.jar.*;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.*;
+
+public class JarWriterTest {
+    @Rule
+    public final Tmpdir tmpdir = new Tmpdir();
+
+    @Test
+    public void writtenEntriesAndCopiedClasses() throws IOException {
+        File library = new File(tmpdir.getTmpDir(), "library.jar");
+        JarOutputStream libraryStream = new JarOutputStream(new FileOutputStream(library));
+        try {
+            putEntry(libraryStream, "lib/Deflated.class", "deflated".getBytes(), ZipEntry.DEFLATED);
+            putEntry(libraryStream, "lib/Stored.class", "stored".getBytes(), ZipEntry.STORED);
+            putEntry(libraryStream, "lib/resource.txt", "not a class".getBytes(), ZipEntry.DEFLATED);
+        }
+        finally {
+            libraryStream.close();
+        }
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+        manifest.getMainAttributes().putValue("Main-Class", "foo.Main");
+
+        Map<String, byte[]> contents = new LinkedHashMap<String, byte[]>();
+        for (int i = 0; i < 20; i++) {
+            contents.put("foo/C" + i + ".class", ("class " + i).getBytes());
+        }
+
+        File result = new File(tmpdir.getTmpDir(), "result.jar");
+        FileOutputStream resultStream = new FileOutputStream(result);
+        try {
+            JarWriter writer = new JarWriter(resultStream, manifest);
+            writer.writeInParallel(contents);
+            writer.copyClassesFrom(library);
+            writer.finish();
+        }
+        finally {
+            resultStream.close();
+        }
+
+        Map<String, byte[]> expected = new LinkedHashMap<String, byte[]>(contents);
+        expected.put("lib/Deflated.class", "deflated".getBytes());
+        expected.put("lib/Stored.class", "stored".getBytes());
+
+        JarFile jar = new JarFile(result);
+        try {
+            assertEquals("foo.Main", jar.getManifest().getMainAttributes().getValue("Main-Class"));
+
+            List<String> names = new ArrayList<String>();
+            for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+                JarEntry entry = entries.nextElement();
+                names.add(entry.getName());
+                if (expected.containsKey(entry.getName())) {
+                    InputStream input = jar.getInputStream(entry);
+                    try {
+                        assertArrayEquals(entry.getName(), expected.get(entry.getName()), FileUtil.loadBytes(input));
+                    }
+                    finally {
+                        input.close();
+                    }
+                }
+            }
+
+            List<String> expectedNames = new ArrayList<String>();
+            expectedNames.add(JarFile.MANIFEST_NAME);
+            expectedNames.addAll(expected.keySet());
+            assertEquals(expectedNames, names);
+        }
+        finally {
+            jar.close();
+        }
+    }
+
+    private static void putEntry(@NotNull JarOutputStream stream, @NotNull String name, @NotNull byte[] bytes, int method)
+            throws IOException {
+        JarEntry entry = new JarEntry(name);
+        entry.setMethod(method);
+        if (method == ZipEntry.STORED) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            entry.setCrc(crc.getValue());
+            entry.setSize(bytes.length);
+        }
+        stream.putNextEntry(entry);
+        stream.write(bytes);
+        stream.closeEntry();
+    }
+}
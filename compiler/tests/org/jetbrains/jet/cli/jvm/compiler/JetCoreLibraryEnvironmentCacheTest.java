@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.jet.JetTestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JetCoreLibraryEnvironmentCacheTest {
+    @Test
+    public void reusedForSameJars() throws IOException {
+        File jar = createJar("a.jar");
+        File directory = jar.getParentFile();
+
+        JetCoreLibraryEnvironmentCache cache = new JetCoreLibraryEnvironmentCache();
+        try {
+            JetCoreLibraryEnvironment first = cache.get(Arrays.asList(jar, directory));
+            assertSame(first, cache.get(Collections.singletonList(jar)));
+
+            // Directories are not read by the library environment
+            assertSame(first, cache.get(Arrays.asList(directory, jar)));
+        }
+        finally {
+            cache.dispose();
+        }
+    }
+
+    @Test
+    public void recreatedWhenJarsChange() throws IOException {
+        File jar = createJar("a.jar");
+        List<File> classpath = Collections.singletonList(jar);
+
+        JetCoreLibraryEnvironmentCache cache = new JetCoreLibraryEnvironmentCache();
+        try {
+            JetCoreLibraryEnvironment first = cache.get(classpath);
+
+            JetCoreLibraryEnvironment withAnotherJar = cache.get(Arrays.asList(jar, createJar("b.jar")));
+            assertNotSame(first, withAnotherJar);
+
+            JetCoreLibraryEnvironment third = cache.get(classpath);
+            assertNotSame(withAnotherJar, third);
+
+            assertTrue(jar.setLastModified(jar.lastModified() - 10000));
+            assertNotSame("A modified jar should be read again", third, cache.get(classpath));
+        }
+        finally {
+            cache.dispose();
+        }
+    }
+
+    private static File createJar(String name) throws IOException {
+        File jar = new File(JetTestUtils.tmpDir("libraryEnvironmentCache"), name);
+        FileUtil.writeToFile(jar, "not read by the test");
+        return jar;
+    }
+}
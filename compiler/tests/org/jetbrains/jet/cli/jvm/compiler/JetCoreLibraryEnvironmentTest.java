@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.TestJdkKind;
+import org.jetbrains.jet.lang.resolve.java.PackageClassUtils;
+import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileFinder;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JetCoreLibraryEnvironmentTest {
+    private static final FqName KOTLIN_PACKAGE_CLASS = PackageClassUtils.getPackageClassFqName(new FqName("kotlin"));
+
+    @Test
+    public void environmentsOfModulesShareLibraries() {
+        Disposable libraryDisposable = Disposer.newDisposable();
+        try {
+            JetCoreLibraryEnvironment libraryEnvironment = new JetCoreLibraryEnvironment(libraryDisposable);
+
+            Disposable firstDisposable = Disposer.newDisposable();
+            JetCoreEnvironment first = createEnvironment(firstDisposable, libraryEnvironment);
+            VirtualFile fromFirst = findClassFile(first);
+            assertNotNull(fromFirst);
+            Disposer.dispose(firstDisposable);
+
+            Disposable secondDisposable = Disposer.newDisposable();
+            try {
+                JetCoreEnvironment second = createEnvironment(secondDisposable, libraryEnvironment);
+                assertNotSame(first.getProject(), second.getProject());
+                assertSame("Jars should be read once for all environments", fromFirst, findClassFile(second));
+            }
+            finally {
+                Disposer.dispose(secondDisposable);
+            }
+        }
+        finally {
+            Disposer.dispose(libraryDisposable);
+        }
+    }
+
+    @NotNull
+    private static JetCoreEnvironment createEnvironment(@NotNull Disposable disposable, @NotNull JetCoreLibraryEnvironment libraries) {
+        return new JetCoreEnvironment(disposable, libraries,
+                                      JetTestUtils.compilerConfigurationForTests(ConfigurationKind.ALL, TestJdkKind.MOCK_JDK));
+    }
+
+    @Nullable
+    private static VirtualFile findClassFile(@NotNull JetCoreEnvironment environment) {
+        return ServiceManager.getService(environment.getProject(), VirtualFileFinder.class).find(KOTLIN_PACKAGE_CLASS);
+    }
+}
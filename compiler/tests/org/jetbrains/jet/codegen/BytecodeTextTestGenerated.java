@@ -57,6 +57,11 @@ public class BytecodeTextTestGenerated extends AbstractBytecodeTextTest {
         doTest("compiler/testData/codegen/bytecodeText/componentEvaluatesOnlyOnce.kt");
     }
     
+    @TestMetadata("inlineFunctionWithLambda.kt")
+    public void testInlineFunctionWithLambda() throws Exception {
+        doTest("compiler/testData/codegen/bytecodeText/inlineFunctionWithLambda.kt");
+    }
+    
     @TestMetadata("intConstantNotNull.kt")
     public void testIntConstantNotNull() throws Exception {
         doTest("compiler/testData/codegen/bytecodeText/intConstantNotNull.kt");
@@ -92,6 +97,11 @@ public class BytecodeTextTestGenerated extends AbstractBytecodeTextTest {
         doTest("compiler/testData/codegen/bytecodeText/privateDefaultArgs.kt");
     }
     
+    @TestMetadata("synchronizedBlock.kt")
+    public void testSynchronizedBlock() throws Exception {
+        doTest("compiler/testData/codegen/bytecodeText/synchronizedBlock.kt");
+    }
+    
     @TestMetadata("topLevelFunWithDefaultArgs.kt")
     public void testTopLevelFunWithDefaultArgs() throws Exception {
         doTest("compiler/testData/codegen/bytecodeText/topLevelFunWithDefaultArgs.kt");
@@ -48,6 +48,25 @@ public class CodegenTestUtil {
 
     @NotNull
     public static ClassFileFactory generateFiles(@NotNull JetCoreEnvironment environment, @NotNull CodegenTestFiles files) {
+        return generateFiles(environment, files, 1);
+    }
+
+    @NotNull
+    public static ClassFileFactory generateFiles(
+            @NotNull JetCoreEnvironment environment,
+            @NotNull CodegenTestFiles files,
+            int codegenThreads
+    ) {
+        return generateFiles(environment, files, codegenThreads, null);
+    }
+
+    @NotNull
+    public static ClassFileFactory generateFiles(
+            @NotNull JetCoreEnvironment environment,
+            @NotNull CodegenTestFiles files,
+            int codegenThreads,
+            @Nullable ClassFileConsumer streamingConsumer
+    ) {
         AnalyzeExhaust analyzeExhaust = AnalyzerFacadeForJVM.analyzeFilesWithJavaIntegrationAndCheckForErrors(
                 environment.getProject(),
                 files.getPsiFiles(),
@@ -60,8 +79,10 @@ public class CodegenTestUtil {
                 environment.getProject(), ClassBuilderFactories.TEST, Progress.DEAF, analyzeExhaust.getBindingContext(), files.getPsiFiles(),
                 configuration.get(JVMConfigurationKeys.GENERATE_NOT_NULL_ASSERTIONS, true),
                 configuration.get(JVMConfigurationKeys.GENERATE_NOT_NULL_PARAMETER_ASSERTIONS, true),
-                /*generateDeclaredClasses = */true
+                /*generateDeclaredClasses = */true,
+                codegenThreads
         );
+        state.getFactory().setStreamingConsumer(streamingConsumer);
         KotlinCodegenFacade.compileCorrectFiles(state, CompilationErrorHandler.THROW_EXCEPTION);
         return state.getFactory();
     }
@@ -52,7 +52,7 @@ public class KotlinClassAnnotationTest extends CodegenTestCase {
 
         ClassData data = JavaProtoBufUtil.readClassDataFrom(kotlinClass.data());
 
-        Set<String> callableNames = collectCallableNames(data.getClassProto().getMemberList(), data.getNameResolver());
+        Set<String> callableNames = collectCallableNames(data.getMembers().getAllMembers(), data.getNameResolver());
         assertSameElements(Arrays.asList("foo", "bar"), callableNames);
     }
 }
@@ -56,7 +56,7 @@ public class KotlinPackageAnnotationTest extends CodegenTestCase {
 
         PackageData data = JavaProtoBufUtil.readPackageDataFrom(kotlinPackage.data());
 
-        Set<String> callableNames = collectCallableNames(data.getPackageProto().getMemberList(), data.getNameResolver());
+        Set<String> callableNames = collectCallableNames(data.getMembers().getAllMembers(), data.getNameResolver());
         assertSameElements(Arrays.asList("foo", "bar", "C"), callableNames);
     }
 
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.codegen;
+
+import org.jetbrains.jet.ConfigurationKind;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ParallelCodegenTest extends CodegenTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.ALL);
+    }
+
+    public void testSameOutputAsSerial() {
+        // d and e load Java classes and their members lazily during code generation
+        loadFiles("parallelCodegen/a.kt", "parallelCodegen/b.kt", "parallelCodegen/c.kt", "parallelCodegen/d.kt", "parallelCodegen/e.kt");
+
+        ClassFileFactory serial = CodegenTestUtil.generateFiles(myEnvironment, myFiles, 1);
+        ClassFileFactory parallel = CodegenTestUtil.generateFiles(myEnvironment, myFiles, 5);
+
+        List<String> files = serial.files();
+        assertEquals(files, parallel.files());
+        for (String file : files) {
+            assertTrue("Different bytecode for " + file, Arrays.equals(serial.asBytes(file), parallel.asBytes(file)));
+        }
+    }
+}
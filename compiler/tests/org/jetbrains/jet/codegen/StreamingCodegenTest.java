@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+
+import java.io.File;
+import java.util.*;
+
+public class StreamingCodegenTest extends CodegenTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.ALL);
+    }
+
+    public void testSameOutputAsInMemory() {
+        doTest(1);
+    }
+
+    public void testSameOutputAsInMemoryWithParallelCodegen() {
+        doTest(3);
+    }
+
+    private void doTest(int codegenThreads) {
+        loadFiles("parallelCodegen/a.kt", "parallelCodegen/b.kt", "parallelCodegen/c.kt");
+
+        final Map<String, byte[]> consumed = Collections.synchronizedMap(new HashMap<String, byte[]>());
+        ClassFileFactory streaming = CodegenTestUtil.generateFiles(myEnvironment, myFiles, codegenThreads, new ClassFileConsumer() {
+            @Override
+            public void consume(@NotNull String relativeClassFilePath, @NotNull List<File> sourceFiles, @NotNull byte[] bytes) {
+                assertNull("Class consumed twice: " + relativeClassFilePath, consumed.put(relativeClassFilePath, bytes));
+            }
+        });
+        ClassFileFactory inMemory = CodegenTestUtil.generateFiles(myEnvironment, myFiles);
+
+        List<String> files = inMemory.files();
+        assertEquals(files, streaming.files());
+        assertEquals(new HashSet<String>(files), consumed.keySet());
+        for (String file : files) {
+            assertTrue("Different bytecode for " + file, Arrays.equals(inMemory.asBytes(file), consumed.get(file)));
+        }
+    }
+}
@@ -2357,6 +2357,11 @@ public class BlackBoxCodegenTestGenerated extends AbstractBlackBoxCodegenTest {
             doTest("compiler/testData/codegen/box/functions/functionNtoString.kt");
         }
         
+        @TestMetadata("inlineFunctions.kt")
+        public void testInlineFunctions() throws Exception {
+            doTest("compiler/testData/codegen/box/functions/inlineFunctions.kt");
+        }
+        
         @TestMetadata("kt1038.kt")
         public void testKt1038() throws Exception {
             doTest("compiler/testData/codegen/box/functions/kt1038.kt");
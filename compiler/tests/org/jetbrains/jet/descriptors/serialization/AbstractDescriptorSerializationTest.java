@@ -110,7 +110,7 @@ public abstract class AbstractDescriptorSerializationTest extends KotlinTestWith
 
         DescriptorDeserializer deserializer = DescriptorDeserializer
                 .create(new LockBasedStorageManager(), namespace, data.getNameResolver(), descriptorFinder, UNSUPPORTED);
-        for (ProtoBuf.Callable proto : data.getPackageProto().getMemberList()) {
+        for (ProtoBuf.Callable proto : data.getMembers().getAllMembers()) {
             CallableMemberDescriptor descriptor = deserializer.loadCallable(proto);
             if (descriptor instanceof FunctionDescriptor) {
                 namespace.getMemberScope().addFunctionDescriptor((FunctionDescriptor) descriptor);
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.descriptors.serialization;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.ExtensionRegistryLite;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+import org.jetbrains.jet.lang.resolve.name.Name;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class MemberTableTest extends KotlinTestWithEnvironment {
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testClassMembers() throws Exception {
+        KotlinBuiltIns builtIns = KotlinBuiltIns.getInstance();
+        for (ClassDescriptor classDescriptor : new ClassDescriptor[] {builtIns.getString(), builtIns.getInt(), builtIns.getArray()}) {
+            DescriptorSerializer serializer = new DescriptorSerializer();
+            ProtoBuf.Class classProto = serializer.classProto(classDescriptor).build();
+            NameResolver nameResolver = NameSerializationUtil.createNameResolver(serializer.getNameTable());
+            assertFalse("No members in " + classDescriptor, classProto.getMemberList().isEmpty());
+
+            ClassData classData = ClassData.read(new ClassData(nameResolver, classProto).toBytes(), ExtensionRegistryLite.getEmptyRegistry());
+
+            assertEquals(0, classData.getClassProto().getMemberCount());
+            assertMembers(classProto.getMemberList(), classData.getMembers(), classData.getNameResolver());
+        }
+    }
+
+    public void testPackageMembers() throws Exception {
+        DescriptorSerializer serializer = new DescriptorSerializer();
+        ProtoBuf.Package packageProto = serializer.packageProto(KotlinBuiltIns.getInstance().getBuiltInsPackage()).build();
+        NameResolver nameResolver = NameSerializationUtil.createNameResolver(serializer.getNameTable());
+
+        PackageData packageData =
+                PackageData.read(new PackageData(nameResolver, packageProto).toBytes(), ExtensionRegistryLite.getEmptyRegistry());
+
+        assertEquals(0, packageData.getPackageProto().getMemberCount());
+        assertMembers(packageProto.getMemberList(), packageData.getMembers(), packageData.getNameResolver());
+    }
+
+    private static void assertMembers(
+            @NotNull List<ProtoBuf.Callable> expected,
+            @NotNull MemberTable actual,
+            @NotNull NameResolver nameResolver
+    ) {
+        assertEquals(toBytes(expected), toBytes(actual.getAllMembers()));
+
+        Set<Name> expectedNames = new HashSet<Name>();
+        for (ProtoBuf.Callable member : expected) {
+            expectedNames.add(nameResolver.getName(member.getName()));
+        }
+        assertEquals(expectedNames, new HashSet<Name>(actual.getNames()));
+
+        for (Name name : expectedNames) {
+            List<ProtoBuf.Callable> expectedWithName = new ArrayList<ProtoBuf.Callable>();
+            for (ProtoBuf.Callable member : expected) {
+                if (nameResolver.getName(member.getName()).equals(name)) {
+                    expectedWithName.add(member);
+                }
+            }
+            assertEquals(name.asString(), toBytes(expectedWithName), toBytes(actual.getMembers(name)));
+        }
+    }
+
+    // Lite messages don't override equals()
+    @NotNull
+    private static List<ByteString> toBytes(@NotNull List<ProtoBuf.Callable> members) {
+        List<ByteString> result = new ArrayList<ByteString>(members.size());
+        for (ProtoBuf.Callable member : members) {
+            result.add(member.toByteString());
+        }
+        return result;
+    }
+}
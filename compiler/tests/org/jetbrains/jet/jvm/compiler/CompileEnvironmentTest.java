@@ -94,6 +94,32 @@ public class CompileEnvironmentTest extends TestCase {
         }
     }
 
+    public void testClasspathIndexCache() throws IOException {
+        File tempDir = FileUtil.createTempDirectory("compilerTest", "compilerTest");
+        try {
+            File out = new File(tempDir, "out");
+            File cache = new File(tempDir, "cache");
+            File stdlib = ForTestCompileRuntime.runtimeJarForTests();
+            File jdkAnnotations = ForTestPackJdkAnnotations.jdkAnnotationsForTests();
+            for (int i = 0; i < 2; i++) {
+                ExitCode exitCode = new K2JVMCompiler()
+                        .exec(System.out, "-src", JetTestCaseBuilder.getTestDataPathBase() + "/compiler/smoke/Smoke.kt",
+                              "-output", out.getAbsolutePath(),
+                              "-noStdlib",
+                              "-classpath", stdlib.getAbsolutePath(),
+                              "-noJdkAnnotations",
+                              "-annotations", jdkAnnotations.getAbsolutePath(),
+                              "-classpathIndexCache", cache.getAbsolutePath());
+                Assert.assertEquals(ExitCode.OK, exitCode);
+                File[] cacheFiles = cache.listFiles();
+                assertNotNull(cacheFiles);
+                assertEquals(2, cacheFiles.length);
+            }
+        } finally {
+            FileUtil.delete(tempDir);
+        }
+    }
+
     private static List<String> listEntries(JarInputStream is) throws IOException {
         List<String> entries = new ArrayList<String>();
         while (true) {
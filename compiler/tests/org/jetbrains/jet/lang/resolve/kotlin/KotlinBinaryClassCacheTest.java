@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.kotlin;
+
+import com.intellij.testFramework.LightVirtualFile;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.asm4.ClassWriter;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import static org.jetbrains.asm4.Opcodes.*;
+
+public class KotlinBinaryClassCacheTest extends TestCase {
+    public void testCacheHit() {
+        KotlinBinaryClassCache cache = new KotlinBinaryClassCache();
+        ClassFile file = new ClassFile("test/A");
+
+        assertEquals("test/A", new VirtualFileKotlinClass(file, cache).getClassName().getInternalName());
+        assertEquals("test/A", new VirtualFileKotlinClass(file, cache).getClassName().getInternalName());
+        assertEquals(1, file.reads);
+    }
+
+    public void testInvalidatedWhenFileChanges() {
+        KotlinBinaryClassCache cache = new KotlinBinaryClassCache();
+        ClassFile file = new ClassFile("test/A");
+
+        assertEquals("test/A", new VirtualFileKotlinClass(file, cache).getClassName().getInternalName());
+        file.setClass("test/B");
+        assertEquals("test/B", new VirtualFileKotlinClass(file, cache).getClassName().getInternalName());
+        assertEquals("test/B", new VirtualFileKotlinClass(file, cache).getClassName().getInternalName());
+        assertEquals(2, file.reads);
+    }
+
+    public void testNotSharedBetweenCaches() {
+        ClassFile file = new ClassFile("test/A");
+
+        new VirtualFileKotlinClass(file, new KotlinBinaryClassCache()).getClassName();
+        new VirtualFileKotlinClass(file, new KotlinBinaryClassCache()).getClassName();
+        new VirtualFileKotlinClass(file).getClassName();
+        assertEquals(3, file.reads);
+    }
+
+    public void testMembersWithoutAnnotationsAreVisited() {
+        ClassFile file = new ClassFile("test/A");
+        final StringBuilder visited = new StringBuilder();
+
+        new VirtualFileKotlinClass(file, new KotlinBinaryClassCache()).loadMemberAnnotations(new KotlinJvmBinaryClass.MemberVisitor() {
+            @Nullable
+            @Override
+            public KotlinJvmBinaryClass.AnnotationVisitor visitMethod(@NotNull Name name, @NotNull String desc) {
+                visited.append("method ").append(name).append(desc).append("\n");
+                return null;
+            }
+
+            @Nullable
+            @Override
+            public KotlinJvmBinaryClass.AnnotationVisitor visitField(@NotNull Name name, @NotNull String desc) {
+                visited.append("field ").append(name).append(desc).append("\n");
+                return null;
+            }
+        });
+        assertEquals("field fI\nmethod m()V\n", visited.toString());
+    }
+
+    private static class ClassFile extends LightVirtualFile {
+        private byte[] bytes;
+        private long stamp;
+        private int reads;
+
+        private ClassFile(@NotNull String internalName) {
+            super(internalName + ".class");
+            setClass(internalName);
+        }
+
+        private void setClass(@NotNull String internalName) {
+            ClassWriter writer = new ClassWriter(0);
+            writer.visit(V1_6, ACC_PUBLIC | ACC_ABSTRACT, internalName, null, "java/lang/Object", null);
+            writer.visitField(ACC_PUBLIC, "f", "I", null, null).visitEnd();
+            writer.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, "m", "()V", null, null).visitEnd();
+            writer.visitEnd();
+            bytes = writer.toByteArray();
+            stamp++;
+        }
+
+        @NotNull
+        @Override
+        public byte[] contentsToByteArray() {
+            reads++;
+            return bytes;
+        }
+
+        @Override
+        public long getModificationStamp() {
+            return stamp;
+        }
+    }
+}
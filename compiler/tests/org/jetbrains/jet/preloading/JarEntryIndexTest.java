@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.preloading;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+import org.jetbrains.asm4.ClassWriter;
+import org.jetbrains.jet.JetTestUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.jetbrains.asm4.Opcodes.ACC_PUBLIC;
+import static org.jetbrains.asm4.Opcodes.V1_6;
+
+public class JarEntryIndexTest extends TestCase {
+    private static final String RESOURCE_NAME = "test/resource.txt";
+    private static final String RESOURCE_TEXT = "resource text";
+
+    private File tmpdir;
+    private File jar;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tmpdir = JetTestUtils.tmpDirForTest(this);
+        jar = new File(tmpdir, "test.jar");
+        writeJar(jar);
+    }
+
+    public void testClassAndResourceLookup() throws Exception {
+        ClassLoader classLoader = ClassPreloadingUtils.preloadClassesLazily(
+                Collections.singletonList(jar), 10, JarEntryIndexTest.class.getClassLoader(), null, null);
+
+        Class<?> aClass = classLoader.loadClass("test.A");
+        assertEquals("test.A", aClass.getName());
+        assertSame(classLoader, aClass.getClassLoader());
+
+        URL resource = classLoader.getResource(RESOURCE_NAME);
+        assertNotNull(resource);
+        assertEquals(RESOURCE_TEXT, FileUtil.loadTextAndClose(resource.openStream()));
+
+        assertNull(classLoader.getResource("test/missing.txt"));
+    }
+
+    public void testCachedIndex() throws Exception {
+        File cacheFile = new File(tmpdir, "index.cache");
+        List<File> jars = Collections.singletonList(jar);
+
+        CountingHandler handler = new CountingHandler();
+        JarEntryIndex.create(jars, 10, handler, cacheFile);
+        assertEquals(1, handler.jarsIndexed);
+        assertTrue(cacheFile.isFile());
+
+        // The index is read back from the cache, the handler is still notified about the jar
+        long cacheTimestamp = cacheFile.lastModified() - 10000;
+        assertTrue(cacheFile.setLastModified(cacheTimestamp));
+        JarEntryIndex index = JarEntryIndex.create(jars, 10, handler, cacheFile);
+        assertEquals(2, handler.jarsIndexed);
+        assertEquals(cacheTimestamp, cacheFile.lastModified());
+        assertNotNull(index);
+        assertEquals(RESOURCE_TEXT, new String(index.read(index.get(RESOURCE_NAME)), "UTF-8"));
+        assertNotNull(index.get("test/A.class"));
+        assertNull(index.get("test/missing.txt"));
+
+        // An outdated cache is rewritten
+        assertTrue(jar.setLastModified(jar.lastModified() - 10000));
+        JarEntryIndex.create(jars, 10, handler, cacheFile);
+        assertEquals(3, handler.jarsIndexed);
+        assertTrue(cacheFile.lastModified() != cacheTimestamp);
+    }
+
+    public void testNotAJar() throws Exception {
+        File notAJar = new File(tmpdir, "notAJar.jar");
+        FileUtil.writeToFile(notAJar, "not a jar");
+        assertNull(JarEntryIndex.create(Collections.singletonList(notAJar), 10, null, null));
+    }
+
+    private static void writeJar(File file) throws IOException {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(V1_6, ACC_PUBLIC, "test/A", null, "java/lang/Object", null);
+        writer.visitEnd();
+
+        ZipOutputStream output = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            output.putNextEntry(new ZipEntry("test/"));
+            output.closeEntry();
+
+            // Deflated
+            output.putNextEntry(new ZipEntry("test/A.class"));
+            output.write(writer.toByteArray());
+            output.closeEntry();
+
+            // Stored
+            byte[] resource = RESOURCE_TEXT.getBytes("UTF-8");
+            CRC32 crc = new CRC32();
+            crc.update(resource);
+            ZipEntry entry = new ZipEntry(RESOURCE_NAME);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(resource.length);
+            entry.setCrc(crc.getValue());
+            output.putNextEntry(entry);
+            output.write(resource);
+            output.closeEntry();
+        }
+        finally {
+            output.close();
+        }
+    }
+
+    private static class CountingHandler extends ClassPreloadingUtils.ClassHandler {
+        private int jarsIndexed;
+
+        @Override
+        public void afterLoadJar(File jarFile) {
+            jarsIndexed++;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.resolve.scopes;
+
+import junit.framework.TestCase;
+import org.jetbrains.jet.lang.resolve.scopes.ScopeLookups;
+
+import java.util.*;
+
+public class ScopeLookupsTest extends TestCase {
+    public void testSingleResultIsNotCopied() {
+        Set<String> found = Collections.singleton("a");
+        Collection<String> empty = Collections.emptySet();
+
+        assertSame(found, ScopeLookups.union(empty, found));
+        assertSame(found, ScopeLookups.union(found, empty));
+    }
+
+    public void testSeveralResultsAreMergedInOrder() {
+        Set<String> first = new LinkedHashSet<String>(Arrays.asList("a", "b"));
+        Set<String> second = new LinkedHashSet<String>(Arrays.asList("b", "c"));
+
+        Collection<String> union = ScopeLookups.union(first, second);
+        assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<String>(union));
+
+        Collection<String> more = ScopeLookups.union(union, Collections.singleton("d"));
+        assertEquals(Arrays.asList("a", "b", "c", "d"), new ArrayList<String>(more));
+        assertEquals("Results of previous lookups should not be modified", 3, union.size());
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<String>(first));
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.storage;
+
+import jet.Function0;
+import jet.Function1;
+
+import java.util.concurrent.*;
+
+public class PerValueLockStorageManagerTest extends StorageManagerTest {
+
+    @Override
+    protected StorageManager createStorageManager() {
+        return new PerValueLockStorageManager();
+    }
+
+    public void testRecursionAcrossThreads() throws Exception {
+        StorageManager m = createStorageManager();
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+
+        class C {
+            NotNullLazyValue<String> a;
+            NotNullLazyValue<String> b;
+        }
+        final C c = new C();
+        c.a = m.createRecursionTolerantLazyValue(new Function0<String>() {
+            @Override
+            public String invoke() {
+                countDownAndAwait(bothStarted);
+                return "a(" + c.b.invoke() + ")";
+            }
+        }, "recursion");
+        c.b = m.createRecursionTolerantLazyValue(new Function0<String>() {
+            @Override
+            public String invoke() {
+                countDownAndAwait(bothStarted);
+                return "b(" + c.a.invoke() + ")";
+            }
+        }, "recursion");
+
+        FutureTask<String> a = new FutureTask<String>(new Callable<String>() {
+            @Override
+            public String call() {
+                return c.a.invoke();
+            }
+        });
+        FutureTask<String> b = new FutureTask<String>(new Callable<String>() {
+            @Override
+            public String call() {
+                return c.b.invoke();
+            }
+        });
+        // Thread ids grow, so the thread computing "a" has the least id and is the one which breaks the cycle
+        Thread threadA = new Thread(a);
+        Thread threadB = new Thread(b);
+        assertTrue(threadA.getId() < threadB.getId());
+        threadB.start();
+        threadA.start();
+
+        try {
+            assertEquals("a(recursion)", a.get(10, TimeUnit.SECONDS));
+            assertEquals("b(a(recursion))", b.get(10, TimeUnit.SECONDS));
+        }
+        finally {
+            threadA.interrupt();
+            threadB.interrupt();
+        }
+    }
+
+    public void testRecursiveMemoizedFunctionStoresOneValue() throws Exception {
+        StorageManager m = createStorageManager();
+        final Object[] recursiveResult = new Object[1];
+
+        class C {
+            MemoizedFunctionToNotNull<String, Object> f;
+        }
+        final C c = new C();
+        c.f = m.createMemoizedFunction(new Function1<String, Object>() {
+            private boolean recursive = true;
+
+            @Override
+            public Object invoke(String key) {
+                if (recursive) {
+                    recursive = false;
+                    recursiveResult[0] = c.f.invoke(key);
+                }
+                return new Object();
+            }
+        });
+
+        Object result = c.f.invoke("key");
+        assertSame(recursiveResult[0], result);
+        assertSame(result, c.f.invoke("key"));
+    }
+
+    public void testComputesOnceAcrossThreads() throws Exception {
+        StorageManager m = createStorageManager();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final int[] count = new int[1];
+        final NotNullLazyValue<String> value = m.createLazyValue(new Function0<String>() {
+            @Override
+            public String invoke() {
+                count[0]++;
+                started.countDown();
+                await(release);
+                return "value";
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Callable<String> invoke = new Callable<String>() {
+                @Override
+                public String call() {
+                    return value.invoke();
+                }
+            };
+            Future<String> first = executor.submit(invoke);
+            started.await();
+            Future<String> second = executor.submit(invoke);
+            release.countDown();
+
+            assertEquals("value", first.get(10, TimeUnit.SECONDS));
+            assertEquals("value", second.get(10, TimeUnit.SECONDS));
+            assertEquals(1, count[0]);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void countDownAndAwait(CountDownLatch latch) {
+        latch.countDown();
+        await(latch);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
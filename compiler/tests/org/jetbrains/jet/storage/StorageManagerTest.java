@@ -18,7 +18,11 @@ public class StorageManagerTest extends TestCase {
     @Override
     public void setUp() throws Exception {
         super.setUp();
-        m = new LockBasedStorageManager();
+        m = createStorageManager();
+    }
+
+    protected StorageManager createStorageManager() {
+        return new LockBasedStorageManager();
     }
 
     public static <T> void doTestComputesOnce(Function0<T> v, T expected, Counter counter) throws Exception {
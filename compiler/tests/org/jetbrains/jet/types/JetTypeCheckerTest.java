@@ -311,6 +311,18 @@ public class JetTypeCheckerTest extends JetLiteFixture {
 //        assertSubtype("java.lang.Integer", "java.lang.Comparable<java.lang.Integer>?");
     }
 
+    public void testDeepHierarchies() throws Exception {
+        // The second check of each pair uses the supertypes remembered by the first one
+        for (int i = 0; i < 2; i++) {
+            assertSubtype("ArrayList<Int>", "Iterable<Int>");
+            assertSubtype("ArrayList<Int>", "Collection<out Any>");
+            assertNotSubtype("ArrayList<Int>", "Iterable<String>");
+            assertNotSubtype("ArrayList<Int>", "Map<Int, Int>");
+            assertSubtype("DDerived_T<Int>", "Base_T<Int>");
+            assertNotSubtype("DDerived_T<Int>", "Base_T<Any>");
+        }
+    }
+
     public void testNullable() throws Exception {
         assertSubtype("Any?", "Any?");
         assertSubtype("Any", "Any?");
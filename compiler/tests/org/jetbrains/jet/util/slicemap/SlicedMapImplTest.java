@@ -0,0 +1,101 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.util.slicemap;
+
+import com.google.common.collect.ImmutableMap;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.util.slicedmap.*;
+
+import java.util.Iterator;
+import java.util.Map;
+
+public class SlicedMapImplTest extends TestCase {
+    private static final Slices.KeyNormalizer<String> LOWER_CASE = new Slices.KeyNormalizer<String>() {
+        @Override
+        public String normalize(String key) {
+            return key.toLowerCase();
+        }
+    };
+
+    public void testSlicesAreSeparate() {
+        WritableSlice<String, Integer> FIRST = Slices.<String, Integer>sliceBuilder().setDebugName("FIRST").build();
+        WritableSlice<String, Integer> SECOND = Slices.<String, Integer>sliceBuilder().setDebugName("SECOND").build();
+        SlicedMapImpl map = SlicedMapImpl.create();
+
+        map.put(FIRST, "a", 1);
+        map.put(FIRST, "b", 2);
+        map.put(SECOND, "a", 3);
+
+        assertEquals(Integer.valueOf(1), map.get(FIRST, "a"));
+        assertEquals(Integer.valueOf(3), map.get(SECOND, "a"));
+        assertNull(map.get(SECOND, "b"));
+        assertEquals(ImmutableMap.of("a", 1, "b", 2), map.getSliceContents(FIRST));
+        assertEquals(ImmutableMap.of("a", 3), map.getSliceContents(SECOND));
+        assertEquals(3, map.size());
+
+        Iterator<Map.Entry<WritableSlice<?, ?>, Integer>> sizes = map.getSliceSizes().entrySet().iterator();
+        assertEquals(FIRST, sizes.next().getKey());
+        assertEquals(SECOND, sizes.next().getKey());
+        assertFalse(sizes.hasNext());
+    }
+
+    public void testNormalizedKeysAndRawValueVersion() {
+        RemovableSlice<String, Integer> SLICE = Slices.<String, Integer>sliceBuilder()
+                .setKeyNormalizer(LOWER_CASE).setDefaultValue(0).setDebugName("SLICE").build();
+        SlicedMapImpl map = SlicedMapImpl.create();
+
+        map.put(SLICE, "Key", 42);
+
+        assertEquals(Integer.valueOf(42), map.get(SLICE, "KEY"));
+        assertEquals(Integer.valueOf(0), map.get(SLICE, "other"));
+        assertNull(map.get(SLICE.makeRawValueVersion(), "other"));
+
+        Map.Entry<SlicedMapKey<?, ?>, ?> entry = map.iterator().next();
+        assertEquals(SLICE.makeKey("KEY"), entry.getKey());
+        assertEquals(42, entry.getValue());
+
+        assertEquals(Integer.valueOf(42), map.remove(SLICE, "kEY"));
+        assertEquals(0, map.size());
+    }
+
+    public void testForEachAndIteratorKeepInsertionOrder() {
+        WritableSlice<String, Integer> FIRST = Slices.<String, Integer>sliceBuilder().setDebugName("FIRST").build();
+        WritableSlice<String, Integer> SECOND = Slices.<String, Integer>sliceBuilder().setDebugName("SECOND").build();
+        SlicedMapImpl map = SlicedMapImpl.create();
+
+        map.put(FIRST, "a", 1);
+        map.put(SECOND, "a", 2);
+        map.put(FIRST, "b", 3);
+        map.put(SECOND, "b", 4);
+
+        final StringBuilder visited = new StringBuilder();
+        map.forEach(new MutableSlicedMap.EntryVisitor() {
+            @Override
+            public void visit(@NotNull WritableSlice<?, ?> slice, Object key, Object value) {
+                visited.append(slice).append(" ").append(key).append("=").append(value).append("; ");
+            }
+        });
+        assertEquals("FIRST a=1; SECOND a=2; FIRST b=3; SECOND b=4; ", visited.toString());
+
+        StringBuilder iterated = new StringBuilder();
+        for (Map.Entry<SlicedMapKey<?, ?>, ?> entry : map) {
+            iterated.append(entry.getKey()).append("=").append(entry.getValue()).append("; ");
+        }
+        assertEquals("FIRST -> a=1; SECOND -> a=2; FIRST -> b=3; SECOND -> b=4; ", iterated.toString());
+    }
+}
@@ -44,4 +44,7 @@ public interface KotlinPaths {
 
     @NotNull
     File getJsLibJarPath();
+
+    @NotNull
+    File getJsLibMetaJarPath();
 }
@@ -76,6 +76,12 @@ public class KotlinPathsFromHomeDir implements KotlinPaths {
         return getLibraryFile(PathUtil.JS_LIB_JAR_NAME);
     }
 
+    @Override
+    @NotNull
+    public File getJsLibMetaJarPath() {
+        return getLibraryFile(PathUtil.JS_LIB_META_JAR_NAME);
+    }
+
     @NotNull
     private File getLibraryFile(@NotNull String fileName) {
         return new File(getLibPath(), fileName);
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wall time, allocated memory and GC time spent in each phase of a compilation, with counts of what the phase has processed.
+ *
+ * A report is collected on the thread which has started it. Sections don't nest: a section begun while another one is open
+ * is ignored, so that e.g. analysis of local classes during body resolution is attributed to body resolution.
+ * Only allocations of the compiling thread are measured, so those of parallel codegen workers are not included.
+ * Sections with the same name are merged, e.g. when several modules are compiled.
+ */
+public class PerformanceReport {
+    public static final String PARSING = "Parsing";
+    public static final String TYPE_HIERARCHY_RESOLVER = "TypeHierarchyResolver";
+    public static final String DECLARATION_RESOLVER = "DeclarationResolver";
+    public static final String OVERRIDE_RESOLVER = "OverrideResolver";
+    public static final String OVERLOAD_RESOLVER = "OverloadResolver";
+    public static final String BODY_RESOLVER = "BodyResolver";
+    public static final String CONTROL_FLOW_ANALYSIS = "ControlFlowAnalysis";
+    public static final String CODEGEN = "Codegen";
+    public static final String OUTPUT = "Output";
+
+    public static final String FILES = "files";
+    public static final String DESCRIPTORS = "descriptors";
+    public static final String BINDING_TRACE_RECORDS = "bindingTraceRecords";
+    public static final String CLASSES = "classes";
+
+    private static final ThreadLocal<PerformanceReport> CURRENT = new ThreadLocal<PerformanceReport>();
+    // Saves a thread local lookup on hot paths when no report is being collected, see count()
+    private static final AtomicInteger ACTIVE_REPORTS = new AtomicInteger();
+
+    private final Map<String, SectionData> sections = new LinkedHashMap<String, SectionData>();
+    private Section openSection;
+
+    private PerformanceReport() {
+    }
+
+    /**
+     * Starts collecting a report of everything compiled on the current thread until {@link #finish()} is called
+     */
+    @NotNull
+    public static PerformanceReport start() {
+        assert CURRENT.get() == null : "A performance report is already being collected on this thread";
+        PerformanceReport report = new PerformanceReport();
+        CURRENT.set(report);
+        ACTIVE_REPORTS.incrementAndGet();
+        return report;
+    }
+
+    public void finish() {
+        assert CURRENT.get() == this : "The report is not being collected on this thread";
+        CURRENT.remove();
+        ACTIVE_REPORTS.decrementAndGet();
+    }
+
+    @Nullable
+    private static PerformanceReport getCurrent() {
+        return ACTIVE_REPORTS.get() == 0 ? null : CURRENT.get();
+    }
+
+    /**
+     * @return a section which should be ended in a finally block. It does nothing if no report is being collected
+     */
+    @NotNull
+    public static Section begin(@NotNull String name) {
+        PerformanceReport report = getCurrent();
+        if (report == null || report.openSection != null) {
+            return Section.NONE;
+        }
+        report.openSection = new Section(report, name);
+        return report.openSection;
+    }
+
+    /**
+     * Adds to a counter of the section open on the current thread, if any
+     */
+    public static void count(@NotNull String counter, long value) {
+        PerformanceReport report = getCurrent();
+        if (report != null && report.openSection != null) {
+            report.openSection.count(counter, value);
+        }
+    }
+
+    public static class Section {
+        private static final Section NONE = new Section(null, "<none>");
+
+        private final PerformanceReport report;
+        private final String name;
+        private final long startNanos;
+        private final long startAllocatedBytes;
+        private final long startGcMillis;
+        private final Map<String, Long> counters = new LinkedHashMap<String, Long>();
+
+        private Section(@Nullable PerformanceReport report, @NotNull String name) {
+            this.report = report;
+            this.name = name;
+            this.startAllocatedBytes = report != null ? getAllocatedBytes() : 0;
+            this.startGcMillis = report != null ? getGcMillis() : 0;
+            this.startNanos = report != null ? System.nanoTime() : 0;
+        }
+
+        public void count(@NotNull String counter, long value) {
+            if (report == null) return;
+
+            Long oldValue = counters.get(counter);
+            counters.put(counter, oldValue == null ? value : oldValue + value);
+        }
+
+        public void end() {
+            if (report == null) return;
+            assert report.openSection == this : "Section " + name + " is not open";
+            report.openSection = null;
+
+            SectionData data = report.sections.get(name);
+            if (data == null) {
+                data = new SectionData();
+                report.sections.put(name, data);
+            }
+
+            data.wallNanos += System.nanoTime() - startNanos;
+            long allocatedBytes = getAllocatedBytes();
+            data.allocatedBytes = allocatedBytes < 0 || data.allocatedBytes < 0 ? -1 : data.allocatedBytes + allocatedBytes - startAllocatedBytes;
+            data.gcMillis += getGcMillis() - startGcMillis;
+            for (Map.Entry<String, Long> entry : counters.entrySet()) {
+                Long oldValue = data.counters.get(entry.getKey());
+                data.counters.put(entry.getKey(), oldValue == null ? entry.getValue() : oldValue + entry.getValue());
+            }
+        }
+    }
+
+    private static class SectionData {
+        private long wallNanos;
+        private long allocatedBytes;
+        private long gcMillis;
+        private final Map<String, Long> counters = new LinkedHashMap<String, Long>();
+    }
+
+    // -1 if the VM doesn't support measuring allocated memory
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static long getGcMillis() {
+        long result = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            long time = bean.getCollectionTime();
+            if (time > 0) {
+                result += time;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the report in JSON:
+     * <pre>
+     * {"sections": [{"name": "Parsing", "wallTimeMs": 42, "allocatedBytes": 1024, "gcTimeMs": 0, "counters": {"files": 2}}, ...]}
+     * </pre>
+     * allocatedBytes is null if it couldn't be measured
+     */
+    public void writeJson(@NotNull PrintStream out) {
+        out.println("{\"sections\": [");
+        for (Iterator<Map.Entry<String, SectionData>> iterator = sections.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, SectionData> entry = iterator.next();
+            SectionData data = entry.getValue();
+
+            out.print("  {\"name\": \"" + entry.getKey() + "\"");
+            out.print(", \"wallTimeMs\": " + data.wallNanos / 1000000);
+            out.print(", \"allocatedBytes\": " + (data.allocatedBytes < 0 ? "null" : String.valueOf(data.allocatedBytes)));
+            out.print(", \"gcTimeMs\": " + data.gcMillis);
+            out.print(", \"counters\": {");
+            for (Iterator<Map.Entry<String, Long>> counters = data.counters.entrySet().iterator(); counters.hasNext(); ) {
+                Map.Entry<String, Long> counter = counters.next();
+                out.print("\"" + counter.getKey() + "\": " + counter.getValue());
+                if (counters.hasNext()) {
+                    out.print(", ");
+                }
+            }
+            out.println(iterator.hasNext() ? "}}," : "}}");
+        }
+        out.println("]}");
+    }
+}
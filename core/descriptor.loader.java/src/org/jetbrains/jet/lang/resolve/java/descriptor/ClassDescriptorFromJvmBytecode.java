@@ -34,8 +34,9 @@ import java.util.Collection;
 public class ClassDescriptorFromJvmBytecode extends MutableClassDescriptorLite {
     private JetType functionTypeForSamInterface;
     private JavaClassNonStaticMembersScope scopeForConstructorResolve;
-    private ConstructorDescriptor primaryConstructor;
-    private Collection<ConstructorDescriptor> constructors;
+    // Computed lazily, possibly by several threads at once, which get the same constructors from the scope
+    private volatile ConstructorDescriptor primaryConstructor;
+    private volatile Collection<ConstructorDescriptor> constructors;
 
     public ClassDescriptorFromJvmBytecode(
             @NotNull DeclarationDescriptor containingDeclaration,
@@ -50,27 +51,31 @@ public class ClassDescriptorFromJvmBytecode extends MutableClassDescriptorLite {
     @Override
     public Collection<ConstructorDescriptor> getConstructors() {
         assert scopeForConstructorResolve != null;
-        if (constructors == null) {
-            constructors = scopeForConstructorResolve.getConstructors();
+        Collection<ConstructorDescriptor> result = constructors;
+        if (result == null) {
+            result = scopeForConstructorResolve.getConstructors();
+            constructors = result;
         }
-        return constructors;
+        return result;
     }
 
     @Nullable
     @Override
     public ConstructorDescriptor getUnsubstitutedPrimaryConstructor() {
-        if (primaryConstructor == null) {
+        ConstructorDescriptor result = primaryConstructor;
+        if (result == null) {
             for (ConstructorDescriptor constructor : getConstructors()) {
                 if (constructor.isPrimary()) {
-                    if (primaryConstructor != null) {
+                    if (result != null) {
                         throw new IllegalStateException(
-                                "Class has more than one primary constructor: " + primaryConstructor + "\n" + constructor);
+                                "Class has more than one primary constructor: " + result + "\n" + constructor);
                     }
-                    primaryConstructor = constructor;
+                    result = constructor;
                 }
             }
+            primaryConstructor = result;
         }
-        return primaryConstructor;
+        return result;
     }
 
     public void setScopeForConstructorResolve(@NotNull JavaClassNonStaticMembersScope scopeForConstructorResolve) {
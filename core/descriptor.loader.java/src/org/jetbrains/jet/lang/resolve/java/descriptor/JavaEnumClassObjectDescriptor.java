@@ -37,7 +37,8 @@ public class JavaEnumClassObjectDescriptor extends MutableClassDescriptorLite {
         super(enumClass, getClassObjectName(enumClass.getName()), ClassKind.CLASS_OBJECT, false);
     }
 
-    private void initConstructor() {
+    // Synchronized, since descriptors of Java classes are shared by threads resolving bodies concurrently
+    private synchronized void initConstructor() {
         if (constructor == null) {
             ConstructorDescriptorImpl constructor = DescriptorFactory.createPrimaryConstructorForObject(this);
             constructor.setReturnType(getDefaultType());
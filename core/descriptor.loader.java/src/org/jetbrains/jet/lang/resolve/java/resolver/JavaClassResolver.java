@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.lang.resolve.java.resolver;
 
+import jet.Function0;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.descriptors.*;
@@ -124,15 +125,36 @@ public final class JavaClassResolver {
     }
 
     @Nullable
-    public ClassDescriptor resolveClass(@NotNull FqName qualifiedName, @NotNull DescriptorSearchRule searchRule) {
-        PostponedTasks postponedTasks = new PostponedTasks();
-        ClassDescriptor classDescriptor = resolveClass(qualifiedName, searchRule, postponedTasks);
-        postponedTasks.performTasks();
-        return classDescriptor;
+    public ClassDescriptor resolveClass(@NotNull final FqName qualifiedName, @NotNull final DescriptorSearchRule searchRule) {
+        // Classes may be resolved by several threads resolving bodies concurrently, see JavaBaseScope
+        return deserializedDescriptorResolver.getStorageManager().compute(new Function0<ClassDescriptor>() {
+            @Override
+            public ClassDescriptor invoke() {
+                PostponedTasks postponedTasks = new PostponedTasks();
+                ClassDescriptor classDescriptor = resolveClassUnderLock(qualifiedName, searchRule, postponedTasks);
+                postponedTasks.performTasks();
+                return classDescriptor;
+            }
+        });
     }
 
     @Nullable
     public ClassDescriptor resolveClass(
+            @NotNull final FqName qualifiedName,
+            @NotNull final DescriptorSearchRule searchRule,
+            @NotNull final PostponedTasks tasks
+    ) {
+        // Annotation classes are resolved with the tasks of their owner, which isn't necessarily resolved under the lock
+        return deserializedDescriptorResolver.getStorageManager().compute(new Function0<ClassDescriptor>() {
+            @Override
+            public ClassDescriptor invoke() {
+                return resolveClassUnderLock(qualifiedName, searchRule, tasks);
+            }
+        });
+    }
+
+    @Nullable
+    private ClassDescriptor resolveClassUnderLock(
             @NotNull FqName qualifiedName,
             @NotNull DescriptorSearchRule searchRule,
             @NotNull PostponedTasks tasks
@@ -258,7 +280,8 @@ public final class JavaClassResolver {
         classDescriptor.setModality(determineClassModality(javaClass));
         classDescriptor.createTypeConstructor();
 
-        JavaClassNonStaticMembersScope scope = new JavaClassNonStaticMembersScope(classDescriptor, javaClass, memberResolver);
+        JavaClassNonStaticMembersScope scope = new JavaClassNonStaticMembersScope(
+                classDescriptor, javaClass, deserializedDescriptorResolver.getStorageManager(), memberResolver);
         classDescriptor.setScopeForMemberLookup(scope);
         classDescriptor.setScopeForConstructorResolve(scope);
 
@@ -430,7 +453,8 @@ public final class JavaClassResolver {
         classObject.setTypeParameterDescriptors(Collections.<TypeParameterDescriptor>emptyList());
         classObject.createTypeConstructor();
 
-        JavaEnumClassObjectScope scope = new JavaEnumClassObjectScope(classObject, javaClass, memberResolver);
+        JavaEnumClassObjectScope scope =
+                new JavaEnumClassObjectScope(classObject, javaClass, deserializedDescriptorResolver.getStorageManager(), memberResolver);
         WritableScopeImpl writableScope =
                 new WritableScopeImpl(scope, classObject, RedeclarationHandler.THROW_EXCEPTION, "Enum class object scope");
         writableScope.changeLockLevel(WritableScope.LockLevel.BOTH);
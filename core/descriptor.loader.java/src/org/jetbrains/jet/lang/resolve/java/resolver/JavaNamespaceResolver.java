@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.lang.resolve.java.resolver;
 
+import jet.Function0;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.descriptors.ModuleDescriptor;
@@ -40,6 +41,7 @@ import org.jetbrains.jet.lang.resolve.kotlin.KotlinJvmBinaryClass;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
+import org.jetbrains.jet.storage.StorageManager;
 
 import javax.inject.Inject;
 import java.util.*;
@@ -89,8 +91,23 @@ public final class JavaNamespaceResolver {
         this.deserializedDescriptorResolver = deserializedDescriptorResolver;
     }
 
+    @NotNull
+    private StorageManager getStorageManager() {
+        return deserializedDescriptorResolver.getStorageManager();
+    }
+
+    @Nullable
+    public NamespaceDescriptor resolveNamespace(@NotNull final FqName qualifiedName, @NotNull final DescriptorSearchRule searchRule) {
+        return getStorageManager().compute(new Function0<NamespaceDescriptor>() {
+            @Override
+            public NamespaceDescriptor invoke() {
+                return doResolveNamespace(qualifiedName, searchRule);
+            }
+        });
+    }
+
     @Nullable
-    public NamespaceDescriptor resolveNamespace(@NotNull FqName qualifiedName, @NotNull DescriptorSearchRule searchRule) {
+    private NamespaceDescriptor doResolveNamespace(@NotNull FqName qualifiedName, @NotNull DescriptorSearchRule searchRule) {
         if (searchRule == INCLUDE_KOTLIN_SOURCES) {
             NamespaceDescriptor kotlinNamespaceDescriptor = cache.getPackageResolvedFromSource(qualifiedName);
             if (kotlinNamespaceDescriptor != null) {
@@ -170,7 +187,7 @@ public final class JavaNamespaceResolver {
                 cache.recordPackage(javaPackage, namespaceDescriptor);
             }
 
-            return new JavaPackageScope(namespaceDescriptor, javaPackage, fqName, memberResolver);
+            return new JavaPackageScope(namespaceDescriptor, javaPackage, fqName, getStorageManager(), memberResolver);
         }
 
         JavaClass javaClass = javaClassFinder.findClass(fqName);
@@ -191,7 +208,7 @@ public final class JavaNamespaceResolver {
             cache.recordPackage(javaClass, namespaceDescriptor);
         }
 
-        return new JavaClassStaticMembersScope(namespaceDescriptor, fqName, javaClass, memberResolver);
+        return new JavaClassStaticMembersScope(namespaceDescriptor, fqName, javaClass, getStorageManager(), memberResolver);
     }
 
     private void cache(@NotNull FqName fqName, @Nullable JetScope packageScope) {
@@ -206,7 +223,17 @@ public final class JavaNamespaceResolver {
     }
 
     @Nullable
-    public JetScope getJavaPackageScopeForExistingNamespaceDescriptor(@NotNull NamespaceDescriptor namespaceDescriptor) {
+    public JetScope getJavaPackageScopeForExistingNamespaceDescriptor(@NotNull final NamespaceDescriptor namespaceDescriptor) {
+        return getStorageManager().compute(new Function0<JetScope>() {
+            @Override
+            public JetScope invoke() {
+                return doGetJavaPackageScopeForExistingNamespaceDescriptor(namespaceDescriptor);
+            }
+        });
+    }
+
+    @Nullable
+    private JetScope doGetJavaPackageScopeForExistingNamespaceDescriptor(@NotNull NamespaceDescriptor namespaceDescriptor) {
         FqName fqName = DescriptorUtils.getFQName(namespaceDescriptor).toSafe();
         if (unresolvedCache.contains(fqName)) {
             throw new IllegalStateException(
@@ -246,7 +273,17 @@ public final class JavaNamespaceResolver {
     }
 
     @NotNull
-    public Collection<Name> getClassNamesInPackage(@NotNull FqName packageName) {
+    public Collection<Name> getClassNamesInPackage(@NotNull final FqName packageName) {
+        return getStorageManager().compute(new Function0<Collection<Name>>() {
+            @Override
+            public Collection<Name> invoke() {
+                return doGetClassNamesInPackage(packageName);
+            }
+        });
+    }
+
+    @NotNull
+    private Collection<Name> doGetClassNamesInPackage(@NotNull FqName packageName) {
         JavaPackage javaPackage = javaClassFinder.findPackage(packageName);
         if (javaPackage == null) return Collections.emptyList();
 
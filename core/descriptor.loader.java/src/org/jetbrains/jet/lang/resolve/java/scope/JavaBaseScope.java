@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.lang.resolve.java.scope;
 
+import jet.Function0;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.descriptors.*;
@@ -23,33 +24,44 @@ import org.jetbrains.jet.lang.resolve.java.resolver.JavaMemberResolver;
 import org.jetbrains.jet.lang.resolve.java.resolver.ProgressChecker;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScopeImpl;
+import org.jetbrains.jet.storage.StorageManager;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Descriptors are resolved under the lock of the storage manager, which is shared by all Java and compiled Kotlin classes,
+ * so that several threads may look up members at the same time. Those already resolved are read without the lock
+ */
 public abstract class JavaBaseScope extends JetScopeImpl {
+    @NotNull
+    protected final StorageManager storageManager;
     @NotNull
     protected final JavaMemberResolver memberResolver;
     @NotNull
     protected final MembersProvider membersProvider;
     @NotNull
-    private final Map<Name, Set<FunctionDescriptor>> functionDescriptors = new HashMap<Name, Set<FunctionDescriptor>>();
+    private final Map<Name, Set<FunctionDescriptor>> functionDescriptors = new ConcurrentHashMap<Name, Set<FunctionDescriptor>>();
     @NotNull
-    private final Map<Name, Set<VariableDescriptor>> propertyDescriptors = new HashMap<Name, Set<VariableDescriptor>>();
+    private final Map<Name, Set<VariableDescriptor>> propertyDescriptors = new ConcurrentHashMap<Name, Set<VariableDescriptor>>();
     @Nullable
-    private Collection<DeclarationDescriptor> allDescriptors = null;
+    private volatile Collection<DeclarationDescriptor> allDescriptors = null;
     @Nullable
-    private Set<ClassDescriptor> objectDescriptors = null;
+    private volatile Set<ClassDescriptor> objectDescriptors = null;
     @NotNull
     protected final ClassOrNamespaceDescriptor descriptor;
 
+    // Only accessed under the lock
     private Collection<ClassDescriptor> innerClasses = null;
 
 
     protected JavaBaseScope(
             @NotNull ClassOrNamespaceDescriptor descriptor,
+            @NotNull StorageManager storageManager,
             @NotNull JavaMemberResolver memberResolver,
             @NotNull MembersProvider membersProvider
     ) {
+        this.storageManager = storageManager;
         this.memberResolver = memberResolver;
         this.membersProvider = membersProvider;
         this.descriptor = descriptor;
@@ -63,17 +75,25 @@ public abstract class JavaBaseScope extends JetScopeImpl {
 
     @NotNull
     @Override
-    public Collection<VariableDescriptor> getProperties(@NotNull Name name) {
+    public Collection<VariableDescriptor> getProperties(@NotNull final Name name) {
         Set<VariableDescriptor> cached = propertyDescriptors.get(name);
         if (cached != null) return cached;
 
-        if (allDescriptorsComputed()) {
-            return Collections.emptySet();
-        }
+        return storageManager.compute(new Function0<Collection<VariableDescriptor>>() {
+            @Override
+            public Collection<VariableDescriptor> invoke() {
+                Set<VariableDescriptor> cached = propertyDescriptors.get(name);
+                if (cached != null) return cached;
 
-        Set<VariableDescriptor> computedDescriptors = computePropertyDescriptors(name);
-        propertyDescriptors.put(name, computedDescriptors);
-        return computedDescriptors;
+                if (allDescriptorsComputed()) {
+                    return Collections.emptySet();
+                }
+
+                Set<VariableDescriptor> computedDescriptors = computePropertyDescriptors(name);
+                propertyDescriptors.put(name, computedDescriptors);
+                return computedDescriptors;
+            }
+        });
     }
 
     @NotNull
@@ -87,17 +107,25 @@ public abstract class JavaBaseScope extends JetScopeImpl {
 
     @NotNull
     @Override
-    public Collection<FunctionDescriptor> getFunctions(@NotNull Name name) {
+    public Collection<FunctionDescriptor> getFunctions(@NotNull final Name name) {
         Set<FunctionDescriptor> cached = functionDescriptors.get(name);
         if (cached != null) return cached;
 
-        if (allDescriptorsComputed()) {
-            return Collections.emptySet();
-        }
+        return storageManager.compute(new Function0<Collection<FunctionDescriptor>>() {
+            @Override
+            public Collection<FunctionDescriptor> invoke() {
+                Set<FunctionDescriptor> cached = functionDescriptors.get(name);
+                if (cached != null) return cached;
 
-        Set<FunctionDescriptor> computedDescriptors = computeFunctionDescriptor(name);
-        functionDescriptors.put(name, computedDescriptors);
-        return computedDescriptors;
+                if (allDescriptorsComputed()) {
+                    return Collections.emptySet();
+                }
+
+                Set<FunctionDescriptor> computedDescriptors = computeFunctionDescriptor(name);
+                functionDescriptors.put(name, computedDescriptors);
+                return computedDescriptors;
+            }
+        });
     }
 
     @NotNull
@@ -106,13 +134,21 @@ public abstract class JavaBaseScope extends JetScopeImpl {
     @NotNull
     @Override
     public Collection<DeclarationDescriptor> getAllDescriptors() {
-        if (allDescriptorsComputed()) {
-            return allDescriptors;
-        }
+        Collection<DeclarationDescriptor> result = allDescriptors;
+        if (result != null) return result;
+
+        return storageManager.compute(new Function0<Collection<DeclarationDescriptor>>() {
+            @Override
+            public Collection<DeclarationDescriptor> invoke() {
+                if (allDescriptorsComputed()) {
+                    return allDescriptors;
+                }
 
-        allDescriptors = computeAllDescriptors();
+                allDescriptors = computeAllDescriptors();
 
-        return allDescriptors;
+                return allDescriptors;
+            }
+        });
     }
 
     private boolean allDescriptorsComputed() {
@@ -130,10 +166,18 @@ public abstract class JavaBaseScope extends JetScopeImpl {
     @NotNull
     @Override
     public Set<ClassDescriptor> getObjectDescriptors() {
-        if (objectDescriptors == null) {
-            objectDescriptors = new HashSet<ClassDescriptor>(filterObjects(getInnerClasses(), true));
-        }
-        return objectDescriptors;
+        Set<ClassDescriptor> result = objectDescriptors;
+        if (result != null) return result;
+
+        return storageManager.compute(new Function0<Set<ClassDescriptor>>() {
+            @Override
+            public Set<ClassDescriptor> invoke() {
+                if (objectDescriptors == null) {
+                    objectDescriptors = new HashSet<ClassDescriptor>(filterObjects(getInnerClasses(), true));
+                }
+                return objectDescriptors;
+            }
+        });
     }
 
     @NotNull
@@ -16,23 +16,26 @@
 
 package org.jetbrains.jet.lang.resolve.java.scope;
 
+import jet.Function0;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.resolve.java.resolver.JavaMemberResolver;
 import org.jetbrains.jet.lang.resolve.name.LabelName;
 import org.jetbrains.jet.lang.resolve.name.Name;
+import org.jetbrains.jet.storage.StorageManager;
 
 import java.util.*;
 
 public abstract class JavaClassMembersScope extends JavaBaseScope {
-    private Map<Name, ClassDescriptor> innerClassesMap = null;
+    private volatile Map<Name, ClassDescriptor> innerClassesMap = null;
 
     protected JavaClassMembersScope(
             @NotNull ClassOrNamespaceDescriptor descriptor,
             @NotNull MembersProvider membersProvider,
+            @NotNull StorageManager storageManager,
             @NotNull JavaMemberResolver memberResolver
     ) {
-        super(descriptor, memberResolver, membersProvider);
+        super(descriptor, storageManager, memberResolver, membersProvider);
     }
 
     @NotNull
@@ -54,14 +57,23 @@ public abstract class JavaClassMembersScope extends JavaBaseScope {
 
     @NotNull
     private Map<Name, ClassDescriptor> getInnerClassesMap() {
-        if (innerClassesMap == null) {
-            Collection<ClassDescriptor> innerClasses = getInnerClasses();
-            innerClassesMap = new HashMap<Name, ClassDescriptor>();
-            for (ClassDescriptor innerClass : innerClasses) {
-                innerClassesMap.put(innerClass.getName(), innerClass);
+        Map<Name, ClassDescriptor> result = innerClassesMap;
+        if (result != null) return result;
+
+        return storageManager.compute(new Function0<Map<Name, ClassDescriptor>>() {
+            @Override
+            public Map<Name, ClassDescriptor> invoke() {
+                if (innerClassesMap == null) {
+                    Collection<ClassDescriptor> innerClasses = getInnerClasses();
+                    Map<Name, ClassDescriptor> map = new HashMap<Name, ClassDescriptor>();
+                    for (ClassDescriptor innerClass : innerClasses) {
+                        map.put(innerClass.getName(), innerClass);
+                    }
+                    innerClassesMap = map;
+                }
+                return innerClassesMap;
             }
-        }
-        return innerClassesMap;
+        });
     }
 
     @Override
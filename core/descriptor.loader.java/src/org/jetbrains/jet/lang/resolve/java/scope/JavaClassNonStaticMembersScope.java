@@ -16,12 +16,14 @@
 
 package org.jetbrains.jet.lang.resolve.java.scope;
 
+import jet.Function0;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
 import org.jetbrains.jet.lang.descriptors.ConstructorDescriptor;
 import org.jetbrains.jet.lang.resolve.java.resolver.JavaMemberResolver;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaClass;
 import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.storage.StorageManager;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -34,20 +36,32 @@ public final class JavaClassNonStaticMembersScope extends JavaClassMembersScope
     private final ClassDescriptor descriptor;
     @NotNull
     private final JavaClass javaClass;
+    // Only accessed under the lock
+    private Collection<ConstructorDescriptor> constructors = null;
 
     public JavaClassNonStaticMembersScope(
             @NotNull ClassDescriptor descriptor,
             @NotNull JavaClass javaClass,
+            @NotNull StorageManager storageManager,
             @NotNull JavaMemberResolver memberResolver
     ) {
-        super(descriptor, MembersProvider.forClass(javaClass, false), memberResolver);
+        super(descriptor, MembersProvider.forClass(javaClass, false), storageManager, memberResolver);
         this.descriptor = descriptor;
         this.javaClass = javaClass;
     }
 
     @NotNull
     public Collection<ConstructorDescriptor> getConstructors() {
-        return memberResolver.resolveConstructors(javaClass, descriptor);
+        // Constructors are resolved once, so that threads racing in ClassDescriptorFromJvmBytecode.getConstructors() get the same ones
+        return storageManager.compute(new Function0<Collection<ConstructorDescriptor>>() {
+            @Override
+            public Collection<ConstructorDescriptor> invoke() {
+                if (constructors == null) {
+                    constructors = memberResolver.resolveConstructors(javaClass, descriptor);
+                }
+                return constructors;
+            }
+        });
     }
 
     @NotNull
@@ -24,6 +24,7 @@ import org.jetbrains.jet.lang.resolve.java.resolver.JavaMemberResolver;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaClass;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.Name;
+import org.jetbrains.jet.storage.StorageManager;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -40,9 +41,10 @@ public final class JavaClassStaticMembersScope extends JavaClassMembersScope {
             @NotNull NamespaceDescriptor descriptor,
             @NotNull FqName packageFQN,
             @NotNull JavaClass javaClass,
+            @NotNull StorageManager storageManager,
             @NotNull JavaMemberResolver memberResolver
     ) {
-        super(descriptor, MembersProvider.forClass(javaClass, true), memberResolver);
+        super(descriptor, MembersProvider.forClass(javaClass, true), storageManager, memberResolver);
         this.packageFQN = packageFQN;
         this.javaClass = javaClass;
     }
@@ -21,6 +21,7 @@ import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
 import org.jetbrains.jet.lang.descriptors.ClassOrNamespaceDescriptor;
 import org.jetbrains.jet.lang.resolve.java.resolver.JavaMemberResolver;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaClass;
+import org.jetbrains.jet.storage.StorageManager;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -29,9 +30,10 @@ public class JavaEnumClassObjectScope extends JavaClassMembersScope {
     public JavaEnumClassObjectScope(
             @NotNull ClassOrNamespaceDescriptor descriptor,
             @NotNull JavaClass javaClass,
+            @NotNull StorageManager storageManager,
             @NotNull JavaMemberResolver memberResolver
     ) {
-        super(descriptor, MembersProvider.forClass(javaClass, true), memberResolver);
+        super(descriptor, MembersProvider.forClass(javaClass, true), storageManager, memberResolver);
     }
 
     @NotNull
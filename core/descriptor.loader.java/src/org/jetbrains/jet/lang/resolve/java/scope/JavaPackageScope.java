@@ -27,6 +27,7 @@ import org.jetbrains.jet.lang.resolve.java.structure.JavaClass;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaPackage;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.Name;
+import org.jetbrains.jet.storage.StorageManager;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -46,9 +47,10 @@ public final class JavaPackageScope extends JavaBaseScope {
             @NotNull NamespaceDescriptor descriptor,
             @NotNull JavaPackage javaPackage,
             @NotNull FqName packageFQN,
+            @NotNull StorageManager storageManager,
             @NotNull JavaMemberResolver memberResolver
     ) {
-        super(descriptor, memberResolver, MembersProvider.forPackage(javaPackage));
+        super(descriptor, storageManager, memberResolver, MembersProvider.forPackage(javaPackage));
         this.javaPackage = javaPackage;
         this.packageFQN = packageFQN;
     }
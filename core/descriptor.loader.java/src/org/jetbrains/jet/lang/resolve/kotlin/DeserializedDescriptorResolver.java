@@ -34,6 +34,7 @@ import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
 import org.jetbrains.jet.storage.LockBasedStorageManager;
+import org.jetbrains.jet.storage.StorageManager;
 
 import javax.inject.Inject;
 import java.util.Collection;
@@ -94,6 +95,15 @@ public final class DeserializedDescriptorResolver {
         this.errorReporter = errorReporter;
     }
 
+    /**
+     * Java classes are also resolved under the lock of this storage manager, since loading of compiled Kotlin classes
+     * and Java classes calls one another
+     */
+    @NotNull
+    public StorageManager getStorageManager() {
+        return storageManager;
+    }
+
     @Nullable
     public ClassDescriptor resolveClass(@NotNull KotlinJvmBinaryClass kotlinClass) {
         String[] data = readData(kotlinClass);
@@ -110,7 +120,7 @@ public final class DeserializedDescriptorResolver {
 
     @Nullable
     private String[] readData(@NotNull KotlinJvmBinaryClass kotlinClass) {
-        KotlinClassHeader header = KotlinClassHeader.read(kotlinClass);
+        KotlinClassHeader header = kotlinClass.getClassHeader();
         if (header instanceof SerializedDataHeader) {
             return ((SerializedDataHeader) header).getAnnotationData();
         }
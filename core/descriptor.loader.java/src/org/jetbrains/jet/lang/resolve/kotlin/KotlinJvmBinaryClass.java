@@ -19,12 +19,19 @@ package org.jetbrains.jet.lang.resolve.kotlin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.resolve.java.JvmClassName;
+import org.jetbrains.jet.lang.resolve.kotlin.header.KotlinClassHeader;
 import org.jetbrains.jet.lang.resolve.name.Name;
 
 public interface KotlinJvmBinaryClass {
     @NotNull
     JvmClassName getClassName();
 
+    /**
+     * @return the result of {@link KotlinClassHeader#read(KotlinJvmBinaryClass)}, which implementations may compute only once
+     */
+    @Nullable
+    KotlinClassHeader getClassHeader();
+
     void loadClassAnnotations(@NotNull AnnotationVisitor visitor);
 
     void loadMemberAnnotations(@NotNull MemberVisitor visitor);
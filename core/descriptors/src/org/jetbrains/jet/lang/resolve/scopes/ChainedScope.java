@@ -87,10 +87,10 @@ public class ChainedScope implements JetScope {
 
     @NotNull
     @Override
-    public Set<VariableDescriptor> getProperties(@NotNull Name name) {
-        Set<VariableDescriptor> properties = Sets.newLinkedHashSet();
+    public Collection<VariableDescriptor> getProperties(@NotNull Name name) {
+        Collection<VariableDescriptor> properties = Collections.emptySet();
         for (JetScope jetScope : scopeChain) {
-            properties.addAll(jetScope.getProperties(name));
+            properties = ScopeLookups.union(properties, jetScope.getProperties(name));
         }
         return properties;
     }
@@ -108,14 +108,10 @@ public class ChainedScope implements JetScope {
 
     @NotNull
     @Override
-    public Set<FunctionDescriptor> getFunctions(@NotNull Name name) {
-        if (scopeChain.length == 0) {
-            return Collections.emptySet();
-        }
-
-        Set<FunctionDescriptor> result = Sets.newLinkedHashSet();
+    public Collection<FunctionDescriptor> getFunctions(@NotNull Name name) {
+        Collection<FunctionDescriptor> result = Collections.emptySet();
         for (JetScope jetScope : scopeChain) {
-            result.addAll(jetScope.getFunctions(name));
+            result = ScopeLookups.union(result, jetScope.getFunctions(name));
         }
         return result;
     }
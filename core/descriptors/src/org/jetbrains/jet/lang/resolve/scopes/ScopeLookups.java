@@ -0,0 +1,45 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.lang.resolve.scopes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public class ScopeLookups {
+    private ScopeLookups() {
+    }
+
+    /**
+     * Adds descriptors found by a name in one more scope to those found in the previous ones. Usually a name is found in
+     * at most one scope of a chain, so the only non-empty result is returned as is, and a set is created only to merge several.
+     * The result may belong to a scope, so it should not be modified
+     */
+    @NotNull
+    public static <D> Collection<D> union(@NotNull Collection<D> found, @NotNull Collection<D> more) {
+        if (more.isEmpty()) return found;
+        if (found.isEmpty()) return more;
+
+        // found may be a result of another scope, so it is never modified
+        Set<D> union = new LinkedHashSet<D>(found);
+        union.addAll(more);
+        return union;
+    }
+}
@@ -16,7 +16,6 @@
 
 package org.jetbrains.jet.lang.resolve.scopes;
 
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -27,16 +26,22 @@ import org.jetbrains.jet.lang.types.TypeSubstitutor;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class SubstitutingScope implements JetScope {
 
     private final JetScope workerScope;
     private final TypeSubstitutor substitutor;
 
-    private Map<DeclarationDescriptor, DeclarationDescriptor> substitutedDescriptors = null;
-    private Collection<DeclarationDescriptor> allDescriptors = null;
+    // Scopes of types are shared by threads resolving bodies concurrently. Each descriptor is substituted once,
+    // so that all of them see the same substituted descriptor
+    private volatile ConcurrentMap<DeclarationDescriptor, Object> substitutedDescriptors = null;
+    private volatile Collection<DeclarationDescriptor> allDescriptors = null;
+
+    // Value of substitutedDescriptors for descriptors which can't be substituted
+    private static final Object NO_SUBSTITUTION = new Object();
 
     public SubstitutingScope(JetScope workerScope, @NotNull TypeSubstitutor substitutor) {
         this.workerScope = workerScope;
@@ -48,20 +53,32 @@ public class SubstitutingScope implements JetScope {
         if (descriptor == null) return null;
         if (substitutor.isEmpty()) return descriptor;
 
-        if (substitutedDescriptors == null) {
-            substitutedDescriptors = Maps.newHashMap();
+        ConcurrentMap<DeclarationDescriptor, Object> substitutedDescriptors = getSubstitutedDescriptors();
+        Object substituted = substitutedDescriptors.get(descriptor);
+        if (substituted == null) {
+            DeclarationDescriptor newSubstituted = descriptor.substitute(substitutor);
+            Object value = newSubstituted != null ? newSubstituted : NO_SUBSTITUTION;
+            Object oldValue = substitutedDescriptors.putIfAbsent(descriptor, value);
+            substituted = oldValue != null ? oldValue : value;
         }
 
-        DeclarationDescriptor substituted = substitutedDescriptors.get(descriptor);
-        if (substituted == null && !substitutedDescriptors.containsKey(descriptor)) {
-            substituted = descriptor.substitute(substitutor);
+        //noinspection unchecked
+        return substituted == NO_SUBSTITUTION ? null : (D) substituted;
+    }
 
-            //noinspection ConstantConditions
-            substitutedDescriptors.put(descriptor, substituted);
+    @NotNull
+    private ConcurrentMap<DeclarationDescriptor, Object> getSubstitutedDescriptors() {
+        ConcurrentMap<DeclarationDescriptor, Object> result = substitutedDescriptors;
+        if (result == null) {
+            synchronized (this) {
+                result = substitutedDescriptors;
+                if (result == null) {
+                    result = new ConcurrentHashMap<DeclarationDescriptor, Object>(16, 0.75f, 1);
+                    substitutedDescriptors = result;
+                }
+            }
         }
-
-        //noinspection unchecked
-        return (D) substituted;
+        return result;
     }
 
     @NotNull
@@ -139,10 +156,12 @@ public class SubstitutingScope implements JetScope {
     @NotNull
     @Override
     public Collection<DeclarationDescriptor> getAllDescriptors() {
-        if (allDescriptors == null) {
-            allDescriptors = substitute(workerScope.getAllDescriptors());
+        Collection<DeclarationDescriptor> result = allDescriptors;
+        if (result == null) {
+            result = substitute(workerScope.getAllDescriptors());
+            allDescriptors = result;
         }
-        return allDescriptors;
+        return result;
     }
 
     @NotNull
@@ -26,6 +26,8 @@ import org.jetbrains.jet.lang.types.checker.JetTypeChecker;
 import org.jetbrains.jet.utils.CommonSuppliers;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class WritableScopeImpl extends WritableScopeWithImports {
 
@@ -33,7 +35,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     private final Multimap<Name, DeclarationDescriptor> declaredDescriptorsAccessibleBySimpleName = HashMultimap.create();
     private boolean allDescriptorsDone = false;
 
-    private Set<ClassDescriptor> allObjectDescriptors = null;
+    private volatile Set<ClassDescriptor> allObjectDescriptors = null;
 
     @NotNull
     private final DeclarationDescriptor ownerDeclarationDescriptor;
@@ -59,6 +61,14 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     @Nullable
     private ReceiverParameterDescriptor implicitReceiver;
 
+    // Nothing is added to a scope locked for reading, so lookups in it are remembered, like getAllDescriptors().
+    // Bodies may be resolved concurrently in such a scope, so the maps are concurrent, and reads of the other maps don't create them
+    @Nullable
+    private volatile ConcurrentMap<Name, Collection<FunctionDescriptor>> functionsByName;
+
+    @Nullable
+    private volatile ConcurrentMap<Name, Collection<VariableDescriptor>> propertiesByName;
+
     public WritableScopeImpl(@NotNull JetScope scope, @NotNull DeclarationDescriptor owner,
             @NotNull RedeclarationHandler redeclarationHandler, @NotNull String debugName) {
         super(scope, redeclarationHandler, debugName);
@@ -119,7 +129,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
 
     @NotNull
     @Override
-    public Collection<DeclarationDescriptor> getAllDescriptors() {
+    public synchronized Collection<DeclarationDescriptor> getAllDescriptors() {
         checkMayRead();
 
         if (!allDescriptorsDone) {
@@ -158,8 +168,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
         checkMayRead();
 
         Collection<DeclarationDescriptor> superResult = super.getDeclarationsByLabel(labelName);
-        Map<LabelName, List<DeclarationDescriptor>> labelsToDescriptors = getLabelsToDescriptors();
-        List<DeclarationDescriptor> declarationDescriptors = labelsToDescriptors.get(labelName);
+        List<DeclarationDescriptor> declarationDescriptors = labelsToDescriptors != null ? labelsToDescriptors.get(labelName) : null;
         if (declarationDescriptors == null) {
             return superResult;
         }
@@ -191,6 +200,11 @@ public class WritableScopeImpl extends WritableScopeWithImports {
         return variableClassOrNamespaceDescriptors;
     }
 
+    @Nullable
+    private DeclarationDescriptor getVariableClassOrNamespaceDescriptor(@NotNull Name name) {
+        return variableClassOrNamespaceDescriptors != null ? variableClassOrNamespaceDescriptors.get(name) : null;
+    }
+
     @NotNull
     private Map<Name, NamespaceDescriptor> getNamespaceAliases() {
         if (namespaceAliases == null) {
@@ -228,15 +242,36 @@ public class WritableScopeImpl extends WritableScopeWithImports {
 
     @NotNull
     @Override
-    public Set<VariableDescriptor> getProperties(@NotNull Name name) {
+    public Collection<VariableDescriptor> getProperties(@NotNull Name name) {
         checkMayRead();
 
-        Set<VariableDescriptor> result = Sets.newLinkedHashSet(getPropertyGroups().get(name));
+        if (!isLockedForReading()) {
+            return computeProperties(name);
+        }
+        ConcurrentMap<Name, Collection<VariableDescriptor>> propertiesByName = this.propertiesByName;
+        if (propertiesByName == null) {
+            // If several threads get here, lookups remembered by all but one of them are lost, which is harmless
+            propertiesByName = createLookupCache();
+            this.propertiesByName = propertiesByName;
+        }
+        Collection<VariableDescriptor> result = propertiesByName.get(name);
+        if (result == null) {
+            result = computeProperties(name);
+            propertiesByName.put(name, result);
+        }
+        return result;
+    }
+
+    @NotNull
+    private Collection<VariableDescriptor> computeProperties(@NotNull Name name) {
+        Collection<VariableDescriptor> result = propertyGroups != null && propertyGroups.containsKey(name)
+                                                ? Collections.unmodifiableSet(propertyGroups.get(name))
+                                                : Collections.<VariableDescriptor>emptySet();
 
-        result.addAll(getWorkerScope().getProperties(name));
+        result = ScopeLookups.union(result, getWorkerScope().getProperties(name));
+
+        result = ScopeLookups.union(result, super.getProperties(name));
 
-        result.addAll(super.getProperties(name));
-        
         return result;
     }
 
@@ -244,9 +279,8 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     public VariableDescriptor getLocalVariable(@NotNull Name name) {
         checkMayRead();
 
-        Map<Name, DeclarationDescriptor> variableClassOrNamespaceDescriptors = getVariableClassOrNamespaceDescriptors();
-        DeclarationDescriptor descriptor = variableClassOrNamespaceDescriptors.get(name);
-        if (descriptor instanceof VariableDescriptor && !getPropertyGroups().get(name).contains(descriptor)) {
+        DeclarationDescriptor descriptor = getVariableClassOrNamespaceDescriptor(name);
+        if (descriptor instanceof VariableDescriptor && (propertyGroups == null || !propertyGroups.get(name).contains(descriptor))) {
             return (VariableDescriptor) descriptor;
         }
 
@@ -286,11 +320,37 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     public Collection<FunctionDescriptor> getFunctions(@NotNull Name name) {
         checkMayRead();
 
-        Set<FunctionDescriptor> result = Sets.newLinkedHashSet(getFunctionGroups().get(name));
+        if (!isLockedForReading()) {
+            return computeFunctions(name);
+        }
+        ConcurrentMap<Name, Collection<FunctionDescriptor>> functionsByName = this.functionsByName;
+        if (functionsByName == null) {
+            functionsByName = createLookupCache();
+            this.functionsByName = functionsByName;
+        }
+        Collection<FunctionDescriptor> result = functionsByName.get(name);
+        if (result == null) {
+            result = computeFunctions(name);
+            functionsByName.put(name, result);
+        }
+        return result;
+    }
 
-        result.addAll(getWorkerScope().getFunctions(name));
+    @NotNull
+    private static <V> ConcurrentMap<Name, V> createLookupCache() {
+        // Most scopes are only read by one thread
+        return new ConcurrentHashMap<Name, V>(16, 0.75f, 1);
+    }
+
+    @NotNull
+    private Collection<FunctionDescriptor> computeFunctions(@NotNull Name name) {
+        Collection<FunctionDescriptor> result = functionGroups != null && functionGroups.containsKey(name)
+                                                ? Collections.unmodifiableSet(functionGroups.get(name))
+                                                : Collections.<FunctionDescriptor>emptySet();
+
+        result = ScopeLookups.union(result, getWorkerScope().getFunctions(name));
 
-        result.addAll(super.getFunctions(name));
+        result = ScopeLookups.union(result, super.getFunctions(name));
 
         return result;
     }
@@ -387,8 +447,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     public ClassifierDescriptor getClassifier(@NotNull Name name) {
         checkMayRead();
 
-        Map<Name, DeclarationDescriptor> variableClassOrNamespaceDescriptors = getVariableClassOrNamespaceDescriptors();
-        DeclarationDescriptor descriptor = variableClassOrNamespaceDescriptors.get(name);
+        DeclarationDescriptor descriptor = getVariableClassOrNamespaceDescriptor(name);
         if (descriptor instanceof ClassifierDescriptor) return (ClassifierDescriptor) descriptor;
 
         ClassifierDescriptor classifierDescriptor = getWorkerScope().getClassifier(name);
@@ -399,7 +458,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
 
     @Override
     public ClassDescriptor getObjectDescriptor(@NotNull Name name) {
-        ClassDescriptor descriptor = getObjectDescriptorsMap().get(name);
+        ClassDescriptor descriptor = objectDescriptors != null ? objectDescriptors.get(name) : null;
         if (descriptor != null) return descriptor;
 
         ClassDescriptor fromWorker = getWorkerScope().getObjectDescriptor(name);
@@ -411,14 +470,16 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     @NotNull
     @Override
     public Set<ClassDescriptor> getObjectDescriptors() {
-        if (allObjectDescriptors == null) {
-            allObjectDescriptors = Sets.newHashSet(getObjectDescriptorsMap().values());
-            allObjectDescriptors.addAll(getWorkerScope().getObjectDescriptors());
+        Set<ClassDescriptor> result = allObjectDescriptors;
+        if (result == null) {
+            result = objectDescriptors != null ? Sets.newHashSet(objectDescriptors.values()) : Sets.<ClassDescriptor>newHashSet();
+            result.addAll(getWorkerScope().getObjectDescriptors());
             for (JetScope imported : getImports()) {
-                allObjectDescriptors.addAll(imported.getObjectDescriptors());
+                result.addAll(imported.getObjectDescriptors());
             }
+            allObjectDescriptors = result;
         }
-        return allObjectDescriptors;
+        return result;
     }
 
     @Override
@@ -438,8 +499,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     public NamespaceDescriptor getDeclaredNamespace(@NotNull Name name) {
         checkMayRead();
 
-        Map<Name, DeclarationDescriptor> variableClassOrNamespaceDescriptors = getVariableClassOrNamespaceDescriptors();
-        DeclarationDescriptor namespaceDescriptor = variableClassOrNamespaceDescriptors.get(name);
+        DeclarationDescriptor namespaceDescriptor = getVariableClassOrNamespaceDescriptor(name);
         if (namespaceDescriptor instanceof NamespaceDescriptor) return (NamespaceDescriptor) namespaceDescriptor;
         return null;
     }
@@ -451,7 +511,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
         NamespaceDescriptor declaredNamespace = getDeclaredNamespace(name);
         if (declaredNamespace != null) return declaredNamespace;
 
-        NamespaceDescriptor aliased = getNamespaceAliases().get(name);
+        NamespaceDescriptor aliased = namespaceAliases != null ? namespaceAliases.get(name) : null;
         if (aliased != null) return aliased;
 
         NamespaceDescriptor namespace = getWorkerScope().getNamespace(name);
@@ -17,7 +17,6 @@
 package org.jetbrains.jet.lang.resolve.scopes;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.descriptors.*;
@@ -34,7 +33,8 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
     private List<JetScope> imports;
     private WritableScope currentIndividualImportScope;
     protected final RedeclarationHandler redeclarationHandler;
-    private List<ReceiverParameterDescriptor> implicitReceiverHierarchy;
+    // Computed lazily, possibly several times if bodies are resolved concurrently in a scope locked for reading
+    private volatile List<ReceiverParameterDescriptor> implicitReceiverHierarchy;
 
     public WritableScopeWithImports(@NotNull JetScope scope, @NotNull RedeclarationHandler redeclarationHandler, @NotNull String debugName) {
         super(scope);
@@ -73,15 +73,16 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
         }
     }
 
+    protected boolean isLockedForReading() {
+        return lockLevel == LockLevel.READING;
+    }
+
 
 
 
     @NotNull
     protected final List<JetScope> getImports() {
-        if (imports == null) {
-            imports = new ArrayList<JetScope>();
-        }
-        return imports;
+        return imports != null ? imports : Collections.<JetScope>emptyList();
     }
 
     @Override
@@ -92,7 +93,10 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
 
         checkMayWrite();
 
-        getImports().add(0, imported);
+        if (imports == null) {
+            imports = new ArrayList<JetScope>();
+        }
+        imports.add(0, imported);
         currentIndividualImportScope = null;
     }
 
@@ -101,10 +105,12 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
     public List<ReceiverParameterDescriptor> getImplicitReceiversHierarchy() {
         checkMayRead();
 
-        if (implicitReceiverHierarchy == null) {
-            implicitReceiverHierarchy = computeImplicitReceiversHierarchy();
+        List<ReceiverParameterDescriptor> result = implicitReceiverHierarchy;
+        if (result == null) {
+            result = computeImplicitReceiversHierarchy();
+            implicitReceiverHierarchy = result;
         }
-        return implicitReceiverHierarchy;
+        return result;
     }
 
     protected List<ReceiverParameterDescriptor> computeImplicitReceiversHierarchy() {
@@ -121,12 +127,12 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
 
     @NotNull
     @Override
-    public Set<VariableDescriptor> getProperties(@NotNull Name name) {
+    public Collection<VariableDescriptor> getProperties(@NotNull Name name) {
         checkMayRead();
 
-        Set<VariableDescriptor> properties = Sets.newLinkedHashSet();
+        Collection<VariableDescriptor> properties = Collections.emptySet();
         for (JetScope imported : getImports()) {
-            properties.addAll(imported.getProperties(name));
+            properties = ScopeLookups.union(properties, imported.getProperties(name));
         }
         return properties;
     }
@@ -150,12 +156,9 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
     public Collection<FunctionDescriptor> getFunctions(@NotNull Name name) {
         checkMayRead();
 
-        if (getImports().isEmpty()) {
-            return Collections.emptySet();
-        }
-        Set<FunctionDescriptor> result = Sets.newLinkedHashSet();
+        Collection<FunctionDescriptor> result = Collections.emptySet();
         for (JetScope imported : getImports()) {
-            result.addAll(imported.getFunctions(name));
+            result = ScopeLookups.union(result, imported.getFunctions(name));
         }
         return result;
     }
@@ -241,7 +244,9 @@ public abstract class WritableScopeWithImports extends JetScopeAdapter implement
     @Override
     public void clearImports() {
         currentIndividualImportScope = null;
-        getImports().clear();
+        if (imports != null) {
+            imports.clear();
+        }
     }
 
     @Override
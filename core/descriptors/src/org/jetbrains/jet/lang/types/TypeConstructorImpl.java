@@ -22,17 +22,19 @@ import org.jetbrains.jet.lang.descriptors.ClassifierDescriptor;
 import org.jetbrains.jet.lang.descriptors.TypeParameterDescriptor;
 import org.jetbrains.jet.lang.descriptors.annotations.AnnotatedImpl;
 import org.jetbrains.jet.lang.descriptors.annotations.AnnotationDescriptor;
+import org.jetbrains.jet.lang.types.checker.SupertypeClosure;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
-public class TypeConstructorImpl extends AnnotatedImpl implements TypeConstructor {
+public class TypeConstructorImpl extends AnnotatedImpl implements TypeConstructor, SupertypeClosure.Holder {
     private final List<TypeParameterDescriptor> parameters;
     private Collection<JetType> supertypes;
     private final String debugName;
     private final boolean sealed;
+    private SupertypeClosure supertypeClosure;
 
     @Nullable
     private final ClassifierDescriptor classifierDescriptor;
@@ -64,6 +66,23 @@ public class TypeConstructorImpl extends AnnotatedImpl implements TypeConstructo
         return supertypes;
     }
 
+    @Override
+    @Nullable
+    public SupertypeClosure getSupertypeClosure() {
+        return supertypeClosure;
+    }
+
+    @Override
+    public void setSupertypeClosure(@NotNull SupertypeClosure closure) {
+        supertypeClosure = closure;
+    }
+
+    @Override
+    public boolean areSupertypesComplete() {
+        // The collection of supertypes may be modified by the owner of the constructor, e.g. a mutable class descriptor
+        return false;
+    }
+
     @Override
     public String toString() {
         return debugName;
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.jet.lang.types.checker;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.lang.types.TypeConstructor;
+import org.jetbrains.jet.lang.types.TypeSubstitutor;
+import org.jetbrains.jet.lang.types.Variance;
+
+import java.util.*;
+
+/**
+ * All supertypes of a type constructor, each one expressed in terms of the type parameters of the constructor, so that
+ * finding the supertype of a type with a given constructor takes one lookup and one substitution.
+ *
+ * The hierarchy may still change while the classes of it are being resolved, so the closure remembers the immediate
+ * supertypes of every constructor it was computed from, and is recomputed when they change. Once the supertypes of all
+ * of them are complete, the closure is not checked anymore.
+ */
+public final class SupertypeClosure {
+    /**
+     * A type constructor which keeps its closure, see {@link #get(TypeConstructor)}
+     */
+    public interface Holder {
+        @Nullable
+        SupertypeClosure getSupertypeClosure();
+
+        void setSupertypeClosure(@NotNull SupertypeClosure closure);
+
+        /**
+         * @return true if the supertypes of this constructor will not change anymore
+         */
+        boolean areSupertypesComplete();
+    }
+
+    private final Map<TypeConstructor, JetType> supertypes;
+    private final TypeConstructor[] constructors;
+    private final JetType[][] immediateSupertypes;
+    private volatile boolean complete;
+
+    private SupertypeClosure(
+            @NotNull Map<TypeConstructor, JetType> supertypes,
+            @NotNull Map<TypeConstructor, JetType[]> immediateSupertypes
+    ) {
+        this.supertypes = supertypes;
+        this.constructors = immediateSupertypes.keySet().toArray(new TypeConstructor[immediateSupertypes.size()]);
+        this.immediateSupertypes = immediateSupertypes.values().toArray(new JetType[immediateSupertypes.size()][]);
+    }
+
+    @NotNull
+    public static SupertypeClosure get(@NotNull TypeConstructor constructor) {
+        if (!(constructor instanceof Holder)) {
+            return compute(constructor);
+        }
+
+        Holder holder = (Holder) constructor;
+        SupertypeClosure closure = holder.getSupertypeClosure();
+        if (closure == null || !closure.isUpToDate()) {
+            closure = compute(constructor);
+            holder.setSupertypeClosure(closure);
+        }
+        return closure;
+    }
+
+    /**
+     * @return the supertype with the given constructor in terms of the type parameters of this closure's constructor,
+     * or null if there is no such supertype. The constructor itself is not included
+     */
+    @Nullable
+    public JetType getSupertype(@NotNull TypeConstructor supertypeConstructor) {
+        return supertypes.get(supertypeConstructor);
+    }
+
+    private boolean isUpToDate() {
+        if (complete) return true;
+
+        // Checked before the supertypes are compared, so that they can't change after the comparison
+        boolean allComplete = true;
+        for (TypeConstructor constructor : constructors) {
+            if (!(constructor instanceof Holder) || !((Holder) constructor).areSupertypesComplete()) {
+                allComplete = false;
+                break;
+            }
+        }
+
+        for (int i = 0; i < constructors.length; i++) {
+            Collection<JetType> current = constructors[i].getSupertypes();
+            JetType[] remembered = immediateSupertypes[i];
+            if (current.size() != remembered.length) return false;
+
+            int j = 0;
+            for (JetType supertype : current) {
+                if (supertype != remembered[j++]) return false;
+            }
+        }
+
+        complete = allComplete;
+        return true;
+    }
+
+    // The first supertype found by a depth-first search wins, in case a constructor is reachable by several paths
+    @NotNull
+    private static SupertypeClosure compute(@NotNull TypeConstructor constructor) {
+        Map<TypeConstructor, JetType> supertypes = new HashMap<TypeConstructor, JetType>();
+        Map<TypeConstructor, JetType[]> immediateSupertypes = new LinkedHashMap<TypeConstructor, JetType[]>();
+
+        Collection<JetType> ownSupertypes = constructor.getSupertypes();
+        immediateSupertypes.put(constructor, ownSupertypes.toArray(new JetType[ownSupertypes.size()]));
+
+        for (JetType immediateSupertype : ownSupertypes) {
+            TypeConstructor immediateConstructor = immediateSupertype.getConstructor();
+            if (!supertypes.containsKey(immediateConstructor)) {
+                supertypes.put(immediateConstructor, immediateSupertype);
+            }
+
+            SupertypeClosure closure = get(immediateConstructor);
+            TypeSubstitutor substitutor = null;
+            for (Map.Entry<TypeConstructor, JetType> entry : closure.supertypes.entrySet()) {
+                if (supertypes.containsKey(entry.getKey())) continue;
+
+                if (substitutor == null) {
+                    substitutor = TypeSubstitutor.create(immediateSupertype);
+                }
+                supertypes.put(entry.getKey(), substitutor.safeSubstitute(entry.getValue(), Variance.INVARIANT));
+            }
+
+            for (int i = 0; i < closure.constructors.length; i++) {
+                if (!immediateSupertypes.containsKey(closure.constructors[i])) {
+                    immediateSupertypes.put(closure.constructors[i], closure.immediateSupertypes[i]);
+                }
+            }
+        }
+
+        return new SupertypeClosure(supertypes, immediateSupertypes);
+    }
+}
@@ -36,13 +36,11 @@ public class TypeCheckingProcedure {
         if (constructor.equals(supertype.getConstructor())) {
             return subtype;
         }
-        for (JetType immediateSupertype : constructor.getSupertypes()) {
-            JetType correspondingSupertype = findCorrespondingSupertype(immediateSupertype, supertype);
-            if (correspondingSupertype != null) {
-                return TypeSubstitutor.create(subtype).safeSubstitute(correspondingSupertype, Variance.INVARIANT);
-            }
+        JetType correspondingSupertype = SupertypeClosure.get(constructor).getSupertype(supertype.getConstructor());
+        if (correspondingSupertype == null) {
+            return null;
         }
-        return null;
+        return TypeSubstitutor.create(subtype).safeSubstitute(correspondingSupertype, Variance.INVARIANT);
     }
 
     public static JetType getOutType(TypeParameterDescriptor parameter, TypeProjection argument) {
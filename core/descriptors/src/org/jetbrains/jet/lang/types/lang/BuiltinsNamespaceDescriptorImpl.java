@@ -1,5 +1,6 @@
 package org.jetbrains.jet.lang.types.lang;
 
+import com.google.protobuf.ExtensionRegistryLite;
 import jet.Function0;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -34,19 +35,14 @@ class BuiltinsNamespaceDescriptorImpl extends AbstractNamespaceDescriptorImpl {
         nameResolver = NameSerializationUtil.deserializeNameResolver(getStream(BuiltInsSerializationUtil.getNameTableFilePath(this)));
 
         members = new DeserializedPackageMemberScope(storageManager, this, UNSUPPORTED, new BuiltInsDescriptorFinder(storageManager),
-                                                     loadPackage(), nameResolver);
+                                                     loadPackage());
     }
 
     @NotNull
-    private ProtoBuf.Package loadPackage() {
+    private PackageData loadPackage() {
         String packageFilePath = BuiltInsSerializationUtil.getPackageFilePath(this);
         InputStream stream = getStream(packageFilePath);
-        try {
-            return ProtoBuf.Package.parseFrom(stream);
-        }
-        catch (IOException e) {
-            throw new IllegalStateException(e);
-        }
+        return PackageData.read(nameResolver, stream, ExtensionRegistryLite.getEmptyRegistry());
     }
 
     @NotNull
@@ -116,22 +112,17 @@ class BuiltinsNamespaceDescriptorImpl extends AbstractNamespaceDescriptorImpl {
                 return null;
             }
 
-            try {
-                ProtoBuf.Class classProto = ProtoBuf.Class.parseFrom(stream);
-
-                Name expectedShortName = classId.getRelativeClassName().shortName();
-                Name actualShortName = nameResolver.getClassId(classProto.getFqName()).getRelativeClassName().shortName();
-                if (!actualShortName.isSpecial() && !actualShortName.equals(expectedShortName)) {
-                    // Workaround for case-insensitive file systems,
-                    // otherwise we'd find "Collection" for "collection" etc
-                    return null;
-                }
+            ClassData classData = ClassData.read(nameResolver, stream, ExtensionRegistryLite.getEmptyRegistry());
 
-                return new ClassData(nameResolver, classProto);
-            }
-            catch (IOException e) {
-                throw new IllegalStateException(e);
+            Name expectedShortName = classId.getRelativeClassName().shortName();
+            Name actualShortName = nameResolver.getClassId(classData.getClassProto().getFqName()).getRelativeClassName().shortName();
+            if (!actualShortName.isSpecial() && !actualShortName.equals(expectedShortName)) {
+                // Workaround for case-insensitive file systems,
+                // otherwise we'd find "Collection" for "collection" etc
+                return null;
             }
+
+            return classData;
         }
 
         @Nullable
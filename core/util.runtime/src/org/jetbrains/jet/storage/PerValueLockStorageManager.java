@@ -0,0 +1,450 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.storage;
+
+import jet.Function0;
+import jet.Function1;
+import jet.Unit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.utils.ExceptionUtils;
+import org.jetbrains.jet.utils.WrappedValues;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Unlike {@link LockBasedStorageManager}, doesn't share one lock between all values: each lazy value and each key of a memoized
+ * function is still computed once, but threads only wait for each other when they need the very same value.
+ *
+ * A thread that needs a value being computed by another thread waits for it, unless the other thread (transitively) waits for
+ * the current one. Such a cycle means that the value depends on itself: one thread of the cycle handles it as a recursive call
+ * in a single thread, and the others wait for it.
+ *
+ * NOTE: {@link #compute(Function0)} doesn't exclude other computations here, so whatever must be done once is a lazy value or
+ * a memoized function of the storage manager. The Java resolver, which relies on compute() being a critical section, uses
+ * the {@link LockBasedStorageManager} of the deserializer whatever storage manager the lazy resolve session uses.
+ */
+public class PerValueLockStorageManager implements StorageManager {
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunction(@NotNull Function1<K, V> compute) {
+        return createMemoizedFunction(compute, new ConcurrentHashMap<K, Object>());
+    }
+
+    @NotNull
+    protected <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunction(
+            @NotNull Function1<K, V> compute,
+            @NotNull ConcurrentMap<K, Object> map
+    ) {
+        return new PerKeyMemoizedFunctionToNotNull<K, V>(map, compute);
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNullable<K, V> createMemoizedFunctionWithNullableValues(@NotNull Function1<K, V> compute) {
+        return createMemoizedFunctionWithNullableValues(compute, new ConcurrentHashMap<K, Object>());
+    }
+
+    @NotNull
+    protected <K, V> MemoizedFunctionToNullable<K, V> createMemoizedFunctionWithNullableValues(
+            @NotNull Function1<K, V> compute,
+            @NotNull ConcurrentMap<K, Object> map
+    ) {
+        return new PerKeyMemoizedFunction<K, V>(map, compute);
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValue(@NotNull Function0<T> computable) {
+        return new PerValueLockNotNullLazyValue<T>(computable);
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createRecursionTolerantLazyValue(
+            @NotNull Function0<T> computable, @NotNull final T onRecursiveCall
+    ) {
+        return new PerValueLockNotNullLazyValue<T>(computable) {
+            @Override
+            protected T recursionDetected(boolean firstTime) {
+                return onRecursiveCall;
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValueWithPostCompute(
+            @NotNull Function0<T> computable,
+            final Function1<Boolean, T> onRecursiveCall,
+            @NotNull final Function1<T, Unit> postCompute
+    ) {
+        return new PerValueLockNotNullLazyValue<T>(computable) {
+            @Nullable
+            @Override
+            protected T recursionDetected(boolean firstTime) {
+                if (onRecursiveCall == null) {
+                    return super.recursionDetected(firstTime);
+                }
+                return onRecursiveCall.invoke(firstTime);
+            }
+
+            @Override
+            protected void postCompute(@NotNull T value) {
+                postCompute.invoke(value);
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValue(@NotNull Function0<T> computable) {
+        return new PerValueLockLazyValue<T>(computable);
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createRecursionTolerantNullableLazyValue(@NotNull Function0<T> computable, final T onRecursiveCall) {
+        return new PerValueLockLazyValue<T>(computable) {
+            @Override
+            protected T recursionDetected(boolean firstTime) {
+                return onRecursiveCall;
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValueWithPostCompute(
+            @NotNull Function0<T> computable, @NotNull final Function1<T, Unit> postCompute
+    ) {
+        return new PerValueLockLazyValue<T>(computable) {
+            @Override
+            protected void postCompute(@Nullable T value) {
+                postCompute.invoke(value);
+            }
+        };
+    }
+
+    @Override
+    public <T> T compute(@NotNull Function0<T> computable) {
+        return computable.invoke();
+    }
+
+    /**
+     * A computation of a value in progress, other threads needing the value wait for it to finish
+     */
+    private static final class Computation {
+        // For each waiting thread, the computation it waits for
+        private static final ConcurrentMap<Thread, Computation> WAITING_THREADS = new ConcurrentHashMap<Thread, Computation>();
+
+        private final Thread thread = Thread.currentThread();
+        private volatile boolean finished = false;
+
+        // Only accessed by the computing thread: the value is available to it before it's published
+        private boolean hasValue = false;
+        private Object value = null;
+
+        public boolean isRunByCurrentThread() {
+            return thread == Thread.currentThread();
+        }
+
+        public void setValue(@Nullable Object value) {
+            this.value = value;
+            this.hasValue = true;
+        }
+
+        public synchronized void finish() {
+            finished = true;
+            notifyAll();
+        }
+
+        /**
+         * @return {@code false} if the computing thread waits for the current one, so waiting for it would never end
+         */
+        public boolean await() {
+            Thread current = Thread.currentThread();
+            // Each thread registers before it checks for a cycle, so the last thread closing a cycle always sees it
+            WAITING_THREADS.put(current, this);
+            try {
+                Thread breaker;
+                synchronized (this) {
+                    while (true) {
+                        if (finished) return true;
+                        breaker = findCycleBreaker(current);
+                        if (breaker == current) return false;
+                        if (breaker != null) break;
+                        wait();
+                    }
+                }
+
+                // The current thread has closed a cycle: the thread which breaks it may be waiting already, wake it up.
+                // No other cycle can go through the current thread, so it only has to wait now
+                wakeUp(breaker);
+                synchronized (this) {
+                    while (!finished) {
+                        wait();
+                    }
+                }
+                return true;
+            }
+            catch (InterruptedException e) {
+                throw ExceptionUtils.rethrow(e);
+            }
+            finally {
+                WAITING_THREADS.remove(current);
+            }
+        }
+
+        /**
+         * Only one thread of a cycle stops waiting, the one with the least id, so that the result doesn't depend on timing
+         *
+         * @return the thread which breaks the cycle of waiting threads going through the given thread, or null if there's no cycle
+         */
+        @Nullable
+        private Thread findCycleBreaker(@NotNull Thread thread) {
+            Set<Thread> visited = new HashSet<Thread>();
+            Thread breaker = thread;
+            Computation computation = this;
+            while (computation != null && !computation.finished) {
+                Thread computingThread = computation.thread;
+                if (computingThread == thread) return breaker;
+                // A cycle not involving the given thread is broken by one of its own threads
+                if (!visited.add(computingThread)) return null;
+                if (computingThread.getId() < breaker.getId()) {
+                    breaker = computingThread;
+                }
+                computation = WAITING_THREADS.get(computingThread);
+            }
+            return null;
+        }
+
+        // Not called under the lock of a computation, so that threads waking each other up never hold two locks
+        private static void wakeUp(@NotNull Thread thread) {
+            Computation awaited = WAITING_THREADS.get(thread);
+            if (awaited != null) {
+                synchronized (awaited) {
+                    awaited.notifyAll();
+                }
+            }
+        }
+    }
+
+    private static class PerValueLockLazyValue<T> implements NullableLazyValue<T> {
+
+        private enum NotValue {
+            NOT_COMPUTED,
+            RECURSION_WAS_DETECTED
+        }
+
+        private final Function0<T> computable;
+
+        @Nullable
+        private volatile Object value = NotValue.NOT_COMPUTED;
+
+        // Guarded by this
+        @Nullable
+        private Computation computation = null;
+
+        public PerValueLockLazyValue(@NotNull Function0<T> computable) {
+            this.computable = computable;
+        }
+
+        @Override
+        public boolean isComputed() {
+            return value != NotValue.NOT_COMPUTED;
+        }
+
+        @Override
+        public T invoke() {
+            Object _value = value;
+            if (!(_value instanceof NotValue)) return WrappedValues.unescapeThrowable(_value);
+
+            Computation started = null;
+            while (started == null) {
+                Computation inProgress;
+                synchronized (this) {
+                    _value = value;
+                    if (!(_value instanceof NotValue)) return WrappedValues.unescapeThrowable(_value);
+
+                    inProgress = computation;
+                    if (inProgress == null && _value == NotValue.NOT_COMPUTED) {
+                        started = computation = new Computation();
+                        continue;
+                    }
+                }
+
+                if (inProgress == null) {
+                    // A computation which had detected a recursive call has failed
+                    return recursionDetected(/*firstTime = */ false);
+                }
+
+                if (inProgress.isRunByCurrentThread()) {
+                    if (inProgress.hasValue) {
+                        // Called from postCompute()
+                        //noinspection unchecked
+                        return (T) inProgress.value;
+                    }
+                    return recursionDetected(markRecursionDetected());
+                }
+
+                if (!inProgress.await()) {
+                    // The computing thread waits for the current one, so this value depends on itself
+                    return recursionDetected(markRecursionDetected());
+                }
+            }
+
+            try {
+                T typedValue = computable.invoke();
+                started.setValue(typedValue);
+                postCompute(typedValue);
+                synchronized (this) {
+                    value = typedValue;
+                    computation = null;
+                }
+                return typedValue;
+            }
+            catch (Throwable throwable) {
+                synchronized (this) {
+                    if (started.hasValue) {
+                        value = started.value;
+                    }
+                    else if (value == NotValue.NOT_COMPUTED) {
+                        // Store only if it's a genuine result, not something thrown through recursionDetected()
+                        value = WrappedValues.escapeThrowable(throwable);
+                    }
+                    computation = null;
+                }
+                throw ExceptionUtils.rethrow(throwable);
+            }
+            finally {
+                started.finish();
+            }
+        }
+
+        private synchronized boolean markRecursionDetected() {
+            boolean firstTime = value == NotValue.NOT_COMPUTED;
+            value = NotValue.RECURSION_WAS_DETECTED;
+            return firstTime;
+        }
+
+        /**
+         * @param firstTime {@code true} when recursion has been just detected, {@code false} otherwise
+         * @return a value to be returned on a recursive call or subsequent calls
+         */
+        @Nullable
+        protected T recursionDetected(boolean firstTime) {
+            throw new IllegalStateException("Recursive call in a lazy value");
+        }
+
+        protected void postCompute(T value) {
+            // Doing something in post-compute helps prevent infinite recursion
+        }
+    }
+
+    private static class PerValueLockNotNullLazyValue<T> extends PerValueLockLazyValue<T> implements NotNullLazyValue<T> {
+
+        public PerValueLockNotNullLazyValue(@NotNull Function0<T> computable) {
+            super(computable);
+        }
+
+        @Override
+        @NotNull
+        public T invoke() {
+            T result = super.invoke();
+            assert result != null : "compute() returned null";
+            return result;
+        }
+    }
+
+    private static class PerKeyMemoizedFunction<K, V> implements MemoizedFunctionToNullable<K, V> {
+        // Values are either escaped results or computations in progress
+        private final ConcurrentMap<K, Object> cache;
+        private final Function1<K, V> compute;
+
+        public PerKeyMemoizedFunction(@NotNull ConcurrentMap<K, Object> map, @NotNull Function1<K, V> compute) {
+            this.cache = map;
+            this.compute = compute;
+        }
+
+        @Override
+        @Nullable
+        public V invoke(@NotNull K input) {
+            while (true) {
+                Object value = cache.get(input);
+                if (value == null) {
+                    Computation computation = new Computation();
+                    value = cache.putIfAbsent(input, computation);
+                    if (value == null) {
+                        try {
+                            return computeAndStore(input, computation);
+                        }
+                        finally {
+                            computation.finish();
+                        }
+                    }
+                }
+
+                if (!(value instanceof Computation)) return WrappedValues.unescapeExceptionOrNull(value);
+
+                Computation inProgress = (Computation) value;
+                if (inProgress.isRunByCurrentThread() || !inProgress.await()) {
+                    // The value depends on itself: as with a reentrant lock, compute it once more. Only the first result is stored,
+                    // and the computation in progress returns it as well
+                    return computeAndStore(input, inProgress);
+                }
+            }
+        }
+
+        @Nullable
+        private V computeAndStore(@NotNull K input, @NotNull Computation computation) {
+            Object result;
+            try {
+                result = WrappedValues.escapeNull(compute.invoke(input));
+            }
+            catch (Throwable throwable) {
+                result = WrappedValues.escapeThrowable(throwable);
+            }
+
+            if (!cache.replace(input, computation, result)) {
+                // A recursive call has stored its result already
+                result = cache.get(input);
+                assert result != null && !(result instanceof Computation) : "Race condition detected";
+            }
+            return WrappedValues.unescapeExceptionOrNull(result);
+        }
+    }
+
+    private static class PerKeyMemoizedFunctionToNotNull<K, V> extends PerKeyMemoizedFunction<K, V> implements MemoizedFunctionToNotNull<K, V> {
+
+        public PerKeyMemoizedFunctionToNotNull(@NotNull ConcurrentMap<K, Object> map, @NotNull Function1<K, V> compute) {
+            super(map, compute);
+        }
+
+        @NotNull
+        @Override
+        public V invoke(@NotNull K input) {
+            V result = super.invoke(input);
+            assert result != null : "compute() returned null";
+            return result;
+        }
+    }
+}
@@ -28,10 +28,9 @@ import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.Function;
 import com.intellij.util.SystemProperties;
-import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
-import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
-import org.jetbrains.jet.cli.common.messages.MessageCollector;
-import org.jetbrains.jet.cli.common.messages.MessageCollectorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.cli.common.daemon.CompilerDaemonClient;
+import org.jetbrains.jet.cli.common.messages.*;
 
 import java.io.File;
 import java.io.IOException;
@@ -78,6 +77,10 @@ public class KotlinCompilerRunner {
             final MessageCollector messageCollector,
             OutputItemsCollector collector,
             final CompilerEnvironment environment) {
+        if (runInDaemon(compilerClassName, arguments, messageCollector, collector)) {
+            return;
+        }
+
         CompilerRunnerUtil.outputCompilerMessagesAndHandleExitCode(messageCollector, collector, new Function<PrintStream, Integer>() {
             @Override
             public Integer fun(PrintStream stream) {
@@ -86,6 +89,47 @@ public class KotlinCompilerRunner {
         });
     }
 
+    /**
+     * Compiles in the daemon listening on the port given by the "kotlin.daemon.port" system property, if there is one
+     *
+     * @return false if the compilation should be done in process
+     */
+    private static boolean runInDaemon(
+            String compilerClassName,
+            String[] arguments,
+            final MessageCollector messageCollector,
+            final OutputItemsCollector collector
+    ) {
+        Integer port = CompilerDaemonClient.getDaemonPort();
+        if (port == null) return false;
+
+        // All paths in arguments are absolute, so there's no need for the daemon to share our working directory
+        CompilerDaemonClient client = CompilerDaemonClient.connect(port, compilerClassName, arguments, null);
+        if (client == null) return false;
+
+        messageCollector.report(CompilerMessageSeverity.INFO,
+                                "Invoking compiler " + compilerClassName + " in daemon on port " + port + " with arguments " + Arrays.asList(arguments),
+                                CompilerMessageLocation.NO_LOCATION);
+        int exitCode = client.receive(new MessageCollector() {
+            @Override
+            public void report(
+                    @NotNull CompilerMessageSeverity severity, @NotNull String message, @NotNull CompilerMessageLocation location
+            ) {
+                if (severity == CompilerMessageSeverity.OUTPUT) {
+                    OutputMessageUtil.Output output = OutputMessageUtil.parseOutputMessage(message);
+                    if (output != null) {
+                        collector.add(output.sourceFiles, output.outputFile);
+                    }
+                }
+                else {
+                    messageCollector.report(severity, message, location);
+                }
+            }
+        });
+        CompilerRunnerUtil.handleProcessTermination(exitCode, messageCollector);
+        return true;
+    }
+
     private static int execInProcess(String compilerClassName, String[] arguments, CompilerEnvironment environment, PrintStream out, MessageCollector messageCollector) {
         try {
             messageCollector.report(CompilerMessageSeverity.INFO,
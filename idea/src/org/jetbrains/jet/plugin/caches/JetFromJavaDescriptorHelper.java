@@ -117,7 +117,7 @@ public class JetFromJavaDescriptorHelper {
     private static String[] getAnnotationDataForKotlinClass(@NotNull PsiClass psiClass) {
         VirtualFile virtualFile = getVirtualFileForPsiClass(psiClass);
         if (virtualFile != null) {
-            KotlinClassHeader header = KotlinClassHeader.read(new VirtualFileKotlinClass(virtualFile));
+            KotlinClassHeader header = new VirtualFileKotlinClass(virtualFile).getClassHeader();
             if (header instanceof SerializedDataHeader) {
                 return ((SerializedDataHeader) header).getAnnotationData();
             }
@@ -187,7 +187,7 @@ public class JetFromJavaDescriptorHelper {
                 continue;
             }
             NameResolver nameResolver = data.getNameResolver();
-            for (ProtoBuf.Callable callable : data.getPackageProto().getMemberList()) {
+            for (ProtoBuf.Callable callable : data.getMembers().getAllMembers()) {
                 if (callable.hasReceiverType() == shouldBeExtension) {
                     Name name = nameResolver.getName(callable.getName());
                     result.add(packageFqName.child(name));
@@ -68,7 +68,7 @@ public final class DecompiledDataFactory {
         VirtualFileKotlinClass kotlinClass = new VirtualFileKotlinClass(classFile);
         this.classFqName = kotlinClass.getClassName().getFqNameForClassNameWithoutDollars();
 
-        KotlinClassHeader header = KotlinClassHeader.read(kotlinClass);
+        KotlinClassHeader header = kotlinClass.getClassHeader();
         assert header instanceof SerializedDataHeader : "Decompiled data factory shouldn't be called on an unsupported file: " + classFile;
         this.classFileHeader = (SerializedDataHeader) header;
     }
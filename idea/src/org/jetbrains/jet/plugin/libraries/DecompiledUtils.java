@@ -20,7 +20,6 @@ import com.intellij.openapi.fileTypes.StdFileTypes;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileKotlinClass;
-import org.jetbrains.jet.lang.resolve.kotlin.header.KotlinClassHeader;
 import org.jetbrains.jet.lang.resolve.kotlin.header.SerializedDataHeader;
 
 public final class DecompiledUtils {
@@ -30,7 +29,7 @@ public final class DecompiledUtils {
             return false;
         }
         //TODO: check index
-        return KotlinClassHeader.read(new VirtualFileKotlinClass(file)) instanceof SerializedDataHeader;
+        return new VirtualFileKotlinClass(file).getClassHeader() instanceof SerializedDataHeader;
     }
 
     private DecompiledUtils() {
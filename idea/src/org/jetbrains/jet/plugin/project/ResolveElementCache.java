@@ -253,15 +253,15 @@ public class ResolveElementCache {
 
         JetExpression propertyInitializer = jetProperty.getInitializer();
         if (propertyInitializer != null) {
-            bodyResolver.resolvePropertyInitializer(jetProperty, descriptor, propertyInitializer, propertyResolutionScope);
+            bodyResolver.resolvePropertyInitializer(trace, jetProperty, descriptor, propertyInitializer, propertyResolutionScope);
         }
 
         JetExpression propertyDelegate = jetProperty.getDelegateExpression();
         if (propertyDelegate != null) {
-            bodyResolver.resolvePropertyDelegate(jetProperty, descriptor, propertyDelegate, propertyResolutionScope, propertyResolutionScope);
+            bodyResolver.resolvePropertyDelegate(trace, jetProperty, descriptor, propertyDelegate, propertyResolutionScope, propertyResolutionScope);
         }
 
-        bodyResolver.resolvePropertyAccessors(jetProperty, descriptor);
+        bodyResolver.resolvePropertyAccessors(trace, jetProperty, descriptor);
     }
 
     private static void functionAdditionalResolve(
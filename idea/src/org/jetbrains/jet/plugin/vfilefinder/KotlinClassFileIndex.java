@@ -76,7 +76,7 @@ public final class KotlinClassFileIndex extends ScalarIndexExtension<FqName> {
         public Map<FqName, Void> map(FileContent inputData) {
             try {
                 VirtualFileKotlinClass kotlinClass = new VirtualFileKotlinClass(inputData.getFile());
-                KotlinClassHeader header = KotlinClassHeader.read(kotlinClass);
+                KotlinClassHeader header = kotlinClass.getClassHeader();
                 if (header != null && !(header instanceof IncompatibleAnnotationHeader)) {
                     return Collections.singletonMap(kotlinClass.getClassName().getFqNameForClassNameWithoutDollars(), null);
                 }
@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.jps.build;
 
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.Function;
 import com.intellij.util.containers.ContainerUtil;
@@ -24,7 +25,9 @@ import org.jetbrains.jet.cli.common.KotlinVersion;
 import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
 import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
 import org.jetbrains.jet.cli.common.messages.MessageCollector;
+import org.jetbrains.jet.cli.common.messages.MessageSeverityCollector;
 import org.jetbrains.jet.compiler.runner.*;
+import org.jetbrains.jet.jps.incremental.IncrementalCache;
 import org.jetbrains.jet.utils.PathUtil;
 import org.jetbrains.jps.ModuleChunk;
 import org.jetbrains.jps.builders.DirtyFilesHolder;
@@ -47,6 +50,7 @@ public class KotlinBuilder extends ModuleLevelBuilder {
 
     private static final String KOTLIN_BUILDER_NAME = "Kotlin Builder";
     private static final List<String> COMPILABLE_FILE_EXTENSIONS = Collections.singletonList("kt");
+    private static final int MAX_INCREMENTAL_ROUNDS = 10;
 
     private static final Function<JpsModule,String> MODULE_NAME = new Function<JpsModule, String>() {
         @Override
@@ -94,12 +98,10 @@ public class KotlinBuilder extends ModuleLevelBuilder {
 
         ModuleBuildTarget representativeTarget = chunk.representativeTarget();
 
-        // For non-incremental build: take all sources
-        if (!dirtyFilesHolder.hasDirtyFiles()) {
+        if (!dirtyFilesHolder.hasDirtyFiles() && !dirtyFilesHolder.hasRemovedFiles()) {
             return ExitCode.NOTHING_DONE;
         }
         List<File> sourceFiles = KotlinSourceFileCollector.getAllKotlinSourceFiles(representativeTarget);
-        //List<File> sourceFiles = KotlinSourceFileCollector.getDirtySourceFiles(dirtyFilesHolder);
 
         if (sourceFiles.isEmpty()) {
             return ExitCode.NOTHING_DONE;
@@ -115,9 +117,8 @@ public class KotlinBuilder extends ModuleLevelBuilder {
 
         assert outputDir != null : "CompilerEnvironment must have checked for outputDir to be not null, but it didn't";
 
-        OutputItemsCollectorImpl outputItemCollector = new OutputItemsCollectorImpl(outputDir);
-
         if (JpsUtils.isJsKotlinModule(representativeTarget)) {
+            OutputItemsCollectorImpl outputItemCollector = new OutputItemsCollectorImpl(outputDir);
             File outputFile = new File(outputDir, representativeTarget.getModule().getName() + ".js");
 
             KotlinCompilerRunner.runK2JsCompiler(
@@ -127,26 +128,164 @@ public class KotlinBuilder extends ModuleLevelBuilder {
                     sourceFiles,
                     JpsJsModuleUtils.getLibraryFilesAndDependencies(representativeTarget),
                     outputFile);
+
+            registerOutputs(outputConsumer, representativeTarget, outputItemCollector);
         }
         else {
-            File moduleFile = KotlinBuilderModuleScriptGenerator.generateModuleDescription(context, representativeTarget, sourceFiles);
+            compileJvmIncrementally(context, representativeTarget, environment, messageCollector, sourceFiles,
+                                    KotlinSourceFileCollector.getDirtySourceFiles(dirtyFilesHolder), outputConsumer);
+        }
 
-            KotlinCompilerRunner.runK2JvmCompiler(
-                    messageCollector,
-                    environment,
-                    moduleFile,
-                    outputItemCollector,
-                    /*runOutOfProcess = */false);
+        return ExitCode.OK;
+    }
+
+    /**
+     * Compiles dirty sources together with the sources they share class files with (e.g. other files of the same package), then
+     * sources which refer to classes whose ABI has changed, and so on until ABI of the recompiled classes stays the same.
+     * Everything is compiled when there is no information about the previous build, or when compilation doesn't converge.
+     */
+    private static void compileJvmIncrementally(
+            @NotNull CompileContext context,
+            @NotNull ModuleBuildTarget target,
+            @NotNull CompilerEnvironment environment,
+            @NotNull MessageCollector messageCollector,
+            @NotNull List<File> allSourceFiles,
+            @NotNull List<File> dirtySourceFiles,
+            @NotNull OutputConsumer outputConsumer
+    ) throws IOException {
+        File dataRoot = context.getProjectDescriptor().dataManager.getDataPaths().getTargetDataRoot(target);
+        IncrementalCache cache = IncrementalCache.load(dataRoot);
+
+        Map<String, File> allSources = new LinkedHashMap<String, File>();
+        for (File file : allSourceFiles) {
+            allSources.put(IncrementalCache.pathOf(file), file);
+        }
+
+        Set<String> pending = new LinkedHashSet<String>();
+        if (cache.isLoaded()) {
+            for (File file : dirtySourceFiles) {
+                pending.add(IncrementalCache.pathOf(file));
+            }
+            for (String source : cache.getSources()) {
+                if (!allSources.containsKey(source)) {
+                    pending.add(source);
+                }
+            }
+        }
+        else {
+            pending.addAll(allSources.keySet());
         }
 
+        for (int round = 0; !pending.isEmpty(); round++) {
+            boolean compileAll = round >= MAX_INCREMENTAL_ROUNDS || pending.size() == allSources.size();
+            Set<String> toCompile = compileAll ? new LinkedHashSet<String>(cache.getSources()) : withSharedOutputs(cache, pending);
+            if (compileAll) {
+                toCompile.addAll(allSources.keySet());
+            }
+
+            Map<String, Long> oldAbi = cache.getAbiHashes(toCompile);
+            for (String source : toCompile) {
+                for (String output : cache.getOutputs(source)) {
+                    FileUtil.delete(new File(output));
+                }
+            }
+            if (compileAll) {
+                cache.clean();
+            }
+            else {
+                for (String source : toCompile) {
+                    cache.removeSource(source);
+                }
+            }
+
+            List<File> filesToCompile = ContainerUtil.newArrayList();
+            for (String source : toCompile) {
+                File file = allSources.get(source);
+                if (file != null) {
+                    filesToCompile.add(file);
+                }
+            }
+
+            Set<String> next = new LinkedHashSet<String>();
+            if (!filesToCompile.isEmpty()) {
+                MessageSeverityCollector severityCollector = new MessageSeverityCollector(messageCollector);
+                OutputItemsCollectorImpl outputItemCollector = new OutputItemsCollectorImpl(target.getOutputDir());
+                File moduleFile = KotlinBuilderModuleScriptGenerator.generateModuleDescription(context, target, filesToCompile, !compileAll);
+                KotlinCompilerRunner.runK2JvmCompiler(severityCollector, environment, moduleFile, outputItemCollector, /*runOutOfProcess = */false);
+                registerOutputs(outputConsumer, target, outputItemCollector);
+
+                if (severityCollector.anyReported(ERROR) || severityCollector.anyReported(EXCEPTION)) {
+                    // Outputs of sources which are not dirty for the build system could have been deleted, so the next build should be full
+                    cache.clean();
+                    return;
+                }
+
+                // Class files of the sources compiled now may have been generated from other sources as well before, e.g. when a file
+                // has been moved to another package: all of them should be compiled together
+                for (SimpleOutputItem outputItem : outputItemCollector.getOutputs()) {
+                    Set<String> otherSources = cache.getSourcesOfOutput(IncrementalCache.pathOf(outputItem.getOutputFile()));
+                    if (!otherSources.isEmpty()) {
+                        next.addAll(otherSources);
+                        next.addAll(cachePaths(outputItem.getSourceFiles()));
+                    }
+                }
+
+                for (File file : filesToCompile) {
+                    cache.addSource(IncrementalCache.pathOf(file));
+                }
+                for (SimpleOutputItem outputItem : outputItemCollector.getOutputs()) {
+                    cache.addOutput(IncrementalCache.pathOf(outputItem.getOutputFile()), cachePaths(outputItem.getSourceFiles()));
+                }
+            }
+
+            Map<String, Long> newAbi = cache.getAbiHashes(toCompile);
+            Set<String> changedClasses = new HashSet<String>();
+            for (String className : oldAbi.keySet()) {
+                if (!oldAbi.get(className).equals(newAbi.get(className))) {
+                    changedClasses.add(className);
+                }
+            }
+            for (String className : newAbi.keySet()) {
+                if (!oldAbi.containsKey(className)) {
+                    changedClasses.add(className);
+                }
+            }
+
+            Set<String> affected = cache.getSourcesReferencingAnyOf(changedClasses);
+            affected.removeAll(toCompile);
+            next.addAll(affected);
+
+            pending = next;
+        }
+
+        cache.save();
+    }
+
+    /**
+     * A class file can be generated from several sources, e.g. the package class, so all of them should be compiled at once
+     */
+    @NotNull
+    private static Set<String> withSharedOutputs(@NotNull IncrementalCache cache, @NotNull Set<String> sources) {
+        Set<String> result = new LinkedHashSet<String>(sources);
+        for (String source : sources) {
+            for (String output : cache.getOutputs(source)) {
+                result.addAll(cache.getSourcesOfOutput(output));
+            }
+        }
+        return result;
+    }
+
+    private static void registerOutputs(
+            @NotNull OutputConsumer outputConsumer,
+            @NotNull ModuleBuildTarget target,
+            @NotNull OutputItemsCollectorImpl outputItemCollector
+    ) throws IOException {
         for (SimpleOutputItem outputItem : outputItemCollector.getOutputs()) {
             outputConsumer.registerOutputFile(
-                    representativeTarget,
+                    target,
                     outputItem.getOutputFile(),
                     paths(outputItem.getSourceFiles()));
         }
-
-        return ExitCode.OK;
     }
 
     private static boolean isJavaPluginEnabled(@NotNull CompileContext context) {
@@ -168,6 +307,15 @@ public class KotlinBuilder extends ModuleLevelBuilder {
         return result;
     }
 
+    @NotNull
+    private static Set<String> cachePaths(@NotNull Collection<File> files) {
+        Set<String> result = new LinkedHashSet<String>();
+        for (File file : files) {
+            result.add(IncrementalCache.pathOf(file));
+        }
+        return result;
+    }
+
     public static class MessageCollectorAdapter implements MessageCollector {
 
         private final CompileContext context;
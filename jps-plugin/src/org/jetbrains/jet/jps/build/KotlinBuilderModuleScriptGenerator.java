@@ -49,9 +49,15 @@ public class KotlinBuilderModuleScriptGenerator {
 
     public static final KotlinModuleDescriptionGenerator GENERATOR = KotlinModuleXmlGenerator.INSTANCE;
 
-    public static File generateModuleDescription(CompileContext context, ModuleBuildTarget target, List<File> sourceFiles)
-            throws IOException
-    {
+    /**
+     * @param includeOutputDir whether classes compiled earlier should be visible, which is needed when only a part of sources is compiled
+     */
+    public static File generateModuleDescription(
+            CompileContext context,
+            ModuleBuildTarget target,
+            List<File> sourceFiles,
+            boolean includeOutputDir
+    ) throws IOException {
         File outputDir = target.getOutputDir();
         if (outputDir == null) {
             throw new IllegalStateException("No output directory found for " + target);
@@ -63,8 +69,7 @@ public class KotlinBuilderModuleScriptGenerator {
                 getKotlinModuleDependencies(context, target),
                 sourceFiles,
                 target.isTests(),
-                // this excludes the output directory from the class path, to be removed for true incremental compilation
-                Collections.singleton(outputDir)
+                includeOutputDir ? Collections.<File>emptySet() : Collections.singleton(outputDir)
         );
 
         File scriptFile = new File(outputDir, "script." + GENERATOR.getFileExtension());
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.jps.incremental;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.asm4.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * What the incremental build needs to know about a compiled class: a fingerprint of its ABI, i.e. everything other classes
+ * can observe when compiled against it, and the names of all classes it refers to.
+ *
+ * Bodies of inline functions are a part of ABI, since they are generated into their callers. Such callers are annotated with
+ * the classes of the inline functions (see jet.runtime.InlinedFrom), so these classes are found among the referenced ones.
+ */
+public class ClassFileInfo {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Pattern TYPE_IN_DESCRIPTOR = Pattern.compile("L([^;<>:.\\[]+)[;<]");
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_CLASS = 7;
+
+    private static final String INLINE_FUNCTION_DESC = "Ljet/runtime/InlineFunction;";
+
+    @NotNull
+    private final String className;
+    private final long abiHash;
+    @NotNull
+    private final Set<String> referencedClasses;
+
+    public ClassFileInfo(@NotNull String className, long abiHash, @NotNull Set<String> referencedClasses) {
+        this.className = className;
+        this.abiHash = abiHash;
+        this.referencedClasses = referencedClasses;
+    }
+
+    /**
+     * Internal name of the class, e.g. "a/b/C$D"
+     */
+    @NotNull
+    public String getClassName() {
+        return className;
+    }
+
+    public long getAbiHash() {
+        return abiHash;
+    }
+
+    @NotNull
+    public Set<String> getReferencedClasses() {
+        return referencedClasses;
+    }
+
+    @NotNull
+    public static ClassFileInfo read(@NotNull File classFile) throws IOException {
+        ClassReader reader = new ClassReader(FileUtil.loadFileBytes(classFile));
+        AbiHasher hasher = new AbiHasher();
+        reader.accept(hasher, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+        Set<String> referencedClasses = collectReferencedClasses(reader);
+        referencedClasses.remove(reader.getClassName());
+        return new ClassFileInfo(reader.getClassName(), hasher.getHash(), referencedClasses);
+    }
+
+    // Classes used in the code are mentioned in CONSTANT_Class entries, others only occur in descriptors and signatures
+    @NotNull
+    private static Set<String> collectReferencedClasses(@NotNull ClassReader reader) {
+        Set<String> result = new HashSet<String>();
+        char[] buffer = new char[reader.getMaxStringLength()];
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            if (offset == 0) continue; // the second slot of long and double constants
+
+            int tag = reader.b[offset - 1];
+            if (tag == CONSTANT_CLASS) {
+                String name = reader.readUTF8(offset, buffer);
+                if (!name.startsWith("[")) {
+                    result.add(name);
+                }
+            }
+            else if (tag == CONSTANT_UTF8) {
+                int length = reader.readUnsignedShort(offset);
+                Matcher matcher = TYPE_IN_DESCRIPTOR.matcher(new String(reader.b, offset + 2, length, UTF_8));
+                while (matcher.find()) {
+                    result.add(matcher.group(1));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static class AbiHasher extends ClassVisitor {
+        private final MessageDigest digest;
+
+        private AbiHasher() {
+            super(Opcodes.ASM4);
+            try {
+                digest = MessageDigest.getInstance("MD5");
+            }
+            catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private long getHash() {
+            byte[] bytes = digest.digest();
+            long result = 0;
+            for (int i = 0; i < 8; i++) {
+                result = (result << 8) | (bytes[i] & 0xFF);
+            }
+            return result;
+        }
+
+        private void update(Object... values) {
+            for (Object value : values) {
+                if (value != null && value.getClass().isArray()) {
+                    // Arrays of annotation arguments may be primitive
+                    int length = Array.getLength(value);
+                    for (int i = 0; i < length; i++) {
+                        update(Array.get(value, i));
+                    }
+                }
+                else {
+                    digest.update(String.valueOf(value).getBytes(UTF_8));
+                }
+                digest.update((byte) 0);
+            }
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            update("class", access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            // Kotlin metadata is stored in annotations, so they are a part of ABI
+            update("annotation", desc);
+            return new AnnotationHasher();
+        }
+
+        @Override
+        public void visitInnerClass(String name, String outerName, String innerName, int access) {
+            update("inner", name, outerName, innerName, access);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            if ((access & Opcodes.ACC_PRIVATE) != 0) return null;
+
+            // Values of constants are inlined into the code which uses them
+            update("field", access, name, desc, signature, value);
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            if ((access & Opcodes.ACC_PRIVATE) != 0) return null;
+
+            update("method", access, name, desc, signature, exceptions);
+            return new InlineFunctionBodyHasher();
+        }
+
+        // Hashes the code of the method if it's marked as an inline function. Annotations are visited before the code
+        private class InlineFunctionBodyHasher extends MethodVisitor {
+            private final Map<Label, Integer> labels = new HashMap<Label, Integer>();
+            private boolean inline = false;
+
+            private InlineFunctionBodyHasher() {
+                super(Opcodes.ASM4);
+            }
+
+            private int indexOf(@NotNull Label label) {
+                Integer index = labels.get(label);
+                if (index == null) {
+                    index = labels.size();
+                    labels.put(label, index);
+                }
+                return index;
+            }
+
+            private void updateLabels(@NotNull Label[] labels) {
+                for (Label label : labels) {
+                    update(indexOf(label));
+                }
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                if (INLINE_FUNCTION_DESC.equals(desc)) {
+                    inline = true;
+                    update("inline");
+                }
+                return null;
+            }
+
+            @Override
+            public void visitInsn(int opcode) {
+                if (inline) update(opcode);
+            }
+
+            @Override
+            public void visitIntInsn(int opcode, int operand) {
+                if (inline) update(opcode, operand);
+            }
+
+            @Override
+            public void visitVarInsn(int opcode, int var) {
+                if (inline) update(opcode, var);
+            }
+
+            @Override
+            public void visitTypeInsn(int opcode, String type) {
+                if (inline) update(opcode, type);
+            }
+
+            @Override
+            public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+                if (inline) update(opcode, owner, name, desc);
+            }
+
+            @Override
+            public void visitMethodInsn(int opcode, String owner, String name, String desc) {
+                if (inline) update(opcode, owner, name, desc);
+            }
+
+            @Override
+            public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+                if (inline) update("indy", name, desc, bsm, bsmArgs);
+            }
+
+            @Override
+            public void visitJumpInsn(int opcode, Label label) {
+                if (inline) update(opcode, indexOf(label));
+            }
+
+            @Override
+            public void visitLabel(Label label) {
+                if (inline) update("label", indexOf(label));
+            }
+
+            @Override
+            public void visitLdcInsn(Object cst) {
+                if (inline) update("ldc", cst);
+            }
+
+            @Override
+            public void visitIincInsn(int var, int increment) {
+                if (inline) update("iinc", var, increment);
+            }
+
+            @Override
+            public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+                if (!inline) return;
+                update("tableswitch", min, max, indexOf(dflt));
+                updateLabels(labels);
+            }
+
+            @Override
+            public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+                if (!inline) return;
+                update("lookupswitch", indexOf(dflt), keys);
+                updateLabels(labels);
+            }
+
+            @Override
+            public void visitMultiANewArrayInsn(String desc, int dims) {
+                if (inline) update("multianewarray", desc, dims);
+            }
+
+            @Override
+            public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+                if (inline) update("try", indexOf(start), indexOf(end), indexOf(handler), type);
+            }
+        }
+
+        private class AnnotationHasher extends AnnotationVisitor {
+            private AnnotationHasher() {
+                super(Opcodes.ASM4);
+            }
+
+            @Override
+            public void visit(String name, Object value) {
+                update(name, value);
+            }
+
+            @Override
+            public void visitEnum(String name, String desc, String value) {
+                update(name, desc, value);
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String name, String desc) {
+                update(name, desc);
+                return this;
+            }
+
+            @Override
+            public AnnotationVisitor visitArray(String name) {
+                update(name, "[");
+                return this;
+            }
+
+            @Override
+            public void visitEnd() {
+                update("end");
+            }
+        }
+    }
+}
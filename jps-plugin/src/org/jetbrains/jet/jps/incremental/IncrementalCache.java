@@ -0,0 +1,291 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.jps.incremental;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Persistent state of incremental compilation of one build target: for every Kotlin source file, the class files generated from it
+ * and the classes it depends on; for every class file, the fingerprint of its ABI.
+ *
+ * Files are identified by their system-independent absolute paths.
+ */
+public class IncrementalCache {
+    private static final Logger LOG = Logger.getInstance(IncrementalCache.class);
+
+    private static final String CACHE_FILE_NAME = "kotlin-incremental-cache.bin";
+    private static final int FORMAT_VERSION = 2;
+
+    private static class SourceInfo {
+        private final Set<String> outputs = new LinkedHashSet<String>();
+        private final Set<String> referencedClasses = new HashSet<String>();
+    }
+
+    private static class OutputInfo {
+        private final String className;
+        private final long abiHash;
+
+        private OutputInfo(@NotNull String className, long abiHash) {
+            this.className = className;
+            this.abiHash = abiHash;
+        }
+    }
+
+    @NotNull
+    private final File cacheFile;
+    private final boolean loaded;
+    private final Map<String, SourceInfo> sources = new LinkedHashMap<String, SourceInfo>();
+    private final Map<String, OutputInfo> outputs = new HashMap<String, OutputInfo>();
+    // The reverse of SourceInfo.outputs, which is not saved but rebuilt when the cache is read
+    private final Map<String, Set<String>> sourcesOfOutputs = new HashMap<String, Set<String>>();
+
+    private IncrementalCache(@NotNull File cacheFile, boolean loaded) {
+        this.cacheFile = cacheFile;
+        this.loaded = loaded;
+    }
+
+    /**
+     * @param dataRoot the directory where the build stores data of the target
+     */
+    @NotNull
+    public static IncrementalCache load(@NotNull File dataRoot) {
+        File cacheFile = new File(dataRoot, CACHE_FILE_NAME);
+        if (!cacheFile.isFile()) {
+            return new IncrementalCache(cacheFile, false);
+        }
+
+        IncrementalCache cache = new IncrementalCache(cacheFile, true);
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            try {
+                if (input.readInt() != FORMAT_VERSION) {
+                    return new IncrementalCache(cacheFile, false);
+                }
+                cache.read(input);
+                return cache;
+            }
+            finally {
+                input.close();
+            }
+        }
+        catch (IOException e) {
+            LOG.warn("Couldn't read Kotlin incremental cache " + cacheFile, e);
+            return new IncrementalCache(cacheFile, false);
+        }
+    }
+
+    /**
+     * @return false if there is no information about previous builds, so everything should be compiled
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @NotNull
+    public Collection<String> getSources() {
+        return Collections.unmodifiableSet(sources.keySet());
+    }
+
+    @NotNull
+    public Collection<String> getOutputs(@NotNull String source) {
+        SourceInfo info = sources.get(source);
+        return info == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(info.outputs);
+    }
+
+    /**
+     * @return all sources some class file was generated from, e.g. all files of a package for the package class
+     */
+    @NotNull
+    public Set<String> getSourcesOfOutput(@NotNull String output) {
+        Set<String> result = sourcesOfOutputs.get(output);
+        return result == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(result);
+    }
+
+    @NotNull
+    public Set<String> getSourcesReferencingAnyOf(@NotNull Set<String> classNames) {
+        Set<String> result = new LinkedHashSet<String>();
+        for (Map.Entry<String, SourceInfo> entry : sources.entrySet()) {
+            for (String referencedClass : entry.getValue().referencedClasses) {
+                if (classNames.contains(referencedClass)) {
+                    result.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return ABI fingerprints of the classes generated from the given sources, by internal class name
+     */
+    @NotNull
+    public Map<String, Long> getAbiHashes(@NotNull Collection<String> sourcesToInspect) {
+        Map<String, Long> result = new HashMap<String, Long>();
+        for (String source : sourcesToInspect) {
+            for (String output : getOutputs(source)) {
+                OutputInfo info = outputs.get(output);
+                if (info != null) {
+                    result.put(info.className, info.abiHash);
+                }
+            }
+        }
+        return result;
+    }
+
+    public void removeSource(@NotNull String source) {
+        SourceInfo info = sources.remove(source);
+        if (info == null) return;
+
+        for (String output : info.outputs) {
+            Set<String> sourcesOfOutput = sourcesOfOutputs.get(output);
+            if (sourcesOfOutput != null) {
+                sourcesOfOutput.remove(source);
+                if (!sourcesOfOutput.isEmpty()) continue;
+                sourcesOfOutputs.remove(output);
+            }
+            outputs.remove(output);
+        }
+    }
+
+    /**
+     * Remembers that the source has been compiled, even if nothing was generated from it
+     */
+    public void addSource(@NotNull String source) {
+        if (!sources.containsKey(source)) {
+            sources.put(source, new SourceInfo());
+        }
+    }
+
+    /**
+     * Remembers that the output was generated from the sources, and analyzes the output if it is a class file
+     */
+    public void addOutput(@NotNull String output, @NotNull Collection<String> sourcesOfOutput) throws IOException {
+        ClassFileInfo classFileInfo = null;
+        if (output.endsWith(".class")) {
+            classFileInfo = ClassFileInfo.read(new File(output));
+            outputs.put(output, new OutputInfo(classFileInfo.getClassName(), classFileInfo.getAbiHash()));
+        }
+
+        for (String source : sourcesOfOutput) {
+            addSource(source);
+            SourceInfo sourceInfo = sources.get(source);
+            sourceInfo.outputs.add(output);
+            addSourceOfOutput(output, source);
+            if (classFileInfo != null) {
+                sourceInfo.referencedClasses.addAll(classFileInfo.getReferencedClasses());
+            }
+        }
+    }
+
+    public void save() {
+        try {
+            FileUtil.createParentDirs(cacheFile);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)));
+            try {
+                output.writeInt(FORMAT_VERSION);
+                write(output);
+            }
+            finally {
+                output.close();
+            }
+        }
+        catch (IOException e) {
+            LOG.warn("Couldn't write Kotlin incremental cache " + cacheFile, e);
+            clean();
+        }
+    }
+
+    /**
+     * Forgets everything, so that the next build compiles all sources
+     */
+    public void clean() {
+        sources.clear();
+        outputs.clear();
+        sourcesOfOutputs.clear();
+        FileUtil.delete(cacheFile);
+    }
+
+    private void write(@NotNull DataOutputStream output) throws IOException {
+        output.writeInt(outputs.size());
+        for (Map.Entry<String, OutputInfo> entry : outputs.entrySet()) {
+            output.writeUTF(entry.getKey());
+            output.writeUTF(entry.getValue().className);
+            output.writeLong(entry.getValue().abiHash);
+        }
+
+        output.writeInt(sources.size());
+        for (Map.Entry<String, SourceInfo> entry : sources.entrySet()) {
+            output.writeUTF(entry.getKey());
+            writeStrings(output, entry.getValue().outputs);
+            writeStrings(output, entry.getValue().referencedClasses);
+        }
+    }
+
+    private void read(@NotNull DataInputStream input) throws IOException {
+        int outputCount = input.readInt();
+        for (int i = 0; i < outputCount; i++) {
+            String output = input.readUTF();
+            String className = input.readUTF();
+            outputs.put(output, new OutputInfo(className, input.readLong()));
+        }
+
+        int sourceCount = input.readInt();
+        for (int i = 0; i < sourceCount; i++) {
+            String source = input.readUTF();
+            SourceInfo info = new SourceInfo();
+            readStrings(input, info.outputs);
+            readStrings(input, info.referencedClasses);
+            sources.put(source, info);
+            for (String output : info.outputs) {
+                addSourceOfOutput(output, source);
+            }
+        }
+    }
+
+    private void addSourceOfOutput(@NotNull String output, @NotNull String source) {
+        Set<String> sourcesOfOutput = sourcesOfOutputs.get(output);
+        if (sourcesOfOutput == null) {
+            sourcesOfOutput = new LinkedHashSet<String>();
+            sourcesOfOutputs.put(output, sourcesOfOutput);
+        }
+        sourcesOfOutput.add(source);
+    }
+
+    private static void writeStrings(@NotNull DataOutputStream output, @NotNull Collection<String> strings) throws IOException {
+        output.writeInt(strings.size());
+        for (String string : strings) {
+            output.writeUTF(string);
+        }
+    }
+
+    private static void readStrings(@NotNull DataInputStream input, @NotNull Collection<String> result) throws IOException {
+        int size = input.readInt();
+        for (int i = 0; i < size; i++) {
+            result.add(input.readUTF());
+        }
+    }
+
+    @NotNull
+    public static String pathOf(@NotNull File file) {
+        return FileUtil.toSystemIndependentName(file.getAbsolutePath());
+    }
+}
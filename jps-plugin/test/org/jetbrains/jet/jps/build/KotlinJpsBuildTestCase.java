@@ -97,6 +97,61 @@ public class KotlinJpsBuildTestCase extends AbstractKotlinJpsBuildTestCase {
         makeAll().assertFailed();
     }
 
+    public void testKotlinIncrementalProject() throws Throwable {
+        initProject();
+        makeAll().assertSuccessful();
+
+        File outputDir = new File(workDir, "out/production/kotlinProject");
+        touchAll(outputDir, 0);
+
+        // Same ABI: only the package of the changed file is recompiled
+        change(workDir + "/src/a/a1.kt", "package a\n\nfun a1() {\n    val x = 1\n}\n");
+        makeAll().assertSuccessful();
+        assertRecompiled(new File(outputDir, "a"), true);
+        assertRecompiled(new File(outputDir, "b"), false);
+        assertRecompiled(new File(outputDir, "c"), false);
+
+        touchAll(outputDir, 0);
+
+        // Changed ABI: the users of the package are recompiled as well
+        change(workDir + "/src/a/a2.kt", "package a\n\nfun a2(): Int {\n    a1()\n    return 1\n}\n");
+        makeAll().assertSuccessful();
+        assertRecompiled(new File(outputDir, "a"), true);
+        assertRecompiled(new File(outputDir, "b"), false);
+        assertRecompiled(new File(outputDir, "c"), true);
+
+        touchAll(outputDir, 0);
+
+        // Changed body of an inline function: its callers are recompiled, since the body has been generated into them
+        change(workDir + "/src/d/d.kt", "package d\n\ninline fun twice(x: Int): Int = x + x\n");
+        makeAll().assertSuccessful();
+        assertRecompiled(new File(outputDir, "d"), true);
+        assertRecompiled(new File(outputDir, "e"), true);
+        assertRecompiled(new File(outputDir, "a"), false);
+    }
+
+    private static void touchAll(File dir, long timestamp) {
+        File[] children = dir.listFiles();
+        assertNotNull(children);
+        for (File child : children) {
+            if (child.isDirectory()) {
+                touchAll(child, timestamp);
+            }
+            else {
+                assertTrue(child.setLastModified(timestamp));
+            }
+        }
+    }
+
+    private static void assertRecompiled(File packageDir, boolean recompiled) {
+        File[] classFiles = packageDir.listFiles();
+        assertNotNull(classFiles);
+        assertTrue(classFiles.length > 0);
+        for (File classFile : classFiles) {
+            assertEquals(classFile.getPath(), recompiled, classFile.lastModified() != 0);
+        }
+    }
+
     public void testReexportedDependency() {
         initProject();
         addKotlinRuntimeDependency(JpsJavaDependencyScope.COMPILE,
@@ -0,0 +1,5 @@
+package a
+
+fun a2() {
+    a1()
+}
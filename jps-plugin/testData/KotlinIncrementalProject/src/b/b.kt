@@ -0,0 +1,5 @@
+package b
+
+class B {
+    fun f() = 1
+}
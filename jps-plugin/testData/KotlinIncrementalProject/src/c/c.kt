@@ -0,0 +1,3 @@
+package c
+
+fun useA() = a.a2()
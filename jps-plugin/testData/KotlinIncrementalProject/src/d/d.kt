@@ -0,0 +1,3 @@
+package d
+
+inline fun twice(x: Int): Int = x * 2
@@ -0,0 +1,3 @@
+package e
+
+fun useTwice() = d.twice(1)
@@ -48,6 +48,16 @@ public class TestConfig extends Config {
         }
     };
 
+    public static TestConfigFactory FACTORY_WITH_DEAD_CODE_ELIMINATION = new TestConfigFactory() {
+        @Override
+        public TestConfig create(@NotNull Project project,
+                @NotNull EcmaVersion version,
+                @NotNull List<JetFile> files,
+                @NotNull BindingContext context) {
+            return new TestConfig(project, version, files, context, false, true);
+        }
+    };
+
     @NotNull
     private final List<JetFile> jsLibFiles;
     @NotNull
@@ -55,7 +65,12 @@ public class TestConfig extends Config {
 
     public TestConfig(@NotNull Project project, @NotNull EcmaVersion version,
             @NotNull List<JetFile> files, @NotNull BindingContext context, boolean sourcemap) {
-        super(project, REWRITABLE_MODULE_NAME, version, sourcemap);
+        this(project, version, files, context, sourcemap, false);
+    }
+
+    public TestConfig(@NotNull Project project, @NotNull EcmaVersion version,
+            @NotNull List<JetFile> files, @NotNull BindingContext context, boolean sourcemap, boolean deadCodeElimination) {
+        super(project, REWRITABLE_MODULE_NAME, version, sourcemap, deadCodeElimination);
         jsLibFiles = files;
         libraryContext = context;
     }
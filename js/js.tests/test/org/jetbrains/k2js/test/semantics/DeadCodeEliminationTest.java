@@ -0,0 +1,59 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.k2js.test.semantics;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.k2js.config.EcmaVersion;
+import org.jetbrains.k2js.test.SingleFileTranslationTest;
+import org.jetbrains.k2js.test.config.TestConfig;
+import org.jetbrains.k2js.test.config.TestConfigFactory;
+
+import java.io.File;
+
+public final class DeadCodeEliminationTest extends SingleFileTranslationTest {
+
+    public DeadCodeEliminationTest() {
+        super("deadCodeElimination/");
+    }
+
+    @NotNull
+    @Override
+    protected TestConfigFactory getConfigFactory() {
+        return TestConfig.FACTORY_WITH_DEAD_CODE_ELIMINATION;
+    }
+
+    public void testUnusedDeclarations() throws Exception {
+        checkOutput("unusedDeclarations.kt", "Derived 43\n");
+        checkEliminated("unusedDeclarations.kt", "unusedFunction", "UnusedClass", "UnusedBase", "UnusedDerived");
+    }
+
+    public void testUsedThroughLambda() throws Exception {
+        checkOutput("usedThroughLambda.kt", "called\n");
+        checkEliminated("usedThroughLambda.kt", "unusedFunction");
+    }
+
+    private void checkEliminated(@NotNull String kotlinFilename, @NotNull String... names) throws Exception {
+        for (EcmaVersion version : DEFAULT_ECMA_VERSIONS) {
+            String output = FileUtil.loadFile(new File(getOutputFilePath(kotlinFilename, version)));
+            for (String name : names) {
+                assertFalse(name + " should have been eliminated", output.contains(name));
+            }
+        }
+    }
+}
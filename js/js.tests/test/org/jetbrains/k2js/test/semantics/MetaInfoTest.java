@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.k2js.test.semantics;
+
+import com.google.common.collect.Lists;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.ArrayUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.cli.common.ExitCode;
+import org.jetbrains.jet.cli.js.K2JSCompiler;
+import org.jetbrains.jet.cli.js.K2JSCompilerArguments;
+import org.jetbrains.k2js.config.EcmaVersion;
+import org.jetbrains.k2js.serialization.KotlinJavascriptSerializationUtil;
+import org.jetbrains.k2js.test.SingleFileTranslationTest;
+import org.jetbrains.k2js.test.rhino.RhinoFunctionResultChecker;
+import org.jetbrains.k2js.test.utils.LibraryFilePathsUtil;
+
+import java.io.File;
+import java.util.List;
+
+import static org.jetbrains.k2js.test.rhino.RhinoUtils.runRhinoTest;
+
+/**
+ * Compiles a library with -metaInfo, and then a module which uses it against the binary metadata of the library only
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+public final class MetaInfoTest extends SingleFileTranslationTest {
+
+    public MetaInfoTest() {
+        super("metaInfo/");
+    }
+
+    public void testDependentModule() throws Exception {
+        for (EcmaVersion version : DEFAULT_ECMA_VERSIONS) {
+            String libraryOutput = getOutputFilePath("library.kt", version);
+            compile(Lists.newArrayList(getInputFilePath("library/library.kt"), getInputFilePath("library/sub.kt")),
+                    LibraryFilePathsUtil.getBasicLibraryFiles(), libraryOutput, true);
+            String metadataFile = KotlinJavascriptSerializationUtil.getMetadataFileForOutput(libraryOutput);
+            assertTrue("No metadata written: " + metadataFile, new File(metadataFile).isFile());
+
+            List<String> libraryFiles = Lists.newArrayList(LibraryFilePathsUtil.getBasicLibraryFiles());
+            libraryFiles.add(metadataFile);
+            String mainOutput = getOutputFilePath("main.kt", version);
+            compile(Lists.newArrayList(getInputFilePath("main.kt")), libraryFiles, mainOutput, false);
+
+            String mainCode = FileUtil.loadFile(new File(mainOutput));
+            String libraryModuleId = FileUtil.getNameWithoutExtension(new File(libraryOutput));
+            assertTrue("Library declarations should be qualified with the library module", mainCode.contains(libraryModuleId));
+            assertTrue("Native annotation should be read from the metadata", mainCode.contains("nativeSum("));
+            assertTrue("Library annotation should be read from the metadata", mainCode.contains("safeParseInt("));
+
+            String mainModuleId = FileUtil.getNameWithoutExtension(new File(mainOutput));
+            runRhinoTest(Lists.newArrayList(pathToTestFiles() + "native/library.js", libraryOutput, mainOutput),
+                         new RhinoFunctionResultChecker(mainModuleId, "foo", "box", "OK"), null, version);
+        }
+    }
+
+    private static void compile(
+            @NotNull List<String> sourceFiles,
+            @NotNull List<String> libraryFiles,
+            @NotNull String outputFile,
+            boolean metaInfo
+    ) {
+        K2JSCompilerArguments arguments = new K2JSCompilerArguments();
+        arguments.outputFile = outputFile;
+        arguments.sourceFiles = ArrayUtil.toStringArray(sourceFiles);
+        arguments.libraryFiles = ArrayUtil.toStringArray(libraryFiles);
+        arguments.metaInfo = metaInfo;
+        arguments.main = "noCall";
+        ExitCode exitCode = new K2JSCompiler().exec(System.out, arguments);
+        assertEquals("Compilation of " + outputFile + " failed", ExitCode.OK, exitCode);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.k2js.test.semantics;
+
+import com.google.dart.compiler.backend.js.ast.JsProgram;
+import com.google.dart.compiler.util.TextOutputImpl;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.js.compiler.JsSourceGenerationVisitor;
+import org.jetbrains.js.compiler.sourcemap.SourceMap3Builder;
+import org.jetbrains.k2js.config.EcmaVersion;
+import org.jetbrains.k2js.facade.K2JSTranslator;
+import org.jetbrains.k2js.facade.MainCallParameters;
+import org.jetbrains.k2js.facade.SourceMapBuilderConsumer;
+import org.jetbrains.k2js.test.SingleFileTranslationTest;
+import org.jetbrains.k2js.test.config.TestConfig;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.jetbrains.k2js.test.utils.TranslationUtils.createJetFileList;
+import static org.jetbrains.k2js.test.utils.TranslationUtils.getConfig;
+
+/**
+ * Checks that the code and the source map written to files while the program is traversed are the same as the ones built in memory
+ */
+public final class StreamedOutputTest extends SingleFileTranslationTest {
+
+    public StreamedOutputTest() {
+        super("sourcemap/");
+    }
+
+    public void testMethodCallInMethod() throws Exception {
+        doTest("methodCallInMethod.kt");
+    }
+
+    public void testBinaryOperation() throws Exception {
+        doTest("binaryOperation.kt");
+    }
+
+    private void doTest(@NotNull String filename) throws Exception {
+        EcmaVersion version = EcmaVersion.v5;
+        K2JSTranslator translator = new K2JSTranslator(getConfig(getProject(), version, TestConfig.FACTORY_WITH_SOURCEMAP));
+        JsProgram program = translator.generateProgram(
+                createJetFileList(getProject(), Collections.singletonList(getInputFilePath(filename)), null),
+                MainCallParameters.noCall());
+
+        File outFile = new File(getOutputFilePath(filename, version));
+        K2JSTranslator.writeProgram(program, outFile, true);
+
+        TextOutputImpl output = new TextOutputImpl();
+        SourceMap3Builder sourceMapBuilder = new SourceMap3Builder(outFile, output, new SourceMapBuilderConsumer());
+        program.accept(new JsSourceGenerationVisitor(output, sourceMapBuilder));
+
+        assertSameBytes(output.toString(), outFile);
+        assertSameBytes(sourceMapBuilder.build(), SourceMap3Builder.getMapFile(outFile));
+
+        File outFileWithoutMap = new File(getOutputFilePath("withoutMap-" + filename, version));
+        K2JSTranslator.writeProgram(program, outFileWithoutMap, false);
+
+        TextOutputImpl outputWithoutMap = new TextOutputImpl();
+        program.accept(new JsSourceGenerationVisitor(outputWithoutMap, null));
+        assertSameBytes(outputWithoutMap.toString(), outFileWithoutMap);
+    }
+
+    private static void assertSameBytes(@NotNull String expected, @NotNull File file) throws Exception {
+        byte[] expectedBytes = expected.getBytes("UTF-8");
+        byte[] actualBytes = FileUtil.loadFileBytes(file);
+        if (!Arrays.equals(expectedBytes, actualBytes)) {
+            assertEquals(file.getPath(), expected, new String(actualBytes, "UTF-8"));
+            fail("Different bytes in " + file);
+        }
+    }
+}
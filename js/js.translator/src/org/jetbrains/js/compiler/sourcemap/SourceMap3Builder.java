@@ -4,16 +4,27 @@ import com.google.dart.compiler.common.SourceInfo;
 import com.google.dart.compiler.util.TextOutput;
 import com.intellij.util.PairConsumer;
 import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.utils.ExceptionUtils;
 import org.jetbrains.js.compiler.SourceMapBuilder;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
 public class SourceMap3Builder implements SourceMapBuilder {
-    private final StringBuilder out = new StringBuilder(8192);
+    // Mappings are written to the map writer in chunks of about this size
+    private static final int FLUSH_THRESHOLD = 8192;
+
+    private final StringBuilder out = new StringBuilder(FLUSH_THRESHOLD);
     private final File generatedFile;
     private final TextOutput textOutput;
+    // Null if the map is built in memory
+    @Nullable
+    private final Writer mapWriter;
     private final PairConsumer<SourceMapBuilder, Object> sourceInfoConsumer;
 
     private String lastSource;
@@ -38,23 +49,73 @@ public class SourceMap3Builder implements SourceMapBuilder {
         this.generatedFile = generatedFile;
         this.textOutput = textOutput;
         this.sourceInfoConsumer = sourceInfoConsumer;
+        this.mapWriter = null;
+    }
+
+    /**
+     * Writes the map to the given writer while mappings are added, instead of building it in memory. The sources of the map
+     * are only known in the end, so they follow the mappings; {@link #finish()} should be called after the whole program is printed.
+     */
+    public SourceMap3Builder(
+            File generatedFile,
+            TextOutput textOutput,
+            PairConsumer<SourceMapBuilder, Object> sourceInfoConsumer,
+            @NotNull Writer mapWriter
+    ) throws IOException {
+        this.generatedFile = generatedFile;
+        this.textOutput = textOutput;
+        this.sourceInfoConsumer = sourceInfoConsumer;
+        this.mapWriter = mapWriter;
+        mapWriter.append(getHeader());
+    }
+
+    /**
+     * @return the file the source map of the given generated file is saved to
+     */
+    @NotNull
+    public static File getMapFile(@NotNull File generatedFile) {
+        return new File(generatedFile.getParentFile(), generatedFile.getName() + ".map");
     }
 
     @Override
     public File getOutFile() {
-        return new File(generatedFile.getParentFile(), generatedFile.getName() + ".map");
+        return getMapFile(generatedFile);
+    }
+
+    // The map is the same whether it's built in memory or written to a writer: the sources are only known in the end,
+    // so they follow the mappings in both cases
+    @NotNull
+    private String getHeader() {
+        return "{\"version\":3,\"file\":\"" + generatedFile.getName() + "\",\"mappings\":\"";
+    }
+
+    @NotNull
+    private StringBuilder getTail() {
+        StringBuilder sb = new StringBuilder(128 * orderedSources.size());
+        sb.append("\",");
+        appendSources(sb);
+        sb.append(",\"names\":[]}");
+        return sb;
     }
 
     @Override
     public String build() {
-        StringBuilder sb = new StringBuilder(out.length() + (128 * orderedSources.size()));
-        sb.append("{\"version\":3,\"file\":\"").append(generatedFile.getName()).append('"').append(',');
-        appendSources(sb);
-        sb.append(",\"names\":[");
-        sb.append("],\"mappings\":\"");
-        sb.append(out);
-        sb.append("\"}");
-        return sb.toString();
+        if (mapWriter != null) {
+            throw new IllegalStateException("The source map is written to a writer, finish() should be called instead");
+        }
+
+        return getHeader() + out + getTail();
+    }
+
+    /**
+     * Writes the rest of the map to the writer given in the constructor. The writer is not closed
+     */
+    public void finish() throws IOException {
+        assert mapWriter != null : "The source map is built in memory, build() should be called instead";
+
+        mapWriter.append(out);
+        out.setLength(0);
+        mapWriter.append(getTail());
     }
 
     private void appendSources(StringBuilder sb) {
@@ -76,6 +137,16 @@ public class SourceMap3Builder implements SourceMapBuilder {
     public void newLine() {
         out.append(';');
         previousGeneratedColumn = -1;
+
+        if (mapWriter != null && out.length() >= FLUSH_THRESHOLD) {
+            try {
+                mapWriter.append(out);
+            }
+            catch (IOException e) {
+                throw ExceptionUtils.rethrow(e);
+            }
+            out.setLength(0);
+        }
     }
 
     @Override
@@ -132,8 +203,7 @@ public class SourceMap3Builder implements SourceMapBuilder {
     @Override
     public void addLink() {
         textOutput.print("\n//@ sourceMappingURL=");
-        textOutput.print(generatedFile.getName());
-        textOutput.print(".map");
+        textOutput.print(getMapFile(generatedFile).getName());
     }
 
     private static final class Base64VLQ {
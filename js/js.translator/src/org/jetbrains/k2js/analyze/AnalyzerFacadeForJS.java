@@ -36,6 +36,7 @@ import org.jetbrains.jet.lang.resolve.lazy.storage.LockBasedLazyResolveStorageMa
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.k2js.config.Config;
+import org.jetbrains.k2js.serialization.KotlinJavascriptLibraryModule;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -88,7 +89,7 @@ public final class AnalyzerFacadeForJS {
         BindingTrace trace = libraryBindingContext == null ?
                              new ObservableBindingTrace(new BindingTraceContext()) :
                              new DelegatingBindingTrace(libraryBindingContext, "trace for analyzing library in js");
-        owner.setModuleConfiguration(new JsConfiguration(libraryBindingContext));
+        setModuleConfiguration(owner, libraryBindingContext, config);
         InjectorForTopDownAnalyzerForJs injector = new InjectorForTopDownAnalyzerForJs(project, topDownAnalysisParameters, trace, owner);
         try {
             Collection<JetFile> allFiles = libraryBindingContext != null ?
@@ -144,10 +145,22 @@ public final class AnalyzerFacadeForJS {
         FileBasedDeclarationProviderFactory declarationProviderFactory = new FileBasedDeclarationProviderFactory(
                 storageManager, Config.withJsLibAdded(files, config), Predicates.<FqName>alwaysFalse());
         ModuleDescriptorImpl lazyModule = createJsModule("<lazy module>");
-        lazyModule.setModuleConfiguration(new JsConfiguration(null));
+        setModuleConfiguration(lazyModule, null, config);
         return new ResolveSession(config.getProject(), storageManager, lazyModule, declarationProviderFactory);
     }
 
+    private static void setModuleConfiguration(
+            @NotNull ModuleDescriptorImpl module,
+            @Nullable BindingContext libraryBindingContext,
+            @NotNull Config config
+    ) {
+        KotlinJavascriptLibraryModule libraryModule = config.getLibraryModule();
+        if (libraryModule != null) {
+            libraryModule.setDependentModule(module);
+        }
+        module.setModuleConfiguration(new JsConfiguration(libraryBindingContext, libraryModule));
+    }
+
     @NotNull
     private static ModuleDescriptorImpl createJsModule(@NotNull String name) {
         return new ModuleDescriptorImpl(Name.special(name), JsConfiguration.DEFAULT_IMPORT_PATHS, PlatformToKotlinClassMap.EMPTY);
@@ -29,6 +29,7 @@ import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.FqNameUnsafe;
 import org.jetbrains.jet.lang.resolve.scopes.WritableScope;
 import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+import org.jetbrains.k2js.serialization.KotlinJavascriptLibraryModule;
 
 import java.util.List;
 
@@ -49,8 +50,12 @@ public class JsConfiguration implements ModuleConfiguration {
     @Nullable
     private final BindingContext preanalyzedContext;
 
-    JsConfiguration(@Nullable BindingContext preanalyzedContext) {
+    @Nullable
+    private final KotlinJavascriptLibraryModule libraryModule;
+
+    JsConfiguration(@Nullable BindingContext preanalyzedContext, @Nullable KotlinJavascriptLibraryModule libraryModule) {
         this.preanalyzedContext = preanalyzedContext;
+        this.libraryModule = libraryModule;
     }
 
     @Override
@@ -62,6 +67,13 @@ public class JsConfiguration implements ModuleConfiguration {
             namespaceMemberScope.importScope(KotlinBuiltIns.getInstance().getBuiltInsScope());
         }
 
+        if (libraryModule != null) {
+            NamespaceDescriptor libraryNamespace = libraryModule.findPackage(namespaceDescriptor.getFqName());
+            if (libraryNamespace != null) {
+                namespaceMemberScope.importScope(libraryNamespace.getMemberScope());
+            }
+        }
+
         if (hasPreanalyzedContextForTests()) {
             extendScopeWithPreAnalyzedContextForTests(namespaceDescriptor, namespaceMemberScope);
         }
@@ -31,7 +31,17 @@ public class ClassPathLibraryDefintionsConfig extends Config {
     public static final String META_INF_SERVICES_FILE = "META-INF/services/org.jetbrains.kotlin.js.libraryDefinitions";
 
     public ClassPathLibraryDefintionsConfig(@NotNull Project project, @NotNull String moduleId, @NotNull EcmaVersion version, boolean sourcemap) {
-        super(project, moduleId, version, sourcemap);
+        this(project, moduleId, version, sourcemap, false);
+    }
+
+    public ClassPathLibraryDefintionsConfig(
+            @NotNull Project project,
+            @NotNull String moduleId,
+            @NotNull EcmaVersion version,
+            boolean sourcemap,
+            boolean deadCodeElimination
+    ) {
+        super(project, moduleId, version, sourcemap, deadCodeElimination);
     }
 
     @NotNull
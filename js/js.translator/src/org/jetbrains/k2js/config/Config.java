@@ -22,6 +22,8 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.psi.JetFile;
 import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.k2js.serialization.KotlinJavascriptLibraryModule;
+import org.jetbrains.k2js.serialization.KotlinJavascriptMetadata;
 import org.jetbrains.k2js.translate.test.JSTester;
 import org.jetbrains.k2js.translate.test.QUnitTester;
 
@@ -56,6 +58,10 @@ public abstract class Config {
         return getEmptyConfig(project, EcmaVersion.defaultVersion());
     }
 
+    /**
+     * The library files which contain declarations only. The build compiles the ones packed into kotlin-jslib.jar to binary metadata,
+     * which is loaded instead of their sources
+     */
     @NotNull
     public static final List<String> LIB_FILES_WITH_DECLARATIONS = Arrays.asList(
             "/core/annotations.kt",
@@ -141,6 +147,8 @@ public abstract class Config {
     private final Project project;
     @Nullable
     private List<JetFile> libFiles = null;
+    @Nullable
+    private KotlinJavascriptLibraryModule libraryModule = null;
     @NotNull
     private final EcmaVersion target;
 
@@ -149,21 +157,42 @@ public abstract class Config {
 
     private final boolean sourcemap;
 
+    private final boolean deadCodeElimination;
+
     public Config(@NotNull Project project, @NotNull String moduleId, @NotNull EcmaVersion ecmaVersion) {
         this(project, moduleId, ecmaVersion, false);
     }
 
     public Config(@NotNull Project project, @NotNull String moduleId, @NotNull EcmaVersion ecmaVersion, boolean sourcemap) {
+        this(project, moduleId, ecmaVersion, sourcemap, false);
+    }
+
+    public Config(
+            @NotNull Project project,
+            @NotNull String moduleId,
+            @NotNull EcmaVersion ecmaVersion,
+            boolean sourcemap,
+            boolean deadCodeElimination
+    ) {
         this.project = project;
         this.target = ecmaVersion;
         this.moduleId = moduleId;
         this.sourcemap = sourcemap;
+        this.deadCodeElimination = deadCodeElimination;
     }
 
     public boolean isSourcemap() {
         return sourcemap;
     }
 
+    /**
+     * Whether top level declarations unreachable from main, tests and package initializers should be removed from the output,
+     * so that it can't be used as a library
+     */
+    public boolean isDeadCodeElimination() {
+        return deadCodeElimination;
+    }
+
     @NotNull
     public Project getProject() {
         return project;
@@ -190,6 +219,25 @@ public abstract class Config {
         return libFiles;
     }
 
+    /**
+     * Binary metadata of the libraries which are compiled against without analyzing their sources
+     */
+    @NotNull
+    public List<KotlinJavascriptMetadata> getLibraryMetadata() {
+        return Collections.emptyList();
+    }
+
+    @Nullable
+    public final KotlinJavascriptLibraryModule getLibraryModule() {
+        if (libraryModule == null) {
+            List<KotlinJavascriptMetadata> metadata = getLibraryMetadata();
+            if (!metadata.isEmpty()) {
+                libraryModule = new KotlinJavascriptLibraryModule(metadata);
+            }
+        }
+        return libraryModule;
+    }
+
     @Nullable
     public BindingContext getLibraryBindingContext() {
         return null;
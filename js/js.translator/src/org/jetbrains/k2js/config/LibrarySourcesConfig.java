@@ -26,11 +26,15 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.utils.PathUtil;
+import org.jetbrains.k2js.serialization.KotlinJavascriptMetadata;
 import org.jetbrains.k2js.utils.JetFileUtils;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
@@ -48,6 +52,8 @@ public class LibrarySourcesConfig extends Config {
 
     @NotNull
     private final List<String> files;
+    @NotNull
+    private final List<KotlinJavascriptMetadata> libraryMetadata = new ArrayList<KotlinJavascriptMetadata>();
 
     public LibrarySourcesConfig(
             @NotNull Project project,
@@ -56,7 +62,18 @@ public class LibrarySourcesConfig extends Config {
             @NotNull EcmaVersion ecmaVersion,
             boolean sourcemap
     ) {
-        super(project, moduleId, ecmaVersion, sourcemap);
+        this(project, moduleId, files, ecmaVersion, sourcemap, false);
+    }
+
+    public LibrarySourcesConfig(
+            @NotNull Project project,
+            @NotNull String moduleId,
+            @NotNull List<String> files,
+            @NotNull EcmaVersion ecmaVersion,
+            boolean sourcemap,
+            boolean deadCodeElimination
+    ) {
+        super(project, moduleId, ecmaVersion, sourcemap, deadCodeElimination);
         this.files = files;
     }
 
@@ -78,7 +95,7 @@ public class LibrarySourcesConfig extends Config {
             }
             else if (path.endsWith(".jar") || path.endsWith(".zip")) {
                 try {
-                    jetFiles.addAll(readZip(path));
+                    jetFiles.addAll(readZip(path, moduleName));
                 }
                 catch (IOException e) {
                     LOG.error(e);
@@ -102,10 +119,42 @@ public class LibrarySourcesConfig extends Config {
         return jetFiles;
     }
 
-    private List<JetFile> readZip(String file) throws IOException {
+    // Sources of the archive are not analyzed if it contains binary metadata of the library
+    private List<JetFile> readZip(String file, String moduleName) throws IOException {
         ZipFile zipFile = new ZipFile(file);
         try {
-            return traverseArchive(zipFile);
+            KotlinJavascriptMetadata metadata =
+                    KotlinJavascriptMetadata.read(zipFile, UNKNOWN_EXTERNAL_MODULE_NAME.equals(moduleName) ? null : moduleName);
+            if (metadata != null) {
+                libraryMetadata.add(metadata);
+                return Collections.emptyList();
+            }
+            Collection<String> declarationsInMetadata = readJsLibMetadata(new File(file));
+            return traverseArchive(zipFile, declarationsInMetadata);
+        }
+        finally {
+            zipFile.close();
+        }
+    }
+
+    // The build puts metadata of LIB_FILES_WITH_DECLARATIONS next to kotlin-jslib.jar, only the rest of its sources is analyzed then
+    @NotNull
+    private Collection<String> readJsLibMetadata(@NotNull File jar) throws IOException {
+        File metaJar = new File(jar.getParentFile(), PathUtil.JS_LIB_META_JAR_NAME);
+        if (!jar.getName().equals(PathUtil.JS_LIB_JAR_NAME) || !metaJar.isFile()) {
+            return Collections.emptyList();
+        }
+
+        ZipFile zipFile = new ZipFile(metaJar);
+        try {
+            // Declarations of the library are referenced the same way as if they were analyzed from sources
+            KotlinJavascriptMetadata metadata = KotlinJavascriptMetadata.read(zipFile, UNKNOWN_EXTERNAL_MODULE_NAME);
+            if (metadata == null) {
+                LOG.error("No metadata found in " + metaJar);
+                return Collections.emptyList();
+            }
+            libraryMetadata.add(metadata);
+            return LIB_FILES_WITH_DECLARATIONS;
         }
         finally {
             zipFile.close();
@@ -113,12 +162,20 @@ public class LibrarySourcesConfig extends Config {
     }
 
     @NotNull
-    private List<JetFile> traverseArchive(@NotNull ZipFile file) throws IOException {
+    @Override
+    public List<KotlinJavascriptMetadata> getLibraryMetadata() {
+        // Metadata is found while reading library files
+        getLibFiles();
+        return libraryMetadata;
+    }
+
+    @NotNull
+    private List<JetFile> traverseArchive(@NotNull ZipFile file, @NotNull Collection<String> excludedFiles) throws IOException {
         List<JetFile> result = Lists.newArrayList();
         Enumeration<? extends ZipEntry> zipEntries = file.entries();
         while (zipEntries.hasMoreElements()) {
             ZipEntry entry = zipEntries.nextElement();
-            if (!entry.isDirectory() && entry.getName().endsWith(".kt")) {
+            if (!entry.isDirectory() && entry.getName().endsWith(".kt") && !excludedFiles.contains("/" + entry.getName())) {
                 InputStream stream = file.getInputStream(entry);
                 String text = FileUtil.loadTextAndClose(stream);
                 JetFile jetFile = JetFileUtils.createJetFile(entry.getName(), text, getProject());
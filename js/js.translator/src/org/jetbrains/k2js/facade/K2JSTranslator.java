@@ -30,11 +30,12 @@ import org.jetbrains.js.compiler.sourcemap.SourceMap3Builder;
 import org.jetbrains.k2js.analyze.AnalyzerFacadeForJS;
 import org.jetbrains.k2js.config.Config;
 import org.jetbrains.k2js.facade.exceptions.TranslationException;
+import org.jetbrains.k2js.serialization.KotlinJavascriptSerializationUtil;
+import org.jetbrains.k2js.serialization.KotlinJavascriptSerializer;
 import org.jetbrains.k2js.translate.general.Translation;
 import org.jetbrains.k2js.utils.JetFileUtils;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.util.Collections;
 import java.util.List;
 
@@ -52,15 +53,72 @@ public final class K2JSTranslator {
             @NotNull List<JetFile> files,
             @NotNull String outputPath,
             @NotNull Config config) throws TranslationException, IOException {
-        K2JSTranslator translator = new K2JSTranslator(config);
+        translateWithMainCallParametersAndSaveToFile(mainCall, files, outputPath, config, false);
+    }
+
+    /**
+     * @param metaInfo whether the binary metadata of the translated module should be written next to the output file,
+     *                 so that other modules can be compiled against it without analyzing its sources
+     */
+    public static void translateWithMainCallParametersAndSaveToFile(@NotNull MainCallParameters mainCall,
+            @NotNull List<JetFile> files,
+            @NotNull String outputPath,
+            @NotNull Config config,
+            boolean metaInfo) throws TranslationException, IOException {
+        BindingContext bindingContext = AnalyzerFacadeForJS.analyzeFilesAndCheckErrors(files, config);
+        translateAndSaveToFile(bindingContext, mainCall, files, outputPath, config, metaInfo);
+    }
+
+    /**
+     * Same as {@link #translateWithMainCallParametersAndSaveToFile}, for files which have already been analyzed without errors
+     */
+    public static void translateAndSaveToFile(@NotNull BindingContext bindingContext,
+            @NotNull MainCallParameters mainCall,
+            @NotNull List<JetFile> files,
+            @NotNull String outputPath,
+            @NotNull Config config,
+            boolean metaInfo) throws TranslationException, IOException {
         File outFile = new File(outputPath);
-        TextOutputImpl output = new TextOutputImpl();
-        SourceMapBuilder sourceMapBuilder = config.isSourcemap() ? new SourceMap3Builder(outFile, output, new SourceMapBuilderConsumer()) : null;
-        String programCode = translator.generateProgramCode(files, mainCall, output, sourceMapBuilder);
-        FileUtil.writeToFile(outFile, programCode);
-        if (sourceMapBuilder != null) {
-            FileUtil.writeToFile(sourceMapBuilder.getOutFile(), sourceMapBuilder.build());
+        JsProgram program = Translation.generateAst(bindingContext, files, mainCall, config);
+        writeProgram(program, outFile, config.isSourcemap());
+        if (metaInfo) {
+            File metadataFile = new File(KotlinJavascriptSerializationUtil.getMetadataFileForOutput(outputPath));
+            KotlinJavascriptSerializer.serialize(config.getModuleId(), bindingContext, files, metadataFile);
+        }
+    }
+
+    /**
+     * Writes the code of the program, and its source map if requested, while the program is traversed, so that they are never held
+     * in memory as a whole. The output is the same as the one of {@link TextOutputImpl#toString()} and {@link SourceMap3Builder#build()}
+     */
+    public static void writeProgram(@NotNull JsProgram program, @NotNull File outFile, boolean sourcemap) throws IOException {
+        FileUtil.createParentDirs(outFile);
+        Writer writer = createWriter(outFile);
+        try {
+            TextOutputImpl output = new TextOutputImpl(writer, false);
+            if (!sourcemap) {
+                program.accept(new JsSourceGenerationVisitor(output, null));
+                return;
+            }
+
+            Writer mapWriter = createWriter(SourceMap3Builder.getMapFile(outFile));
+            try {
+                SourceMap3Builder sourceMapBuilder = new SourceMap3Builder(outFile, output, new SourceMapBuilderConsumer(), mapWriter);
+                program.accept(new JsSourceGenerationVisitor(output, sourceMapBuilder));
+                sourceMapBuilder.finish();
+            }
+            finally {
+                mapWriter.close();
+            }
         }
+        finally {
+            writer.close();
+        }
+    }
+
+    @NotNull
+    private static Writer createWriter(@NotNull File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
     }
 
     @NotNull
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.k2js.facade;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.k2js.config.Config;
+import org.jetbrains.k2js.serialization.KotlinJavascriptMetadata;
+import org.jetbrains.k2js.serialization.KotlinJavascriptSerializationUtil;
+import org.jetbrains.k2js.translate.test.JSTester;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Fingerprint of the inputs of the last successful translation of a module: contents of every source and library file,
+ * ABI hashes of binary libraries and translation options. This is an up-to-date check of the whole module, not an incremental
+ * cache: the translation of a module is a whole, in which names are shared between files, so the output of the module is either
+ * kept if its fingerprint has not changed, or the whole module is translated again.
+ *
+ * Since the ABI hash of a library doesn't change when only bodies of its functions are changed, a module compiled against
+ * the binary metadata of another one is not translated again in this case, see {@link KotlinJavascriptMetadata#getAbiHash()}.
+ */
+public final class ModuleUpToDateCheck {
+    private static final int FORMAT_VERSION = 2;
+
+    @NotNull
+    private final File fingerprintFile;
+    @Nullable
+    private final Map<String, String> previousFingerprint;
+
+    private ModuleUpToDateCheck(@NotNull File fingerprintFile, @Nullable Map<String, String> previousFingerprint) {
+        this.fingerprintFile = fingerprintFile;
+        this.previousFingerprint = previousFingerprint;
+    }
+
+    @NotNull
+    public static ModuleUpToDateCheck load(@NotNull File fingerprintFile) {
+        if (!fingerprintFile.isFile()) {
+            return new ModuleUpToDateCheck(fingerprintFile, null);
+        }
+
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(fingerprintFile)));
+            try {
+                if (input.readInt() != FORMAT_VERSION) {
+                    return new ModuleUpToDateCheck(fingerprintFile, null);
+                }
+                int size = input.readInt();
+                Map<String, String> fingerprint = new LinkedHashMap<String, String>();
+                for (int i = 0; i < size; i++) {
+                    fingerprint.put(input.readUTF(), input.readUTF());
+                }
+                return new ModuleUpToDateCheck(fingerprintFile, fingerprint);
+            }
+            finally {
+                input.close();
+            }
+        }
+        catch (IOException e) {
+            // A corrupted fingerprint is the same as no fingerprint
+            return new ModuleUpToDateCheck(fingerprintFile, null);
+        }
+    }
+
+    /**
+     * @param compilerVersion version of the compiler, so that a module is translated again by a different compiler
+     */
+    @NotNull
+    public static Map<String, String> computeFingerprint(
+            @NotNull List<JetFile> files,
+            @NotNull Config config,
+            @NotNull MainCallParameters mainCallParameters,
+            boolean metaInfo,
+            @NotNull String compilerVersion
+    ) {
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        result.put("compiler", compilerVersion);
+        result.put("module", config.getModuleId());
+        result.put("target", config.getTarget().name());
+        result.put("sourcemap", String.valueOf(config.isSourcemap()));
+        result.put("metaInfo", String.valueOf(metaInfo));
+        result.put("deadCodeElimination", String.valueOf(config.isDeadCodeElimination()));
+        result.put("main", mainCallParameters.shouldBeGenerated() ? "call " + mainCallParameters.arguments() : "noCall");
+        JSTester tester = config.getTester();
+        result.put("tester", tester == null ? "none" : tester.getClass().getName());
+
+        for (JetFile file : config.getLibFiles()) {
+            result.put("library " + getPath(file), hash(file.getText()));
+        }
+        for (KotlinJavascriptMetadata metadata : config.getLibraryMetadata()) {
+            result.put("library metadata " + metadata.getPath(), metadata.getModuleName() + " " + metadata.getAbiHash());
+        }
+        for (JetFile file : files) {
+            result.put("source " + getPath(file), hash(file.getText()));
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the module was translated with the same fingerprint and none of the output files was deleted since then
+     */
+    public boolean isUpToDate(@NotNull Map<String, String> fingerprint, @NotNull String outputPath) {
+        if (!fingerprint.equals(previousFingerprint)) return false;
+
+        for (File output : getOutputFiles(fingerprint, outputPath)) {
+            if (!output.isFile()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return descriptions of the inputs which have changed since the last translation, e.g. for logging
+     */
+    @NotNull
+    public List<String> getChangedInputs(@NotNull Map<String, String> fingerprint) {
+        if (previousFingerprint == null) {
+            return Collections.singletonList("<no previous translation>");
+        }
+
+        Set<String> keys = new LinkedHashSet<String>(fingerprint.keySet());
+        keys.addAll(previousFingerprint.keySet());
+
+        List<String> result = new ArrayList<String>();
+        for (String key : keys) {
+            String oldValue = previousFingerprint.get(key);
+            String newValue = fingerprint.get(key);
+            if (oldValue == null) {
+                result.add("added " + key);
+            }
+            else if (newValue == null) {
+                result.add("removed " + key);
+            }
+            else if (!oldValue.equals(newValue)) {
+                result.add("changed " + key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Should be called before the outputs are written, so that a failed translation is not considered up to date
+     *
+     * @return false if the fingerprint file couldn't be deleted, so that a failed translation may be considered up to date
+     */
+    public boolean invalidate() {
+        return !fingerprintFile.exists() || fingerprintFile.delete();
+    }
+
+    public void save(@NotNull Map<String, String> fingerprint) throws IOException {
+        File parent = fingerprintFile.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Couldn't create directory " + parent);
+        }
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fingerprintFile)));
+        try {
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(fingerprint.size());
+            for (Map.Entry<String, String> entry : fingerprint.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeUTF(entry.getValue());
+            }
+        }
+        finally {
+            output.close();
+        }
+    }
+
+    @NotNull
+    private static List<File> getOutputFiles(@NotNull Map<String, String> fingerprint, @NotNull String outputPath) {
+        List<File> result = new ArrayList<File>();
+        result.add(new File(outputPath));
+        if (Boolean.parseBoolean(fingerprint.get("sourcemap"))) {
+            result.add(new File(outputPath + ".map"));
+        }
+        if (Boolean.parseBoolean(fingerprint.get("metaInfo"))) {
+            result.add(new File(KotlinJavascriptSerializationUtil.getMetadataFileForOutput(outputPath)));
+        }
+        return result;
+    }
+
+    @NotNull
+    private static String getPath(@NotNull JetFile file) {
+        VirtualFile virtualFile = file.getVirtualFile();
+        return virtualFile != null ? virtualFile.getPath() : file.getName();
+    }
+
+    @NotNull
+    private static String hash(@NotNull String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            return new BigInteger(1, digest.digest(text.getBytes("UTF-8"))).toString(16);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -22,7 +22,7 @@ import com.intellij.psi.PsiFile;
 import com.intellij.util.PairConsumer;
 import org.jetbrains.js.compiler.SourceMapBuilder;
 
-class SourceMapBuilderConsumer implements PairConsumer<SourceMapBuilder, Object> {
+public class SourceMapBuilderConsumer implements PairConsumer<SourceMapBuilder, Object> {
     @Override
     public void consume(SourceMapBuilder builder, Object sourceInfo) {
         if (!(sourceInfo instanceof PsiElement)) {
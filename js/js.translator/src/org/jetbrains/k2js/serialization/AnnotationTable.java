@@ -0,0 +1,195 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.k2js.serialization;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.descriptors.ClassifierDescriptor;
+import org.jetbrains.jet.lang.descriptors.ValueParameterDescriptor;
+import org.jetbrains.jet.lang.descriptors.annotations.AnnotationDescriptor;
+import org.jetbrains.jet.lang.resolve.DescriptorUtils;
+import org.jetbrains.jet.lang.resolve.constants.CompileTimeConstant;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.lang.resolve.name.FqNameUnsafe;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Annotations of the declarations of one package.
+ *
+ * Only String arguments of annotations are kept, which is enough for the annotations the JavaScript translator looks at
+ * (native, library etc.): arguments of other types are dropped, as well as annotations with a local or error type.
+ */
+class AnnotationTable {
+    static class SerializedAnnotation {
+        @NotNull
+        public final FqName annotationClass;
+        // Parameter name to the value of the argument, sorted by name
+        @NotNull
+        public final Map<Name, String> arguments;
+
+        SerializedAnnotation(@NotNull FqName annotationClass, @NotNull Map<Name, String> arguments) {
+            this.annotationClass = annotationClass;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof SerializedAnnotation)) return false;
+
+            SerializedAnnotation other = (SerializedAnnotation) o;
+            return annotationClass.equals(other.annotationClass) && arguments.equals(other.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * annotationClass.hashCode() + arguments.hashCode();
+        }
+    }
+
+    private final List<SerializedAnnotation> annotations;
+    private final Map<SerializedAnnotation, Integer> indices = new HashMap<SerializedAnnotation, Integer>();
+    // Relative class name (e.g. "A.B") to indices of annotations of the class
+    private final Map<String, List<Integer>> classAnnotations;
+
+    AnnotationTable() {
+        this(new ArrayList<SerializedAnnotation>(), new LinkedHashMap<String, List<Integer>>());
+    }
+
+    private AnnotationTable(@NotNull List<SerializedAnnotation> annotations, @NotNull Map<String, List<Integer>> classAnnotations) {
+        this.annotations = annotations;
+        this.classAnnotations = classAnnotations;
+    }
+
+    @NotNull
+    public List<Integer> add(@NotNull List<AnnotationDescriptor> descriptors) {
+        List<Integer> result = new ArrayList<Integer>(descriptors.size());
+        for (AnnotationDescriptor descriptor : descriptors) {
+            SerializedAnnotation annotation = serialize(descriptor);
+            if (annotation == null) continue;
+
+            Integer index = indices.get(annotation);
+            if (index == null) {
+                index = annotations.size();
+                annotations.add(annotation);
+                indices.put(annotation, index);
+            }
+            result.add(index);
+        }
+        return result;
+    }
+
+    public void addClassAnnotations(@NotNull FqNameUnsafe relativeClassName, @NotNull List<AnnotationDescriptor> descriptors) {
+        List<Integer> indices = add(descriptors);
+        if (!indices.isEmpty()) {
+            classAnnotations.put(relativeClassName.asString(), indices);
+        }
+    }
+
+    @Nullable
+    private static SerializedAnnotation serialize(@NotNull AnnotationDescriptor descriptor) {
+        ClassifierDescriptor annotationClass = descriptor.getType().getConstructor().getDeclarationDescriptor();
+        if (annotationClass == null) return null;
+
+        FqNameUnsafe fqName = DescriptorUtils.getFQName(annotationClass);
+        if (!fqName.isSafe()) return null;
+
+        Map<Name, String> arguments = new TreeMap<Name, String>();
+        for (Map.Entry<ValueParameterDescriptor, CompileTimeConstant<?>> entry : descriptor.getAllValueArguments().entrySet()) {
+            CompileTimeConstant<?> value = entry.getValue();
+            if (value != null && value.getValue() instanceof String) {
+                arguments.put(entry.getKey().getName(), (String) value.getValue());
+            }
+        }
+        return new SerializedAnnotation(fqName.toSafe(), arguments);
+    }
+
+    @NotNull
+    public SerializedAnnotation get(int index) {
+        return annotations.get(index);
+    }
+
+    @NotNull
+    public List<Integer> getClassAnnotations(@NotNull FqNameUnsafe relativeClassName) {
+        List<Integer> result = classAnnotations.get(relativeClassName.asString());
+        return result == null ? Collections.<Integer>emptyList() : result;
+    }
+
+    public boolean isEmpty() {
+        return annotations.isEmpty();
+    }
+
+    public void writeTo(@NotNull OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+
+        data.writeInt(annotations.size());
+        for (SerializedAnnotation annotation : annotations) {
+            data.writeUTF(annotation.annotationClass.asString());
+            data.writeInt(annotation.arguments.size());
+            for (Map.Entry<Name, String> argument : annotation.arguments.entrySet()) {
+                data.writeUTF(argument.getKey().asString());
+                data.writeUTF(argument.getValue());
+            }
+        }
+
+        data.writeInt(classAnnotations.size());
+        for (Map.Entry<String, List<Integer>> entry : classAnnotations.entrySet()) {
+            data.writeUTF(entry.getKey());
+            data.writeInt(entry.getValue().size());
+            for (Integer index : entry.getValue()) {
+                data.writeInt(index);
+            }
+        }
+
+        data.flush();
+    }
+
+    @NotNull
+    public static AnnotationTable read(@NotNull InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+
+        int annotationCount = data.readInt();
+        List<SerializedAnnotation> annotations = new ArrayList<SerializedAnnotation>(annotationCount);
+        for (int i = 0; i < annotationCount; i++) {
+            FqName annotationClass = new FqName(data.readUTF());
+            int argumentCount = data.readInt();
+            Map<Name, String> arguments = new TreeMap<Name, String>();
+            for (int j = 0; j < argumentCount; j++) {
+                arguments.put(Name.identifier(data.readUTF()), data.readUTF());
+            }
+            annotations.add(new SerializedAnnotation(annotationClass, arguments));
+        }
+
+        int classCount = data.readInt();
+        Map<String, List<Integer>> classAnnotations = new HashMap<String, List<Integer>>(classCount);
+        for (int i = 0; i < classCount; i++) {
+            String className = data.readUTF();
+            int count = data.readInt();
+            List<Integer> indices = new ArrayList<Integer>(count);
+            for (int j = 0; j < count; j++) {
+                indices.add(data.readInt());
+            }
+            classAnnotations.put(className, indices);
+        }
+
+        return new AnnotationTable(annotations, classAnnotations);
+    }
+}
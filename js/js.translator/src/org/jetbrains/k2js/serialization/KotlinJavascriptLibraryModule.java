@@ -0,0 +1,345 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.k2js.serialization;
+
+import com.google.protobuf.ExtensionRegistryLite;
+import jet.Function1;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.descriptors.serialization.*;
+import org.jetbrains.jet.descriptors.serialization.descriptors.DeserializedPackageMemberScope;
+import org.jetbrains.jet.lang.DefaultModuleConfiguration;
+import org.jetbrains.jet.lang.PlatformToKotlinClassMap;
+import org.jetbrains.jet.lang.descriptors.*;
+import org.jetbrains.jet.lang.resolve.DescriptorUtils;
+import org.jetbrains.jet.lang.resolve.ImportPath;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.lang.resolve.name.FqNameUnsafe;
+import org.jetbrains.jet.lang.resolve.name.Name;
+import org.jetbrains.jet.lang.resolve.scopes.ChainedScope;
+import org.jetbrains.jet.lang.resolve.scopes.JetScope;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+import org.jetbrains.jet.storage.LockBasedStorageManager;
+import org.jetbrains.jet.storage.MemoizedFunctionToNotNull;
+import org.jetbrains.jet.storage.MemoizedFunctionToNullable;
+import org.jetbrains.jet.storage.StorageManager;
+import org.jetbrains.jet.utils.ExceptionUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.*;
+
+import static org.jetbrains.k2js.serialization.KotlinJavascriptSerializationUtil.*;
+
+/**
+ * Descriptors of Kotlin/JavaScript libraries, deserialized lazily from their binary metadata.
+ *
+ * All libraries share one module, in which a package contains the declarations of this package from every library.
+ * Classes of the built-ins are referenced by the libraries directly. Packages of the module are imported into
+ * the packages with the same names of the module being compiled, see {@link org.jetbrains.k2js.analyze.JsConfiguration}.
+ * Other classes referenced by the libraries, e.g. the annotation classes declared in the sources of the JavaScript library,
+ * are looked up in the module being compiled.
+ */
+public final class KotlinJavascriptLibraryModule {
+    private final StorageManager storageManager = new LockBasedStorageManager();
+    private final ExtensionRegistryLite extensionRegistry = getExtensionRegistry();
+    private final List<Library> libraries;
+    private final ModuleDescriptorImpl module;
+    private final LibraryNamespaceDescriptor rootNamespace;
+    private final MemoizedFunctionToNullable<FqName, NamespaceDescriptor> findPackage;
+    private final ThreadLocal<Boolean> lookingUpInDependentModule = new ThreadLocal<Boolean>();
+    @Nullable
+    private volatile ModuleDescriptor dependentModule = null;
+
+    public KotlinJavascriptLibraryModule(@NotNull List<KotlinJavascriptMetadata> metadata) {
+        libraries = new ArrayList<Library>(metadata.size());
+        for (KotlinJavascriptMetadata library : metadata) {
+            libraries.add(new Library(library));
+        }
+
+        module = new ModuleDescriptorImpl(Name.special("<kotlin javascript libraries>"), Collections.<ImportPath>emptyList(),
+                                          PlatformToKotlinClassMap.EMPTY);
+        module.setModuleConfiguration(DefaultModuleConfiguration.INSTANCE);
+        rootNamespace = new LibraryNamespaceDescriptor(storageManager, module, FqNameUnsafe.ROOT_NAME, FqName.ROOT, this);
+        module.setRootNamespace(rootNamespace);
+
+        findPackage = storageManager.createMemoizedFunctionWithNullableValues(new Function1<FqName, NamespaceDescriptor>() {
+            @Override
+            public NamespaceDescriptor invoke(FqName fqName) {
+                return computePackage(fqName);
+            }
+        });
+    }
+
+    /**
+     * @return the package with the given name if any library declares it or one of its subpackages
+     */
+    @Nullable
+    public NamespaceDescriptor findPackage(@NotNull FqName fqName) {
+        return findPackage.invoke(fqName);
+    }
+
+    @Nullable
+    private NamespaceDescriptor computePackage(@NotNull FqName fqName) {
+        if (fqName.isRoot()) return rootNamespace;
+
+        for (Library library : libraries) {
+            if (library.metadata.hasPackage(fqName)) {
+                NamespaceDescriptor parent = findPackage(fqName.parent());
+                assert parent != null : "Parent packages are always written to the metadata: " + fqName;
+                return new LibraryNamespaceDescriptor(storageManager, parent, fqName.shortName(), fqName, this);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the module in which the classes referenced by the libraries, but declared neither in them nor in the built-ins, are found
+     */
+    public void setDependentModule(@NotNull ModuleDescriptor module) {
+        dependentModule = module;
+    }
+
+    @Nullable
+    public ClassDescriptor findClass(@NotNull ClassId classId) {
+        if (classId.getPackageFqName().equals(KotlinBuiltIns.BUILT_INS_PACKAGE_FQ_NAME)) {
+            return findClassInScope(KotlinBuiltIns.getInstance().getBuiltInsScope(), classId);
+        }
+
+        for (Library library : libraries) {
+            ClassDescriptor result = library.finder.findOwnClass(classId);
+            if (result != null) {
+                return result;
+            }
+        }
+        return findClassInDependentModule(classId);
+    }
+
+    // Packages of the dependent module import the packages of the libraries, which look up the classes they don't declare here again
+    @Nullable
+    private ClassDescriptor findClassInDependentModule(@NotNull ClassId classId) {
+        ModuleDescriptor module = dependentModule;
+        if (module == null || lookingUpInDependentModule.get() != null) return null;
+
+        lookingUpInDependentModule.set(Boolean.TRUE);
+        try {
+            NamespaceDescriptor namespace = module.getNamespace(classId.getPackageFqName());
+            return namespace != null ? findClassInScope(namespace.getMemberScope(), classId) : null;
+        }
+        finally {
+            lookingUpInDependentModule.remove();
+        }
+    }
+
+    @Nullable
+    private static ClassDescriptor findClassInScope(@NotNull JetScope packageScope, @NotNull ClassId classId) {
+        ClassDescriptor current = null;
+        for (Name name : classId.getRelativeClassName().pathSegments()) {
+            if (current != null && name.equals(DescriptorUtils.getClassObjectName(current.getName()))) {
+                current = current.getClassObjectDescriptor();
+            }
+            else {
+                JetScope scope = current == null ? packageScope : current.getUnsubstitutedInnerClassesScope();
+                ClassifierDescriptor classifier = scope.getClassifier(name);
+                current = classifier instanceof ClassDescriptor ? (ClassDescriptor) classifier : scope.getObjectDescriptor(name);
+            }
+
+            if (current == null) return null;
+        }
+        return current;
+    }
+
+    @NotNull
+    JetScope createMemberScope(@NotNull NamespaceDescriptor namespace) {
+        List<JetScope> scopes = new ArrayList<JetScope>();
+        for (Library library : libraries) {
+            JetScope scope = library.getPackageScope(namespace);
+            if (scope != null) {
+                scopes.add(scope);
+            }
+        }
+        if (scopes.size() == 1) {
+            return scopes.get(0);
+        }
+        return new ChainedScope(namespace, "Member scope of library package " + namespace.getFqName(),
+                                scopes.toArray(new JetScope[scopes.size()]));
+    }
+
+    /**
+     * @return the name of the JavaScript module in which a top level declaration of a library is defined,
+     *         or null if the declaration is not deserialized from a library
+     */
+    @Nullable
+    public String getExternalModuleName(@NotNull DeclarationDescriptor descriptor) {
+        DeclarationDescriptor container = descriptor.getContainingDeclaration();
+        if (!(container instanceof LibraryNamespaceDescriptor)) return null;
+        FqName packageFqName = ((LibraryNamespaceDescriptor) container).getFqName();
+
+        for (Library library : libraries) {
+            if (descriptor instanceof ClassDescriptor) {
+                ClassId classId = new ClassId(packageFqName, FqNameUnsafe.topLevel(descriptor.getName()));
+                if (library.metadata.findFile(getClassMetadataPath(classId)) != null) {
+                    return library.metadata.getModuleName();
+                }
+            }
+            else {
+                JetScope scope = library.getPackageScope((NamespaceDescriptor) container);
+                if (scope != null && (scope.getFunctions(descriptor.getName()).contains(descriptor) ||
+                                      scope.getProperties(descriptor.getName()).contains(descriptor))) {
+                    return library.metadata.getModuleName();
+                }
+            }
+        }
+        return null;
+    }
+
+    class Library {
+        private final KotlinJavascriptMetadata metadata;
+        private final LibraryDescriptorFinder finder;
+        private final LibraryAnnotationDeserializer annotationDeserializer;
+        private final MemoizedFunctionToNotNull<FqName, NameResolver> nameResolvers;
+        private final MemoizedFunctionToNotNull<FqName, AnnotationTable> annotationTables;
+        private final MemoizedFunctionToNullable<NamespaceDescriptor, JetScope> packageScopes;
+
+        private Library(@NotNull KotlinJavascriptMetadata metadata) {
+            this.metadata = metadata;
+            this.annotationDeserializer = new LibraryAnnotationDeserializer(this);
+            this.finder = new LibraryDescriptorFinder();
+
+            nameResolvers = storageManager.createMemoizedFunction(new Function1<FqName, NameResolver>() {
+                @Override
+                public NameResolver invoke(FqName fqName) {
+                    return NameSerializationUtil.deserializeNameResolver(new ByteArrayInputStream(getFile(getNameTableFilePath(fqName))));
+                }
+            });
+            annotationTables = storageManager.createMemoizedFunction(new Function1<FqName, AnnotationTable>() {
+                @Override
+                public AnnotationTable invoke(FqName fqName) {
+                    try {
+                        return AnnotationTable.read(new ByteArrayInputStream(getFile(getAnnotationsFilePath(fqName))));
+                    }
+                    catch (IOException e) {
+                        throw ExceptionUtils.rethrow(e);
+                    }
+                }
+            });
+            packageScopes = storageManager.createMemoizedFunctionWithNullableValues(new Function1<NamespaceDescriptor, JetScope>() {
+                @Override
+                public JetScope invoke(NamespaceDescriptor namespace) {
+                    FqName fqName = namespace.getFqName();
+                    byte[] packageFile = Library.this.metadata.findFile(getPackageFilePath(fqName));
+                    if (packageFile == null) return null;
+
+                    PackageData packageData = PackageData.read(nameResolvers.invoke(fqName), new ByteArrayInputStream(packageFile),
+                                                               extensionRegistry);
+                    return new DeserializedPackageMemberScope(storageManager, namespace, annotationDeserializer, finder, packageData);
+                }
+            });
+        }
+
+        @NotNull
+        KotlinJavascriptLibraryModule getModule() {
+            return KotlinJavascriptLibraryModule.this;
+        }
+
+        @NotNull
+        AnnotationTable getAnnotationTable(@NotNull FqName packageFqName) {
+            return annotationTables.invoke(packageFqName);
+        }
+
+        @Nullable
+        JetScope getPackageScope(@NotNull NamespaceDescriptor namespace) {
+            return packageScopes.invoke(namespace);
+        }
+
+        @NotNull
+        private byte[] getFile(@NotNull String path) {
+            try {
+                return metadata.getFile(path);
+            }
+            catch (IOException e) {
+                throw ExceptionUtils.rethrow(e);
+            }
+        }
+
+        private class LibraryDescriptorFinder extends AbstractDescriptorFinder {
+            private final MemoizedFunctionToNotNull<FqName, Collection<Name>> classNames;
+
+            public LibraryDescriptorFinder() {
+                super(storageManager, annotationDeserializer);
+
+                classNames = storageManager.createMemoizedFunction(new Function1<FqName, Collection<Name>>() {
+                    @Override
+                    public Collection<Name> invoke(FqName packageFqName) {
+                        byte[] bytes = metadata.findFile(getClassNamesFilePath(packageFqName));
+                        if (bytes == null) return Collections.emptyList();
+
+                        NameResolver nameResolver = nameResolvers.invoke(packageFqName);
+                        try {
+                            DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes));
+                            int size = data.readInt();
+                            List<Name> result = new ArrayList<Name>(size);
+                            for (int i = 0; i < size; i++) {
+                                result.add(nameResolver.getName(data.readInt()));
+                            }
+                            return result;
+                        }
+                        catch (IOException e) {
+                            throw ExceptionUtils.rethrow(e);
+                        }
+                    }
+                });
+            }
+
+            @Nullable
+            public ClassDescriptor findOwnClass(@NotNull ClassId classId) {
+                return super.findClass(classId);
+            }
+
+            // Classes referenced by the library may be declared in other libraries, in the built-ins or in the module being compiled
+            @Nullable
+            @Override
+            public ClassDescriptor findClass(@NotNull ClassId classId) {
+                return KotlinJavascriptLibraryModule.this.findClass(classId);
+            }
+
+            @Nullable
+            @Override
+            protected ClassData getClassData(@NotNull ClassId classId) {
+                byte[] bytes = metadata.findFile(getClassMetadataPath(classId));
+                if (bytes == null) return null;
+
+                return ClassData.read(nameResolvers.invoke(classId.getPackageFqName()), new ByteArrayInputStream(bytes),
+                                      extensionRegistry);
+            }
+
+            @Nullable
+            @Override
+            public NamespaceDescriptor findPackage(@NotNull FqName fqName) {
+                return KotlinJavascriptLibraryModule.this.findPackage(fqName);
+            }
+
+            @NotNull
+            @Override
+            public Collection<Name> getClassNames(@NotNull FqName packageName) {
+                return classNames.invoke(packageName);
+            }
+        }
+    }
+}
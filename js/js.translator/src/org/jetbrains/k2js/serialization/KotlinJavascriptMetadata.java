@@ -0,0 +1,156 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.k2js.serialization;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.jetbrains.k2js.serialization.KotlinJavascriptSerializationUtil.*;
+
+/**
+ * Binary metadata of one library, as written by {@link KotlinJavascriptSerializer}
+ */
+public final class KotlinJavascriptMetadata {
+    @NotNull
+    private final String path;
+    @NotNull
+    private final String moduleName;
+    @NotNull
+    private final Map<String, byte[]> files;
+    @NotNull
+    private final Set<FqName> packages;
+
+    private KotlinJavascriptMetadata(@NotNull String path, @NotNull String moduleName, @NotNull Map<String, byte[]> files)
+            throws IOException {
+        this.path = path;
+        this.moduleName = moduleName;
+        this.files = files;
+        this.packages = readPackages(getFile(PACKAGES_FILE));
+    }
+
+    /**
+     * @return null if the archive contains no metadata
+     */
+    @Nullable
+    public static KotlinJavascriptMetadata read(@NotNull ZipFile zipFile, @Nullable String moduleName) throws IOException {
+        ZipEntry moduleNameEntry = zipFile.getEntry(MODULE_NAME_FILE);
+        if (moduleNameEntry == null) return null;
+
+        Map<String, byte[]> files = new HashMap<String, byte[]>();
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            if (!entry.isDirectory() && entry.getName().startsWith(METADATA_DIRECTORY + "/")) {
+                InputStream stream = zipFile.getInputStream(entry);
+                try {
+                    files.put(entry.getName(), FileUtil.loadBytes(stream));
+                }
+                finally {
+                    stream.close();
+                }
+            }
+        }
+
+        String name = moduleName != null ? moduleName : new String(files.get(MODULE_NAME_FILE), "UTF-8");
+        return new KotlinJavascriptMetadata(zipFile.getName(), name, files);
+    }
+
+    @NotNull
+    private static Set<FqName> readPackages(@NotNull byte[] bytes) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes));
+        int size = data.readInt();
+        Set<FqName> result = new HashSet<FqName>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(new FqName(data.readUTF()));
+        }
+        return result;
+    }
+
+    /**
+     * The path of the archive the metadata was read from
+     */
+    @NotNull
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * The name of the JavaScript module the declarations are defined in
+     */
+    @NotNull
+    public String getModuleName() {
+        return moduleName;
+    }
+
+    public boolean hasPackage(@NotNull FqName fqName) {
+        return packages.contains(fqName);
+    }
+
+    /**
+     * @return a hash of the declarations of the library, which doesn't depend on the time the archive was written at,
+     *         so that modules compiled against the library need not be recompiled if its declarations have not changed
+     */
+    @NotNull
+    public String getAbiHash() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try {
+            digest.update(moduleName.getBytes("UTF-8"));
+            for (String path : new TreeSet<String>(files.keySet())) {
+                digest.update((byte) 0);
+                digest.update(path.getBytes("UTF-8"));
+                digest.update((byte) 0);
+                digest.update(files.get(path));
+            }
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return new BigInteger(1, digest.digest()).toString(16);
+    }
+
+    @Nullable
+    public byte[] findFile(@NotNull String path) {
+        return files.get(path);
+    }
+
+    @NotNull
+    public byte[] getFile(@NotNull String path) throws IOException {
+        byte[] result = files.get(path);
+        if (result == null) {
+            throw new IOException("No " + path + " in the metadata of module " + moduleName);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.k2js.serialization;
+
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.GeneratedMessageLite;
+import com.google.protobuf.WireFormat;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.descriptors.serialization.ClassId;
+import org.jetbrains.jet.descriptors.serialization.ProtoBuf;
+import org.jetbrains.jet.descriptors.serialization.descriptors.AnnotationDeserializer.AnnotatedCallableKind;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.lang.types.lang.BuiltInsSerializationUtil;
+
+import java.util.List;
+
+/**
+ * Layout of the binary metadata of a Kotlin/JavaScript library.
+ *
+ * Metadata is stored in a zip archive (either a separate file written next to the generated JavaScript, or a library jar)
+ * under {@link #METADATA_DIRECTORY}. For each package there is a name table shared by all its declarations, the package proto,
+ * the names of its top level classes, a table of annotations and a proto file for each class, like for the built-ins.
+ */
+public final class KotlinJavascriptSerializationUtil {
+    public static final String METADATA_FILE_EXTENSION = ".meta.jar";
+
+    public static final String METADATA_DIRECTORY = "kotlin-js-metadata";
+    public static final String MODULE_NAME_FILE = METADATA_DIRECTORY + "/.kotlin_module";
+    public static final String PACKAGES_FILE = METADATA_DIRECTORY + "/.kotlin_packages";
+
+    private static final String PACKAGE_FILE_NAME = ".kotlin_package";
+    private static final String NAME_TABLE_FILE_NAME = ".kotlin_name_table";
+    private static final String CLASS_NAMES_FILE_NAME = ".kotlin_class_names";
+    private static final String ANNOTATIONS_FILE_NAME = ".kotlin_annotations";
+
+    // Protos of callables are extended with indices in the annotation table of their package, see AnnotationTable.
+    // There is no .proto file for these extensions, since they are plain lists of numbers
+    public static final GeneratedMessageLite.GeneratedExtension<ProtoBuf.Callable, List<Integer>> CALLABLE_ANNOTATIONS =
+            newAnnotationsExtension(200);
+    public static final GeneratedMessageLite.GeneratedExtension<ProtoBuf.Callable, List<Integer>> GETTER_ANNOTATIONS =
+            newAnnotationsExtension(201);
+    public static final GeneratedMessageLite.GeneratedExtension<ProtoBuf.Callable, List<Integer>> SETTER_ANNOTATIONS =
+            newAnnotationsExtension(202);
+
+    private KotlinJavascriptSerializationUtil() {
+    }
+
+    @NotNull
+    private static GeneratedMessageLite.GeneratedExtension<ProtoBuf.Callable, List<Integer>> newAnnotationsExtension(int number) {
+        return GeneratedMessageLite.newRepeatedGeneratedExtension(
+                ProtoBuf.Callable.getDefaultInstance(), null, null, number, WireFormat.FieldType.INT32, false);
+    }
+
+    @NotNull
+    public static GeneratedMessageLite.GeneratedExtension<ProtoBuf.Callable, List<Integer>> getAnnotationsExtension(
+            @NotNull AnnotatedCallableKind kind
+    ) {
+        switch (kind) {
+            case FUNCTION:
+            case PROPERTY:
+                return CALLABLE_ANNOTATIONS;
+            case PROPERTY_GETTER:
+                return GETTER_ANNOTATIONS;
+            case PROPERTY_SETTER:
+                return SETTER_ANNOTATIONS;
+        }
+        throw new IllegalArgumentException("Unknown callable kind: " + kind);
+    }
+
+    @NotNull
+    public static ExtensionRegistryLite getExtensionRegistry() {
+        ExtensionRegistryLite registry = ExtensionRegistryLite.newInstance();
+        registry.add(CALLABLE_ANNOTATIONS);
+        registry.add(GETTER_ANNOTATIONS);
+        registry.add(SETTER_ANNOTATIONS);
+        return registry;
+    }
+
+    @NotNull
+    public static String getClassMetadataPath(@NotNull ClassId classId) {
+        return METADATA_DIRECTORY + "/" + BuiltInsSerializationUtil.getClassMetadataPath(classId);
+    }
+
+    @NotNull
+    public static String getPackageFilePath(@NotNull FqName packageFqName) {
+        return getPackageDirectory(packageFqName) + PACKAGE_FILE_NAME;
+    }
+
+    @NotNull
+    public static String getNameTableFilePath(@NotNull FqName packageFqName) {
+        return getPackageDirectory(packageFqName) + NAME_TABLE_FILE_NAME;
+    }
+
+    @NotNull
+    public static String getClassNamesFilePath(@NotNull FqName packageFqName) {
+        return getPackageDirectory(packageFqName) + CLASS_NAMES_FILE_NAME;
+    }
+
+    @NotNull
+    public static String getAnnotationsFilePath(@NotNull FqName packageFqName) {
+        return getPackageDirectory(packageFqName) + ANNOTATIONS_FILE_NAME;
+    }
+
+    @NotNull
+    private static String getPackageDirectory(@NotNull FqName packageFqName) {
+        return packageFqName.isRoot()
+               ? METADATA_DIRECTORY + "/"
+               : METADATA_DIRECTORY + "/" + packageFqName.asString().replace('.', '/') + "/";
+    }
+
+    @NotNull
+    public static String getMetadataFileForOutput(@NotNull String outputFile) {
+        String withoutExtension = outputFile.endsWith(".js") ? outputFile.substring(0, outputFile.length() - ".js".length()) : outputFile;
+        return withoutExtension + METADATA_FILE_EXTENSION;
+    }
+}
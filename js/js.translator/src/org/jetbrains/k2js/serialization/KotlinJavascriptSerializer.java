@@ -0,0 +1,220 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.k2js.serialization;
+
+import com.google.protobuf.GeneratedMessageLite;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.descriptors.serialization.*;
+import org.jetbrains.jet.lang.descriptors.*;
+import org.jetbrains.jet.lang.descriptors.annotations.AnnotationDescriptor;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.JetPsiUtil;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.BindingContextUtils;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.lang.resolve.name.FqNameUnsafe;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.jetbrains.k2js.serialization.KotlinJavascriptSerializationUtil.*;
+
+/**
+ * Writes the binary metadata of the declarations of a module, so that other modules can be compiled against it
+ * without analyzing its sources, see {@link KotlinJavascriptLibraryModule}
+ */
+public final class KotlinJavascriptSerializer {
+    private final BindingContext bindingContext;
+    private final Set<PsiFile> files;
+    private final ZipOutputStream out;
+
+    private KotlinJavascriptSerializer(@NotNull BindingContext bindingContext, @NotNull Collection<JetFile> files, @NotNull ZipOutputStream out) {
+        this.bindingContext = bindingContext;
+        this.files = new HashSet<PsiFile>(files);
+        this.out = out;
+    }
+
+    public static void serialize(
+            @NotNull String moduleName,
+            @NotNull BindingContext bindingContext,
+            @NotNull Collection<JetFile> files,
+            @NotNull File metadataFile
+    ) throws IOException {
+        ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(metadataFile)));
+        try {
+            new KotlinJavascriptSerializer(bindingContext, files, out).serializeModule(moduleName);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    private void serializeModule(@NotNull String moduleName) throws IOException {
+        write(MODULE_NAME_FILE, moduleName.getBytes("UTF-8"));
+
+        // Parent packages are listed as well, so that every package of the library can be found by a lookup in its parent
+        Set<FqName> packages = new TreeSet<FqName>(new Comparator<FqName>() {
+            @Override
+            public int compare(@NotNull FqName o1, @NotNull FqName o2) {
+                return o1.asString().compareTo(o2.asString());
+            }
+        });
+        for (PsiFile file : files) {
+            FqName fqName = JetPsiUtil.getFQName((JetFile) file);
+            while (packages.add(fqName) && !fqName.isRoot()) {
+                fqName = fqName.parent();
+            }
+        }
+        packages.add(FqName.ROOT);
+
+        ByteArrayOutputStream packagesStream = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(packagesStream);
+        data.writeInt(packages.size());
+        for (FqName fqName : packages) {
+            data.writeUTF(fqName.asString());
+        }
+        data.close();
+        write(PACKAGES_FILE, packagesStream.toByteArray());
+
+        for (FqName fqName : packages) {
+            NamespaceDescriptor namespace = bindingContext.get(BindingContext.FQNAME_TO_NAMESPACE_DESCRIPTOR, fqName);
+            if (namespace != null) {
+                serializePackage(fqName, namespace);
+            }
+        }
+    }
+
+    private void serializePackage(@NotNull FqName fqName, @NotNull NamespaceDescriptor namespace) throws IOException {
+        final AnnotationTable annotations = new AnnotationTable();
+        DescriptorSerializer serializer = new DescriptorSerializer(new SerializerExtension() {
+            @Override
+            public void serializeCallable(
+                    @NotNull CallableMemberDescriptor callable,
+                    @NotNull ProtoBuf.Callable.Builder proto,
+                    @NotNull NameTable nameTable
+            ) {
+                addAnnotations(proto, CALLABLE_ANNOTATIONS, callable);
+                if (callable instanceof PropertyDescriptor) {
+                    PropertyDescriptor property = (PropertyDescriptor) callable;
+                    addAnnotations(proto, GETTER_ANNOTATIONS, property.getGetter());
+                    addAnnotations(proto, SETTER_ANNOTATIONS, property.getSetter());
+                }
+            }
+
+            private void addAnnotations(
+                    @NotNull ProtoBuf.Callable.Builder proto,
+                    @NotNull GeneratedMessageLite.GeneratedExtension<ProtoBuf.Callable, List<Integer>> extension,
+                    @Nullable DeclarationDescriptor descriptor
+            ) {
+                if (descriptor == null) return;
+                for (Integer index : annotations.add(descriptor.getAnnotations())) {
+                    proto.addExtension(extension, index);
+                }
+            }
+        });
+
+        Set<DeclarationDescriptor> declarations = new LinkedHashSet<DeclarationDescriptor>();
+        for (DeclarationDescriptor descriptor : namespace.getMemberScope().getAllDescriptors()) {
+            if (isDeclaredInModule(descriptor, namespace)) {
+                declarations.add(descriptor);
+            }
+        }
+        for (ClassDescriptor object : namespace.getMemberScope().getObjectDescriptors()) {
+            if (isDeclaredInModule(object, namespace)) {
+                declarations.add(object);
+            }
+        }
+
+        List<Name> classNames = new ArrayList<Name>();
+        ProtoBuf.Package.Builder packageProto = ProtoBuf.Package.newBuilder();
+        for (DeclarationDescriptor descriptor : DescriptorSerializer.sort(declarations)) {
+            if (descriptor instanceof ClassDescriptor) {
+                classNames.add(descriptor.getName());
+                serializeClass((ClassDescriptor) descriptor, new ClassId(fqName, FqNameUnsafe.topLevel(descriptor.getName())),
+                               serializer, annotations);
+            }
+            else if (descriptor instanceof PropertyDescriptor || descriptor instanceof FunctionDescriptor) {
+                packageProto.addMember(serializer.callableProto((CallableMemberDescriptor) descriptor));
+            }
+        }
+
+        write(getPackageFilePath(fqName), packageProto.build().toByteArray());
+
+        ByteArrayOutputStream classNamesStream = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(classNamesStream);
+        data.writeInt(classNames.size());
+        for (Name className : classNames) {
+            data.writeInt(serializer.getNameTable().getSimpleNameIndex(className));
+        }
+        data.close();
+        write(getClassNamesFilePath(fqName), classNamesStream.toByteArray());
+
+        ByteArrayOutputStream annotationsStream = new ByteArrayOutputStream();
+        annotations.writeTo(annotationsStream);
+        write(getAnnotationsFilePath(fqName), annotationsStream.toByteArray());
+
+        // The name table goes last, because serialization of everything else adds names to it
+        ByteArrayOutputStream nameTableStream = new ByteArrayOutputStream();
+        NameSerializationUtil.serializeNameTable(nameTableStream, serializer.getNameTable());
+        write(getNameTableFilePath(fqName), nameTableStream.toByteArray());
+    }
+
+    private void serializeClass(
+            @NotNull ClassDescriptor classDescriptor,
+            @NotNull ClassId classId,
+            @NotNull DescriptorSerializer serializer,
+            @NotNull AnnotationTable annotations
+    ) throws IOException {
+        write(getClassMetadataPath(classId), serializer.classProto(classDescriptor).build().toByteArray());
+        annotations.addClassAnnotations(classId.getRelativeClassName(), classDescriptor.getAnnotations());
+
+        List<DeclarationDescriptor> nestedClasses = new ArrayList<DeclarationDescriptor>();
+        nestedClasses.addAll(classDescriptor.getUnsubstitutedInnerClassesScope().getAllDescriptors());
+        nestedClasses.addAll(classDescriptor.getUnsubstitutedInnerClassesScope().getObjectDescriptors());
+        for (DeclarationDescriptor descriptor : nestedClasses) {
+            if (descriptor instanceof ClassDescriptor) {
+                serializeClass((ClassDescriptor) descriptor, classId.createNestedClassId(descriptor.getName()), serializer, annotations);
+            }
+        }
+
+        ClassDescriptor classObject = classDescriptor.getClassObjectDescriptor();
+        if (classObject != null) {
+            serializeClass(classObject, classId.createNestedClassId(classObject.getName()), serializer, annotations);
+        }
+    }
+
+    private boolean isDeclaredInModule(@NotNull DeclarationDescriptor descriptor, @NotNull NamespaceDescriptor namespace) {
+        // Namespace member scopes also contain the declarations of libraries and built-ins which are imported into them
+        if (descriptor.getContainingDeclaration() != namespace || descriptor instanceof NamespaceDescriptor) return false;
+
+        PsiElement element = BindingContextUtils.descriptorToDeclaration(bindingContext, descriptor);
+        return element != null && files.contains(element.getContainingFile());
+    }
+
+    private void write(@NotNull String path, @NotNull byte[] bytes) throws IOException {
+        out.putNextEntry(new ZipEntry(path));
+        out.write(bytes);
+        out.closeEntry();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.k2js.serialization;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.descriptors.serialization.ClassId;
+import org.jetbrains.jet.descriptors.serialization.NameResolver;
+import org.jetbrains.jet.descriptors.serialization.ProtoBuf;
+import org.jetbrains.jet.descriptors.serialization.descriptors.AnnotationDeserializer;
+import org.jetbrains.jet.lang.descriptors.*;
+import org.jetbrains.jet.lang.descriptors.annotations.AnnotationDescriptor;
+import org.jetbrains.jet.lang.resolve.DescriptorUtils;
+import org.jetbrains.jet.lang.resolve.constants.StringValue;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.lang.resolve.name.FqNameUnsafe;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.jetbrains.k2js.serialization.KotlinJavascriptSerializationUtil.getAnnotationsExtension;
+
+/**
+ * Loads annotations of library declarations from the annotation tables of their packages.
+ * Annotations of value parameters are not serialized, since the translator doesn't need them
+ */
+class LibraryAnnotationDeserializer implements AnnotationDeserializer {
+    private final KotlinJavascriptLibraryModule.Library library;
+
+    public LibraryAnnotationDeserializer(@NotNull KotlinJavascriptLibraryModule.Library library) {
+        this.library = library;
+    }
+
+    @NotNull
+    @Override
+    public List<AnnotationDescriptor> loadClassAnnotations(@NotNull ClassDescriptor descriptor, @NotNull ProtoBuf.Class classProto) {
+        ClassId classId = ClassId.fromFqNameAndContainingDeclaration(
+                DescriptorUtils.getFQName(descriptor), (ClassOrNamespaceDescriptor) descriptor.getContainingDeclaration());
+        AnnotationTable table = library.getAnnotationTable(classId.getPackageFqName());
+        return resolve(table, table.getClassAnnotations(classId.getRelativeClassName()));
+    }
+
+    @NotNull
+    @Override
+    public List<AnnotationDescriptor> loadCallableAnnotations(
+            @NotNull ClassOrNamespaceDescriptor container,
+            @NotNull ProtoBuf.Callable proto,
+            @NotNull NameResolver nameResolver,
+            @NotNull AnnotatedCallableKind kind
+    ) {
+        NamespaceDescriptor namespace = DescriptorUtils.getParentOfType(container, NamespaceDescriptor.class, false);
+        assert namespace != null : "No namespace for " + container;
+        AnnotationTable table = library.getAnnotationTable(namespace.getFqName());
+        return resolve(table, proto.getExtension(getAnnotationsExtension(kind)));
+    }
+
+    @NotNull
+    @Override
+    public List<AnnotationDescriptor> loadValueParameterAnnotations(@NotNull ProtoBuf.Callable.ValueParameter parameterProto) {
+        return Collections.emptyList();
+    }
+
+    @NotNull
+    private List<AnnotationDescriptor> resolve(@NotNull AnnotationTable table, @NotNull List<Integer> indices) {
+        if (indices.isEmpty()) return Collections.emptyList();
+
+        List<AnnotationDescriptor> result = new ArrayList<AnnotationDescriptor>(indices.size());
+        for (Integer index : indices) {
+            AnnotationDescriptor annotation = resolve(table.get(index));
+            if (annotation != null) {
+                result.add(annotation);
+            }
+        }
+        return result;
+    }
+
+    @Nullable
+    private AnnotationDescriptor resolve(@NotNull AnnotationTable.SerializedAnnotation serialized) {
+        FqName fqName = serialized.annotationClass;
+        ClassDescriptor annotationClass =
+                library.getModule().findClass(new ClassId(fqName.parent(), FqNameUnsafe.topLevel(fqName.shortName())));
+        if (annotationClass == null) return null;
+
+        AnnotationDescriptor annotation = new AnnotationDescriptor();
+        annotation.setAnnotationType(annotationClass.getDefaultType());
+        for (Map.Entry<Name, String> argument : serialized.arguments.entrySet()) {
+            ValueParameterDescriptor parameter = getParameterByName(annotationClass, argument.getKey());
+            if (parameter != null) {
+                annotation.setValueArgument(parameter, new StringValue(argument.getValue()));
+            }
+        }
+        return annotation;
+    }
+
+    @Nullable
+    private static ValueParameterDescriptor getParameterByName(@NotNull ClassDescriptor annotationClass, @NotNull Name name) {
+        for (ConstructorDescriptor constructor : annotationClass.getConstructors()) {
+            for (ValueParameterDescriptor parameter : constructor.getValueParameters()) {
+                if (parameter.getName().equals(name)) {
+                    return parameter;
+                }
+            }
+        }
+        return null;
+    }
+}
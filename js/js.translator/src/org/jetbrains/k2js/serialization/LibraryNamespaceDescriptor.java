@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.k2js.serialization;
+
+import jet.Function0;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.lang.descriptors.annotations.AnnotationDescriptor;
+import org.jetbrains.jet.lang.descriptors.impl.AbstractNamespaceDescriptorImpl;
+import org.jetbrains.jet.lang.descriptors.impl.NamespaceDescriptorParent;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.lang.resolve.name.Name;
+import org.jetbrains.jet.lang.resolve.scopes.JetScope;
+import org.jetbrains.jet.storage.NotNullLazyValue;
+import org.jetbrains.jet.storage.StorageManager;
+
+import java.util.Collections;
+
+/**
+ * A package of Kotlin/JavaScript libraries. Its members are deserialized from the metadata of all libraries declaring this package
+ */
+class LibraryNamespaceDescriptor extends AbstractNamespaceDescriptorImpl {
+    private final FqName fqName;
+    private final NotNullLazyValue<JetScope> memberScope;
+
+    public LibraryNamespaceDescriptor(
+            @NotNull StorageManager storageManager,
+            @NotNull NamespaceDescriptorParent containingDeclaration,
+            @NotNull Name name,
+            @NotNull FqName fqName,
+            @NotNull final KotlinJavascriptLibraryModule libraryModule
+    ) {
+        super(containingDeclaration, Collections.<AnnotationDescriptor>emptyList(), name);
+        this.fqName = fqName;
+        this.memberScope = storageManager.createLazyValue(new Function0<JetScope>() {
+            @Override
+            public JetScope invoke() {
+                return libraryModule.createMemberScope(LibraryNamespaceDescriptor.this);
+            }
+        });
+    }
+
+    @NotNull
+    @Override
+    public JetScope getMemberScope() {
+        return memberScope.invoke();
+    }
+
+    @NotNull
+    @Override
+    public FqName getFqName() {
+        return fqName;
+    }
+}
@@ -28,6 +28,7 @@ import org.jetbrains.jet.lang.resolve.BindingContextUtils;
 import org.jetbrains.jet.lang.resolve.DescriptorUtils;
 import org.jetbrains.k2js.config.EcmaVersion;
 import org.jetbrains.k2js.config.LibrarySourcesConfig;
+import org.jetbrains.k2js.serialization.KotlinJavascriptLibraryModule;
 import org.jetbrains.k2js.translate.context.generator.Generator;
 import org.jetbrains.k2js.translate.context.generator.Rule;
 import org.jetbrains.k2js.translate.declaration.ClassDeclarationTranslator;
@@ -51,12 +52,17 @@ import static org.jetbrains.k2js.translate.utils.TranslationUtils.getMangledName
  */
 public final class StaticContext {
 
-    public static StaticContext generateStaticContext(@NotNull BindingContext bindingContext, @NotNull EcmaVersion ecmaVersion) {
+    public static StaticContext generateStaticContext(
+            @NotNull BindingContext bindingContext,
+            @NotNull EcmaVersion ecmaVersion,
+            @Nullable KotlinJavascriptLibraryModule libraryModule
+    ) {
         JsProgram program = new JsProgram("main");
         Namer namer = Namer.newInstance(program.getRootScope());
         Intrinsics intrinsics = new Intrinsics();
         StandardClasses standardClasses = StandardClasses.bindImplementations(namer.getKotlinScope());
-        return new StaticContext(program, bindingContext, namer, intrinsics, standardClasses, program.getRootScope(), ecmaVersion);
+        return new StaticContext(program, bindingContext, namer, intrinsics, standardClasses, program.getRootScope(), ecmaVersion,
+                                 libraryModule);
     }
 
     @NotNull
@@ -91,6 +97,9 @@ public final class StaticContext {
     @NotNull
     private final EcmaVersion ecmaVersion;
 
+    @Nullable
+    private final KotlinJavascriptLibraryModule libraryModule;
+
     @NotNull
     private LiteralFunctionTranslator literalFunctionTranslator;
     @NotNull
@@ -99,7 +108,8 @@ public final class StaticContext {
     //TODO: too many parameters in constructor
     private StaticContext(@NotNull JsProgram program, @NotNull BindingContext bindingContext,
             @NotNull Namer namer, @NotNull Intrinsics intrinsics,
-            @NotNull StandardClasses standardClasses, @NotNull JsScope rootScope, @NotNull EcmaVersion ecmaVersion) {
+            @NotNull StandardClasses standardClasses, @NotNull JsScope rootScope, @NotNull EcmaVersion ecmaVersion,
+            @Nullable KotlinJavascriptLibraryModule libraryModule) {
         this.program = program;
         this.bindingContext = bindingContext;
         this.namer = namer;
@@ -107,6 +117,7 @@ public final class StaticContext {
         this.rootScope = rootScope;
         this.standardClasses = standardClasses;
         this.ecmaVersion = ecmaVersion;
+        this.libraryModule = libraryModule;
     }
 
     public void initTranslators(TranslationContext programContext) {
@@ -447,6 +458,17 @@ public final class StaticContext {
         return qualifiers.get(descriptor.getOriginal());
     }
 
+    // Declarations of libraries are either analyzed from sources, or deserialized from the binary metadata of the library
+    @Nullable
+    private String getExternalModuleName(@NotNull DeclarationDescriptor descriptor) {
+        PsiElement element = BindingContextUtils.descriptorToDeclaration(bindingContext, descriptor);
+        if (element != null) {
+            PsiFile file = element.getContainingFile();
+            return file.getUserData(LibrarySourcesConfig.EXTERNAL_MODULE_NAME);
+        }
+        return libraryModule != null ? libraryModule.getExternalModuleName(descriptor) : null;
+    }
+
     private final class QualifierGenerator extends Generator<JsNameRef> {
         public QualifierGenerator() {
             Rule<JsNameRef> standardObjectsHaveKotlinQualifier = new Rule<JsNameRef>() {
@@ -480,21 +502,15 @@ public final class StaticContext {
                         qualifier = ref;
                     }
 
-                    PsiElement element = BindingContextUtils.descriptorToDeclaration(bindingContext, descriptor);
-                    if (element == null && descriptor instanceof PropertyAccessorDescriptor) {
-                        element = BindingContextUtils.descriptorToDeclaration(bindingContext, ((PropertyAccessorDescriptor) descriptor)
-                                .getCorrespondingProperty());
+                    DeclarationDescriptor declaration = descriptor instanceof PropertyAccessorDescriptor
+                                                        ? ((PropertyAccessorDescriptor) descriptor).getCorrespondingProperty()
+                                                        : descriptor;
+                    String moduleName = getExternalModuleName(declaration);
+                    if (LibrarySourcesConfig.UNKNOWN_EXTERNAL_MODULE_NAME.equals(moduleName)) {
+                        return null;
                     }
-
-                    if (element != null) {
-                        PsiFile file = element.getContainingFile();
-                        String moduleName = file.getUserData(LibrarySourcesConfig.EXTERNAL_MODULE_NAME);
-                        if (LibrarySourcesConfig.UNKNOWN_EXTERNAL_MODULE_NAME.equals(moduleName)) {
-                            return null;
-                        }
-                        else if (moduleName != null) {
-                            qualifier.setQualifier(new JsArrayAccess(namer.kotlin("modules"), program.getStringLiteral(moduleName)));
-                        }
+                    else if (moduleName != null) {
+                        qualifier.setQualifier(new JsArrayAccess(namer.kotlin("modules"), program.getStringLiteral(moduleName)));
                     }
 
                     if (qualifier.getQualifier() == null) {
@@ -34,10 +34,7 @@ import org.jetbrains.k2js.translate.context.Namer;
 import org.jetbrains.k2js.translate.context.TranslationContext;
 import org.jetbrains.k2js.translate.general.AbstractTranslator;
 
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 
 import static com.google.dart.compiler.backend.js.ast.JsVars.JsVar;
 import static org.jetbrains.jet.lang.resolve.DescriptorUtils.getClassDescriptorForType;
@@ -80,6 +77,12 @@ public final class ClassDeclarationTranslator extends AbstractTranslator {
     private final JsNameRef declarationsObjectRef;
     private final JsVar classesVar;
 
+    // Open classes which are referenced by other open classes are declared as variables of the dummy function
+    private final List<JsVar> vars = new SmartList<JsVar>();
+    private final List<JsPropertyInitializer> propertyInitializers = new SmartList<JsPropertyInitializer>();
+    @Nullable
+    private JsVars varsStatement;
+
     public ClassDeclarationTranslator(@NotNull TranslationContext context) {
         super(context);
 
@@ -122,9 +125,6 @@ public final class ClassDeclarationTranslator extends AbstractTranslator {
     }
 
     public void generateDeclarations() {
-        List<JsVar> vars = new SmartList<JsVar>();
-        List<JsPropertyInitializer> propertyInitializers = new SmartList<JsPropertyInitializer>();
-
         generateOpenClassDeclarations(vars, propertyInitializers);
         fixUnresolvedClassReferences();
 
@@ -135,10 +135,34 @@ public final class ClassDeclarationTranslator extends AbstractTranslator {
             return;
         }
 
-        dummyFunction.setBody(new JsBlock(new JsVars(vars, true), new JsReturn(new JsObjectLiteral(propertyInitializers))));
+        varsStatement = new JsVars(vars, true);
+        dummyFunction.setBody(new JsBlock(varsStatement, new JsReturn(new JsObjectLiteral(propertyInitializers))));
         classesVar.setInitExpression(new JsInvocation(dummyFunction));
     }
 
+    /**
+     * Variables and entries of the classes object, which {@link DeadCodeEliminator} may remove
+     */
+    @NotNull
+    List<JsVar> getOpenClassVars() {
+        return vars;
+    }
+
+    @NotNull
+    List<JsPropertyInitializer> getOpenClassEntries() {
+        return propertyInitializers;
+    }
+
+    void removeDeclarations(@NotNull Set<? extends JsNode> declarations) {
+        vars.removeAll(declarations);
+        propertyInitializers.removeAll(declarations);
+        if (varsStatement != null && vars.isEmpty()) {
+            // An empty var statement is not valid JavaScript
+            dummyFunction.getBody().getStatements().remove(varsStatement);
+            varsStatement = null;
+        }
+    }
+
     private void generateOpenClassDeclarations(@NotNull List<JsVar> vars, @NotNull List<JsPropertyInitializer> propertyInitializers) {
         // first pass: set up list order
         LinkedList<OpenClassInfo> sortedOpenClasses =
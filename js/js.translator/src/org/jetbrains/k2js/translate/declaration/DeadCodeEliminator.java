@@ -0,0 +1,172 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.k2js.translate.declaration;
+
+import com.google.dart.compiler.backend.js.ast.*;
+import gnu.trove.THashMap;
+import gnu.trove.THashSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.k2js.translate.context.Namer;
+import org.jetbrains.k2js.translate.context.TranslationContext;
+
+import java.util.*;
+
+import static com.google.dart.compiler.backend.js.ast.JsVars.JsVar;
+
+/**
+ * Removes top level functions, properties and classes which can't be reached from the rest of the program:
+ * package initializers, the call to main and test calls. Other modules can't use the removed declarations,
+ * so it should only be applied to applications.
+ *
+ * A declaration is considered reachable if any reachable code refers to its name, whatever the qualifier, or contains
+ * a string literal equal to it. Members of classes are never removed, since they may be called by the runtime
+ * or through a receiver of unknown type. Declarations of libraries are not in the program, so references
+ * to them end the traversal.
+ */
+public final class DeadCodeEliminator {
+    @NotNull
+    private final Namer namer;
+    @NotNull
+    private final ClassDeclarationTranslator classDeclarationTranslator;
+
+    // Top level declarations which may be removed: property initializers of package members
+    // and of the classes object, and variables of open classes
+    private final Map<String, List<JsNode>> declarationsByName = new THashMap<String, List<JsNode>>();
+    private final Map<JsNode, JsNode> declarationValues = new THashMap<JsNode, JsNode>();
+    private final List<List<JsPropertyInitializer>> packageMembers = new ArrayList<List<JsPropertyInitializer>>();
+
+    private final Set<JsNode> reachable = new THashSet<JsNode>();
+    private final Deque<JsNode> queue = new ArrayDeque<JsNode>();
+
+    private DeadCodeEliminator(@NotNull TranslationContext context) {
+        this.namer = context.namer();
+        this.classDeclarationTranslator = context.classDeclarationTranslator();
+    }
+
+    public static void eliminate(@NotNull TranslationContext context) {
+        new DeadCodeEliminator(context).eliminate(context.program());
+    }
+
+    private void eliminate(@NotNull JsProgram program) {
+        program.accept(new PackageCollector());
+        for (JsPropertyInitializer entry : classDeclarationTranslator.getOpenClassEntries()) {
+            addDeclaration(entry);
+        }
+        for (JsVar var : classDeclarationTranslator.getOpenClassVars()) {
+            addDeclaration(var.getName().getIdent(), var, var.getInitExpression());
+        }
+
+        ReferenceCollector collector = new ReferenceCollector();
+        program.accept(collector);
+        while (!queue.isEmpty()) {
+            collector.accept(queue.poll());
+        }
+
+        Set<JsNode> unreachable = new THashSet<JsNode>(declarationValues.keySet());
+        unreachable.removeAll(reachable);
+        for (List<JsPropertyInitializer> members : packageMembers) {
+            members.removeAll(unreachable);
+        }
+        classDeclarationTranslator.removeDeclarations(unreachable);
+    }
+
+    private void addDeclaration(@NotNull JsPropertyInitializer entry) {
+        JsExpression label = entry.getLabelExpr();
+        if (label instanceof JsNameRef) {
+            addDeclaration(((JsNameRef) label).getIdent(), entry, entry.getValueExpr());
+        }
+    }
+
+    private void addDeclaration(@NotNull String name, @NotNull JsNode declaration, @NotNull JsNode value) {
+        List<JsNode> declarations = declarationsByName.get(name);
+        if (declarations == null) {
+            declarations = new ArrayList<JsNode>(1);
+            declarationsByName.put(name, declarations);
+        }
+        declarations.add(declaration);
+        declarationValues.put(declaration, value);
+    }
+
+    private boolean isPackageDefinition(@NotNull JsExpression expression) {
+        if (!(expression instanceof JsInvocation)) return false;
+
+        JsExpression qualifier = ((JsInvocation) expression).getQualifier();
+        return qualifier == namer.packageDefinitionMethodReference() || qualifier == namer.rootPackageDefinitionMethodReference();
+    }
+
+    private class PackageCollector extends RecursiveJsVisitor {
+        @Override
+        public void visitInvocation(JsInvocation invocation) {
+            super.visitInvocation(invocation);
+            if (!isPackageDefinition(invocation)) return;
+
+            List<JsExpression> arguments = invocation.getArguments();
+            JsExpression members = arguments.get(arguments.size() - 1);
+            if (!(members instanceof JsObjectLiteral)) return;
+
+            List<JsPropertyInitializer> entries = ((JsObjectLiteral) members).getPropertyInitializers();
+            packageMembers.add(entries);
+            for (JsPropertyInitializer entry : entries) {
+                // Subpackages are kept, their initializers are reachable
+                if (!isPackageDefinition(entry.getValueExpr())) {
+                    addDeclaration(entry);
+                }
+            }
+        }
+    }
+
+    private class ReferenceCollector extends RecursiveJsVisitor {
+        @Override
+        public void visitPropertyInitializer(JsPropertyInitializer x) {
+            // A label is not a reference, e.g. a method of a class doesn't make a package function with the same name reachable
+            if (!declarationValues.containsKey(x)) {
+                accept(x.getValueExpr());
+            }
+        }
+
+        @Override
+        public void visit(JsVar x) {
+            if (!declarationValues.containsKey(x)) {
+                super.visit(x);
+            }
+        }
+
+        @Override
+        public void visitNameRef(JsNameRef nameRef) {
+            markReachable(nameRef.getIdent());
+            super.visitNameRef(nameRef);
+        }
+
+        @Override
+        public void visitString(JsStringLiteral x) {
+            markReachable(x.getValue());
+            super.visitString(x);
+        }
+
+        private void markReachable(@NotNull String name) {
+            List<JsNode> declarations = declarationsByName.get(name);
+            if (declarations == null) return;
+
+            for (JsNode declaration : declarations) {
+                if (reachable.add(declaration)) {
+                    queue.add(declarationValues.get(declaration));
+                }
+            }
+        }
+    }
+}
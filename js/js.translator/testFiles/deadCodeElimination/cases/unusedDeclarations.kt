@@ -0,0 +1,27 @@
+package foo
+
+fun unusedFunction(): String = "unusedFunction"
+
+class UnusedClass() {
+    fun f() = 1
+}
+
+open class UnusedBase()
+
+class UnusedDerived() : UnusedBase()
+
+open class Base() {
+    open fun name() = "Base"
+}
+
+class Derived() : Base() {
+    override fun name() = "Derived"
+}
+
+fun used(x: Int): Int = x + 1
+
+val usedProperty = 42
+
+fun main(args: Array<String>) {
+    println(Derived().name() + " " + used(usedProperty))
+}
@@ -0,0 +1,11 @@
+package foo
+
+fun unusedFunction(): String = "unusedFunction"
+
+fun calledFromLambda(): String = "called"
+
+fun apply(f: () -> String): String = f()
+
+fun main(args: Array<String>) {
+    println(apply { calledFromLambda() })
+}
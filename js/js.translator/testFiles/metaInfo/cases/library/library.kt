@@ -0,0 +1,18 @@
+package library
+
+import js.*
+
+native("nativeSum")
+public fun sum(a: Int, b: Int): Int = js.noImpl
+
+library("safeParseInt")
+public fun parseNumber(s: String): Int? = js.noImpl
+
+public val answer: Int
+    get() = sum(40, 2)
+
+public var counter: Int = 0
+
+public class Greeter(val name: String) {
+    public fun greet(): String = "Hello, " + name
+}
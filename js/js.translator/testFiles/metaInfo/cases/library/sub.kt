@@ -0,0 +1,3 @@
+package library.sub
+
+public fun twice(s: String): String = s + s
@@ -0,0 +1,16 @@
+package foo
+
+import library.*
+import library.sub.twice
+
+fun box(): String {
+    if (sum(1, 2) != 3) return "native function: " + sum(1, 2)
+    if (parseNumber("17") != 17) return "library function: " + parseNumber("17")
+    if (answer != 42) return "property with getter: " + answer
+    counter++
+    counter += 2
+    if (counter != 3) return "property with setter: " + counter
+    if (Greeter("Kotlin").greet() != "Hello, Kotlin") return "class: " + Greeter("Kotlin").greet()
+    if (twice("OK") != "OKOK") return "subpackage: " + twice("OK")
+    return "OK"
+}
@@ -25,10 +25,13 @@ import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.cli.common.ArgumentUtils;
 import org.jetbrains.jet.cli.common.CLICompiler;
 import org.jetbrains.jet.cli.common.CompilerArguments;
 import org.jetbrains.jet.cli.common.ExitCode;
 import org.jetbrains.jet.cli.common.KotlinVersion;
+import org.jetbrains.jet.cli.common.daemon.CompilerDaemonClient;
 import org.jetbrains.jet.cli.common.messages.CompilerMessageLocation;
 import org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity;
 import org.jetbrains.jet.cli.common.messages.MessageCollector;
@@ -150,6 +153,13 @@ public abstract class KotlinCompileMojoBase extends AbstractMojo {
      */
     public String testModule;
 
+    /**
+     * Port of a running Kotlin compiler daemon to compile with. If there is no daemon on this port, the compiler runs in the Maven process.
+     *
+     * @parameter expression="${kotlin.daemon.port}"
+     */
+    public Integer daemonPort;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         getLog().info("Kotlin Compiler version " + KotlinVersion.VERSION);
@@ -199,7 +209,10 @@ public abstract class KotlinCompileMojoBase extends AbstractMojo {
             }
         };
 
-        final ExitCode exitCode = compiler.exec(messageCollector, arguments);
+        ExitCode exitCode = compileInDaemon(compiler, arguments, messageCollector);
+        if (exitCode == null) {
+            exitCode = compiler.exec(messageCollector, arguments);
+        }
 
         switch (exitCode) {
             case COMPILATION_ERROR:
@@ -210,6 +223,33 @@ public abstract class KotlinCompileMojoBase extends AbstractMojo {
         }
     }
 
+    /**
+     * @return the exit code, or null if the compilation should be done in process
+     */
+    @Nullable
+    private ExitCode compileInDaemon(CLICompiler compiler, CompilerArguments arguments, MessageCollector messageCollector) {
+        // Compiler plugins can't be passed to another process
+        if (daemonPort == null || !arguments.getCompilerPlugins().isEmpty()) return null;
+
+        List<String> args = ArgumentUtils.convertArgumentsToStringList(arguments);
+        if (arguments instanceof K2JVMCompilerArguments) {
+            // Source directories have no command line counterpart, but free arguments are treated the same way
+            List<String> sourceDirs = ((K2JVMCompilerArguments) arguments).getSourceDirs();
+            if (sourceDirs != null) {
+                args.addAll(sourceDirs);
+            }
+        }
+
+        // All paths in arguments come from the project model and are absolute
+        Integer code = CompilerDaemonClient.compile(daemonPort, compiler.getClass().getName(), args.toArray(new String[args.size()]), null,
+                                                    messageCollector);
+        if (code == null) {
+            getLog().info("No Kotlin compiler daemon on port " + daemonPort + ", compiling in process");
+            return null;
+        }
+        return ExitCode.fromCode(code);
+    }
+
     private void printCompilerArgumentsIfDebugEnabled(CompilerArguments arguments, CLICompiler compiler) {
         if (getLog().isDebugEnabled()) {
             getLog().debug("Invoking compiler " + compiler + " with arguments:");